@@ -0,0 +1,44 @@
+package dev.railroadide.switchboard;
+
+import dev.railroadide.switchboard.minecraft.MinecraftVersion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads the upstream documents checked in under {@code src/jmh/resources/fixtures}, so benchmarks never touch the
+ * network.
+ */
+public final class Fixtures {
+    public static final String VERSION_MANIFEST = "version_manifest.json";
+    public static final String FORGE_MAVEN_METADATA = "forge-maven-metadata.xml";
+    public static final String NEOFORGE_MAVEN_METADATA = "neoforge-maven-metadata.xml";
+    public static final String PISTON_META = "piston-meta-1.21.json";
+
+    private Fixtures() {
+    }
+
+    public static byte[] bytes(String name) {
+        try (InputStream stream = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (stream == null)
+                throw new IllegalArgumentException("Missing fixture: " + name);
+
+            return stream.readAllBytes();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    public static String string(String name) {
+        return new String(bytes(name), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Populates {@link MinecraftVersion}'s version list from the manifest fixture, as the startup fetch would.
+     */
+    public static void loadMinecraftVersions() {
+        MinecraftVersion.loadManifest(string(VERSION_MANIFEST));
+    }
+}
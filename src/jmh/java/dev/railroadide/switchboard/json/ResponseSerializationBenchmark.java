@@ -0,0 +1,52 @@
+package dev.railroadide.switchboard.json;
+
+import dev.railroadide.switchboard.Fixtures;
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.minecraft.MavenMetadata;
+import dev.railroadide.switchboard.minecraft.MinecraftVersion;
+import dev.railroadide.switchboard.minecraft.pistonmeta.VersionPackage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes typical response bodies both the way the routes do today ({@code toJsonTree} handed to {@code ctx.json})
+ * and directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseSerializationBenchmark {
+    private List<MinecraftVersion> minecraftVersions;
+    private List<String> forgeVersions;
+    private VersionPackage versionPackage;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.loadMinecraftVersions();
+        minecraftVersions = MinecraftVersion.getVersions();
+        forgeVersions = MavenMetadata.parse(Fixtures.bytes(Fixtures.FORGE_MAVEN_METADATA)).versions().reversed();
+        versionPackage = VersionPackage.fromJsonString(Fixtures.string(Fixtures.PISTON_META));
+    }
+
+    @Benchmark
+    public String minecraftVersionsViaTree() {
+        return Switchboard.GSON.toJson(Switchboard.GSON.toJsonTree(minecraftVersions));
+    }
+
+    @Benchmark
+    public String minecraftVersionsDirect() {
+        return Switchboard.GSON.toJson(minecraftVersions);
+    }
+
+    @Benchmark
+    public String forgeVersionsViaTree() {
+        return Switchboard.GSON.toJson(Switchboard.GSON.toJsonTree(forgeVersions));
+    }
+
+    @Benchmark
+    public String versionPackageViaTree() {
+        return Switchboard.GSON.toJson(Switchboard.GSON.toJsonTree(versionPackage));
+    }
+}
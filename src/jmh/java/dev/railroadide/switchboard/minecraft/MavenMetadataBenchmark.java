@@ -0,0 +1,26 @@
+package dev.railroadide.switchboard.minecraft;
+
+import dev.railroadide.switchboard.Fixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MavenMetadataBenchmark {
+    @Param({Fixtures.FORGE_MAVEN_METADATA, Fixtures.NEOFORGE_MAVEN_METADATA})
+    public String fixture;
+
+    private byte[] xml;
+
+    @Setup
+    public void setUp() {
+        xml = Fixtures.bytes(fixture);
+    }
+
+    @Benchmark
+    public MavenMetadata parse() throws Exception {
+        return MavenMetadata.parse(xml);
+    }
+}
@@ -0,0 +1,36 @@
+package dev.railroadide.switchboard.minecraft;
+
+import dev.railroadide.switchboard.Fixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MinecraftVersionBenchmark {
+    // Newest, oldest release, old beta and a miss; fromId is a map lookup, so these should all cost the same
+    @Param({"1.21.4", "1.0", "b1.7.3", "not-a-version"})
+    public String id;
+
+    private String manifest;
+
+    @Setup
+    public void setUp() {
+        Fixtures.loadMinecraftVersions();
+        manifest = Fixtures.string(Fixtures.VERSION_MANIFEST);
+    }
+
+    @Benchmark
+    public Optional<MinecraftVersion> fromId() {
+        return MinecraftVersion.fromId(id);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int loadManifest() {
+        MinecraftVersion.loadManifest(manifest);
+        return MinecraftVersion.getVersions().size();
+    }
+}
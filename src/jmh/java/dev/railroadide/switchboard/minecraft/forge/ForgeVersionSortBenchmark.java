@@ -0,0 +1,32 @@
+package dev.railroadide.switchboard.minecraft.forge;
+
+import dev.railroadide.switchboard.Fixtures;
+import dev.railroadide.switchboard.minecraft.MavenMetadata;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ForgeVersionSortBenchmark {
+    private List<String> shuffled;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.loadMinecraftVersions();
+        shuffled = new ArrayList<>(MavenMetadata.parse(Fixtures.bytes(Fixtures.FORGE_MAVEN_METADATA)).versions());
+        Collections.shuffle(shuffled, new Random(42));
+    }
+
+    @Benchmark
+    public List<String> sortAll() {
+        return shuffled.stream()
+                .sorted(ForgeVersionService::compareForgeVersions)
+                .toList();
+    }
+}
@@ -0,0 +1,43 @@
+package dev.railroadide.switchboard.minecraft.forge;
+
+import dev.railroadide.switchboard.Fixtures;
+import dev.railroadide.switchboard.minecraft.MavenMetadata;
+import dev.railroadide.switchboard.minecraft.MinecraftVersion;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NeoforgeVersionServiceBenchmark {
+    @Param({"1.21.1", "1.20.4"})
+    public String minecraftVersion;
+
+    @Param({"false", "true"})
+    public boolean includePrereleases;
+
+    private NeoforgeVersionService service;
+    private MinecraftVersion version;
+
+    @Setup
+    public void setUp() throws Exception {
+        Fixtures.loadMinecraftVersions();
+        version = MinecraftVersion.fromId(minecraftVersion).orElseThrow();
+
+        List<String> versions = MavenMetadata.parse(Fixtures.bytes(Fixtures.NEOFORGE_MAVEN_METADATA)).versions();
+        // Seed the cache so every call measures the filter/sort rather than a fetch
+        service = new NeoforgeVersionService() {
+            {
+                cache.put("all", new CacheEntry<>(versions, Instant.MAX));
+            }
+        };
+    }
+
+    @Benchmark
+    public List<String> listVersionsFor() {
+        return service.listVersionsFor(version, includePrereleases);
+    }
+}
@@ -0,0 +1,280 @@
+package dev.railroadide.switchboard.minecraft.pistonmeta;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import dev.railroadide.switchboard.Switchboard;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * The tree-based piston-meta parser that {@link PistonMetaTypeAdapterFactory} replaced, kept as the baseline for
+ * {@link VersionPackageBenchmark}: parse into a {@link JsonObject}, then walk it, re-binding leaf objects reflectively.
+ * The only change is that JVM arguments are read from {@code arguments.jvm} rather than the root, so both parsers do
+ * the same work.
+ */
+final class TreeVersionPackageParser {
+    // A Gson without PistonMetaTypeAdapterFactory, i.e. the reflective binding the old parser used for leaf objects
+    private static final Gson REFLECTIVE = new Gson();
+
+    private TreeVersionPackageParser() {
+    }
+
+    static VersionPackage parse(String json) {
+        return versionPackage(Switchboard.GSON.fromJson(json, JsonObject.class));
+    }
+
+    static VersionPackage versionPackage(JsonObject json) {
+        JsonObject argumentsJson = json.getAsJsonObject("arguments");
+        var arguments = new Arguments(cliArguments(argumentsJson.getAsJsonArray("game")),
+                cliArguments(argumentsJson.getAsJsonArray("jvm")));
+
+        AssetIndex assetIndex = reflective(json.getAsJsonObject("assetIndex"), AssetIndex.class);
+        String assets = json.get("assets").getAsString();
+        int complianceLevel = json.get("complianceLevel").getAsInt();
+        Downloads downloads = downloads(json.getAsJsonObject("downloads"));
+        String id = json.get("id").getAsString();
+        JavaVersion javaVersion = reflective(json.getAsJsonObject("javaVersion"), JavaVersion.class);
+
+        List<Library> libraries = new ArrayList<>();
+        for (JsonElement jsonElement : json.getAsJsonArray("libraries")) {
+            if (jsonElement.isJsonObject())
+                libraries.add(library(jsonElement.getAsJsonObject()));
+        }
+
+        JsonObject clientJson = json.getAsJsonObject("logging").getAsJsonObject("client");
+        var logging = new Logging(new Logging.Client(clientJson.get("argument").getAsString(),
+                reflective(clientJson.getAsJsonObject("file"), Logging.Client.LoggingFile.class),
+                clientJson.get("type").getAsString()));
+
+        String mainClass = json.get("mainClass").getAsString();
+        int minimumLauncherVersion = json.get("minimumLauncherVersion").getAsInt();
+        String releaseTime = json.get("releaseTime").getAsString();
+        String time = json.get("time").getAsString();
+        String type = json.get("type").getAsString();
+
+        return new VersionPackage(arguments, assetIndex, assets, complianceLevel, downloads, id, javaVersion,
+                libraries, logging, mainClass, minimumLauncherVersion, releaseTime, time, type);
+    }
+
+    private static Downloads downloads(JsonObject json) {
+        return new Downloads(reflective(json.getAsJsonObject("client"), Download.class),
+                reflective(json.getAsJsonObject("client_mappings"), Download.class),
+                reflective(json.getAsJsonObject("server"), Download.class),
+                reflective(json.getAsJsonObject("server_mappings"), Download.class));
+    }
+
+    private static Library library(JsonObject json) {
+        Download artifact = null;
+        if (json.has("downloads") && json.getAsJsonObject("downloads").has("artifact"))
+            artifact = reflective(json.getAsJsonObject("downloads").getAsJsonObject("artifact"), Download.class);
+
+        Optional<List<Library.DownloadRule>> rules = Optional.empty();
+        if (json.has("rules")) {
+            List<Library.DownloadRule> parsed = new ArrayList<>();
+            for (JsonElement ruleElement : json.getAsJsonArray("rules")) {
+                if (!ruleElement.isJsonObject())
+                    continue;
+
+                JsonObject ruleJson = ruleElement.getAsJsonObject();
+                Library.DownloadRule.Action action = ruleJson.has("action") ?
+                        Library.DownloadRule.Action.valueOf(ruleJson.get("action").getAsString().toUpperCase(Locale.ROOT)) :
+                        null;
+                Library.DownloadRule.OperatingSystem os = ruleJson.has("os") ?
+                        reflective(ruleJson.getAsJsonObject("os"), Library.DownloadRule.OperatingSystem.class) :
+                        null;
+                parsed.add(new Library.DownloadRule(action, os));
+            }
+
+            rules = Optional.of(parsed);
+        }
+
+        return new Library(artifact, json.get("name").getAsString(), rules);
+    }
+
+    private static <T> T reflective(JsonObject json, Class<T> type) {
+        return REFLECTIVE.fromJson(json, type);
+    }
+
+    private static List<CLIArguments.Argument> readKeyValues(JsonArray array, BiConsumer<List<CLIArguments.Argument>, JsonElement> notPrimitiveHandler) {
+        List<CLIArguments.Argument> arguments = new ArrayList<>();
+        if (array == null || array.isEmpty()) {
+            return arguments;
+        }
+
+        for (int i = 0; i < array.size(); i++) {
+            JsonElement element = array.get(i);
+            if (element.isJsonPrimitive()) {
+                JsonPrimitive primitive = element.getAsJsonPrimitive();
+                if (!primitive.isString()) {
+                    throw new IllegalArgumentException("Argument must be a string! " + primitive);
+                }
+
+                String key = primitive.getAsString();
+                if (key.startsWith("--")) {
+                    key = key.substring(2);
+
+                    if (key.contains("=")) {
+                        String[] split = key.split("=");
+                        if (split.length != 2) {
+                            throw new IllegalArgumentException("Argument must have a key and value! " + key);
+                        }
+
+                        arguments.add(new CLIArguments.Argument(split[0], split[1]));
+                    } else {
+                        if (i + 1 >= array.size()) {
+                            arguments.add(new CLIArguments.Argument(key, ""));
+                            continue;
+                        }
+
+                        JsonElement next = array.get(i + 1);
+                        if (!next.isJsonPrimitive()) {
+                            throw new IllegalArgumentException("Argument must have a value! " + key);
+                        }
+
+                        JsonPrimitive nextPrimitive = next.getAsJsonPrimitive();
+                        if (!nextPrimitive.isString()) {
+                            throw new IllegalArgumentException("Argument must have a value! " + key);
+                        }
+
+                        arguments.add(new CLIArguments.Argument(key, nextPrimitive.getAsString()));
+                        i++;
+                    }
+                } else if (key.startsWith("-")) {
+                    key = key.substring(1);
+
+                    if (key.contains("=")) {
+                        String[] split = key.split("=");
+                        arguments.add(new CLIArguments.Argument(split[0], split[1]));
+                    } else {
+                        if (i + 1 >= array.size()) {
+                            arguments.add(new CLIArguments.Argument(key, ""));
+                            continue;
+                        }
+
+                        JsonElement next = array.get(i + 1);
+                        if (!next.isJsonPrimitive()) {
+                            throw new IllegalArgumentException("Argument must have a value! " + key);
+                        }
+
+                        JsonPrimitive nextPrimitive = next.getAsJsonPrimitive();
+                        if (!nextPrimitive.isString()) {
+                            throw new IllegalArgumentException("Argument must have a value! " + key);
+                        }
+
+                        arguments.add(new CLIArguments.Argument(key, nextPrimitive.getAsString()));
+                        i++;
+                    }
+                } else {
+                    throw new IllegalArgumentException("Argument must start with a '-' or '--'! " + key);
+                }
+            } else {
+                notPrimitiveHandler.accept(arguments, element);
+            }
+        }
+
+        return arguments;
+    }
+
+    static CLIArguments cliArguments(JsonArray array) {
+        List<CLIArguments.Argument> args = readKeyValues(array, (arguments, element) -> {
+            if (element.isJsonObject()) {
+                JsonObject object = element.getAsJsonObject();
+                if (!object.has("rules")) {
+                    throw new IllegalArgumentException("Argument must have rules! " + object);
+                }
+
+                JsonArray rulesJson = object.getAsJsonArray("rules");
+                List<CLIArguments.Argument.Rule> rules = new ArrayList<>();
+                for (JsonElement ruleElement : rulesJson) {
+                    if (!ruleElement.isJsonObject()) {
+                        throw new IllegalArgumentException("Rule must be an object! " + ruleElement);
+                    }
+
+                    JsonObject ruleObject = ruleElement.getAsJsonObject();
+                    if (!ruleObject.has("action")) {
+                        throw new IllegalArgumentException("Rule must have an action! " + ruleObject);
+                    }
+
+                    String actionString = ruleObject.get("action").getAsString();
+                    CLIArguments.Argument.Rule.Action action;
+                    try {
+                        action = CLIArguments.Argument.Rule.Action.valueOf(actionString.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException exception) {
+                        throw new IllegalArgumentException("Rule action must be 'allow' or 'disallow'! " + actionString);
+                    }
+
+                    Map<String, String> os = new HashMap<>();
+                    if (ruleObject.has("os")) {
+                        JsonObject osObject = ruleObject.getAsJsonObject("os");
+                        for (Map.Entry<String, JsonElement> entry : osObject.entrySet()) {
+                            if (!entry.getValue().isJsonPrimitive()) {
+                                throw new IllegalArgumentException("OS value must be a primitive! " + entry);
+                            }
+
+                            JsonPrimitive primitive = entry.getValue().getAsJsonPrimitive();
+                            if (!primitive.isString()) {
+                                throw new IllegalArgumentException("OS value must be a string! " + entry);
+                            }
+
+                            os.put(entry.getKey(), primitive.getAsString());
+                        }
+                    }
+
+                    Map<String, Boolean> features = new HashMap<>();
+                    if (ruleObject.has("features")) {
+                        JsonObject featuresObject = ruleObject.getAsJsonObject("features");
+                        for (Map.Entry<String, JsonElement> entry : featuresObject.entrySet()) {
+                            if (!entry.getValue().isJsonPrimitive()) {
+                                throw new IllegalArgumentException("Feature value must be a primitive! " + entry);
+                            }
+
+                            JsonPrimitive primitive = entry.getValue().getAsJsonPrimitive();
+                            if (!primitive.isBoolean()) {
+                                throw new IllegalArgumentException("Feature value must be a boolean! " + entry);
+                            }
+
+                            features.put(entry.getKey(), primitive.getAsBoolean());
+                        }
+                    }
+
+                    rules.add(new CLIArguments.Argument.Rule(action, os, features));
+                }
+
+                if (!object.has("value")) {
+                    throw new IllegalArgumentException("Argument must have a value! " + object);
+                }
+
+                // can either be a string or an array of strings
+                JsonElement valueElement = object.get("value");
+                if (valueElement.isJsonArray()) {
+                    List<CLIArguments.Argument> valueArguments = readKeyValues(valueElement.getAsJsonArray(), (arguments1, jsonElement1) -> {
+                        throw new IllegalArgumentException("Argument value must be a string! " + jsonElement1);
+                    });
+
+                    for (CLIArguments.Argument argument : valueArguments) {
+                        arguments.add(new CLIArguments.Argument(argument.name(), argument.value(), rules));
+                    }
+                } else if (valueElement.isJsonPrimitive()) {
+                    var valueArray = new JsonArray();
+                    valueArray.add(valueElement);
+
+                    List<CLIArguments.Argument> valueArguments = readKeyValues(valueArray, (arguments1, jsonElement1) -> {
+                        throw new IllegalArgumentException("Argument value must be a string! " + jsonElement1);
+                    });
+
+                    for (CLIArguments.Argument argument : valueArguments) {
+                        arguments.add(new CLIArguments.Argument(argument.name(), argument.value(), rules));
+                    }
+                } else {
+                    throw new IllegalArgumentException("Argument value must be a string! " + valueElement);
+                }
+            }
+        });
+
+        return new CLIArguments(args);
+    }
+}
@@ -0,0 +1,60 @@
+package dev.railroadide.switchboard.minecraft.pistonmeta;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import dev.railroadide.switchboard.Fixtures;
+import dev.railroadide.switchboard.Switchboard;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming piston-meta parser against the tree-based one it replaced ({@code *Tree}). Run with the gc
+ * profiler (enabled in build.gradle) to compare allocation per parse as well as time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VersionPackageBenchmark {
+    private String json;
+    private JsonArray gameArguments;
+    private JsonArray jvmArguments;
+
+    @Setup
+    public void setUp() {
+        json = Fixtures.string(Fixtures.PISTON_META);
+        JsonObject arguments = Switchboard.GSON.fromJson(json, JsonObject.class).getAsJsonObject("arguments");
+        gameArguments = arguments.getAsJsonArray("game");
+        jvmArguments = arguments.getAsJsonArray("jvm");
+    }
+
+    @Benchmark
+    public VersionPackage fromJsonString() {
+        return VersionPackage.fromJsonString(json);
+    }
+
+    @Benchmark
+    public VersionPackage fromJsonStringTree() {
+        return TreeVersionPackageParser.parse(json);
+    }
+
+    @Benchmark
+    public CLIArguments gameArguments() {
+        return CLIArguments.fromJsonArray(gameArguments);
+    }
+
+    @Benchmark
+    public CLIArguments gameArgumentsTree() {
+        return TreeVersionPackageParser.cliArguments(gameArguments);
+    }
+
+    @Benchmark
+    public CLIArguments jvmArguments() {
+        return CLIArguments.fromJsonArray(jvmArguments);
+    }
+
+    @Benchmark
+    public CLIArguments jvmArgumentsTree() {
+        return TreeVersionPackageParser.cliArguments(jvmArguments);
+    }
+}
@@ -0,0 +1,44 @@
+package dev.railroadide.switchboard.routing;
+
+import com.google.gson.JsonObject;
+import dev.railroadide.switchboard.Fixtures;
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.minecraft.pistonmeta.VersionPackage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FieldFilterBenchmark {
+    @Param({"mainClass", "arguments.game,assets,mainClass,downloads.client.url", "libraries,downloads.*"})
+    public String fields;
+
+    private VersionPackage versionPackage;
+    private JsonObject versionPackageJson;
+    private String body;
+
+    @Setup
+    public void setUp() {
+        versionPackage = VersionPackage.fromJsonString(Fixtures.string(Fixtures.PISTON_META));
+        versionPackageJson = Switchboard.GSON.toJsonTree(versionPackage).getAsJsonObject();
+        body = "fields " + fields;
+    }
+
+    @Benchmark
+    public JsonObject filter() {
+        return MinecraftRouting.filterJsonObject(versionPackageJson, MinecraftRouting.getFieldsFromBody(body));
+    }
+
+    /**
+     * What {@code /minecraft/piston-meta/{id}} does per request: build the whole tree, then filter it.
+     */
+    @Benchmark
+    public JsonObject toJsonTreeAndFilter() {
+        List<String> requested = MinecraftRouting.getFieldsFromBody(body);
+        JsonObject json = Switchboard.GSON.toJsonTree(versionPackage).getAsJsonObject();
+        return MinecraftRouting.filterJsonObject(json, requested);
+    }
+}
@@ -0,0 +1,130 @@
+package dev.railroadide.switchboard.loadtest;
+
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Holds many {@code /events} connections open without sending anything on them, the way idle IDE instances do, and
+ * records when each one receives an event on its topic.
+ */
+public class IdleSubscribers implements AutoCloseable {
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<Stream<String>> streams = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Long> deliveries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final String url;
+    private final String topic;
+    private CountDownLatch delivered = new CountDownLatch(0);
+
+    public IdleSubscribers(String baseUrl, String topic) {
+        this.url = baseUrl + "/events?topics=" + topic;
+        this.topic = topic;
+    }
+
+    /**
+     * Opens the connections and waits until each has either received its response headers or failed.
+     */
+    public void open(int count, Duration timeout) {
+        delivered = new CountDownLatch(count);
+        List<CompletableFuture<HttpResponse<Stream<String>>>> pending = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                    .header("Accept", "text/event-stream")
+                    .GET()
+                    .build();
+            pending.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                    .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS));
+        }
+
+        for (CompletableFuture<HttpResponse<Stream<String>>> future : pending) {
+            HttpResponse<Stream<String>> response;
+            try {
+                response = future.join();
+            } catch (RuntimeException exception) {
+                future.cancel(true);
+                failed.incrementAndGet();
+                delivered.countDown();
+                continue;
+            }
+
+            if (response.statusCode() != 200) {
+                response.body().close();
+                failed.incrementAndGet();
+                delivered.countDown();
+                continue;
+            }
+
+            connected.incrementAndGet();
+            synchronized (streams) {
+                streams.add(response.body());
+            }
+            readers.submit(() -> read(response.body()));
+        }
+    }
+
+    public int connected() {
+        return connected.get();
+    }
+
+    public int failed() {
+        return failed.get();
+    }
+
+    /**
+     * Waits until every open connection has received an event, or the timeout passes.
+     *
+     * @return the nanosecond timestamps at which connections received their first event
+     */
+    public List<Long> awaitDeliveries(Duration timeout) throws InterruptedException {
+        delivered.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        return List.copyOf(deliveries);
+    }
+
+    @Override
+    public void close() {
+        synchronized (streams) {
+            streams.forEach(Stream::close);
+        }
+
+        readers.shutdownNow();
+        client.shutdownNow();
+    }
+
+    private void read(Stream<String> lines) {
+        boolean received = false;
+        try (lines) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                if (!received && line.equals("event: " + topic)) {
+                    received = true;
+                    deliveries.add(System.nanoTime());
+                    delivered.countDown();
+                }
+            }
+        } catch (UncheckedIOException ignored) {
+            // Closed by close() or by the server
+        }
+
+        if (!received)
+            delivered.countDown();
+    }
+}
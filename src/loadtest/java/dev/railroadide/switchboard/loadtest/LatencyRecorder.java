@@ -0,0 +1,54 @@
+package dev.railroadide.switchboard.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects raw request latencies for one endpoint. Not thread-safe: every load worker owns its own recorders and they
+ * are merged once the phase is over, so recording never contends.
+ */
+public class LatencyRecorder {
+    private long[] latencies = new long[1024];
+    private int size;
+    private long errors;
+
+    public void record(long nanos, boolean success) {
+        if (size == latencies.length)
+            latencies = Arrays.copyOf(latencies, size * 2);
+
+        latencies[size++] = nanos;
+        if (!success)
+            errors++;
+    }
+
+    public void merge(LatencyRecorder other) {
+        if (size + other.size > latencies.length)
+            latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, size + other.size));
+
+        System.arraycopy(other.latencies, 0, latencies, size, other.size);
+        size += other.size;
+        errors += other.errors;
+    }
+
+    public Summary summarize(String endpoint, double seconds) {
+        long[] sorted = Arrays.copyOf(latencies, size);
+        Arrays.sort(sorted);
+        return new Summary(endpoint, size, errors, seconds > 0 ? size / seconds : 0,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), size == 0 ? 0 : sorted[size - 1] / 1_000_000D);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0)
+            return 0;
+
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.clamp(index, 0, sorted.length - 1)] / 1_000_000D;
+    }
+
+    /**
+     * Latencies are in milliseconds.
+     */
+    public record Summary(String endpoint, long requests, long errors, double throughput, double p50, double p90,
+                          double p99, double p999, double max) {
+    }
+}
@@ -0,0 +1,155 @@
+package dev.railroadide.switchboard.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Drives a weighted mix of Switchboard endpoints from a fixed number of closed-loop workers, each on its own virtual
+ * thread, and reports latency percentiles per endpoint.
+ */
+public class LoadGenerator {
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final List<Endpoint> endpoints;
+    private final int totalWeight;
+
+    public LoadGenerator(String baseUrl, List<Endpoint> endpoints) {
+        this.baseUrl = baseUrl;
+        this.endpoints = List.copyOf(endpoints);
+        this.totalWeight = endpoints.stream().mapToInt(Endpoint::weight).sum();
+    }
+
+    /**
+     * Requests every endpoint once, one after another, so each first hit lands on a cold cache.
+     */
+    public List<LatencyRecorder.Summary> touchEach() {
+        var random = new Random(0);
+        List<LatencyRecorder.Summary> summaries = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            var recorder = new LatencyRecorder();
+            execute(endpoint, random, recorder);
+            summaries.add(recorder.summarize(endpoint.name(), 0));
+        }
+
+        return summaries;
+    }
+
+    public List<LatencyRecorder.Summary> run(int concurrency, Duration duration) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        long start = System.nanoTime();
+
+        List<Future<Map<String, LatencyRecorder>>> workers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(() -> {
+                    Map<String, LatencyRecorder> recorders = new HashMap<>();
+                    Random random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                        Endpoint endpoint = pick(random);
+                        execute(endpoint, random, recorders.computeIfAbsent(endpoint.name(), _ -> new LatencyRecorder()));
+                    }
+
+                    return recorders;
+                }));
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1_000_000_000D;
+        Map<String, LatencyRecorder> merged = new LinkedHashMap<>();
+        var overall = new LatencyRecorder();
+        for (Endpoint endpoint : endpoints)
+            merged.put(endpoint.name(), new LatencyRecorder());
+
+        for (Future<Map<String, LatencyRecorder>> worker : workers) {
+            try {
+                worker.get().forEach((name, recorder) -> {
+                    merged.get(name).merge(recorder);
+                    overall.merge(recorder);
+                });
+            } catch (ExecutionException exception) {
+                throw new IllegalStateException("Load worker failed", exception.getCause());
+            }
+        }
+
+        List<LatencyRecorder.Summary> summaries = new ArrayList<>();
+        summaries.add(overall.summarize("all", seconds));
+        merged.forEach((name, recorder) -> summaries.add(recorder.summarize(name, seconds)));
+        return summaries;
+    }
+
+    public HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Endpoint pick(Random random) {
+        int roll = random.nextInt(totalWeight);
+        for (Endpoint endpoint : endpoints) {
+            roll -= endpoint.weight();
+            if (roll < 0)
+                return endpoint;
+        }
+
+        return endpoints.getLast();
+    }
+
+    private void execute(Endpoint endpoint, Random random, LatencyRecorder recorder) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint.path().apply(random)))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            success = response.statusCode() < 500;
+        } catch (IOException exception) {
+            success = false;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        recorder.record(System.nanoTime() - start, success);
+    }
+
+    /**
+     * @param name   the route template the endpoint is reported under
+     * @param weight its share of the mix relative to the other endpoints
+     * @param path   produces a concrete request path, including any drawn path parameters
+     */
+    public record Endpoint(String name, int weight, Function<Random, String> path) {
+        public static Endpoint fixed(String path, int weight) {
+            return new Endpoint(path, weight, _ -> path);
+        }
+
+        public static Endpoint drawn(String template, int weight, List<String> values) {
+            return new Endpoint(template, weight, random -> template.replaceFirst("\\{[^}]+}",
+                    values.get(random.nextInt(values.size()))));
+        }
+    }
+}
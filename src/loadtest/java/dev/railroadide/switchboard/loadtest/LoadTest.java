@@ -0,0 +1,248 @@
+package dev.railroadide.switchboard.loadtest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import dev.railroadide.switchboard.Switchboard;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Boots a real Switchboard against {@link StubUpstream} and a {@link LocalParchmentRepository}, then measures four
+ * phases: cold start, steady state, steady state while the upstreams publish a new release that Switchboard has to
+ * pick up, and steady state while many {@link IdleSubscribers} hold {@code /events} open, followed by a release that
+ * only the background refresh can deliver to them. Nothing leaves the machine, so runs are comparable between commits.
+ * <p>
+ * Tuned through system properties (forwarded from {@code -Ploadtest.*} by the {@code loadTest} task):
+ * {@code loadtest.concurrency}, {@code loadtest.warmupSeconds}, {@code loadtest.durationSeconds},
+ * {@code loadtest.upstreamLatencyMs}, {@code loadtest.upstreamJitterMs}, {@code loadtest.versionTtlSeconds},
+ * {@code loadtest.subscribers}, {@code loadtest.virtualThreads} and {@code loadtest.report}. Run once with
+ * {@code -Ploadtest.virtualThreads=false} as well: every open {@code /events} connection then holds a platform thread.
+ */
+public class LoadTest {
+    private static final Duration READY_TIMEOUT = Duration.ofMinutes(1);
+    private static final Duration SUBSCRIBE_TIMEOUT = Duration.ofSeconds(30);
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("loadtest.concurrency", 64);
+        Duration warmup = Duration.ofSeconds(Integer.getInteger("loadtest.warmupSeconds", 10));
+        Duration duration = Duration.ofSeconds(Integer.getInteger("loadtest.durationSeconds", 30));
+        Duration latency = Duration.ofMillis(Integer.getInteger("loadtest.upstreamLatencyMs", 20));
+        Duration jitter = Duration.ofMillis(Integer.getInteger("loadtest.upstreamJitterMs", 30));
+        int versionTtl = Integer.getInteger("loadtest.versionTtlSeconds", 15);
+        int subscribers = Integer.getInteger("loadtest.subscribers", 2000);
+        boolean virtualThreads = Boolean.parseBoolean(System.getProperty("loadtest.virtualThreads", "true"));
+        Path reportPath = Path.of(System.getProperty("loadtest.report", "build/loadtest/report.json"));
+
+        Path workDirectory = Files.createTempDirectory("switchboard-loadtest");
+        Path cacheDirectory = Files.createDirectories(workDirectory.resolve("cache"));
+        Path cloneDirectory = Files.createDirectories(workDirectory.resolve("parchment-clone"));
+
+        var stub = new StubUpstream(latency, jitter).start();
+        List<String> releases = stub.releases();
+        List<String> recent = releases.subList(0, Math.min(20, releases.size()));
+        List<String> legacy = releases.stream().filter(release -> release.startsWith("1.12") || release.startsWith("1.16")).toList();
+        Path parchmentRepository = LocalParchmentRepository.create(workDirectory.resolve("parchment-origin"), recent);
+
+        int port = freePort();
+        long bootStart = System.nanoTime();
+        Switchboard.main(new String[]{
+                "-p", String.valueOf(port),
+                "-cacheloc", cacheDirectory.toString(),
+                "-parchmentclonepath", cloneDirectory.toString(),
+                "-parchmentrepo", parchmentRepository.toUri().toString(),
+                "-mojangmirrors", stub.baseUrl(),
+                "-forgemirrors", stub.baseUrl(),
+                "-fabricmaven", stub.baseUrl(),
+                "-fabricmeta", stub.baseUrl(),
+                "-neoforgedmaven", stub.baseUrl(),
+                "-versionttl", String.valueOf(versionTtl),
+                "-virtualthreads", String.valueOf(virtualThreads)
+        });
+
+        String baseUrl = "http://127.0.0.1:" + port;
+        var generator = new LoadGenerator(baseUrl, List.of(
+                LoadGenerator.Endpoint.fixed("/minecraft/versions", 6),
+                LoadGenerator.Endpoint.fixed("/minecraft/latest", 4),
+                LoadGenerator.Endpoint.drawn("/minecraft/versions/{id}", 4, recent),
+                LoadGenerator.Endpoint.drawn("/minecraft/piston-meta/{id}", 10, recent),
+                LoadGenerator.Endpoint.fixed("/forge/versions", 4),
+                LoadGenerator.Endpoint.drawn("/forge/versions/{minecraftVersion}", 8, recent),
+                LoadGenerator.Endpoint.drawn("/forge/latest/{minecraftVersion}", 10, recent),
+                LoadGenerator.Endpoint.drawn("/neoforge/versions/{minecraftVersion}", 8, recent),
+                LoadGenerator.Endpoint.drawn("/fabric/api/latest/{minecraftVersion}", 8, recent),
+                LoadGenerator.Endpoint.drawn("/fabric/loader/versions/{minecraftVersion}", 4, recent),
+                LoadGenerator.Endpoint.drawn("/yarn/versions/{minecraftVersion}", 6, recent),
+                LoadGenerator.Endpoint.drawn("/mcp/versions/{minecraftVersion}", 3, legacy),
+                LoadGenerator.Endpoint.drawn("/parchment/latest/{minecraftVersion}", 6, recent),
+                LoadGenerator.Endpoint.drawn("/mojmap/versions/{minecraftVersion}", 3, recent)
+        ));
+
+        var report = new JsonObject();
+        var settings = new JsonObject();
+        settings.addProperty("concurrency", concurrency);
+        settings.addProperty("warmupSeconds", warmup.toSeconds());
+        settings.addProperty("durationSeconds", duration.toSeconds());
+        settings.addProperty("upstreamLatencyMs", latency.toMillis());
+        settings.addProperty("upstreamJitterMs", jitter.toMillis());
+        settings.addProperty("versionTtlSeconds", versionTtl);
+        settings.addProperty("subscribers", subscribers);
+        settings.addProperty("virtualThreads", virtualThreads);
+        settings.addProperty("javaVersion", Runtime.version().toString());
+        settings.addProperty("availableProcessors", Runtime.getRuntime().availableProcessors());
+        report.add("settings", settings);
+
+        try {
+            awaitReady(generator);
+            double readyMillis = (System.nanoTime() - bootStart) / 1_000_000D;
+            System.out.printf(Locale.ROOT, "%nSwitchboard ready after %.1f ms%n", readyMillis);
+
+            List<LatencyRecorder.Summary> cold = generator.touchEach();
+            print("Cold start (first request per endpoint)", cold);
+            JsonObject coldPhase = phase(cold);
+            coldPhase.addProperty("readyMillis", readyMillis);
+            report.add("coldStart", coldPhase);
+
+            generator.run(concurrency, warmup);
+
+            long upstreamBefore = stub.requests();
+            List<LatencyRecorder.Summary> steady = generator.run(concurrency, duration);
+            print("Steady state", steady);
+            JsonObject steadyPhase = phase(steady);
+            steadyPhase.addProperty("upstreamRequests", stub.requests() - upstreamBefore);
+            report.add("steadyState", steadyPhase);
+
+            upstreamBefore = stub.requests();
+            StubUpstream.Release release = stub.publishRelease();
+            long publishedAt = System.nanoTime();
+            List<LatencyRecorder.Summary> refresh;
+            Future<Double> minecraftVisible;
+            Future<Double> forgeVisible;
+            try (ExecutorService watchers = Executors.newVirtualThreadPerTaskExecutor()) {
+                Duration watchLimit = duration.plus(Duration.ofSeconds(versionTtl));
+                minecraftVisible = watchers.submit(() -> awaitVisible(generator,
+                        "/minecraft/versions/" + release.minecraftVersion(), "\"" + release.minecraftVersion() + "\"", publishedAt, watchLimit));
+                forgeVisible = watchers.submit(() -> awaitVisible(generator,
+                        "/forge/versions", release.forgeVersion(), publishedAt, watchLimit));
+                refresh = generator.run(concurrency, duration);
+            }
+
+            print("Refresh under load", refresh);
+            JsonObject refreshPhase = phase(refresh);
+            refreshPhase.addProperty("upstreamRequests", stub.requests() - upstreamBefore);
+            refreshPhase.addProperty("minecraftVisibleMillis", minecraftVisible.get());
+            refreshPhase.addProperty("forgeVisibleMillis", forgeVisible.get());
+            report.add("refreshUnderLoad", refreshPhase);
+            System.out.printf(Locale.ROOT, "New Minecraft version visible after %.0f ms, new Forge version after %.0f ms (-1 = never)%n",
+                    minecraftVisible.get(), forgeVisible.get());
+
+            // Nothing requests NeoForge versions once the load stops, so only the periodic refresh can announce them
+            try (var idle = new IdleSubscribers(baseUrl, "neoforge")) {
+                // Switchboard runs in this JVM, so its threads are counted here too
+                int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+                idle.open(subscribers, SUBSCRIBE_TIMEOUT);
+                int subscriberThreads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+                System.out.printf(Locale.ROOT, "%n%d of %d idle subscribers connected, holding %d more platform threads%n",
+                        idle.connected(), subscribers, subscriberThreads);
+
+                List<LatencyRecorder.Summary> held = generator.run(concurrency, duration);
+                print("Steady state with idle subscribers", held);
+                JsonObject idlePhase = phase(held);
+                idlePhase.addProperty("connected", idle.connected());
+                idlePhase.addProperty("failed", idle.failed());
+                idlePhase.addProperty("platformThreads", subscriberThreads);
+
+                stub.publishRelease();
+                long idlePublishedAt = System.nanoTime();
+                List<Double> delivered = idle.awaitDeliveries(Duration.ofSeconds(2L * versionTtl + 10)).stream()
+                        .map(at -> (at - idlePublishedAt) / 1_000_000D)
+                        .sorted()
+                        .toList();
+                idlePhase.addProperty("delivered", delivered.size());
+                idlePhase.addProperty("firstDeliveryMillis", delivered.isEmpty() ? -1 : delivered.getFirst());
+                idlePhase.addProperty("lastDeliveryMillis", delivered.isEmpty() ? -1 : delivered.getLast());
+                report.add("idleSubscribers", idlePhase);
+                System.out.printf(Locale.ROOT, "New NeoForge version delivered to %d of %d idle subscribers, the last after %.0f ms (-1 = never)%n",
+                        delivered.size(), idle.connected(), delivered.isEmpty() ? -1 : delivered.getLast());
+            }
+
+            Files.createDirectories(reportPath.toAbsolutePath().getParent());
+            Files.writeString(reportPath, Switchboard.GSON.toJson(report));
+            System.out.println("Report written to " + reportPath.toAbsolutePath());
+        } finally {
+            stub.close();
+        }
+
+        System.exit(0);
+    }
+
+    private static void awaitReady(LoadGenerator generator) throws InterruptedException {
+        long deadline = System.nanoTime() + READY_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                if (generator.get("/minecraft/latest").statusCode() == 200)
+                    return;
+            } catch (IOException ignored) {
+                // Not listening yet
+            }
+
+            Thread.sleep(25);
+        }
+
+        throw new IllegalStateException("Switchboard did not become ready within " + READY_TIMEOUT);
+    }
+
+    private static double awaitVisible(LoadGenerator generator, String path, String expected, long publishedAt, Duration limit)
+            throws InterruptedException {
+        long deadline = publishedAt + limit.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                HttpResponse<String> response = generator.get(path);
+                if (response.statusCode() == 200 && response.body().contains(expected))
+                    return (System.nanoTime() - publishedAt) / 1_000_000D;
+            } catch (IOException ignored) {
+                // Counted by the load workers already
+            }
+
+            Thread.sleep(100);
+        }
+
+        return -1;
+    }
+
+    private static JsonObject phase(List<LatencyRecorder.Summary> summaries) {
+        var phase = new JsonObject();
+        var endpoints = new JsonArray();
+        summaries.forEach(summary -> endpoints.add(Switchboard.GSON.toJsonTree(summary)));
+        phase.add("endpoints", endpoints);
+        return phase;
+    }
+
+    private static void print(String title, List<LatencyRecorder.Summary> summaries) {
+        System.out.printf(Locale.ROOT, "%n%s%n", title);
+        System.out.printf(Locale.ROOT, "%-44s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        for (LatencyRecorder.Summary summary : summaries) {
+            System.out.printf(Locale.ROOT, "%-44s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    summary.endpoint(), summary.requests(), summary.errors(), summary.throughput(),
+                    summary.p50(), summary.p90(), summary.p99(), summary.p999(), summary.max());
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package dev.railroadide.switchboard.loadtest;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.PersonIdent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A throwaway Git repository carrying Parchment-style {@code releases/<minecraft>-<version>} tags, so Switchboard's
+ * Parchment clone never leaves the machine.
+ */
+public final class LocalParchmentRepository {
+    private LocalParchmentRepository() {
+    }
+
+    public static Path create(Path directory, List<String> minecraftVersions) throws IOException, GitAPIException {
+        Files.createDirectories(directory);
+        var author = new PersonIdent("Switchboard Load Test", "loadtest@railroadide.dev");
+
+        try (Git git = Git.init().setDirectory(directory.toFile()).setInitialBranch("main").call()) {
+            for (String minecraftVersion : minecraftVersions) {
+                Files.writeString(directory.resolve("version.txt"), minecraftVersion);
+                git.add().addFilepattern("version.txt").call();
+                git.commit().setAuthor(author).setCommitter(author).setMessage("Release " + minecraftVersion).call();
+
+                for (int month = 1; month <= 3; month++) {
+                    git.tag().setName("releases/%s-2024.%02d.01".formatted(minecraftVersion, month))
+                            .setAnnotated(false)
+                            .call();
+                }
+            }
+        }
+
+        return directory;
+    }
+}
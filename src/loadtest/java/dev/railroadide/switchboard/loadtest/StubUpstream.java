@@ -0,0 +1,343 @@
+package dev.railroadide.switchboard.loadtest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import dev.railroadide.switchboard.Switchboard;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+
+/**
+ * An in-process stand-in for every HTTP upstream Switchboard talks to (Mojang, Forge and NeoForge Maven, Fabric Maven
+ * and meta), serving the captured fixtures on a single local port.
+ * <p>
+ * The Mojang manifest, piston meta, Forge and NeoForge metadata are the checked-in fixtures; the Fabric, Yarn, MCP and
+ * Forge promotion documents are derived from the manifest's releases. Every response is delayed by the configured
+ * latency, and {@link #publishRelease()} adds a new version everywhere so refreshes have something to pick up.
+ */
+public class StubUpstream implements AutoCloseable {
+    private final Duration latency;
+    private final Duration jitter;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicReference<Documents> documents = new AtomicReference<>();
+    private final LongAdder requests = new LongAdder();
+    private final String manifestTemplate;
+    private final String pistonMeta;
+    private final byte[] forgeMetadata;
+    private final byte[] neoforgeMetadata;
+    private final List<String> releases;
+    private final Map<String, byte[]> versionPackages = new ConcurrentHashMap<>();
+    private Javalin server;
+    private String baseUrl;
+
+    public StubUpstream(Duration latency, Duration jitter) {
+        this.latency = latency;
+        this.jitter = jitter;
+        this.manifestTemplate = fixture("version_manifest.json");
+        this.pistonMeta = fixture("piston-meta-1.21.json");
+        this.forgeMetadata = fixture("forge-maven-metadata.xml").getBytes(StandardCharsets.UTF_8);
+        this.neoforgeMetadata = fixture("neoforge-maven-metadata.xml").getBytes(StandardCharsets.UTF_8);
+
+        List<String> releaseIds = new ArrayList<>();
+        for (var element : Switchboard.GSON.fromJson(manifestTemplate, JsonObject.class).getAsJsonArray("versions")) {
+            JsonObject version = element.getAsJsonObject();
+            if (version.get("type").getAsString().equals("release"))
+                releaseIds.add(version.get("id").getAsString());
+        }
+
+        this.releases = List.copyOf(releaseIds);
+    }
+
+    public StubUpstream start() {
+        server = Javalin.create(config -> {
+            config.useVirtualThreads = true;
+            config.showJavalinBanner = false;
+        });
+        server.before(ctx -> {
+            requests.increment();
+            sleep();
+        });
+
+        server.get("/mc/game/version_manifest.json", ctx -> json(ctx, documents.get().manifest));
+        server.get("/v1/packages/{hash}/{file}", ctx ->
+                ctx.contentType("application/json").result(versionPackage(ctx.pathParam("file").replaceFirst("\\.json$", ""))));
+
+        server.get("/net/minecraftforge/forge/maven-metadata.xml", ctx -> xml(ctx, documents.get().forge));
+        server.get("/net/minecraftforge/forge/promotions_slim.json", ctx -> json(ctx, documents.get().promotions));
+        server.get("/net/neoforged/neoforge/maven-metadata.xml", ctx -> xml(ctx, documents.get().neoforge));
+        server.get("/de/oceanlabs/mcp/mcp_stable/maven-metadata.xml", ctx -> xml(ctx, documents.get().mcpStable));
+        server.get("/de/oceanlabs/mcp/mcp_snapshot/maven-metadata.xml", ctx -> xml(ctx, documents.get().mcpSnapshot));
+        server.get("/net/fabricmc/fabric-api/fabric-api/maven-metadata.xml", ctx -> xml(ctx, documents.get().fabricApi));
+        server.get("/net/fabricmc/yarn/maven-metadata.xml", ctx -> xml(ctx, documents.get().yarn));
+
+        server.get("/v2/versions/loader", ctx -> json(ctx, documents.get().fabricLoader));
+        server.get("/v2/versions/loader/{minecraftVersion}", ctx -> json(ctx, documents.get().fabricLoaderFor));
+        server.get("/v2/versions/loader/{minecraftVersion}/{loaderVersion}", ctx -> json(ctx, documents.get().fabricLoaderSingle));
+
+        server.start("127.0.0.1", 0);
+        baseUrl = "http://127.0.0.1:" + server.port();
+        documents.set(render(0));
+        return this;
+    }
+
+    /**
+     * Adds one new Minecraft snapshot and a new Forge, NeoForge and Fabric API build to everything served from now on.
+     */
+    public Release publishRelease() {
+        int next = generation.incrementAndGet();
+        documents.set(render(next));
+        return new Release(snapshotId(next), forgeVersion(next));
+    }
+
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    public List<String> releases() {
+        return releases;
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    @Override
+    public void close() {
+        if (server != null)
+            server.stop();
+    }
+
+    private Documents render(int generation) {
+        String latestRelease = releases.getFirst();
+        List<String> extraSnapshots = new ArrayList<>();
+        for (int i = generation; i >= 1; i--)
+            extraSnapshots.add(snapshotId(i));
+
+        JsonObject object = Switchboard.GSON.fromJson(manifestTemplate, JsonObject.class);
+        JsonArray versions = new JsonArray();
+        for (String id : extraSnapshots) {
+            var version = new JsonObject();
+            version.addProperty("id", id);
+            version.addProperty("type", "snapshot");
+            version.addProperty("time", "2099-01-01T00:00:00+00:00");
+            version.addProperty("releaseTime", "2099-01-%02dT00:00:00+00:00".formatted(Math.min(28, generation)));
+            versions.add(version);
+        }
+
+        versions.addAll(object.getAsJsonArray("versions"));
+        // Switchboard checks every package against the SHA-1 in its URL, so the URLs name the bodies served here
+        for (var element : versions) {
+            JsonObject version = element.getAsJsonObject();
+            String id = version.get("id").getAsString();
+            version.addProperty("url", baseUrl + "/v1/packages/" + sha1(versionPackage(id)) + "/" + id + ".json");
+        }
+
+        object.add("versions", versions);
+        if (!extraSnapshots.isEmpty())
+            object.getAsJsonObject("latest").addProperty("snapshot", extraSnapshots.getFirst());
+
+        String manifest = Switchboard.GSON.toJson(object);
+
+        List<String> forgeExtra = new ArrayList<>();
+        List<String> neoforgeExtra = new ArrayList<>();
+        List<String> fabricApiExtra = new ArrayList<>();
+        for (int i = 1; i <= generation; i++) {
+            forgeExtra.add(forgeVersion(i));
+            neoforgeExtra.add("21.4.9%02d".formatted(i));
+            fabricApiExtra.add("0.999.%d+%s".formatted(i, latestRelease));
+        }
+
+        List<String> modern = releases.stream().filter(release -> compareRelease(release, "1.14") >= 0).toList();
+        List<String> fabricApi = new ArrayList<>();
+        List<String> yarn = new ArrayList<>();
+        for (String release : modern.reversed()) {
+            for (int build = 1; build <= 12; build++) {
+                fabricApi.add("0.%d.%d+%s".formatted(modern.size() - modern.indexOf(release), build, release));
+                yarn.add("%s+build.%d".formatted(release, build));
+            }
+        }
+        fabricApi.addAll(fabricApiExtra);
+
+        List<String> legacy = releases.stream()
+                .filter(release -> compareRelease(release, "1.7") >= 0 && compareRelease(release, "1.17") < 0)
+                .toList()
+                .reversed();
+        List<String> mcpStable = new ArrayList<>();
+        List<String> mcpSnapshot = new ArrayList<>();
+        for (int i = 0; i < legacy.size(); i++) {
+            mcpStable.add("%d-%s".formatted(i + 1, legacy.get(i)));
+            for (int day = 1; day <= 20; day++)
+                mcpSnapshot.add("2020%02d%02d-%s".formatted(1 + i % 12, day, legacy.get(i)));
+        }
+
+        Map<String, String> promos = new LinkedHashMap<>();
+        for (String line : new String(forgeMetadata, StandardCharsets.UTF_8).split("\n")) {
+            int start = line.indexOf("<version>");
+            if (start < 0)
+                continue;
+
+            String version = line.substring(start + "<version>".length(), line.indexOf("</version>"));
+            int dash = version.indexOf('-');
+            if (dash > 0) {
+                promos.put(version.substring(0, dash) + "-latest", version.substring(dash + 1));
+                promos.putIfAbsent(version.substring(0, dash) + "-recommended", version.substring(dash + 1));
+            }
+        }
+        var promotions = new JsonObject();
+        promotions.addProperty("homepage", "https://files.minecraftforge.net/net/minecraftforge/forge/");
+        promotions.add("promos", Switchboard.GSON.toJsonTree(promos));
+
+        JsonArray loaders = new JsonArray();
+        JsonArray loadersFor = new JsonArray();
+        for (int minor = 16; minor >= 10; minor--) {
+            for (int patch = 12; patch >= 0; patch--) {
+                String version = "0.%d.%d".formatted(minor, patch);
+                var loader = new JsonObject();
+                loader.addProperty("separator", ".");
+                loader.addProperty("build", patch);
+                loader.addProperty("maven", "net.fabricmc:fabric-loader:" + version);
+                loader.addProperty("version", version);
+                loader.addProperty("stable", patch % 3 == 0);
+                loaders.add(loader);
+
+                var entry = new JsonObject();
+                entry.add("loader", loader);
+                loadersFor.add(entry);
+            }
+        }
+
+        return new Documents(
+                manifest,
+                appendVersions(forgeMetadata, forgeExtra),
+                Switchboard.GSON.toJson(promotions),
+                appendVersions(neoforgeMetadata, neoforgeExtra),
+                mavenMetadata("de.oceanlabs.mcp", "mcp_stable", mcpStable),
+                mavenMetadata("de.oceanlabs.mcp", "mcp_snapshot", mcpSnapshot),
+                mavenMetadata("net.fabricmc.fabric-api", "fabric-api", fabricApi),
+                mavenMetadata("net.fabricmc", "yarn", yarn),
+                Switchboard.GSON.toJson(loaders),
+                Switchboard.GSON.toJson(loadersFor),
+                Switchboard.GSON.toJson(loadersFor.get(0))
+        );
+    }
+
+    // Every version is served the 1.21 fixture under its own id
+    private byte[] versionPackage(String id) {
+        return versionPackages.computeIfAbsent(id, _ -> pistonMeta.replaceFirst("\"id\": \"1\\.21\"",
+                Matcher.quoteReplacement("\"id\": \"" + id + "\"")).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha1(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(body));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private String forgeVersion(int generation) {
+        return releases.getFirst() + "-999.0." + generation;
+    }
+
+    private static String snapshotId(int generation) {
+        return "99w%02da".formatted(generation);
+    }
+
+    private static int compareRelease(String release, String other) {
+        String[] left = release.split("\\.");
+        String[] right = other.split("\\.");
+        for (int i = 0; i < Math.max(left.length, right.length); i++) {
+            int compared = Integer.compare(i < left.length ? Integer.parseInt(left[i]) : 0,
+                    i < right.length ? Integer.parseInt(right[i]) : 0);
+            if (compared != 0)
+                return compared;
+        }
+
+        return 0;
+    }
+
+    private static byte[] appendVersions(byte[] metadata, List<String> extra) {
+        String xml = new String(metadata, StandardCharsets.UTF_8);
+        if (extra.isEmpty())
+            return metadata;
+
+        var versions = new StringBuilder();
+        for (String version : extra)
+            versions.append("      <version>").append(version).append("</version>\n");
+
+        int end = xml.indexOf("    </versions>");
+        xml = xml.substring(0, end) + versions + xml.substring(end);
+        return xml.replaceFirst("<latest>[^<]*</latest>", "<latest>" + extra.getLast() + "</latest>")
+                .replaceFirst("<release>[^<]*</release>", "<release>" + extra.getLast() + "</release>")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] mavenMetadata(String groupId, String artifactId, List<String> versions) {
+        var xml = new StringBuilder(64 * versions.size())
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata>\n")
+                .append("  <groupId>").append(groupId).append("</groupId>\n")
+                .append("  <artifactId>").append(artifactId).append("</artifactId>\n")
+                .append("  <versioning>\n")
+                .append("    <latest>").append(versions.getLast()).append("</latest>\n")
+                .append("    <release>").append(versions.getLast()).append("</release>\n")
+                .append("    <versions>\n");
+        for (String version : versions)
+            xml.append("      <version>").append(version).append("</version>\n");
+
+        return xml.append("    </versions>\n  </versioning>\n</metadata>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void sleep() throws InterruptedException {
+        long millis = latency.toMillis();
+        if (!jitter.isZero())
+            millis += ThreadLocalRandom.current().nextLong(jitter.toMillis() + 1);
+
+        if (millis > 0)
+            Thread.sleep(millis);
+    }
+
+    private static void json(Context ctx, String body) {
+        ctx.contentType("application/json").result(body);
+    }
+
+    private static void xml(Context ctx, byte[] body) {
+        ctx.contentType("application/xml").result(body);
+    }
+
+    static String fixture(String name) {
+        try (InputStream stream = StubUpstream.class.getResourceAsStream("/fixtures/" + name)) {
+            if (stream == null)
+                throw new IllegalStateException("Missing fixture: " + name);
+
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    public record Release(String minecraftVersion, String forgeVersion) {
+    }
+
+    private record Documents(String manifest, byte[] forge, String promotions, byte[] neoforge, byte[] mcpStable,
+                             byte[] mcpSnapshot, byte[] fabricApi, byte[] yarn, String fabricLoader,
+                             String fabricLoaderFor, String fabricLoaderSingle) {
+    }
+}
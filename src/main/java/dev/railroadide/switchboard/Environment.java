@@ -1,15 +1,45 @@
 package dev.railroadide.switchboard;
 
+import dev.railroadide.switchboard.http.UpstreamMode;
 import net.sourceforge.argparse4j.inf.Namespace;
 
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class Environment {
     private static final AtomicInteger PORT = new AtomicInteger(7000);
-    private static final AtomicReference<Path> PARCHMENT_CLONE_PATH = new AtomicReference<>();
-    private static final AtomicReference<Path> CACHE_LOCATION = new AtomicReference<>();
+    private static final AtomicReference<Path> PARCHMENT_CLONE_PATH = new AtomicReference<>(Path.of("parchment"));
+    private static final AtomicReference<Path> CACHE_LOCATION = new AtomicReference<>(Path.of(".cache"));
+    private static final AtomicReference<Duration> UPSTREAM_TIMEOUT = new AtomicReference<>(Duration.ofSeconds(20));
+    private static final AtomicInteger UPSTREAM_MAX_IN_FLIGHT_PER_HOST = new AtomicInteger(8);
+    private static final AtomicReference<List<String>> MOJANG_MIRRORS = new AtomicReference<>(
+            List.of("https://piston-meta.mojang.com", "https://launchermeta.mojang.com"));
+    private static final AtomicReference<List<String>> FORGE_MIRRORS = new AtomicReference<>(
+            List.of("https://maven.minecraftforge.net", "https://files.minecraftforge.net"));
+    private static final AtomicReference<Duration> HEDGE_DELAY = new AtomicReference<>(Duration.ofSeconds(1));
+    private static final AtomicReference<String> FABRIC_MAVEN_URL = new AtomicReference<>("https://maven.fabricmc.net");
+    private static final AtomicReference<String> FABRIC_META_URL = new AtomicReference<>("https://meta.fabricmc.net");
+    private static final AtomicReference<String> NEOFORGED_MAVEN_URL = new AtomicReference<>("https://maven.neoforged.net");
+    private static final AtomicReference<String> ASSET_OBJECTS_URL = new AtomicReference<>("https://resources.download.minecraft.net");
+    private static final AtomicInteger ASSET_PREFETCH_CONCURRENCY = new AtomicInteger(8);
+    private static final AtomicLong ASSET_CACHE_BYTES = new AtomicLong(4096L * 1024 * 1024);
+    private static final AtomicLong PISTON_META_CACHE_BYTES = new AtomicLong(256L * 1024 * 1024);
+    private static final AtomicLong OFF_HEAP_PAYLOAD_BYTES = new AtomicLong(64L * 1024 * 1024);
+    private static final AtomicReference<String> PARCHMENT_REPOSITORY = new AtomicReference<>("https://github.com/ParchmentMC/Parchment.git");
+    private static final AtomicReference<Duration> VERSION_CACHE_TTL = new AtomicReference<>(Duration.ofHours(6));
+    private static final AtomicReference<UpstreamMode> UPSTREAM_MODE = new AtomicReference<>(UpstreamMode.LIVE);
+    private static final AtomicReference<Path> FIXTURE_DIRECTORY = new AtomicReference<>(Path.of("fixtures"));
+    private static final AtomicBoolean VIRTUAL_THREADS = new AtomicBoolean(true);
+    private static final AtomicReference<Duration> SLOW_REQUEST_THRESHOLD = new AtomicReference<>(Duration.ofSeconds(1));
+    private static final AtomicLong HEAVY_REQUEST_THRESHOLD_BYTES = new AtomicLong(32L * 1024 * 1024);
+    private static final AtomicReference<String> ADMIN_TOKEN = new AtomicReference<>();
 
     private static boolean loaded = false;
 
@@ -21,6 +51,27 @@ public class Environment {
         PORT.set(arguments.getInt("port"));
         PARCHMENT_CLONE_PATH.set(arguments.get("parchmentclonepath"));
         CACHE_LOCATION.set(arguments.get("cacheloc"));
+        UPSTREAM_TIMEOUT.set(Duration.ofSeconds(arguments.getInt("upstreamtimeout")));
+        UPSTREAM_MAX_IN_FLIGHT_PER_HOST.set(arguments.getInt("upstreammaxperhost"));
+        MOJANG_MIRRORS.set(parseMirrors(arguments.getString("mojangmirrors")));
+        FORGE_MIRRORS.set(parseMirrors(arguments.getString("forgemirrors")));
+        HEDGE_DELAY.set(Duration.ofMillis(arguments.getInt("hedgedelay")));
+        FABRIC_MAVEN_URL.set(stripTrailingSlash(arguments.getString("fabricmaven")));
+        FABRIC_META_URL.set(stripTrailingSlash(arguments.getString("fabricmeta")));
+        NEOFORGED_MAVEN_URL.set(stripTrailingSlash(arguments.getString("neoforgedmaven")));
+        ASSET_OBJECTS_URL.set(stripTrailingSlash(arguments.getString("assetsurl")));
+        ASSET_PREFETCH_CONCURRENCY.set(arguments.getInt("assetprefetchconcurrency"));
+        ASSET_CACHE_BYTES.set(arguments.getInt("assetcachemb") * 1024L * 1024L);
+        PISTON_META_CACHE_BYTES.set(arguments.getInt("pistonmetacachemb") * 1024L * 1024L);
+        OFF_HEAP_PAYLOAD_BYTES.set(arguments.getInt("offheapmb") * 1024L * 1024L);
+        PARCHMENT_REPOSITORY.set(arguments.getString("parchmentrepo"));
+        VERSION_CACHE_TTL.set(Duration.ofSeconds(arguments.getInt("versionttl")));
+        UPSTREAM_MODE.set(UpstreamMode.valueOf(arguments.getString("upstreammode").toUpperCase(Locale.ROOT)));
+        FIXTURE_DIRECTORY.set(arguments.get("fixturedir"));
+        VIRTUAL_THREADS.set(arguments.getBoolean("virtualthreads"));
+        SLOW_REQUEST_THRESHOLD.set(Duration.ofMillis(arguments.getInt("slowrequestms")));
+        HEAVY_REQUEST_THRESHOLD_BYTES.set(arguments.getInt("heavyrequestmb") * 1024L * 1024L);
+        ADMIN_TOKEN.set(arguments.getString("admintoken"));
 
         Switchboard.LOGGER.info("Environment loaded!");
     }
@@ -36,4 +87,132 @@ public class Environment {
     public static Path getCacheLocation() {
         return CACHE_LOCATION.get();
     }
+
+    public static Duration getUpstreamTimeout() {
+        return UPSTREAM_TIMEOUT.get();
+    }
+
+    public static int getUpstreamMaxInFlightPerHost() {
+        return UPSTREAM_MAX_IN_FLIGHT_PER_HOST.get();
+    }
+
+    public static List<String> getMojangMirrors() {
+        return MOJANG_MIRRORS.get();
+    }
+
+    public static List<String> getForgeMirrors() {
+        return FORGE_MIRRORS.get();
+    }
+
+    public static Duration getHedgeDelay() {
+        return HEDGE_DELAY.get();
+    }
+
+    public static String getFabricMavenUrl() {
+        return FABRIC_MAVEN_URL.get();
+    }
+
+    public static String getFabricMetaUrl() {
+        return FABRIC_META_URL.get();
+    }
+
+    public static String getNeoforgedMavenUrl() {
+        return NEOFORGED_MAVEN_URL.get();
+    }
+
+    /**
+     * Base URL asset objects are fetched from, laid out as {@code <base>/<first two hash chars>/<hash>}.
+     */
+    public static String getAssetObjectsUrl() {
+        return ASSET_OBJECTS_URL.get();
+    }
+
+    /**
+     * How many asset objects a single prefetch job downloads at once.
+     */
+    public static int getAssetPrefetchConcurrency() {
+        return ASSET_PREFETCH_CONCURRENCY.get();
+    }
+
+    /**
+     * How many bytes of asset objects are kept on disk; objects beyond that are redirected to upstream instead.
+     */
+    public static long getAssetCacheBytes() {
+        return ASSET_CACHE_BYTES.get();
+    }
+
+    /**
+     * How many bytes of piston-meta packages are kept on disk before the least recently used ones are evicted.
+     */
+    public static long getPistonMetaCacheBytes() {
+        return PISTON_META_CACHE_BYTES.get();
+    }
+
+    /**
+     * How many bytes of native memory pre-rendered response bodies may take; bodies beyond that stay on the heap.
+     */
+    public static long getOffHeapPayloadBytes() {
+        return OFF_HEAP_PAYLOAD_BYTES.get();
+    }
+
+    /**
+     * The git URL the Parchment repository is cloned from; any URL JGit accepts, including a local path.
+     */
+    public static String getParchmentRepository() {
+        return PARCHMENT_REPOSITORY.get();
+    }
+
+    /**
+     * How long the version services keep an upstream version list before fetching it again.
+     */
+    public static Duration getVersionCacheTtl() {
+        return VERSION_CACHE_TTL.get();
+    }
+
+    public static UpstreamMode getUpstreamMode() {
+        return UPSTREAM_MODE.get();
+    }
+
+    /**
+     * Where upstream responses are recorded to and replayed from; see {@link UpstreamMode}.
+     */
+    public static Path getFixtureDirectory() {
+        return FIXTURE_DIRECTORY.get();
+    }
+
+    public static boolean useVirtualThreads() {
+        return VIRTUAL_THREADS.get();
+    }
+
+    public static Duration getSlowRequestThreshold() {
+        return SLOW_REQUEST_THRESHOLD.get();
+    }
+
+    public static long getHeavyRequestThresholdBytes() {
+        return HEAVY_REQUEST_THRESHOLD_BYTES.get();
+    }
+
+    /**
+     * The bearer token every caller of the flight recorder endpoints must present, or {@code null} if they may only be
+     * used from the loopback interface, without a token.
+     */
+    public static String getAdminToken() {
+        return ADMIN_TOKEN.get();
+    }
+
+    private static List<String> parseMirrors(String mirrors) {
+        List<String> parsed = Arrays.stream(mirrors.split(","))
+                .map(String::strip)
+                .map(Environment::stripTrailingSlash)
+                .filter(mirror -> !mirror.isEmpty())
+                .toList();
+        if (parsed.isEmpty())
+            throw new IllegalArgumentException("At least one mirror must be configured: " + mirrors);
+
+        return parsed;
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
 }
@@ -4,8 +4,17 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import dev.railroadide.logger.Logger;
 import dev.railroadide.logger.LoggerManager;
+import dev.railroadide.switchboard.events.VersionEventBus;
+import dev.railroadide.switchboard.http.UpstreamFixtures;
+import dev.railroadide.switchboard.http.UpstreamHttpClient;
+import dev.railroadide.switchboard.http.UpstreamMode;
+import dev.railroadide.switchboard.json.InstrumentedJsonMapper;
 import dev.railroadide.switchboard.json.LocalDateTimeTypeAdapter;
 import dev.railroadide.switchboard.json.OptionalTypeAdapterFactory;
+import dev.railroadide.switchboard.metrics.MetricsRegistry;
+import dev.railroadide.switchboard.minecraft.MinecraftVersion;
+import dev.railroadide.switchboard.minecraft.MinecraftVersionTypeAdapter;
+import dev.railroadide.switchboard.minecraft.pistonmeta.PistonMetaTypeAdapterFactory;
 import dev.railroadide.switchboard.routing.Router;
 import io.javalin.Javalin;
 import io.javalin.http.ContentType;
@@ -15,7 +24,7 @@ import net.sourceforge.argparse4j.ext.java7.PathArgumentType;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.Namespace;
 
-import java.net.http.HttpClient;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 
@@ -23,10 +32,14 @@ public class Switchboard {
     public static final Gson GSON = new GsonBuilder()
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeTypeAdapter())
             .registerTypeAdapterFactory(new OptionalTypeAdapterFactory())
+            .registerTypeAdapter(MinecraftVersion.class, new MinecraftVersionTypeAdapter())
+            .registerTypeAdapterFactory(new PistonMetaTypeAdapterFactory())
             .setPrettyPrinting()
             .create();
     public static final Logger LOGGER = LoggerManager.registerLogger(LoggerManager.create("Switchboard").build());
-    public static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+    public static final MetricsRegistry METRICS = new MetricsRegistry();
+    public static final UpstreamHttpClient HTTP_CLIENT = new UpstreamHttpClient();
+    public static final VersionEventBus EVENT_BUS = new VersionEventBus();
 
     public static void main(String[] args) {
         LoggerManager.init();
@@ -51,13 +64,119 @@ public class Switchboard {
                 .setDefault(Path.of(".cache"))
                 .help("Path to store cached files (default: .cache)");
 
+        parser.addArgument("-upstreamtimeout", "--upstreamtimeout")
+                .type(Integer.class)
+                .setDefault(20)
+                .help("Timeout in seconds for requests to upstream metadata servers (default: 20)");
+
+        parser.addArgument("-upstreammaxperhost", "--upstreammaxperhost")
+                .type(Integer.class)
+                .setDefault(8)
+                .help("Maximum concurrent requests to a single upstream host (default: 8)");
+
+        parser.addArgument("-mojangmirrors", "--mojangmirrors")
+                .setDefault("https://piston-meta.mojang.com,https://launchermeta.mojang.com")
+                .help("Comma-separated base URLs serving Mojang launcher metadata");
+
+        parser.addArgument("-forgemirrors", "--forgemirrors")
+                .setDefault("https://maven.minecraftforge.net,https://files.minecraftforge.net")
+                .help("Comma-separated base URLs serving Forge Maven metadata and promotions");
+
+        parser.addArgument("-hedgedelay", "--hedgedelay")
+                .type(Integer.class)
+                .setDefault(1000)
+                .help("Milliseconds to wait before hedging a request to a second mirror, until enough latency samples exist (default: 1000)");
+
+        parser.addArgument("-fabricmaven", "--fabricmaven")
+                .setDefault("https://maven.fabricmc.net")
+                .help("Base URL of the Fabric Maven serving Fabric API and Yarn metadata");
+
+        parser.addArgument("-fabricmeta", "--fabricmeta")
+                .setDefault("https://meta.fabricmc.net")
+                .help("Base URL of the Fabric meta API serving loader versions");
+
+        parser.addArgument("-neoforgedmaven", "--neoforgedmaven")
+                .setDefault("https://maven.neoforged.net")
+                .help("Base URL of the NeoForged Maven");
+
+        parser.addArgument("-assetsurl", "--assetsurl")
+                .setDefault("https://resources.download.minecraft.net")
+                .help("Base URL serving Minecraft asset objects");
+
+        parser.addArgument("-assetprefetchconcurrency", "--assetprefetchconcurrency")
+                .type(Integer.class)
+                .setDefault(8)
+                .help("Asset objects downloaded at once by each asset index prefetch (default: 8)");
+
+        parser.addArgument("-assetcachemb", "--assetcachemb")
+                .type(Integer.class)
+                .setDefault(4096)
+                .help("Disk budget in MiB for stored asset objects, beyond which they are redirected upstream (default: 4096)");
+
+        parser.addArgument("-pistonmetacachemb", "--pistonmetacachemb")
+                .type(Integer.class)
+                .setDefault(256)
+                .help("Disk budget in MiB for cached piston-meta packages (default: 256)");
+
+        parser.addArgument("-offheapmb", "--offheapmb")
+                .type(Integer.class)
+                .setDefault(64)
+                .help("Native memory in MiB for pre-rendered response bodies (default: 64)");
+
+        parser.addArgument("-parchmentrepo", "--parchmentrepo")
+                .setDefault("https://github.com/ParchmentMC/Parchment.git")
+                .help("Git URL (or local path) of the Parchment repository to clone");
+
+        parser.addArgument("-versionttl", "--versionttl")
+                .type(Integer.class)
+                .setDefault(21600)
+                .help("Seconds to cache upstream version lists before refreshing them (default: 21600)");
+
+        parser.addArgument("-upstreammode", "--upstreammode")
+                .choices("live", "record", "replay")
+                .setDefault("live")
+                .help("live: fetch from upstreams; record: also save every upstream response to -fixturedir; replay: serve only from -fixturedir (default: live)");
+
+        parser.addArgument("-fixturedir", "--fixturedir")
+                .type(new PathArgumentType().verifyCanCreate())
+                .setDefault(Path.of("fixtures"))
+                .help("Directory upstream responses are recorded to and replayed from (default: fixtures)");
+
+        parser.addArgument("-virtualthreads", "--virtualthreads")
+                .type(Boolean.class)
+                .setDefault(true)
+                .help("Handle requests on virtual threads; per-request allocation and CPU accounting may need platform threads (default: true)");
+
+        parser.addArgument("-slowrequestms", "--slowrequestms")
+                .type(Integer.class)
+                .setDefault(1000)
+                .help("Requests taking at least this many milliseconds are sampled on /admin/requests/samples (default: 1000)");
+
+        parser.addArgument("-heavyrequestmb", "--heavyrequestmb")
+                .type(Integer.class)
+                .setDefault(32)
+                .help("Requests allocating at least this many megabytes are sampled on /admin/requests/samples (default: 32)");
+
+        parser.addArgument("-admintoken", "--admintoken")
+                .help("Bearer token required by the /admin endpoints, which then accept callers from any host; without it, only loopback callers may use them. Behind a local reverse proxy every caller looks local, so set a token there");
+
         Namespace namespace = parser.parseArgsOrFail(args);
         Environment.load(namespace);
 
+        if (Environment.getUpstreamMode() != UpstreamMode.LIVE) {
+            try {
+                UpstreamFixtures fixtures = HTTP_CLIENT.fixtures();
+                LOGGER.info("Upstream mode {} using {} recorded responses in {}", Environment.getUpstreamMode(), fixtures.size(), fixtures.directory());
+            } catch (IOException | IllegalStateException exception) {
+                LOGGER.error("Failed to open the upstream fixture directory", exception);
+                System.exit(1);
+            }
+        }
+
         Javalin app = Javalin.create(config -> {
                     config.http.defaultContentType = ContentType.JSON;
-                    config.jsonMapper(new JavalinGson(GSON, true));
-                    config.useVirtualThreads = true;
+                    config.jsonMapper(new InstrumentedJsonMapper(new JavalinGson(GSON, true)));
+                    config.useVirtualThreads = Environment.useVirtualThreads();
                     config.showJavalinBanner = false;
                 })
                 .start(Environment.getPort());
@@ -0,0 +1,9 @@
+package dev.railroadide.switchboard.events;
+
+import com.google.gson.JsonElement;
+
+/**
+ * A newly discovered version on a given topic (e.g. {@code forge}, {@code minecraft}, {@code parchment}).
+ */
+public record VersionEvent(long id, String topic, JsonElement version, long timestamp) {
+}
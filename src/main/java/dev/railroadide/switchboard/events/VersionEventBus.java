@@ -0,0 +1,143 @@
+package dev.railroadide.switchboard.events;
+
+import dev.railroadide.switchboard.Switchboard;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process publish/subscribe bus for {@link VersionEvent}s.
+ * <p>
+ * Each subscriber owns a small bounded queue which its connection thread drains; publishing never blocks. A
+ * subscriber that falls too far behind is marked as overflowed so the connection can be closed and resumed through
+ * {@link #replaySince(long, Set)}, which is served from a bounded ring buffer of recent events.
+ */
+public class VersionEventBus {
+    private static final int DEFAULT_HISTORY_SIZE = 1024;
+    private static final int SUBSCRIBER_QUEUE_SIZE = 256;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final VersionEvent[] history;
+    private long nextId;
+    private int historyStart;
+    private int historySize;
+
+    public VersionEventBus() {
+        this(DEFAULT_HISTORY_SIZE);
+    }
+
+    public VersionEventBus(int historySize) {
+        if (historySize <= 0)
+            throw new IllegalArgumentException("historySize must be positive.");
+
+        this.history = new VersionEvent[historySize];
+        // Seeded from the clock so ids from a previous process are always older than the buffer and trigger a resync
+        this.nextId = System.currentTimeMillis();
+    }
+
+    public void publish(String topic, Object version) {
+        Objects.requireNonNull(topic, "topic");
+
+        synchronized (this) {
+            var event = new VersionEvent(++nextId, topic, Switchboard.GSON.toJsonTree(version), System.currentTimeMillis());
+            int index = (historyStart + historySize) % history.length;
+            history[index] = event;
+            if (historySize < history.length) {
+                historySize++;
+            } else {
+                historyStart = (historyStart + 1) % history.length;
+            }
+
+            // Offering is non-blocking, so fan-out happens under the lock to keep per-subscriber ordering intact
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(event);
+            }
+        }
+    }
+
+    /**
+     * Subscribes to the given topics, or to every topic if the set is empty.
+     */
+    public Subscription subscribe(Set<String> topics) {
+        var subscription = new Subscription(Set.copyOf(topics));
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Returns the buffered events published after {@code lastEventId}, or empty if that id has already been evicted
+     * from the ring buffer (or was never issued by this process), in which case the client must resync.
+     */
+    public synchronized Optional<List<VersionEvent>> replaySince(long lastEventId, Set<String> topics) {
+        if (lastEventId > nextId)
+            return Optional.empty();
+
+        if (historySize == 0)
+            return lastEventId == nextId ? Optional.of(List.of()) : Optional.empty();
+
+        VersionEvent oldest = history[historyStart];
+        if (lastEventId < oldest.id() - 1)
+            return Optional.empty();
+
+        List<VersionEvent> events = new ArrayList<>();
+        for (int i = 0; i < historySize; i++) {
+            VersionEvent event = history[(historyStart + i) % history.length];
+            if (event.id() > lastEventId && (topics.isEmpty() || topics.contains(event.topic())))
+                events.add(event);
+        }
+
+        return Optional.of(events);
+    }
+
+    public synchronized long lastEventId() {
+        return nextId;
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    public final class Subscription implements AutoCloseable {
+        private final Set<String> topics;
+        private final BlockingQueue<VersionEvent> queue = new ArrayBlockingQueue<>(SUBSCRIBER_QUEUE_SIZE);
+        private volatile boolean overflowed;
+
+        private Subscription(Set<String> topics) {
+            this.topics = topics;
+        }
+
+        private void offer(VersionEvent event) {
+            if (!topics.isEmpty() && !topics.contains(event.topic()))
+                return;
+
+            if (!queue.offer(event))
+                overflowed = true;
+        }
+
+        /**
+         * Waits up to the given timeout for the next event.
+         *
+         * @return the next event, or {@code null} if none arrived in time
+         */
+        public VersionEvent poll(Duration timeout) throws InterruptedException {
+            return queue.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        public boolean isOverflowed() {
+            return overflowed;
+        }
+
+        public Set<String> topics() {
+            return topics;
+        }
+
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package dev.railroadide.switchboard.http;
+
+import dev.railroadide.switchboard.Environment;
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.util.Bulkhead;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * A content-addressed store of upstream artifacts (client jars, mappings, libraries, ...) under the cache directory,
+ * keyed by their SHA-1.
+ * <p>
+ * An artifact can only be fetched once its SHA-1 has been {@link #register registered} with the URL it is published
+ * at. It is then streamed to disk while being hashed, and only moved into place if the hash and size match, so a stored
+ * file is always exactly the published content and never changes. Concurrent fetches of the same artifact share a
+ * single download.
+ */
+public class ArtifactStore {
+    private static final Pattern SHA1 = Pattern.compile("[0-9a-f]{40}");
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final ArtifactStore SHARED = new ArtifactStore(Switchboard.HTTP_CLIENT,
+            () -> Environment.getCacheLocation().resolve("artifacts"));
+
+    private static final LongAdder HITS = Switchboard.METRICS.counter("switchboard_artifact_requests_total",
+            "Artifact fetches by whether the artifact was already stored.", "result", "hit");
+    private static final LongAdder MISSES = Switchboard.METRICS.counter("switchboard_artifact_requests_total",
+            "Artifact fetches by whether the artifact was already stored.", "result", "miss");
+    private static final LongAdder STORED_BYTES = Switchboard.METRICS.counter("switchboard_artifact_stored_bytes_total",
+            "Bytes of verified artifacts written to the store.");
+    private static final LongAdder VERIFICATION_FAILURES = Switchboard.METRICS.counter("switchboard_artifact_verification_failures_total",
+            "Downloaded artifacts discarded because their SHA-1 or size did not match.");
+
+    private final UpstreamHttpClient httpClient;
+    private final Supplier<Path> directory;
+    private final Bulkhead bulkhead = Bulkhead.forSource("Artifacts");
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    public ArtifactStore(UpstreamHttpClient httpClient, Supplier<Path> directory) {
+        this.httpClient = httpClient;
+        this.directory = directory;
+    }
+
+    public static ArtifactStore shared() {
+        return SHARED;
+    }
+
+    public static boolean isSha1(String value) {
+        return value != null && SHA1.matcher(value).matches();
+    }
+
+    /**
+     * Records where the artifact with the given SHA-1 can be downloaded from. Entries without a valid SHA-1 or URL
+     * are ignored.
+     *
+     * @param size the expected size in bytes, or {@code 0} if unknown
+     */
+    public void register(String sha1, long size, String url) {
+        if (url == null || sha1 == null)
+            return;
+
+        String normalized = sha1.toLowerCase(Locale.ROOT);
+        if (isSha1(normalized))
+            sources.putIfAbsent(normalized, new Source(url, size));
+    }
+
+    public Optional<Source> source(String sha1) {
+        return Optional.ofNullable(sources.get(sha1));
+    }
+
+    public Path path(String sha1) {
+        return directory.get().resolve(sha1.substring(0, 2)).resolve(sha1);
+    }
+
+    /**
+     * @return the stored artifact, downloading and verifying it first if needed; fails with a
+     * {@link NoSuchElementException} if it is neither stored nor registered
+     */
+    public CompletableFuture<Path> fetch(String sha1) {
+        if (!isSha1(sha1))
+            return CompletableFuture.failedFuture(new NoSuchElementException("Not a SHA-1: " + sha1));
+
+        Path stored = path(sha1);
+        if (Files.isRegularFile(stored)) {
+            HITS.increment();
+            return CompletableFuture.completedFuture(stored);
+        }
+
+        Source source = sources.get(sha1);
+        if (source == null)
+            return CompletableFuture.failedFuture(new NoSuchElementException("Unknown artifact " + sha1));
+
+        var download = new CompletableFuture<Path>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(sha1, download);
+        if (existing != null)
+            return existing;
+
+        MISSES.increment();
+        EXECUTOR.execute(() -> {
+            try {
+                download.complete(bulkhead.call(() -> download(sha1, source, stored)));
+            } catch (Throwable throwable) {
+                download.completeExceptionally(throwable);
+            } finally {
+                inFlight.remove(sha1, download);
+            }
+        });
+
+        return download;
+    }
+
+    private Path download(String sha1, Source source, Path target) throws IOException, InterruptedException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), sha1, ".part");
+        try {
+            MirrorSet mirrors = MirrorSet.forUpstream("Mojang", httpClient, Environment.getMojangMirrors());
+            HttpResponse<InputStream> response = mirrors.send(httpClient.newRequest(source.url()).build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+
+            String actual;
+            try (InputStream body = response.body()) {
+                if (response.statusCode() != 200)
+                    throw new IOException("HTTP " + response.statusCode() + " downloading " + source.url());
+
+                actual = writeHashed(body, temp);
+            }
+
+            long size = Files.size(temp);
+            if (!actual.equals(sha1) || (source.size() > 0 && size != source.size())) {
+                VERIFICATION_FAILURES.increment();
+                throw new IOException("Artifact from " + source.url() + " does not match its published checksum: " +
+                        "expected " + sha1 + " (" + source.size() + " bytes), got " + actual + " (" + size + " bytes)");
+            }
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            STORED_BYTES.add(size);
+            return target;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Streams the body into the file, hashing it on the way.
+     *
+     * @return the hex SHA-1 of everything written
+     */
+    public static String writeHashed(InputStream body, Path file) throws IOException {
+        MessageDigest digest = newSha1Digest();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            new DigestInputStream(body, digest).transferTo(out);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static MessageDigest newSha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-1 is not available", exception);
+        }
+    }
+
+    public record Source(String url, long size) {
+    }
+}
@@ -0,0 +1,132 @@
+package dev.railroadide.switchboard.http;
+
+import dev.railroadide.switchboard.Switchboard;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A closed/open/half-open circuit breaker guarding a single upstream.
+ * <p>
+ * After {@code failureThreshold} consecutive failures the breaker opens and rejects requests immediately for
+ * {@code openDuration}. It then lets a single trial request through (half-open): success closes the breaker again,
+ * failure re-opens it for another {@code openDuration}.
+ */
+public class CircuitBreaker {
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+
+    private final Map<State, LongAdder> transitions = new EnumMap<>(State.class);
+    private final LongAdder rejected = new LongAdder();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name) {
+        this(name, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION);
+    }
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        if (failureThreshold <= 0)
+            throw new IllegalArgumentException("failureThreshold must be positive.");
+
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        for (State value : State.values()) {
+            transitions.put(value, new LongAdder());
+        }
+    }
+
+    /**
+     * @return whether a request may be sent now; every {@code true} must be followed by
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onCancelled()}
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED -> {
+                return true;
+            }
+            case OPEN -> {
+                if (System.nanoTime() - openedAt >= openDurationNanos) {
+                    transitionTo(State.HALF_OPEN);
+                    trialInFlight = true;
+                    return true;
+                }
+            }
+            case HALF_OPEN -> {
+                if (!trialInFlight) {
+                    trialInFlight = true;
+                    return true;
+                }
+            }
+        }
+
+        rejected.increment();
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        if (state != State.CLOSED)
+            transitionTo(State.CLOSED);
+    }
+
+    public synchronized void onFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            openedAt = System.nanoTime();
+            transitionTo(State.OPEN);
+        }
+    }
+
+    /**
+     * Releases an acquired slot without recording an outcome, e.g. when the caller was interrupted.
+     */
+    public synchronized void onCancelled() {
+        trialInFlight = false;
+    }
+
+    private void transitionTo(State newState) {
+        Switchboard.LOGGER.warn("Circuit breaker for {} changed from {} to {}", name, state, newState);
+        state = newState;
+        transitions.get(newState).increment();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized Snapshot snapshot() {
+        Map<State, Long> transitionCounts = new EnumMap<>(State.class);
+        transitions.forEach((key, value) -> transitionCounts.put(key, value.sum()));
+        return new Snapshot(name, state, consecutiveFailures, rejected.sum(), transitionCounts);
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * @param transitions how many times the breaker has entered each state
+     */
+    public record Snapshot(String name, State state, int consecutiveFailures, long rejected,
+                           Map<State, Long> transitions) {
+    }
+}
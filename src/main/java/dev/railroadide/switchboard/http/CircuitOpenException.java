@@ -0,0 +1,12 @@
+package dev.railroadide.switchboard.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of contacting an upstream whose {@link CircuitBreaker} is open.
+ */
+public class CircuitOpenException extends IOException {
+    public CircuitOpenException(String upstream) {
+        super("Circuit breaker for " + upstream + " is open, failing fast");
+    }
+}
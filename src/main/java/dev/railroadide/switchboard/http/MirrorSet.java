@@ -0,0 +1,382 @@
+package dev.railroadide.switchboard.http;
+
+import dev.railroadide.switchboard.Environment;
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.metrics.Histogram;
+import dev.railroadide.switchboard.metrics.ServerTiming;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * A list of interchangeable base URLs serving the same upstream content (e.g. {@code piston-meta.mojang.com} and
+ * {@code launchermeta.mojang.com}).
+ * <p>
+ * Requests go to the mirror with the lowest EWMA latency first. If it has not answered within its observed p95
+ * latency, one hedged request is sent to the next mirror and whichever succeeds first wins; failed requests fail over
+ * to the remaining mirrors in order. Only transport errors and 5xx responses count against a mirror's latency.
+ * Requests whose URL does not point at one of the mirrors are sent unchanged.
+ */
+public class MirrorSet {
+    private static final Map<String, MirrorSet> MIRROR_SETS = new ConcurrentHashMap<>();
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final double EWMA_ALPHA = 0.2;
+    // Below this many samples the p95 is too noisy to hedge on, so the configured delay is used instead
+    private static final int MIN_SAMPLES_FOR_P95 = 20;
+
+    private final String name;
+    private final UpstreamHttpClient httpClient;
+    private final List<Mirror> mirrors;
+
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder failovers = new LongAdder();
+
+    public MirrorSet(String name, UpstreamHttpClient httpClient, List<String> baseUrls) {
+        if (baseUrls.isEmpty())
+            throw new IllegalArgumentException("A mirror set needs at least one base URL.");
+
+        this.name = name;
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient");
+        this.mirrors = baseUrls.stream().map(Mirror::new).toList();
+    }
+
+    /**
+     * Returns the mirror set registered for the upstream, creating it with the given base URLs if it does not exist yet.
+     */
+    public static MirrorSet forUpstream(String name, UpstreamHttpClient httpClient, List<String> baseUrls) {
+        return MIRROR_SETS.computeIfAbsent(name, _ -> new MirrorSet(name, httpClient, baseUrls));
+    }
+
+    public static Collection<MirrorSet> all() {
+        return List.copyOf(MIRROR_SETS.values());
+    }
+
+    /**
+     * Sends the request to the fastest mirror, hedging and failing over as needed. Responses with a non-2xx status
+     * fail over to the next mirror; if every mirror fails, the last response received is returned (or the last error
+     * thrown). The bodies of every other response, including ones that arrive after the winner, are closed.
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        String path = pathOf(request.uri());
+        if (path == null)
+            return httpClient.send(request, bodyHandler);
+
+        return fetch(path, url -> {
+            HttpRequest mirrored = HttpRequest.newBuilder(request, (_, _) -> true).uri(URI.create(url)).build();
+            return httpClient.send(mirrored, bodyHandler);
+        }, HttpResponse::statusCode, MirrorSet::closeBody);
+    }
+
+    /**
+     * Sends the request through the mirrors on a virtual thread. See {@link #send(HttpRequest, HttpResponse.BodyHandler)}.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return send(request, bodyHandler);
+            } catch (IOException exception) {
+                throw new CompletionException(exception);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(exception);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Downloads the URL to a file through the mirrors. See {@link UpstreamHttpClient#download(String, Path)}.
+     */
+    public Path download(String url, Path path) throws IOException, InterruptedException {
+        String mirrorPath = pathOf(URI.create(url));
+        if (mirrorPath == null)
+            return httpClient.download(url, path);
+
+        // Every mirror downloads to the same target and a loser's file is moved over it with the same content, so
+        // there is nothing to clean up after one
+        return fetch(mirrorPath, mirrorUrl -> httpClient.download(mirrorUrl, path), _ -> 200, _ -> {});
+    }
+
+    /**
+     * @param status  the HTTP status of a result; anything but 2xx fails over to the next mirror
+     * @param discard releases a result that is not returned, e.g. a hedged response that lost the race
+     */
+    private <R> R fetch(String path, MirrorCall<R> call, ToIntFunction<R> status, Consumer<R> discard) throws IOException, InterruptedException {
+        // The mirror calls themselves run on other threads, so the wait is attributed to the request here
+        long fetchStart = System.nanoTime();
+        List<Mirror> ranked = ranked();
+        CompletionService<R> completions = new ExecutorCompletionService<>(EXECUTOR);
+        Map<Future<R>, Mirror> inFlight = new HashMap<>();
+        var settlement = new Settlement<R>(discard);
+
+        int next = 0;
+        inFlight.put(submit(completions, ranked.get(next++), path, call, status, settlement), ranked.getFirst());
+        boolean hedgeSent = false;
+        Exception lastFailure = null;
+        R lastRejected = null;
+        R kept = null;
+        try {
+            while (!inFlight.isEmpty()) {
+                Future<R> done;
+                if (!hedgeSent && next < ranked.size()) {
+                    done = completions.poll(ranked.getFirst().hedgeDelay().toNanos(), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        hedgeSent = true;
+                        hedged.increment();
+                        Mirror mirror = ranked.get(next++);
+                        inFlight.put(submit(completions, mirror, path, call, status, settlement), mirror);
+                        continue;
+                    }
+                } else {
+                    done = completions.take();
+                }
+
+                Mirror mirror = inFlight.remove(done);
+                try {
+                    R result = done.get();
+                    int code = status.applyAsInt(result);
+                    if (code / 100 == 2) {
+                        if (hedgeSent && mirror != ranked.getFirst())
+                            hedgeWins.increment();
+
+                        kept = result;
+                        return result;
+                    }
+
+                    lastRejected = result;
+                    lastFailure = new IOException("HTTP " + code + " from " + mirror.baseUrl + path);
+                } catch (ExecutionException exception) {
+                    lastFailure = exception.getCause() instanceof Exception cause ? cause : exception;
+                }
+
+                if (next < ranked.size()) {
+                    failovers.increment();
+                    Mirror fallback = ranked.get(next++);
+                    Switchboard.LOGGER.warn("{} mirror {} failed ({}), failing over to {}",
+                            name, mirror.baseUrl, lastFailure.getMessage(), fallback.baseUrl);
+                    inFlight.put(submit(completions, fallback, path, call, status, settlement), fallback);
+                }
+            }
+
+            kept = lastRejected;
+            if (lastRejected != null)
+                return lastRejected;
+        } finally {
+            inFlight.keySet().forEach(future -> future.cancel(true));
+            settlement.settle(kept);
+            ServerTiming.record(ServerTiming.Phase.UPSTREAM, fetchStart);
+        }
+
+        switch (lastFailure) {
+            case IOException exception -> throw exception;
+            case InterruptedException exception -> throw exception;
+            case RuntimeException exception -> throw exception;
+            case null, default -> throw new IOException("All " + name + " mirrors failed", lastFailure);
+        }
+    }
+
+    private <R> Future<R> submit(CompletionService<R> completions, Mirror mirror, String path, MirrorCall<R> call,
+                                 ToIntFunction<R> status, Settlement<R> settlement) {
+        return completions.submit(() -> {
+            long start = System.nanoTime();
+            R result;
+            try {
+                result = call.call(mirror.baseUrl + path);
+            } catch (InterruptedException exception) {
+                // Cancelled because another mirror won: not a failure, but this mirror was at least this slow
+                mirror.onCancelled(System.nanoTime() - start);
+                throw exception;
+            } catch (CircuitOpenException | UpstreamSaturatedException exception) {
+                // Never reached the mirror, so there is no latency to learn from
+                throw exception;
+            } catch (Exception exception) {
+                mirror.onFailure();
+                throw exception;
+            }
+
+            // A 404 or other 4xx is a prompt answer from a healthy mirror; only 5xx means the mirror is struggling
+            if (status.applyAsInt(result) >= 500) {
+                mirror.onFailure();
+            } else {
+                mirror.onSuccess(System.nanoTime() - start);
+            }
+
+            if (!settlement.offer(result))
+                throw new CancellationException("Another mirror already answered");
+
+            return result;
+        });
+    }
+
+    private static void closeBody(HttpResponse<?> response) {
+        if (!(response.body() instanceof AutoCloseable body))
+            return;
+
+        try {
+            body.close();
+        } catch (Exception exception) {
+            Switchboard.LOGGER.debug("Failed to close a discarded {} response body: {}", response.uri(), exception.getMessage());
+        }
+    }
+
+    /**
+     * Mirrors ordered by EWMA latency, with mirrors that have no samples yet keeping their configured order after the
+     * measured ones and mirrors whose circuit breaker is open last.
+     */
+    private List<Mirror> ranked() {
+        return mirrors.stream()
+                .sorted(Comparator.comparing((Mirror mirror) -> httpClient.circuitBreakerFor(mirror.host).state() == CircuitBreaker.State.OPEN)
+                        .thenComparingDouble(Mirror::score))
+                .toList();
+    }
+
+    /**
+     * @return the path and query of the URI if it points at one of the mirrors, otherwise {@code null}
+     */
+    private String pathOf(URI uri) {
+        String url = uri.toString();
+        for (Mirror mirror : mirrors) {
+            if (url.startsWith(mirror.baseUrl + "/"))
+                return url.substring(mirror.baseUrl.length());
+        }
+
+        return null;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(name, hedged.sum(), hedgeWins.sum(), failovers.sum(),
+                mirrors.stream().map(Mirror::snapshot).toList());
+    }
+
+    public record Snapshot(String name, long hedged, long hedgeWins, long failovers, List<MirrorSnapshot> mirrors) {
+    }
+
+    public record MirrorSnapshot(String baseUrl, double ewmaMillis, long p95Millis, long successes, long failures) {
+    }
+
+    @FunctionalInterface
+    private interface MirrorCall<R> {
+        R call(String url) throws Exception;
+    }
+
+    /**
+     * Tracks the results the mirror calls of one fetch have produced, so that every one the fetch does not return is
+     * discarded exactly once: those already produced when the fetch settles, and those produced afterwards by calls
+     * that were cancelled too late to stop them.
+     */
+    private static final class Settlement<R> {
+        private final Consumer<R> discard;
+        private final List<R> produced = new ArrayList<>();
+        private boolean settled;
+
+        private Settlement(Consumer<R> discard) {
+            this.discard = discard;
+        }
+
+        /**
+         * @return whether the fetch may still use the result; if not, it has been discarded
+         */
+        private boolean offer(R result) {
+            synchronized (this) {
+                if (!settled) {
+                    produced.add(result);
+                    return true;
+                }
+            }
+
+            discard.accept(result);
+            return false;
+        }
+
+        private void settle(R kept) {
+            List<R> unused;
+            synchronized (this) {
+                settled = true;
+                unused = new ArrayList<>(produced);
+                produced.clear();
+            }
+
+            for (R result : unused) {
+                if (result != kept)
+                    discard.accept(result);
+            }
+        }
+    }
+
+    private static final class Mirror {
+        private final String baseUrl;
+        private final String host;
+        private final Histogram latency = new Histogram();
+        private final AtomicLong ewmaNanosBits = new AtomicLong(Double.doubleToLongBits(Double.NaN));
+        private final LongAdder failures = new LongAdder();
+
+        private Mirror(String baseUrl) {
+            this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+            String host = URI.create(this.baseUrl).getHost();
+            this.host = host == null ? "" : host;
+        }
+
+        private void onSuccess(long nanos) {
+            latency.record(nanos);
+            updateEwma(nanos);
+        }
+
+        private void onCancelled(long nanos) {
+            updateEwma(nanos);
+        }
+
+        /**
+         * Records a transport error or 5xx response.
+         */
+        private void onFailure() {
+            failures.increment();
+            // A failure costs at least as much as waiting out the full timeout
+            updateEwma(Environment.getUpstreamTimeout().toNanos());
+        }
+
+        private void updateEwma(long nanos) {
+            ewmaNanosBits.updateAndGet(bits -> {
+                double current = Double.longBitsToDouble(bits);
+                double updated = Double.isNaN(current) ? nanos : current + EWMA_ALPHA * (nanos - current);
+                return Double.doubleToLongBits(updated);
+            });
+        }
+
+        private double score() {
+            double ewma = Double.longBitsToDouble(ewmaNanosBits.get());
+            return Double.isNaN(ewma) ? Double.MAX_VALUE : ewma;
+        }
+
+        private Duration hedgeDelay() {
+            Histogram.Snapshot snapshot = latency.snapshot();
+            if (snapshot.count() < MIN_SAMPLES_FOR_P95)
+                return Environment.getHedgeDelay();
+
+            long p95 = snapshot.quantileNanos(0.95);
+            return p95 == Long.MAX_VALUE ? Environment.getUpstreamTimeout() : Duration.ofNanos(p95);
+        }
+
+        private MirrorSnapshot snapshot() {
+            Histogram.Snapshot snapshot = latency.snapshot();
+            double ewma = Double.longBitsToDouble(ewmaNanosBits.get());
+            long p95 = snapshot.quantileNanos(0.95);
+            return new MirrorSnapshot(baseUrl, Double.isNaN(ewma) ? 0 : ewma / 1_000_000,
+                    p95 == Long.MAX_VALUE ? -1 : p95 / 1_000_000, snapshot.count(), failures.sum());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package dev.railroadide.switchboard.http;
+
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A response whose body is read from a file instead of the network, passed through the caller's body handler exactly
+ * as a live body would be, so callers cannot tell a recorded response from a live one.
+ */
+record ReplayedResponse<T>(HttpRequest request, int statusCode, HttpHeaders headers, T body) implements HttpResponse<T> {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * @param body the file holding the response body, or {@code null} for an empty body
+     */
+    static <T> ReplayedResponse<T> of(HttpRequest request, int statusCode, HttpHeaders headers, Path body,
+                                      BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        return of(request, statusCode, headers, body, false, bodyHandler);
+    }
+
+    /**
+     * @param deleteBody whether the body file is temporary and should be deleted once it has been read or abandoned,
+     *                   which for a streaming handler is only when the caller closes the body
+     */
+    static <T> ReplayedResponse<T> of(HttpRequest request, int statusCode, HttpHeaders headers, Path body,
+                                      boolean deleteBody, BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        BodySubscriber<T> subscriber = bodyHandler.apply(new ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return statusCode;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return headers;
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        });
+
+        // Streaming handlers (e.g. ofInputStream) complete before the body is read, so the subscription closes the file
+        InputStream input = body == null ? InputStream.nullInputStream() : deleteBody ?
+                Files.newInputStream(body, StandardOpenOption.DELETE_ON_CLOSE) :
+                Files.newInputStream(body);
+        var subscription = new FileSubscription(input, subscriber);
+        try {
+            subscriber.onSubscribe(subscription);
+            return new ReplayedResponse<>(request, statusCode, headers, subscriber.getBody().toCompletableFuture().get());
+        } catch (ExecutionException exception) {
+            subscription.cancel();
+            if (exception.getCause() instanceof IOException ioException)
+                throw ioException;
+
+            throw new IOException("Failed to replay response for " + request.uri(), exception.getCause());
+        }
+    }
+
+    static HttpHeaders headers(String contentType) {
+        return HttpHeaders.of(contentType == null ? Map.of() : Map.of("Content-Type", List.of(contentType)), (_, _) -> true);
+    }
+
+    @Override
+    public Optional<HttpResponse<T>> previousResponse() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<SSLSession> sslSession() {
+        return Optional.empty();
+    }
+
+    @Override
+    public URI uri() {
+        return request.uri();
+    }
+
+    @Override
+    public HttpClient.Version version() {
+        return HttpClient.Version.HTTP_1_1;
+    }
+
+    /**
+     * Feeds the stream to the subscriber in chunks as demand arrives. Subscribers request from within
+     * {@code onSubscribe}/{@code onNext}, so the whole body is delivered on the calling thread.
+     */
+    private static final class FileSubscription implements Flow.Subscription {
+        private final InputStream input;
+        private final BodySubscriber<?> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean done;
+
+        private FileSubscription(InputStream input, BodySubscriber<?> subscriber) {
+            this.input = input;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Non-positive subscription request: " + n));
+                return;
+            }
+
+            demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            close();
+        }
+
+        private void drain() {
+            // Re-entrant calls from onNext only add demand; the outer loop delivers it
+            if (!draining.compareAndSet(false, true))
+                return;
+
+            try {
+                while (!done && demand.get() > 0) {
+                    byte[] chunk = input.readNBytes(CHUNK_SIZE);
+                    if (chunk.length == 0) {
+                        done = true;
+                        close();
+                        subscriber.onComplete();
+                        return;
+                    }
+
+                    demand.decrementAndGet();
+                    subscriber.onNext(List.of(ByteBuffer.wrap(chunk)));
+                }
+            } catch (IOException exception) {
+                done = true;
+                close();
+                subscriber.onError(exception);
+            } finally {
+                draining.set(false);
+            }
+        }
+
+        private void close() {
+            try {
+                input.close();
+            } catch (IOException ignored) {
+                // Nothing left to read from it either way
+            }
+        }
+    }
+}
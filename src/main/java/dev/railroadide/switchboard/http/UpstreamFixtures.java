@@ -0,0 +1,236 @@
+package dev.railroadide.switchboard.http;
+
+import com.google.gson.JsonObject;
+import dev.railroadide.switchboard.Switchboard;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A directory of recorded upstream responses, written in {@link UpstreamMode#RECORD} and served in
+ * {@link UpstreamMode#REPLAY}.
+ * <p>
+ * Responses are keyed by URL path and query only, so a recording made against one set of mirrors replays against any
+ * other. Bodies live under {@code responses/} mirroring the URL path; {@code index.json} lists every entry with the URL
+ * it was recorded from, and carries a format version so incompatible layouts are rejected instead of misread.
+ * <p>
+ * While recording, the index is rewritten at most once a second rather than once per response, and on
+ * {@link #close()}, which runs at shutdown. A crash can therefore lose the index entries of the last moment's
+ * recordings, though not their bodies.
+ */
+public class UpstreamFixtures implements AutoCloseable {
+    public static final int FORMAT_VERSION = 1;
+    private static final Duration INDEX_FLUSH_DELAY = Duration.ofSeconds(1);
+    private static final ScheduledExecutorService INDEX_WRITER = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("fixture-index").factory());
+    private static final String INDEX_FILE = "index.json";
+    private static final String RESPONSES_DIRECTORY = "responses";
+    private static final String BODY_SUFFIX = ".body";
+
+    private final Path directory;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private UpstreamFixtures(Path directory) {
+        this.directory = directory.toAbsolutePath();
+    }
+
+    /**
+     * Opens the fixtures in the given directory for recording, keeping any entries already in it.
+     */
+    public static UpstreamFixtures forRecording(Path directory) throws IOException {
+        var fixtures = new UpstreamFixtures(directory);
+        Files.createDirectories(fixtures.directory.resolve(RESPONSES_DIRECTORY));
+        if (Files.exists(fixtures.directory.resolve(INDEX_FILE)))
+            fixtures.readIndex();
+
+        Runtime.getRuntime().addShutdownHook(Thread.ofPlatform().name("fixture-index-flush").unstarted(() -> {
+            try {
+                fixtures.close();
+            } catch (IOException exception) {
+                Switchboard.LOGGER.error("Failed to write the upstream fixture index", exception);
+            }
+        }));
+        return fixtures;
+    }
+
+    /**
+     * Opens previously recorded fixtures for replay.
+     *
+     * @throws IllegalStateException if the directory holds no recording or one in an unsupported format
+     */
+    public static UpstreamFixtures forReplay(Path directory) throws IOException {
+        var fixtures = new UpstreamFixtures(directory);
+        if (Files.notExists(fixtures.directory.resolve(INDEX_FILE)))
+            throw new IllegalStateException("No recorded upstream responses in " + fixtures.directory);
+
+        fixtures.readIndex();
+        return fixtures;
+    }
+
+    /**
+     * The key a response to the given URL is stored under: its path, plus its query if it has one.
+     */
+    public static String keyOf(URI uri) {
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        return uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+    }
+
+    public Optional<Fixture> find(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return Optional.empty();
+
+        Path body = directory.resolve(entry.file());
+        return Files.exists(body) ? Optional.of(new Fixture(body, entry.contentType())) : Optional.empty();
+    }
+
+    /**
+     * A file in this directory to receive a response body before it is {@linkplain #record recorded}, so the final
+     * move stays on one file system.
+     */
+    public Path createTempFile() throws IOException {
+        return Files.createTempFile(directory.resolve(RESPONSES_DIRECTORY), "recording", ".part");
+    }
+
+    /**
+     * Moves the body into place under the key, replacing any earlier recording.
+     *
+     * @return the recorded body
+     */
+    public Path record(String key, String url, Path body, String contentType) throws IOException {
+        String file = fileOf(key);
+        Path target = directory.resolve(file);
+        Files.createDirectories(target.getParent());
+        Files.move(body, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        entries.put(key, new Entry(url, file, contentType, Files.size(target), Instant.now().toString()));
+        if (flushScheduled.compareAndSet(false, true))
+            INDEX_WRITER.schedule(this::flushQuietly, INDEX_FLUSH_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+
+        return target;
+    }
+
+    /**
+     * Writes the index now, including every entry recorded so far.
+     */
+    public void flush() throws IOException {
+        // Cleared first, so an entry recorded while the index is being written schedules another write
+        flushScheduled.set(false);
+        writeIndex();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    public void recordText(String key, String url, String text) throws IOException {
+        Path temp = createTempFile();
+        try {
+            Files.writeString(temp, text);
+            record(key, url, temp, "text/plain; charset=utf-8");
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public Optional<String> readText(String key) throws IOException {
+        Optional<Fixture> fixture = find(key);
+        return fixture.isEmpty() ? Optional.empty() : Optional.of(Files.readString(fixture.get().body()));
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static String fileOf(String key) {
+        int queryStart = key.indexOf('?');
+        String path = queryStart < 0 ? key : key.substring(0, queryStart);
+
+        var file = new StringBuilder(RESPONSES_DIRECTORY);
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty())
+                continue;
+
+            if (segment.equals(".") || segment.equals(".."))
+                throw new IllegalArgumentException("Refusing to record a path with relative segments: " + key);
+
+            file.append('/').append(segment);
+        }
+
+        if (file.length() == RESPONSES_DIRECTORY.length())
+            file.append("/index");
+
+        if (queryStart >= 0)
+            file.append('@').append(URLEncoder.encode(key.substring(queryStart + 1), StandardCharsets.UTF_8));
+
+        return file.append(BODY_SUFFIX).toString();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException exception) {
+            Switchboard.LOGGER.error("Failed to write the upstream fixture index", exception);
+        }
+    }
+
+    private void readIndex() throws IOException {
+        JsonObject index;
+        try (Reader reader = Files.newBufferedReader(directory.resolve(INDEX_FILE))) {
+            index = Switchboard.GSON.fromJson(reader, JsonObject.class);
+        }
+
+        int formatVersion = index.has("formatVersion") ? index.get("formatVersion").getAsInt() : 0;
+        if (formatVersion != FORMAT_VERSION)
+            throw new IllegalStateException("Unsupported upstream fixture format " + formatVersion + " in " + directory +
+                    " (expected " + FORMAT_VERSION + ")");
+
+        for (var entry : index.getAsJsonObject("entries").entrySet()) {
+            entries.put(entry.getKey(), Switchboard.GSON.fromJson(entry.getValue(), Entry.class));
+        }
+    }
+
+    private synchronized void writeIndex() throws IOException {
+        var index = new JsonObject();
+        index.addProperty("formatVersion", FORMAT_VERSION);
+        index.addProperty("updatedAt", Instant.now().toString());
+        // Sorted so re-recording produces small, reviewable diffs
+        index.add("entries", Switchboard.GSON.toJsonTree(new TreeMap<>(entries)));
+
+        Path temp = Files.createTempFile(directory, "index", ".part");
+        try {
+            Files.writeString(temp, Switchboard.GSON.toJson(index));
+            Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public record Fixture(Path body, String contentType) {
+    }
+
+    private record Entry(String url, String file, String contentType, long bytes, String recordedAt) {
+    }
+}
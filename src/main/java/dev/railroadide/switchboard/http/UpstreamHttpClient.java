@@ -0,0 +1,327 @@
+package dev.railroadide.switchboard.http;
+
+import dev.railroadide.switchboard.Environment;
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.jfr.UpstreamFetchEvent;
+import dev.railroadide.switchboard.metrics.Histogram;
+import dev.railroadide.switchboard.metrics.ServerTiming;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The single HTTP client used for every upstream request (Mojang, Forge, NeoForge, Fabric, ...).
+ * <p>
+ * All requests share one connection pool (preferring HTTP/2 so requests to the same host are multiplexed), carry the
+ * same User-Agent and request timeout, and are limited to {@link Environment#getUpstreamMaxInFlightPerHost()}
+ * concurrent requests per host so a burst of cache misses cannot stampede an upstream.
+ * <p>
+ * Each host also has a {@link CircuitBreaker}: connection failures, timeouts and 5xx/429 responses count as failures,
+ * and while a breaker is open requests to that host fail immediately with a {@link CircuitOpenException}. A request
+ * that finds every permit for its host taken for the whole timeout fails with an {@link UpstreamSaturatedException},
+ * which the breaker does not count.
+ * <p>
+ * In {@link UpstreamMode#RECORD} every successful response is also written to the {@link UpstreamFixtures}, and in
+ * {@link UpstreamMode#REPLAY} responses come from them alone, with requests for anything unrecorded answered 404.
+ */
+public class UpstreamHttpClient {
+    public static final String USER_AGENT = "Switchboard/1.0 (+https://railroadide.dev)";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final LongAdder RECORDED = Switchboard.METRICS.counter("switchboard_upstream_recorded_total",
+            "Upstream responses written to the fixture directory in record mode.");
+    private static final LongAdder REPLAY_HITS = Switchboard.METRICS.counter("switchboard_upstream_replayed_total",
+            "Upstream requests answered from the fixture directory in replay mode.", "result", "hit");
+    private static final LongAdder REPLAY_MISSES = Switchboard.METRICS.counter("switchboard_upstream_replayed_total",
+            "Upstream requests answered from the fixture directory in replay mode.", "result", "miss");
+
+    private final HttpClient client;
+    private final Duration circuitOpenDuration;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final Map<String, HostMetrics> hostMetrics = new ConcurrentHashMap<>();
+    private final ExecutorService asyncExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile UpstreamFixtures fixtures;
+
+    public UpstreamHttpClient() {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build());
+    }
+
+    public UpstreamHttpClient(HttpClient client) {
+        this(client, CircuitBreaker.DEFAULT_OPEN_DURATION);
+    }
+
+    /**
+     * @param circuitOpenDuration how long each host's circuit breaker stays open before letting a trial through
+     */
+    UpstreamHttpClient(HttpClient client, Duration circuitOpenDuration) {
+        this.client = Objects.requireNonNull(client, "client");
+        this.circuitOpenDuration = circuitOpenDuration;
+    }
+
+    /**
+     * Creates a GET request for the given URL with the shared User-Agent and request timeout applied.
+     */
+    public HttpRequest.Builder newRequest(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("User-Agent", USER_AGENT)
+                .timeout(Environment.getUpstreamTimeout())
+                .GET();
+    }
+
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        return switch (Environment.getUpstreamMode()) {
+            case LIVE -> sendUpstream(request, bodyHandler);
+            case RECORD -> sendAndRecord(request, bodyHandler);
+            case REPLAY -> replay(request, bodyHandler);
+        };
+    }
+
+    /**
+     * The fixture directory used in record and replay mode, opened on first use.
+     *
+     * @throws IllegalStateException in live mode, or in replay mode if the directory holds no usable recording
+     */
+    public UpstreamFixtures fixtures() throws IOException {
+        UpstreamFixtures current = fixtures;
+        if (current != null)
+            return current;
+
+        synchronized (this) {
+            if (fixtures == null) {
+                fixtures = switch (Environment.getUpstreamMode()) {
+                    case LIVE -> throw new IllegalStateException("Upstream fixtures are only used in record or replay mode");
+                    case RECORD -> UpstreamFixtures.forRecording(Environment.getFixtureDirectory());
+                    case REPLAY -> UpstreamFixtures.forReplay(Environment.getFixtureDirectory());
+                };
+            }
+
+            return fixtures;
+        }
+    }
+
+    private <T> HttpResponse<T> sendAndRecord(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        UpstreamFixtures fixtures = fixtures();
+        Path temp = fixtures.createTempFile();
+        try {
+            HttpResponse<Path> response = sendUpstream(request, HttpResponse.BodyHandlers.ofFile(temp));
+            if (response.statusCode() != 200) {
+                // Not recorded, so the temporary body is deleted once the caller is done with it, which for a streaming
+                // body is only when the caller closes it
+                return ReplayedResponse.of(request, response.statusCode(), response.headers(), temp, true, bodyHandler);
+            }
+
+            Path body = fixtures.record(UpstreamFixtures.keyOf(request.uri()), request.uri().toString(), temp,
+                    response.headers().firstValue("Content-Type").orElse(null));
+            RECORDED.increment();
+            return ReplayedResponse.of(request, response.statusCode(), response.headers(), body, bodyHandler);
+        } catch (IOException | InterruptedException | RuntimeException exception) {
+            Files.deleteIfExists(temp);
+            throw exception;
+        }
+    }
+
+    private <T> HttpResponse<T> replay(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            Optional<UpstreamFixtures.Fixture> fixture = fixtures().find(UpstreamFixtures.keyOf(request.uri()));
+            if (fixture.isEmpty()) {
+                REPLAY_MISSES.increment();
+                Switchboard.LOGGER.warn("No recorded upstream response for {}", request.uri());
+                return ReplayedResponse.of(request, 404, ReplayedResponse.headers(null), null, bodyHandler);
+            }
+
+            REPLAY_HITS.increment();
+            return ReplayedResponse.of(request, 200, ReplayedResponse.headers(fixture.get().contentType()),
+                    fixture.get().body(), bodyHandler);
+        } finally {
+            ServerTiming.record(ServerTiming.Phase.UPSTREAM, start);
+        }
+    }
+
+    private <T> HttpResponse<T> sendUpstream(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        String host = hostOf(request.uri());
+        var event = new UpstreamFetchEvent();
+        event.begin();
+        long fetchStart = System.nanoTime();
+
+        CircuitBreaker circuitBreaker = circuitBreakerFor(host);
+        if (!circuitBreaker.tryAcquire()) {
+            event.complete(host, request.uri().toString(), 0, "circuit_open");
+            throw new CircuitOpenException(host);
+        }
+
+        Semaphore permits = hostPermits.computeIfAbsent(host, _ -> new Semaphore(Environment.getUpstreamMaxInFlightPerHost(), true));
+        Duration timeout = request.timeout().orElse(Environment.getUpstreamTimeout());
+        boolean permitted;
+        try {
+            permitted = permits.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException exception) {
+            // Interrupted while queued, e.g. a hedged request that lost; a half-open trial must be handed back
+            circuitBreaker.onCancelled();
+            event.complete(host, request.uri().toString(), 0, "cancelled");
+            ServerTiming.record(ServerTiming.Phase.UPSTREAM, fetchStart);
+            throw exception;
+        }
+
+        if (!permitted) {
+            // Only our own queue was full; hand back a half-open trial without judging the upstream by it
+            circuitBreaker.onCancelled();
+            event.complete(host, request.uri().toString(), 0, "saturated");
+            ServerTiming.record(ServerTiming.Phase.UPSTREAM, fetchStart);
+            throw new UpstreamSaturatedException(host, timeout);
+        }
+
+        HostMetrics metrics = hostMetrics.computeIfAbsent(host, HostMetrics::new);
+        var received = new LongAdder();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<T> response = client.send(request, counting(bodyHandler, received));
+            if (response.statusCode() >= 500 || response.statusCode() == 429) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+
+            String status = Integer.toString(response.statusCode());
+            metrics.latency.record(System.nanoTime() - start);
+            metrics.responses(status).increment();
+            event.complete(host, request.uri().toString(), received.sum(), status);
+            return response;
+        } catch (IOException exception) {
+            circuitBreaker.onFailure();
+            String outcome = exception instanceof HttpTimeoutException ? "timeout" : "error";
+            metrics.latency.record(System.nanoTime() - start);
+            metrics.responses(outcome).increment();
+            event.complete(host, request.uri().toString(), received.sum(), outcome);
+            throw exception;
+        } catch (InterruptedException | RuntimeException exception) {
+            circuitBreaker.onCancelled();
+            event.complete(host, request.uri().toString(), received.sum(), "cancelled");
+            throw exception;
+        } finally {
+            metrics.bytes.add(received.sum());
+            permits.release();
+            ServerTiming.record(ServerTiming.Phase.UPSTREAM, fetchStart);
+        }
+    }
+
+    /**
+     * Sends the request on a virtual thread, so waiting for a per-host permit never blocks the caller.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return send(request, bodyHandler);
+            } catch (IOException exception) {
+                throw new CompletionException(exception);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(exception);
+            }
+        }, asyncExecutor);
+    }
+
+    /**
+     * Streams the body of the given URL to a file. The body is written to a temporary file next to the target and
+     * only moved into place once fully received, so a failed download never leaves a truncated file behind.
+     */
+    public Path download(String url, Path path) throws IOException, InterruptedException {
+        Path target = path.toAbsolutePath();
+        Files.createDirectories(target.getParent());
+
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+        try {
+            HttpResponse<Path> response = send(newRequest(url).build(), HttpResponse.BodyHandlers.ofFile(temp));
+            if (response.statusCode() != 200)
+                throw new IOException("HTTP " + response.statusCode() + " downloading " + url);
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return target;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public CircuitBreaker circuitBreakerFor(String host) {
+        return circuitBreakers.computeIfAbsent(host.toLowerCase(Locale.ROOT),
+                name -> new CircuitBreaker(name, CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, circuitOpenDuration));
+    }
+
+    public Collection<CircuitBreaker> circuitBreakers() {
+        return List.copyOf(circuitBreakers.values());
+    }
+
+    /**
+     * Wraps the body handler so every received body byte is added to the counter.
+     */
+    private static <T> HttpResponse.BodyHandler<T> counting(HttpResponse.BodyHandler<T> bodyHandler, LongAdder bytes) {
+        return responseInfo -> {
+            HttpResponse.BodySubscriber<T> subscriber = bodyHandler.apply(responseInfo);
+            return new HttpResponse.BodySubscriber<>() {
+                @Override
+                public CompletionStage<T> getBody() {
+                    return subscriber.getBody();
+                }
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(subscription);
+                }
+
+                @Override
+                public void onNext(List<ByteBuffer> items) {
+                    for (ByteBuffer item : items) {
+                        bytes.add(item.remaining());
+                    }
+
+                    subscriber.onNext(items);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            };
+        };
+    }
+
+    private static String hostOf(URI uri) {
+        return uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+    }
+
+    private record HostMetrics(String host, Histogram latency, LongAdder bytes) {
+        private HostMetrics(String host) {
+            this(host,
+                    Switchboard.METRICS.histogram("switchboard_upstream_request_duration_seconds",
+                            "Latency of upstream requests, including failed ones.", "host", host),
+                    Switchboard.METRICS.counter("switchboard_upstream_response_bytes_total",
+                            "Response body bytes received from upstreams.", "host", host));
+        }
+
+        private LongAdder responses(String status) {
+            return Switchboard.METRICS.counter("switchboard_upstream_responses_total",
+                    "Upstream responses by status code, or timeout/error when no response arrived.", "host", host, "status", status);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package dev.railroadide.switchboard.http;
+
+/**
+ * How {@link UpstreamHttpClient} treats upstream requests.
+ */
+public enum UpstreamMode {
+    /**
+     * Requests go to the upstreams.
+     */
+    LIVE,
+    /**
+     * Requests go to the upstreams, and every successful response is also written to the {@link UpstreamFixtures}.
+     */
+    RECORD,
+    /**
+     * Requests are answered exclusively from the {@link UpstreamFixtures}; the upstreams are never contacted.
+     */
+    REPLAY
+}
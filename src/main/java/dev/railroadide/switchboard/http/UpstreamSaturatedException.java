@@ -0,0 +1,14 @@
+package dev.railroadide.switchboard.http;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Thrown when no per-host permit became free in time: Switchboard itself has too many requests in flight to the
+ * upstream, which says nothing about the upstream's health, so it does not count against its {@link CircuitBreaker}.
+ */
+public class UpstreamSaturatedException extends IOException {
+    public UpstreamSaturatedException(String upstream, Duration waited) {
+        super("Too many requests in flight to " + upstream + ", no connection became free within " + waited.toMillis() + "ms");
+    }
+}
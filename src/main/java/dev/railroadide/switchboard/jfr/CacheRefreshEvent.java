@@ -0,0 +1,26 @@
+package dev.railroadide.switchboard.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Reloading an expired or missing cache entry, including waiting for the source's bulkhead and the upstream fetch.
+ */
+@Name("dev.railroadide.switchboard.CacheRefresh")
+@Label("Cache Refresh")
+@Category({"Switchboard", "Cache"})
+@StackTrace(false)
+public class CacheRefreshEvent extends Event {
+    @Label("Source")
+    @Description("The service or cache being refreshed")
+    public String source;
+
+    @Label("Key")
+    public String key;
+
+    @Label("Item Count")
+    public int itemCount;
+
+    @Label("Outcome")
+    @Description("success, failure or rejected (bulkhead full)")
+    public String outcome;
+}
@@ -0,0 +1,128 @@
+package dev.railroadide.switchboard.jfr;
+
+import dev.railroadide.switchboard.Environment;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Controls the single on-demand JDK Flight Recorder recording started from the admin endpoints.
+ * <p>
+ * A recording stops by itself after {@link #MAX_DURATION} and keeps at most {@link #MAX_SIZE_BYTES} on disk, dropping
+ * its oldest data beyond that, so one that is started and forgotten cannot fill the disk. A recording that stopped by
+ * itself can still be dumped or stopped to collect it.
+ */
+public final class FlightRecordings {
+    public static final Duration MAX_DURATION = Duration.ofHours(1);
+    public static final long MAX_SIZE_BYTES = 256L * 1024 * 1024;
+
+    private static final List<Class<? extends jdk.jfr.Event>> EVENTS = List.of(
+            UpstreamFetchEvent.class,
+            MetadataParseEvent.class,
+            CacheRefreshEvent.class,
+            PistonMetaLoadEvent.class,
+            ResponseSerializeEvent.class
+    );
+
+    private static Recording recording;
+
+    private FlightRecordings() {
+    }
+
+    /**
+     * Starts a recording with the given JFR configuration ({@code default} or {@code profile}) plus all Switchboard
+     * events. A previous recording that stopped by itself and was never collected is discarded.
+     *
+     * @throws IllegalStateException if a recording is already running
+     */
+    public static synchronized Status start(String configuration, Duration maxAge) throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING)
+            throw new IllegalStateException("A recording is already running.");
+
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+
+        var newRecording = new Recording(Configuration.getConfiguration(configuration));
+        newRecording.setName("switchboard");
+        newRecording.setToDisk(true);
+        newRecording.setMaxAge(maxAge.compareTo(MAX_DURATION) < 0 ? maxAge : MAX_DURATION);
+        newRecording.setMaxSize(MAX_SIZE_BYTES);
+        newRecording.setDuration(MAX_DURATION);
+        EVENTS.forEach(event -> newRecording.enable(event).withoutThreshold());
+        newRecording.start();
+        recording = newRecording;
+        return status(newRecording, configuration);
+    }
+
+    /**
+     * Writes what has been recorded so far to a file, leaving the recording running.
+     *
+     * @throws IllegalStateException if there is no recording
+     */
+    public static synchronized Path dump() throws IOException {
+        Path path = newDumpPath();
+        requireRecording().dump(path);
+        return path;
+    }
+
+    /**
+     * Stops the recording, unless it already stopped by itself, and writes it to a file.
+     *
+     * @throws IllegalStateException if there is no recording
+     */
+    public static synchronized Path stop() throws IOException {
+        Recording current = requireRecording();
+        Path path = newDumpPath();
+        try {
+            if (current.getState() == RecordingState.RUNNING)
+                current.stop();
+
+            current.dump(path);
+        } finally {
+            current.close();
+            recording = null;
+        }
+
+        return path;
+    }
+
+    public static synchronized Optional<Status> status() {
+        return Optional.ofNullable(recording).map(current -> status(current, null));
+    }
+
+    private static Recording requireRecording() {
+        if (recording == null || (recording.getState() != RecordingState.RUNNING && recording.getState() != RecordingState.STOPPED))
+            throw new IllegalStateException("No recording is running.");
+
+        return recording;
+    }
+
+    private static Path newDumpPath() throws IOException {
+        Path directory = Environment.getCacheLocation().resolve("jfr");
+        Files.createDirectories(directory);
+        return Files.createTempFile(directory, "switchboard-", ".jfr");
+    }
+
+    private static Status status(Recording recording, String configuration) {
+        return new Status(recording.getName(), recording.getState().name(), configuration, recording.getStartTime(),
+                recording.getMaxAge(), recording.getSize());
+    }
+
+    /**
+     * @param configuration the configuration the recording was started with, only known right after starting
+     */
+    public record Status(String name, String state, String configuration, Instant startTime, Duration maxAge,
+                         long sizeBytes) {
+    }
+}
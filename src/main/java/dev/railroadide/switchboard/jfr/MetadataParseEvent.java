@@ -0,0 +1,45 @@
+package dev.railroadide.switchboard.jfr;
+
+import dev.railroadide.switchboard.metrics.ServerTiming;
+import jdk.jfr.*;
+
+/**
+ * Parsing an upstream metadata document (Maven XML, promotions/manifest JSON, git tags) into versions. The parse time
+ * is also reported to the request's {@link ServerTiming} when one is being timed.
+ */
+@Name("dev.railroadide.switchboard.MetadataParse")
+@Label("Metadata Parse")
+@Category({"Switchboard", "Upstream"})
+@StackTrace(false)
+public class MetadataParseEvent extends Event {
+    @Label("Source")
+    public String source;
+
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+
+    @Label("Item Count")
+    public int itemCount;
+
+    @Label("Outcome")
+    public String outcome;
+
+    // Transient fields are not recorded by JFR
+    private final transient long startNanos = System.nanoTime();
+
+    /**
+     * Commits the event as a successful parse, if it is enabled.
+     */
+    public void complete(String source, long bytes, int itemCount) {
+        ServerTiming.record(ServerTiming.Phase.PARSE, startNanos);
+        if (!shouldCommit())
+            return;
+
+        this.source = source;
+        this.bytes = bytes;
+        this.itemCount = itemCount;
+        this.outcome = "success";
+        commit();
+    }
+}
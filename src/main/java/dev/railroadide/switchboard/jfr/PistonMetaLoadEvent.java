@@ -0,0 +1,26 @@
+package dev.railroadide.switchboard.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Loading a Minecraft version's piston-meta package, from the disk cache or by downloading it first.
+ */
+@Name("dev.railroadide.switchboard.PistonMetaLoad")
+@Label("Piston Meta Load")
+@Category({"Switchboard", "Minecraft"})
+@StackTrace(false)
+public class PistonMetaLoadEvent extends Event {
+    @Label("Version")
+    public String version;
+
+    @Label("Source")
+    @Description("disk or upstream")
+    public String source;
+
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,24 @@
+package dev.railroadide.switchboard.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Serializing a route's response object to JSON.
+ */
+@Name("dev.railroadide.switchboard.ResponseSerialize")
+@Label("Response Serialize")
+@Category({"Switchboard", "HTTP"})
+@StackTrace(false)
+public class ResponseSerializeEvent extends Event {
+    @Label("Type")
+    public String type;
+
+    @Label("Bytes")
+    @Description("Length of the serialized JSON in characters")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+
+    @Label("Item Count")
+    @Description("Number of elements if the response is a collection")
+    public int itemCount;
+}
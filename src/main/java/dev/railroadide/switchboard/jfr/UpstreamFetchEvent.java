@@ -0,0 +1,41 @@
+package dev.railroadide.switchboard.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A request to an upstream server, from sending it until the response body has been received.
+ */
+@Name("dev.railroadide.switchboard.UpstreamFetch")
+@Label("Upstream Fetch")
+@Category({"Switchboard", "Upstream"})
+@StackTrace(false)
+public class UpstreamFetchEvent extends Event {
+    @Label("Source")
+    @Description("Upstream host, or the upstream name for non-HTTP fetches such as git clones")
+    public String source;
+
+    @Label("URL")
+    public String url;
+
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+
+    @Label("Outcome")
+    @Description("HTTP status code, or timeout/error/circuit_open/saturated when no response arrived")
+    public String outcome;
+
+    /**
+     * Commits the event, if it is enabled.
+     */
+    public void complete(String source, String url, long bytes, String outcome) {
+        if (!shouldCommit())
+            return;
+
+        this.source = source;
+        this.url = url;
+        this.bytes = bytes;
+        this.outcome = outcome;
+        commit();
+    }
+}
@@ -0,0 +1,76 @@
+package dev.railroadide.switchboard.json;
+
+import com.google.gson.JsonArray;
+import dev.railroadide.switchboard.jfr.ResponseSerializeEvent;
+import dev.railroadide.switchboard.metrics.ServerTiming;
+import io.javalin.json.JsonMapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Delegates to another {@link JsonMapper}, recording every response serialized through {@code ctx.json(...)} as a
+ * {@link ResponseSerializeEvent} and in the request's {@link ServerTiming}.
+ */
+public class InstrumentedJsonMapper implements JsonMapper {
+    private final JsonMapper delegate;
+
+    public InstrumentedJsonMapper(JsonMapper delegate) {
+        this.delegate = delegate;
+    }
+
+    @NotNull
+    @Override
+    public String toJsonString(@NotNull Object obj, @NotNull Type type) {
+        var event = new ResponseSerializeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        String json = delegate.toJsonString(obj, type);
+        ServerTiming.record(ServerTiming.Phase.SERIALIZE, start);
+        if (event.shouldCommit()) {
+            event.type = obj.getClass().getName();
+            event.bytes = json.length();
+            event.itemCount = itemCount(obj);
+            event.commit();
+        }
+
+        return json;
+    }
+
+    @NotNull
+    @Override
+    public InputStream toJsonStream(@NotNull Object obj, @NotNull Type type) {
+        return delegate.toJsonStream(obj, type);
+    }
+
+    @Override
+    public void writeToOutputStream(@NotNull Stream<?> stream, @NotNull OutputStream outputStream) {
+        delegate.writeToOutputStream(stream, outputStream);
+    }
+
+    @NotNull
+    @Override
+    public <T> T fromJsonString(@NotNull String json, @NotNull Type targetType) {
+        return delegate.fromJsonString(json, targetType);
+    }
+
+    @NotNull
+    @Override
+    public <T> T fromJsonStream(@NotNull InputStream json, @NotNull Type targetType) {
+        return delegate.fromJsonStream(json, targetType);
+    }
+
+    private static int itemCount(Object obj) {
+        return switch (obj) {
+            case Collection<?> collection -> collection.size();
+            case Map<?, ?> map -> map.size();
+            case JsonArray array -> array.size();
+            default -> 0;
+        };
+    }
+}
@@ -0,0 +1,199 @@
+package dev.railroadide.switchboard.metrics;
+
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.CircuitBreaker;
+import dev.railroadide.switchboard.http.MirrorSet;
+import dev.railroadide.switchboard.minecraft.MinecraftVersion;
+import dev.railroadide.switchboard.minecraft.assets.AssetStore;
+import dev.railroadide.switchboard.minecraft.pistonmeta.PistonMetaInterner;
+import dev.railroadide.switchboard.util.Bulkhead;
+import dev.railroadide.switchboard.util.Cache;
+import dev.railroadide.switchboard.util.PackStore;
+import dev.railroadide.switchboard.util.PayloadStore;
+import jdk.management.VirtualThreadSchedulerMXBean;
+
+import java.lang.management.*;
+import java.util.Locale;
+
+/**
+ * Scrape-time collectors for state owned by other components: the JVM, {@link Cache}s, {@link Bulkhead}s, circuit
+ * breakers, mirror sets, the piston-meta interner and store, the asset store and the off-heap payload store.
+ */
+public final class DefaultCollectors {
+    // Shared with the version services, which count their own cache lookups under the same names
+    public static final String CACHE_REQUESTS = "switchboard_cache_requests_total";
+    public static final String CACHE_REQUESTS_HELP = "Cache lookups by result.";
+    public static final String CACHE_REFRESHES = "switchboard_cache_refreshes_total";
+    public static final String CACHE_REFRESHES_HELP = "Cache entries reloaded after going stale.";
+
+    private DefaultCollectors() {
+    }
+
+    public static void register(MetricsRegistry registry) {
+        registry.addCollector(DefaultCollectors::jvm);
+        registry.addCollector(DefaultCollectors::caches);
+        registry.addCollector(DefaultCollectors::upstreams);
+        registry.addCollector(DefaultCollectors::pistonMeta);
+        registry.addCollector(DefaultCollectors::assets);
+        registry.addCollector(DefaultCollectors::payloads);
+    }
+
+    private static void jvm(MetricsWriter writer) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        writeMemory(writer, "heap", memory.getHeapMemoryUsage());
+        writeMemory(writer, "nonheap", memory.getNonHeapMemoryUsage());
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            writer.counter("jvm_gc_collections_total", "Garbage collections per collector.",
+                    collector.getCollectionCount(), "gc", collector.getName());
+            writer.counter("jvm_gc_collection_seconds_total", "Time spent in garbage collection per collector.",
+                    collector.getCollectionTime() / 1e3, "gc", collector.getName());
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        writer.gauge("jvm_threads_live", "Live platform threads.", threads.getThreadCount());
+        writer.gauge("jvm_threads_daemon", "Live daemon platform threads.", threads.getDaemonThreadCount());
+        writer.gauge("jvm_threads_peak", "Peak live platform threads.", threads.getPeakThreadCount());
+
+        VirtualThreadSchedulerMXBean scheduler = ManagementFactory.getPlatformMXBean(VirtualThreadSchedulerMXBean.class);
+        writer.gauge("jvm_virtual_threads_mounted", "Virtual threads currently mounted on a carrier thread.",
+                scheduler.getMountedVirtualThreadCount());
+        writer.gauge("jvm_virtual_threads_queued", "Virtual threads queued waiting for a carrier thread.",
+                scheduler.getQueuedVirtualThreadCount());
+        writer.gauge("jvm_virtual_thread_carriers", "Carrier threads in the virtual thread scheduler.",
+                scheduler.getPoolSize());
+        writer.gauge("jvm_virtual_thread_parallelism", "Target parallelism of the virtual thread scheduler.",
+                scheduler.getParallelism());
+
+        writer.gauge("process_uptime_seconds", "JVM uptime.", ManagementFactory.getRuntimeMXBean().getUptime() / 1e3);
+        writer.gauge("jvm_classes_loaded", "Currently loaded classes.",
+                ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+    }
+
+    private static void writeMemory(MetricsWriter writer, String area, MemoryUsage usage) {
+        writer.gauge("jvm_memory_used_bytes", "Used JVM memory.", usage.getUsed(), "area", area);
+        writer.gauge("jvm_memory_committed_bytes", "Committed JVM memory.", usage.getCommitted(), "area", area);
+        if (usage.getMax() >= 0)
+            writer.gauge("jvm_memory_max_bytes", "Maximum JVM memory.", usage.getMax(), "area", area);
+    }
+
+    private static void caches(MetricsWriter writer) {
+        for (Cache<?, ?> cache : Cache.all()) {
+            if (cache.getName().equals(Cache.ANONYMOUS)) // Unnamed caches cannot be told apart, so they are not exported
+                continue;
+
+            Cache.Stats stats = cache.stats();
+            String name = stats.name();
+            writer.counter(CACHE_REQUESTS, CACHE_REQUESTS_HELP, stats.hits(), "cache", name, "result", "hit");
+            writer.counter(CACHE_REQUESTS, CACHE_REQUESTS_HELP, stats.misses(), "cache", name, "result", "miss");
+            writer.counter(CACHE_REFRESHES, CACHE_REFRESHES_HELP, stats.refreshes(), "cache", name);
+            writer.counter("switchboard_cache_loads_total", "Cache loads by outcome.",
+                    stats.loadSuccesses(), "cache", name, "result", "success");
+            writer.counter("switchboard_cache_loads_total", "Cache loads by outcome.",
+                    stats.loadFailures(), "cache", name, "result", "failure");
+            writer.counter("switchboard_cache_load_seconds_total", "Time spent loading cache entries.",
+                    stats.totalLoadTimeNanos() / 1e9, "cache", name);
+            writer.counter("switchboard_cache_evictions_total", "Entries evicted by the size/weight bound.",
+                    stats.evictions(), "cache", name);
+            writer.counter("switchboard_cache_expirations_total", "Entries removed after expiring.",
+                    stats.expirations(), "cache", name);
+            writer.gauge("switchboard_cache_size", "Entries currently cached.", stats.size(), "cache", name);
+            writer.gauge("switchboard_cache_weight", "Total weight of the cached entries.", stats.weight(), "cache", name);
+        }
+    }
+
+    private static void upstreams(MetricsWriter writer) {
+        for (CircuitBreaker circuitBreaker : Switchboard.HTTP_CLIENT.circuitBreakers()) {
+            CircuitBreaker.Snapshot snapshot = circuitBreaker.snapshot();
+            for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+                writer.gauge("switchboard_circuit_breaker_state", "1 if the host's circuit breaker is in the state.",
+                        snapshot.state() == state ? 1 : 0, "host", snapshot.name(), "state", state.name().toLowerCase(Locale.ROOT));
+            }
+
+            writer.counter("switchboard_circuit_breaker_rejected_total", "Requests rejected by an open circuit breaker.",
+                    snapshot.rejected(), "host", snapshot.name());
+        }
+
+        for (Bulkhead bulkhead : Bulkhead.all()) {
+            Bulkhead.Snapshot snapshot = bulkhead.snapshot();
+            writer.gauge("switchboard_bulkhead_active", "Fetches currently holding a bulkhead permit.",
+                    snapshot.active(), "source", snapshot.name());
+            writer.gauge("switchboard_bulkhead_queued", "Fetches waiting for a bulkhead permit.",
+                    snapshot.queued(), "source", snapshot.name());
+            writer.counter("switchboard_bulkhead_rejected_total", "Fetches rejected by a full bulkhead.",
+                    snapshot.rejected(), "source", snapshot.name());
+            writer.histogram("switchboard_bulkhead_queue_wait_seconds", "Time spent waiting for a bulkhead permit.",
+                    bulkhead.queueWait().snapshot(), "source", snapshot.name());
+        }
+
+        for (MirrorSet mirrorSet : MirrorSet.all()) {
+            MirrorSet.Snapshot snapshot = mirrorSet.snapshot();
+            writer.counter("switchboard_mirror_hedged_total", "Requests hedged to a second mirror.",
+                    snapshot.hedged(), "upstream", snapshot.name());
+            writer.counter("switchboard_mirror_hedge_wins_total", "Hedged requests won by the hedge.",
+                    snapshot.hedgeWins(), "upstream", snapshot.name());
+            writer.counter("switchboard_mirror_failovers_total", "Requests failed over to another mirror.",
+                    snapshot.failovers(), "upstream", snapshot.name());
+            for (MirrorSet.MirrorSnapshot mirror : snapshot.mirrors()) {
+                writer.gauge("switchboard_mirror_latency_ewma_seconds", "EWMA latency of a mirror.",
+                        mirror.ewmaMillis() / 1e3, "upstream", snapshot.name(), "mirror", mirror.baseUrl());
+            }
+        }
+    }
+
+    private static void pistonMeta(MetricsWriter writer) {
+        PistonMetaInterner interner = PistonMetaInterner.shared();
+        for (PistonMetaInterner.Kind kind : PistonMetaInterner.Kind.values()) {
+            PistonMetaInterner.Stats stats = interner.stats(kind);
+            writer.counter("switchboard_piston_meta_intern_lookups_total", "Parsed piston-meta values by interning result.",
+                    stats.hits(), "kind", kind.label(), "result", "hit");
+            writer.counter("switchboard_piston_meta_intern_lookups_total", "Parsed piston-meta values by interning result.",
+                    stats.lookups() - stats.hits(), "kind", kind.label(), "result", "miss");
+            writer.gauge("switchboard_piston_meta_interned", "Canonical piston-meta values currently shared.",
+                    stats.size(), "kind", kind.label());
+            writer.gauge("switchboard_piston_meta_dedup_ratio", "Fraction of parsed piston-meta values replaced by a shared instance.",
+                    stats.dedupRatio(), "kind", kind.label());
+        }
+
+        PackStore.Stats store = MinecraftVersion.pistonMetaStore().stats();
+        writer.gauge("switchboard_piston_meta_store_entries", "Piston-meta packages in the disk store.", store.entries());
+        writer.gauge("switchboard_piston_meta_store_live_bytes", "Bytes of live piston-meta packages in the disk store.", store.liveBytes());
+        writer.gauge("switchboard_piston_meta_store_segment_bytes", "Bytes of entries in the store's segments, live or not.",
+                store.segmentBytes());
+        writer.gauge("switchboard_piston_meta_store_max_bytes", "Budget for live piston-meta packages on disk.", store.maxBytes());
+        writer.gauge("switchboard_piston_meta_store_segments", "Segment files of the piston-meta store.", store.segments());
+        writer.counter("switchboard_piston_meta_store_evictions_total", "Piston-meta packages evicted to stay within the budget.",
+                store.evictions());
+        writer.counter("switchboard_piston_meta_store_compactions_total", "Piston-meta store segments compacted away.",
+                store.compactions());
+        writer.counter("switchboard_piston_meta_store_checksum_failures_total",
+                "Stored piston-meta packages dropped because they no longer matched their checksum.", store.checksumFailures());
+    }
+
+    private static void assets(MetricsWriter writer) {
+        AssetStore.Stats stats = AssetStore.shared().stats();
+        writer.gauge("switchboard_asset_indexes", "Asset indexes read.", stats.indexes());
+        writer.gauge("switchboard_asset_object_references", "Object entries across the asset indexes read.", stats.references());
+        writer.gauge("switchboard_asset_objects_unique", "Distinct objects across the asset indexes read.", stats.unique());
+        writer.gauge("switchboard_asset_dedup_ratio", "Fraction of asset object references to an object referenced elsewhere.",
+                stats.dedupRatio());
+        writer.gauge("switchboard_asset_objects_stored", "Asset objects in the pack files.", stats.stored());
+        writer.gauge("switchboard_asset_pack_bytes", "Total size of the asset pack files.", stats.storedBytes());
+        writer.gauge("switchboard_asset_pack_max_bytes", "Cap on the total size of the asset pack files.",
+                AssetStore.shared().pack().maxBytes());
+        writer.counter("switchboard_asset_pack_corrupt_total",
+                "Stored asset objects dropped because they no longer matched their hash.", AssetStore.shared().pack().corrupt());
+    }
+
+    private static void payloads(MetricsWriter writer) {
+        PayloadStore.Stats stats = PayloadStore.shared().stats();
+        writer.gauge("switchboard_offheap_reserved_bytes", "Native memory reserved for pre-rendered response bodies.",
+                stats.reservedBytes());
+        writer.gauge("switchboard_offheap_live_bytes", "Bytes of pre-rendered response bodies still referenced.", stats.liveBytes());
+        writer.gauge("switchboard_offheap_max_bytes", "Cap on native memory for pre-rendered response bodies.", stats.maxBytes());
+        writer.gauge("switchboard_offheap_slabs", "Native memory slabs currently allocated.", stats.slabs());
+        writer.gauge("switchboard_offheap_payloads", "Pre-rendered response bodies held in native memory.", stats.payloads());
+        writer.counter("switchboard_offheap_rejections_total", "Response bodies kept on the heap because the cap was reached.",
+                stats.rejections());
+    }
+}
@@ -0,0 +1,83 @@
+package dev.railroadide.switchboard.metrics;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-bucket latency histogram. Every bucket is a {@link LongAdder}, so concurrent recording is lock-free and
+ * spread over striped cells instead of contending on a single counter.
+ */
+public class Histogram {
+    /**
+     * Default bucket upper bounds in milliseconds, roughly exponential from 1ms to 60s.
+     */
+    public static final long[] DEFAULT_BOUNDS_MILLIS = {
+            1, 2, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000, 60_000
+    };
+
+    private final long[] boundsNanos;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    public Histogram() {
+        this(DEFAULT_BOUNDS_MILLIS);
+    }
+
+    public Histogram(long[] boundsMillis) {
+        this.boundsNanos = Arrays.stream(boundsMillis).map(millis -> Duration.ofMillis(millis).toNanos()).sorted().toArray();
+        // One extra bucket for values above the highest bound (+Inf)
+        this.buckets = new LongAdder[boundsNanos.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int index = Arrays.binarySearch(boundsNanos, nanos);
+        if (index < 0)
+            index = -index - 1;
+
+        buckets[index].increment();
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    public void record(Duration duration) {
+        record(duration.toNanos());
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+
+        return new Snapshot(boundsNanos.clone(), counts, count.sum(), sumNanos.sum());
+    }
+
+    /**
+     * A point-in-time copy of the histogram. {@code counts} are per bucket (not cumulative) and have one more entry
+     * than {@code boundsNanos}, the last being the overflow bucket.
+     */
+    public record Snapshot(long[] boundsNanos, long[] counts, long count, long sumNanos) {
+        /**
+         * Estimates the value at the given quantile (0..1) as the upper bound of the bucket containing it.
+         */
+        public long quantileNanos(double quantile) {
+            if (count == 0)
+                return 0;
+
+            long target = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target)
+                    return i < boundsNanos.length ? boundsNanos[i] : Long.MAX_VALUE;
+            }
+
+            return Long.MAX_VALUE;
+        }
+    }
+}
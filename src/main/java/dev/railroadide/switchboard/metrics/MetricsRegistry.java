@@ -0,0 +1,70 @@
+package dev.railroadide.switchboard.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Holds the counters and histograms exposed on {@code /metrics} and renders them in the Prometheus text format.
+ * <p>
+ * Metrics are created on first use and live for the lifetime of the registry, so hot paths should keep the returned
+ * {@link LongAdder} or {@link Histogram} rather than looking it up per request. Values owned by other components
+ * (cache stats, JVM gauges, ...) are read at scrape time by collectors.
+ */
+public class MetricsRegistry {
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+    private final List<Consumer<MetricsWriter>> collectors = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param labels alternating label names and values
+     */
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, MetricsWriter.Type.COUNTER).children
+                .computeIfAbsent(MetricsWriter.labels(labels), _ -> new LongAdder());
+    }
+
+    /**
+     * @param labels alternating label names and values
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, MetricsWriter.Type.HISTOGRAM).children
+                .computeIfAbsent(MetricsWriter.labels(labels), _ -> new Histogram());
+    }
+
+    /**
+     * Registers a callback that writes metrics owned by other components on every scrape.
+     */
+    public void addCollector(Consumer<MetricsWriter> collector) {
+        collectors.add(collector);
+    }
+
+    public String scrape() {
+        var writer = new MetricsWriter();
+        families.forEach((name, family) -> family.children.forEach((labels, metric) -> {
+            switch (metric) {
+                case LongAdder counter -> writer.sample(name, family.help, family.type, labels, counter.sum());
+                case Histogram histogram -> writer.histogram(name, family.help, labels, histogram.snapshot());
+                default -> throw new IllegalStateException("Unknown metric type " + metric.getClass());
+            }
+        }));
+        collectors.forEach(collector -> collector.accept(writer));
+        return writer.render();
+    }
+
+    private Family family(String name, String help, MetricsWriter.Type type) {
+        Family family = families.computeIfAbsent(name, _ -> new Family(help, type));
+        if (family.type != type)
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+
+        return family;
+    }
+
+    private record Family(String help, MetricsWriter.Type type, Map<String, Object> children) {
+        private Family(String help, MetricsWriter.Type type) {
+            this(help, type, new ConcurrentHashMap<>());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package dev.railroadide.switchboard.metrics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects samples for one scrape and renders them in the Prometheus text exposition format (version 0.0.4). Samples
+ * of the same metric written by different sources are grouped under a single {@code # HELP}/{@code # TYPE} header.
+ */
+public class MetricsWriter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final Map<String, FamilySamples> families = new TreeMap<>();
+
+    /**
+     * @param labels alternating label names and values
+     */
+    public void counter(String name, String help, double value, String... labels) {
+        sample(name, help, Type.COUNTER, labels(labels), value);
+    }
+
+    /**
+     * @param labels alternating label names and values
+     */
+    public void gauge(String name, String help, double value, String... labels) {
+        sample(name, help, Type.GAUGE, labels(labels), value);
+    }
+
+    /**
+     * Writes a histogram in seconds, with cumulative {@code le} buckets as Prometheus expects.
+     *
+     * @param labels alternating label names and values
+     */
+    public void histogram(String name, String help, Histogram.Snapshot snapshot, String... labels) {
+        histogram(name, help, labels(labels), snapshot);
+    }
+
+    void histogram(String name, String help, String labels, Histogram.Snapshot snapshot) {
+        FamilySamples family = family(name, help, Type.HISTOGRAM);
+        long cumulative = 0;
+        long[] bounds = snapshot.boundsNanos();
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += snapshot.counts()[i];
+            family.lines.add(name + "_bucket" + withLabel(labels, "le", format(bounds[i] / 1e9)) + " " + cumulative);
+        }
+
+        family.lines.add(name + "_bucket" + withLabel(labels, "le", "+Inf") + " " + snapshot.count());
+        family.lines.add(name + "_sum" + labels + " " + format(snapshot.sumNanos() / 1e9));
+        family.lines.add(name + "_count" + labels + " " + snapshot.count());
+    }
+
+    void sample(String name, String help, Type type, String labels, double value) {
+        family(name, help, type).lines.add(name + labels + " " + format(value));
+    }
+
+    public String render() {
+        var builder = new StringBuilder();
+        families.forEach((name, family) -> {
+            builder.append("# HELP ").append(name).append(' ').append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            builder.append("# TYPE ").append(name).append(' ').append(family.type.name().toLowerCase(Locale.ROOT)).append('\n');
+            family.lines.forEach(line -> builder.append(line).append('\n'));
+        });
+
+        return builder.toString();
+    }
+
+    private FamilySamples family(String name, String help, Type type) {
+        FamilySamples family = families.computeIfAbsent(name, _ -> new FamilySamples(help, type, new ArrayList<>()));
+        if (family.type != type)
+            throw new IllegalArgumentException("Metric " + name + " was written as both " + family.type + " and " + type);
+
+        return family;
+    }
+
+    /**
+     * Renders label pairs as {@code {name="value",...}}, or an empty string when there are none.
+     */
+    static String labels(String... labels) {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("Labels must be name/value pairs.");
+        if (labels.length == 0)
+            return "";
+
+        var builder = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0)
+                builder.append(',');
+
+            builder.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+
+        return builder.append('}').toString();
+    }
+
+    private static String withLabel(String labels, String name, String value) {
+        String label = name + "=\"" + value + "\"";
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value))
+            return "NaN";
+        if (Double.isInfinite(value))
+            return value > 0 ? "+Inf" : "-Inf";
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return Long.toString((long) value);
+
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    enum Type {
+        COUNTER,
+        GAUGE,
+        HISTOGRAM
+    }
+
+    private record FamilySamples(String help, Type type, List<String> lines) {
+    }
+}
@@ -0,0 +1,185 @@
+package dev.railroadide.switchboard.metrics;
+
+import dev.railroadide.switchboard.Environment;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accounts heap allocation and CPU time to the route that caused them, and keeps the most recent slow or heavy requests
+ * in a bounded ring buffer for inspection.
+ * <p>
+ * Both are measured with the thread counters of {@link com.sun.management.ThreadMXBean} on the handling thread, so
+ * they are only available when the JVM supports them for that thread (some JDKs do not for virtual threads) and the
+ * request finishes on the thread it started on.
+ */
+public class RequestProfiler {
+    private static final int SAMPLE_CAPACITY = 128;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final Map<String, RouteStats> routes = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Sample> samples = new AtomicReferenceArray<>(SAMPLE_CAPACITY);
+    private final AtomicLong sampleCount = new AtomicLong();
+
+    public RequestProfiler() {
+        this.threads = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadMXBean
+                && threadMXBean.isThreadAllocatedMemorySupported() ? threadMXBean : null;
+        if (this.threads != null && !this.threads.isThreadAllocatedMemoryEnabled())
+            this.threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Snapshots the counters of the current thread at the start of a request.
+     */
+    public Probe begin() {
+        if (threads == null)
+            return new Probe(Thread.currentThread(), System.nanoTime(), -1, -1);
+
+        return new Probe(Thread.currentThread(), System.nanoTime(), threads.getCurrentThreadAllocatedBytes(), cpuTime());
+    }
+
+    /**
+     * Attributes the request started by {@code probe} to its route and samples it if it crossed the slow or heavy
+     * threshold.
+     */
+    public void end(Probe probe, String method, String route, String path, Map<String, String> pathParams,
+                    String query, int status) {
+        long durationNanos = System.nanoTime() - probe.startNanos;
+        long allocatedBytes = -1;
+        long cpuNanos = -1;
+        if (threads != null && probe.thread == Thread.currentThread()) {
+            allocatedBytes = delta(probe.allocatedBytes, threads.getCurrentThreadAllocatedBytes());
+            cpuNanos = delta(probe.cpuNanos, cpuTime());
+        }
+
+        routes.computeIfAbsent(method + " " + route, _ -> new RouteStats(method, route))
+                .record(durationNanos, allocatedBytes, cpuNanos);
+
+        boolean slow = durationNanos >= Environment.getSlowRequestThreshold().toNanos();
+        boolean heavy = allocatedBytes >= Environment.getHeavyRequestThresholdBytes();
+        if (slow || heavy) {
+            String reason = slow && heavy ? "slow,heavy" : slow ? "slow" : "heavy";
+            var sample = new Sample(Instant.now(), reason, method, route, path, Map.copyOf(pathParams), query, status,
+                    durationNanos / 1_000_000, cpuNanos < 0 ? -1 : cpuNanos / 1_000_000, allocatedBytes);
+            samples.set((int) (sampleCount.getAndIncrement() % SAMPLE_CAPACITY), sample);
+        }
+    }
+
+    /**
+     * Whether allocations can be measured on the calling thread.
+     */
+    public boolean isAllocationTrackingAvailable() {
+        return threads != null && threads.getCurrentThreadAllocatedBytes() >= 0;
+    }
+
+    public Collection<RouteStats> routes() {
+        return List.copyOf(routes.values());
+    }
+
+    /**
+     * Returns the sampled requests currently in the ring buffer, newest first.
+     */
+    public List<Sample> samples() {
+        long count = sampleCount.get();
+        int size = (int) Math.min(count, SAMPLE_CAPACITY);
+        List<Sample> result = new ArrayList<>(size);
+        for (long index = count - 1; index >= count - size; index--) {
+            Sample sample = samples.get((int) (index % SAMPLE_CAPACITY));
+            if (sample != null)
+                result.add(sample);
+        }
+
+        return result;
+    }
+
+    private long cpuTime() {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long delta(long before, long after) {
+        return before < 0 || after < 0 ? -1 : after - before;
+    }
+
+    /**
+     * Counter values captured on the handling thread when a request started; {@code -1} where unavailable.
+     */
+    public record Probe(Thread thread, long startNanos, long allocatedBytes, long cpuNanos) {
+        public Probe {
+            Objects.requireNonNull(thread, "thread");
+        }
+    }
+
+    public record Sample(Instant time, String reason, String method, String route, String path,
+                         Map<String, String> pathParams, String query, int status, long durationMillis,
+                         long cpuMillis, long allocatedBytes) {
+    }
+
+    public static class RouteStats {
+        private final String method;
+        private final String route;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder measured = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+        private final AtomicLong maxAllocatedBytes = new AtomicLong();
+
+        RouteStats(String method, String route) {
+            this.method = method;
+            this.route = route;
+        }
+
+        void record(long durationNanos, long allocated, long cpu) {
+            requests.increment();
+            if (allocated < 0)
+                return;
+
+            measured.increment();
+            allocatedBytes.add(allocated);
+            maxAllocatedBytes.accumulateAndGet(allocated, Math::max);
+            if (cpu >= 0)
+                cpuNanos.add(cpu);
+        }
+
+        public String method() {
+            return method;
+        }
+
+        public String route() {
+            return route;
+        }
+
+        public long allocatedBytes() {
+            return allocatedBytes.sum();
+        }
+
+        public Duration cpuTime() {
+            return Duration.ofNanos(cpuNanos.sum());
+        }
+
+        public Snapshot snapshot() {
+            long measuredRequests = measured.sum();
+            long allocated = allocatedBytes.sum();
+            return new Snapshot(method, route, requests.sum(), measuredRequests, allocated,
+                    measuredRequests == 0 ? 0 : allocated / measuredRequests, maxAllocatedBytes.get(),
+                    cpuNanos.sum() / 1_000_000);
+        }
+
+        /**
+         * @param measuredRequests the requests whose allocation could be measured; averages are over these only
+         */
+        public record Snapshot(String method, String route, long requests, long measuredRequests,
+                               long allocatedBytes, long averageAllocatedBytes, long maxAllocatedBytes,
+                               long cpuMillis) {
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package dev.railroadide.switchboard.metrics;
+
+/**
+ * Per-request breakdown of where handler time went, reported to clients in the {@code Server-Timing} response header.
+ * <p>
+ * A timing context is bound to the request thread for the duration of the handler. Code on that thread reports the
+ * phases it runs through {@link #record(Phase, long)}, which is a no-op when no request is being timed (background
+ * refreshes, hedged requests on other threads). Phases do not nest, so whatever handler time is not claimed by one of
+ * them is reported as {@link Phase#FILTER}.
+ */
+public final class ServerTiming {
+    public static final String HEADER = "Server-Timing";
+
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long startNanos = System.nanoTime();
+    private final long[] phaseNanos = new long[PHASES.length];
+
+    private ServerTiming() {
+    }
+
+    /**
+     * Starts timing a request on the current thread, replacing any context left behind by a previous request.
+     */
+    public static ServerTiming begin() {
+        var timing = new ServerTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    /**
+     * Unbinds the timing context from the current thread.
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Adds the time since {@code startNanos} (from {@link System#nanoTime()}) to the phase of the request being handled
+     * on this thread, if any.
+     */
+    public static void record(Phase phase, long startNanos) {
+        ServerTiming timing = CURRENT.get();
+        if (timing != null)
+            timing.phaseNanos[phase.ordinal()] += System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Renders the header value, e.g. {@code cache;dur=0.012;desc="Cache lookup", ..., total;dur=4.210}.
+     */
+    public String header() {
+        long total = System.nanoTime() - startNanos;
+        long claimed = 0;
+        for (Phase phase : PHASES) {
+            if (phase != Phase.FILTER)
+                claimed += phaseNanos[phase.ordinal()];
+        }
+
+        var header = new StringBuilder(192);
+        for (Phase phase : PHASES) {
+            long nanos = phase == Phase.FILTER ? Math.max(0, total - claimed) : phaseNanos[phase.ordinal()];
+            appendMetric(header, phase.metricName, nanos).append(";desc=\"").append(phase.description).append("\", ");
+        }
+
+        return appendMetric(header, "total", total).toString();
+    }
+
+    private static StringBuilder appendMetric(StringBuilder header, String name, long nanos) {
+        // Milliseconds with microsecond precision, without going through String.format on every request
+        long micros = nanos / 1_000;
+        long fraction = micros % 1_000;
+        header.append(name).append(";dur=").append(micros / 1_000).append('.');
+        if (fraction < 100)
+            header.append(fraction < 10 ? "00" : "0");
+
+        return header.append(fraction);
+    }
+
+    public enum Phase {
+        CACHE("cache", "Cache lookup"),
+        UPSTREAM("upstream", "Upstream fetch"),
+        PARSE("parse", "Metadata parsing"),
+        FILTER("filter", "Filtering and sorting"),
+        SERIALIZE("serialize", "JSON serialization");
+
+        private final String metricName;
+        private final String description;
+
+        Phase(String metricName, String description) {
+            this.metricName = metricName;
+            this.description = description;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package dev.railroadide.switchboard.minecraft;
+
+import dev.railroadide.switchboard.minecraft.pistonmeta.LaunchPlan;
+import dev.railroadide.switchboard.minecraft.pistonmeta.LaunchProfile;
+import dev.railroadide.switchboard.minecraft.pistonmeta.RenderedCommand;
+import dev.railroadide.switchboard.minecraft.pistonmeta.ResolvedLaunch;
+import dev.railroadide.switchboard.util.Cache;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resolves a version's classpath and arguments, or renders its launch command, for a {@link LaunchProfile}. Compiled
+ * {@link LaunchPlan}s are kept per version and resolutions per (version, profile); piston-meta packages never change
+ * once published, so neither goes stale.
+ */
+public final class LaunchResolver {
+    private static final Duration TTL = Duration.ofHours(6);
+
+    private static final Cache<String, LaunchPlan> PLANS = Cache.<String, LaunchPlan>builder("LaunchPlans")
+            .expireAfterWrite(TTL)
+            .maximumSize(256)
+            .build();
+    private static final Cache<Key, ResolvedLaunch> RESOLVED = Cache.<Key, ResolvedLaunch>builder("ResolvedLaunches")
+            .expireAfterWrite(TTL)
+            .maximumSize(4096)
+            .build();
+
+    private LaunchResolver() {
+    }
+
+    public static CompletableFuture<ResolvedLaunch> resolve(MinecraftVersion version, LaunchProfile profile) {
+        var key = new Key(version.id(), profile);
+        ResolvedLaunch resolved = RESOLVED.get(key);
+        if (resolved != null)
+            return CompletableFuture.completedFuture(resolved);
+
+        return plan(version).thenApply(plan -> RESOLVED.get(key, () -> plan.resolve(profile)));
+    }
+
+    /**
+     * Renders the version's launch command from its cached templates; see {@link LaunchPlan#render}.
+     */
+    public static CompletableFuture<RenderedCommand> render(MinecraftVersion version, LaunchProfile profile,
+                                                            Map<String, String> variables) {
+        return plan(version).thenApply(plan -> plan.render(profile, variables));
+    }
+
+    private static CompletableFuture<LaunchPlan> plan(MinecraftVersion version) {
+        LaunchPlan plan = PLANS.get(version.id());
+        if (plan != null)
+            return CompletableFuture.completedFuture(plan);
+
+        return version.requestPistonMeta().thenApply(versionPackage ->
+                PLANS.get(version.id(), () -> LaunchPlan.compile(version.id(), versionPackage)));
+    }
+
+    private record Key(String version, LaunchProfile profile) {
+    }
+}
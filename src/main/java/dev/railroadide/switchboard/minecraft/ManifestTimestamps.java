@@ -0,0 +1,144 @@
+package dev.railroadide.switchboard.minecraft;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Converts the manifest's {@code yyyy-MM-ddTHH:mm:ss+hh:mm} timestamps to and from UTC epoch seconds by reading and
+ * writing fixed character positions, avoiding the regex split and {@code DateTimeFormatter} of a general parser.
+ * Anything not in that exact shape falls back to {@link OffsetDateTime}/{@link LocalDateTime} parsing.
+ */
+final class ManifestTimestamps {
+    private static final int LOCAL_LENGTH = "yyyy-MM-ddTHH:mm:ss".length();
+
+    private ManifestTimestamps() {
+    }
+
+    static long parseEpochSecond(String text) {
+        if (text.length() < LOCAL_LENGTH || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':')
+            return parseSlow(text);
+
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month) || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59)
+            return parseSlow(text);
+
+        int offsetSeconds;
+        if (text.length() == LOCAL_LENGTH) {
+            offsetSeconds = 0;
+        } else if (text.length() == LOCAL_LENGTH + 1 && text.charAt(LOCAL_LENGTH) == 'Z') {
+            offsetSeconds = 0;
+        } else if (text.length() == LOCAL_LENGTH + 6 && text.charAt(LOCAL_LENGTH + 3) == ':'
+                && (text.charAt(LOCAL_LENGTH) == '+' || text.charAt(LOCAL_LENGTH) == '-')) {
+            int offsetHours = digits(text, LOCAL_LENGTH + 1, 2);
+            int offsetMinutes = digits(text, LOCAL_LENGTH + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0)
+                return parseSlow(text);
+
+            offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (text.charAt(LOCAL_LENGTH) == '-' ? -1 : 1);
+        } else {
+            return parseSlow(text);
+        }
+
+        return epochDay(year, month, day) * 86400L + hour * 3600L + minute * 60L + second - offsetSeconds;
+    }
+
+    /**
+     * Formats as {@code yyyy-MM-ddTHH:mm:ss} in UTC, the form {@link LocalDateTime} timestamps have always been
+     * served in.
+     */
+    static String format(long epochSecond) {
+        long epochDay = Math.floorDiv(epochSecond, 86400L);
+        int secondOfDay = (int) Math.floorMod(epochSecond, 86400L);
+
+        // Inverse of epochDay (Howard Hinnant's civil_from_days)
+        long shifted = epochDay + 719468;
+        long era = Math.floorDiv(shifted, 146097L);
+        int dayOfEra = (int) (shifted - era * 146097L);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999)
+            return toLocalDateTime(epochSecond).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+
+        char[] chars = new char[LOCAL_LENGTH];
+        putDigits(chars, 0, (int) year, 4);
+        chars[4] = '-';
+        putDigits(chars, 5, month, 2);
+        chars[7] = '-';
+        putDigits(chars, 8, day, 2);
+        chars[10] = 'T';
+        putDigits(chars, 11, secondOfDay / 3600, 2);
+        chars[13] = ':';
+        putDigits(chars, 14, secondOfDay / 60 % 60, 2);
+        chars[16] = ':';
+        putDigits(chars, 17, secondOfDay % 60, 2);
+        return new String(chars);
+    }
+
+    static LocalDateTime toLocalDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static long parseSlow(String text) {
+        try {
+            return OffsetDateTime.parse(text).toEpochSecond();
+        } catch (DateTimeParseException exception) {
+            return LocalDateTime.parse(text).toEpochSecond(ZoneOffset.UTC);
+        }
+    }
+
+    private static void putDigits(char[] chars, int start, int value, int length) {
+        for (int i = start + length - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int digits(String text, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    // Days from 1970-01-01 to the proleptic Gregorian date (Howard Hinnant's days_from_civil)
+    private static long epochDay(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
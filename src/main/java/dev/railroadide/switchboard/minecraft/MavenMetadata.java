@@ -0,0 +1,95 @@
+package dev.railroadide.switchboard.minecraft;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The parts of a Maven {@code maven-metadata.xml} the version services read: every listed version (in file order,
+ * which Maven keeps ascending) and the optional {@code latest}/{@code release} markers.
+ */
+public record MavenMetadata(List<String> versions, String latest, String release) {
+    /**
+     * Metadata for an ascending version list, with the markers derived the way Maven sets them: {@code latest} is the
+     * newest version and {@code release} the newest non-snapshot one.
+     */
+    public static MavenMetadata of(List<String> versions) {
+        String release = null;
+        for (int i = versions.size() - 1; i >= 0 && release == null; i--) {
+            if (!versions.get(i).endsWith("-SNAPSHOT"))
+                release = versions.get(i);
+        }
+
+        return new MavenMetadata(versions, versions.isEmpty() ? null : versions.getLast(), release);
+    }
+
+    public static MavenMetadata parse(byte[] xml) throws ParserConfigurationException, SAXException, IOException {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(false);
+        dbf.setExpandEntityReferences(false);
+        dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+
+        Document doc = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+        NodeList nodes = doc.getElementsByTagName("version");
+
+        List<String> versions = new ArrayList<>(nodes.getLength());
+        for (int i = 0; i < nodes.getLength(); i++) {
+            String version = nodes.item(i).getTextContent();
+            if (version != null && !version.isBlank()) {
+                versions.add(version.trim());
+            }
+        }
+
+        Node latest = doc.getElementsByTagName("latest").item(0);
+        Node release = doc.getElementsByTagName("release").item(0);
+        return new MavenMetadata(List.copyOf(versions),
+                latest != null ? latest.getTextContent() : null,
+                release != null ? release.getTextContent() : null);
+    }
+
+    public byte[] toXml(String groupId, String artifactId) {
+        var xml = new StringBuilder(64 + versions.size() * 40)
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata>\n");
+        element(xml, "  ", "groupId", groupId);
+        element(xml, "  ", "artifactId", artifactId);
+        xml.append("  <versioning>\n");
+        if (latest != null)
+            element(xml, "    ", "latest", latest);
+        if (release != null)
+            element(xml, "    ", "release", release);
+
+        xml.append("    <versions>\n");
+        for (String version : versions) {
+            element(xml, "      ", "version", version);
+        }
+
+        xml.append("    </versions>\n  </versioning>\n</metadata>\n");
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void element(StringBuilder xml, String indent, String name, String value) {
+        xml.append(indent).append('<').append(name).append('>');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<' -> xml.append("&lt;");
+                case '>' -> xml.append("&gt;");
+                case '&' -> xml.append("&amp;");
+                default -> xml.append(c);
+            }
+        }
+
+        xml.append("</").append(name).append(">\n");
+    }
+}
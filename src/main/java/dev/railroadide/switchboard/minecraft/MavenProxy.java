@@ -0,0 +1,289 @@
+package dev.railroadide.switchboard.minecraft;
+
+import dev.railroadide.switchboard.Environment;
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.ArtifactStore;
+import dev.railroadide.switchboard.http.MirrorSet;
+import dev.railroadide.switchboard.http.UpstreamHttpClient;
+import dev.railroadide.switchboard.util.Bulkhead;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * A read-through proxy in front of the Maven repositories the version services read from.
+ * <p>
+ * Released artifacts never change, so they are downloaded once, verified against the {@code .sha1} the repository
+ * publishes next to them, and kept under the cache directory with that checksum written alongside. The
+ * {@code maven-metadata.xml} of artifacts a version service tracks is rebuilt from the versions the service already
+ * holds instead of being fetched again. Anything else that can change (other metadata, snapshots, checksum files of
+ * artifacts not cached yet) and artifacts without a published checksum are streamed through uncached.
+ */
+public final class MavenProxy {
+    private static final Pattern PATH_SEGMENT = Pattern.compile("[A-Za-z0-9._+~-]+");
+    private static final Set<String> CHECKSUM_EXTENSIONS = Set.of("sha1", "md5", "sha256", "sha512");
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final MavenProxy SHARED = new MavenProxy(Switchboard.HTTP_CLIENT,
+            () -> Environment.getCacheLocation().resolve("maven"));
+
+    private static final LongAdder VERIFICATION_FAILURES = Switchboard.METRICS.counter("switchboard_maven_verification_failures_total",
+            "Downloaded Maven artifacts discarded because they did not match their published SHA-1.");
+
+    private final UpstreamHttpClient httpClient;
+    private final Supplier<Path> directory;
+    private final Map<String, Repository> repositories;
+    private final Map<String, MetadataSource> metadataSources = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Optional<Path>>> inFlight = new ConcurrentHashMap<>();
+
+    public MavenProxy(UpstreamHttpClient httpClient, Supplier<Path> directory) {
+        this.httpClient = httpClient;
+        this.directory = directory;
+        this.repositories = Map.of(
+                "forge", new Repository("forge", "Forge", Environment::getForgeMirrors),
+                "neoforged", new Repository("neoforged", "NeoForged Maven", () -> List.of(Environment.getNeoforgedMavenUrl())),
+                "fabric", new Repository("fabric", "Fabric Maven", () -> List.of(Environment.getFabricMavenUrl())));
+    }
+
+    public static MavenProxy shared() {
+        return SHARED;
+    }
+
+    public Optional<Repository> repository(String name) {
+        return Optional.ofNullable(repositories.get(name));
+    }
+
+    /**
+     * Serves the {@code maven-metadata.xml} of the artifact at {@code artifactPath} (e.g.
+     * {@code net/minecraftforge/forge}) in the repository from the given source rather than from upstream.
+     */
+    public void registerMetadata(String repository, String artifactPath, Supplier<MavenMetadata> metadata) {
+        int separator = artifactPath.lastIndexOf('/');
+        String groupId = artifactPath.substring(0, separator).replace('/', '.');
+        String artifactId = artifactPath.substring(separator + 1);
+        metadataSources.put(repository + "/" + artifactPath + "/maven-metadata.xml",
+                new MetadataSource(groupId, artifactId, metadata));
+    }
+
+    /**
+     * @return the metadata file (or one of its checksums) for the path if a version service provides it
+     */
+    public Optional<byte[]> metadata(Repository repository, String path) {
+        String extension = checksumExtension(path);
+        String metadataPath = extension == null ? path : path.substring(0, path.length() - extension.length() - 1);
+        MetadataSource source = metadataSources.get(repository.name() + "/" + metadataPath);
+        if (source == null)
+            return Optional.empty();
+
+        byte[] xml = source.render();
+        return Optional.of(extension == null ? xml : checksum(extension, xml).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return whether the path is a plain relative path that cannot escape the repository
+     */
+    public static boolean isValidPath(String path) {
+        if (path.isEmpty())
+            return false;
+
+        for (String segment : path.split("/", -1)) {
+            if (!PATH_SEGMENT.matcher(segment).matches() || segment.equals(".") || segment.equals(".."))
+                return false;
+        }
+
+        return true;
+    }
+
+    public Path path(Repository repository, String path) {
+        return directory.get().resolve(repository.name()).resolve(path);
+    }
+
+    /**
+     * @return whether the path names immutable content that may be cached once verified
+     */
+    public static boolean isCacheable(String path) {
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        return !fileName.startsWith("maven-metadata") && checksumExtension(path) == null && !path.contains("-SNAPSHOT/");
+    }
+
+    /**
+     * @return the SHA-1 of a cached file: the verified checksum stored next to an artifact, or the hash of a checksum
+     * file itself
+     */
+    public String sha1Of(Path cached) throws IOException {
+        Path checksum = cached.resolveSibling(cached.getFileName() + ".sha1");
+        if (Files.isRegularFile(checksum))
+            return Files.readString(checksum, StandardCharsets.US_ASCII).strip();
+
+        return checksum("sha1", Files.readAllBytes(cached));
+    }
+
+    /**
+     * Fetches a cacheable artifact into the cache, verifying it against the {@code .sha1} published next to it.
+     *
+     * @return the cached file, or empty if the repository publishes no checksum for it so it cannot be cached; fails
+     * with a {@link NoSuchElementException} if the repository does not have it
+     */
+    public CompletableFuture<Optional<Path>> fetch(Repository repository, String path) {
+        Path target = path(repository, path);
+        if (Files.isRegularFile(target))
+            return CompletableFuture.completedFuture(Optional.of(target));
+
+        String key = repository.name() + "/" + path;
+        var download = new CompletableFuture<Optional<Path>>();
+        CompletableFuture<Optional<Path>> existing = inFlight.putIfAbsent(key, download);
+        if (existing != null)
+            return existing;
+
+        EXECUTOR.execute(() -> {
+            try {
+                download.complete(repository.bulkhead().call(() -> download(repository, path, target)));
+            } catch (Throwable throwable) {
+                download.completeExceptionally(throwable);
+            } finally {
+                inFlight.remove(key, download);
+            }
+        });
+
+        return download;
+    }
+
+    /**
+     * Sends the request for the path straight to the repository; the caller must close the body.
+     */
+    public HttpResponse<InputStream> stream(Repository repository, String path) throws IOException, InterruptedException {
+        MirrorSet mirrors = repository.mirrors(httpClient);
+        return mirrors.send(httpClient.newRequest(repository.url(path)).build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private Optional<Path> download(Repository repository, String path, Path target) throws IOException, InterruptedException {
+        MirrorSet mirrors = repository.mirrors(httpClient);
+        HttpResponse<String> checksumResponse = mirrors.send(httpClient.newRequest(repository.url(path + ".sha1")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        // Checksum files are "<hash>" or "<hash>  <file name>"
+        String[] checksumParts = checksumResponse.statusCode() == 200 ? checksumResponse.body().strip().split("\\s+", 2) : new String[0];
+        String expected = checksumParts.length > 0 ? checksumParts[0].toLowerCase(Locale.ROOT) : null;
+        if (!ArtifactStore.isSha1(expected))
+            return Optional.empty();
+
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+        try {
+            HttpResponse<InputStream> response = stream(repository, path);
+            String actual;
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 404)
+                    throw new NoSuchElementException("No " + path + " in " + repository.name());
+                if (response.statusCode() != 200)
+                    throw new IOException("HTTP " + response.statusCode() + " downloading " + repository.url(path));
+
+                actual = ArtifactStore.writeHashed(body, temp);
+            }
+
+            if (!actual.equals(expected)) {
+                VERIFICATION_FAILURES.increment();
+                throw new IOException(repository.url(path) + " does not match its published SHA-1: expected " + expected +
+                        ", got " + actual);
+            }
+
+            Files.writeString(target.resolveSibling(target.getFileName() + ".sha1"), actual, StandardCharsets.US_ASCII);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            repository.storedBytes().add(Files.size(target));
+            return Optional.of(target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String checksumExtension(String path) {
+        int dot = path.lastIndexOf('.');
+        String extension = dot < 0 ? null : path.substring(dot + 1);
+        return extension != null && CHECKSUM_EXTENSIONS.contains(extension) ? extension : null;
+    }
+
+    private static String checksum(String extension, byte[] content) {
+        String algorithm = switch (extension) {
+            case "md5" -> "MD5";
+            case "sha256" -> "SHA-256";
+            case "sha512" -> "SHA-512";
+            default -> "SHA-1";
+        };
+
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance(algorithm).digest(content));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(algorithm + " is not available", exception);
+        }
+    }
+
+    /**
+     * @param name      the name used in {@code /maven/{repo}/...}
+     * @param upstream  the mirror set (and bulkhead) the repository is fetched through; shared with the version
+     *                  service reading the same repository, if any
+     * @param baseUrls  the repository's base URLs, tried in the mirror set's order
+     */
+    public record Repository(String name, String upstream, Supplier<List<String>> baseUrls) {
+        public String url(String path) {
+            return baseUrls.get().getFirst() + "/" + path;
+        }
+
+        MirrorSet mirrors(UpstreamHttpClient httpClient) {
+            return MirrorSet.forUpstream(upstream, httpClient, baseUrls.get());
+        }
+
+        Bulkhead bulkhead() {
+            // Gradle resolves many artifacts in parallel, so allow a deeper queue than the metadata fetches need
+            return Bulkhead.forSource("Maven " + name, 8, 256, Duration.ofSeconds(30));
+        }
+
+        LongAdder storedBytes() {
+            return Switchboard.METRICS.counter("switchboard_maven_stored_bytes_total",
+                    "Bytes of verified Maven artifacts written to the cache.", "repository", name);
+        }
+    }
+
+    private static final class MetadataSource {
+        private final String groupId;
+        private final String artifactId;
+        private final Supplier<MavenMetadata> metadata;
+        private volatile Rendered rendered;
+
+        private MetadataSource(String groupId, String artifactId, Supplier<MavenMetadata> metadata) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.metadata = metadata;
+        }
+
+        // Services hand out the same list until they refresh, so the XML only needs rebuilding when the list changes
+        private byte[] render() {
+            MavenMetadata current = metadata.get();
+            Rendered cached = rendered;
+            if (cached != null && cached.metadata().versions() == current.versions() &&
+                    Objects.equals(cached.metadata().latest(), current.latest()) &&
+                    Objects.equals(cached.metadata().release(), current.release()))
+                return cached.xml();
+
+            byte[] xml = current.toXml(groupId, artifactId);
+            rendered = new Rendered(current, xml);
+            return xml;
+        }
+    }
+
+    private record Rendered(MavenMetadata metadata, byte[] xml) {
+    }
+}
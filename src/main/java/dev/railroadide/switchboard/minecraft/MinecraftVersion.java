@@ -1,62 +1,83 @@
 package dev.railroadide.switchboard.minecraft;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import dev.railroadide.switchboard.Environment;
 import dev.railroadide.switchboard.Switchboard;
-import dev.railroadide.switchboard.minecraft.pistonmeta.VersionPackage;
-import dev.railroadide.switchboard.util.FileUtils;
+import dev.railroadide.switchboard.http.ArtifactStore;
+import dev.railroadide.switchboard.minecraft.assets.AssetStore;
+import dev.railroadide.switchboard.http.MirrorSet;
+import dev.railroadide.switchboard.jfr.MetadataParseEvent;
+import dev.railroadide.switchboard.jfr.PistonMetaLoadEvent;
+import dev.railroadide.switchboard.minecraft.pistonmeta.*;
+import dev.railroadide.switchboard.util.Bulkhead;
+import dev.railroadide.switchboard.util.PackStore;
 import org.jetbrains.annotations.NotNull;
 
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.io.*;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 
 public final class MinecraftVersion implements Comparable<MinecraftVersion> {
-    private static final String MINECRAFT_VERSIONS_URL = "https://launchermeta.mojang.com/mc/game/version_manifest.json";
+    private static final String MINECRAFT_VERSIONS_PATH = "/mc/game/version_manifest.json";
+    public static final String EVENT_TOPIC = "minecraft";
 
-    private static final List<MinecraftVersion> MINECRAFT_VERSIONS = new ArrayList<>();
-    private static MinecraftVersion latestStable;
-    private static MinecraftVersion latestSnapshot;
+    // Replaced wholesale on every manifest refresh so readers never observe a half-populated list
+    private static volatile Manifest manifest = Manifest.EMPTY;
+    private static final VersionRevisionLog<MinecraftVersion> REVISION_LOG = new VersionRevisionLog<>();
     private final String id;
     private final VersionType type;
     private final String url;
-    private final LocalDateTime time;
-    private final LocalDateTime releaseTime;
-
-    private final transient Path pistonMetaPath;
-
-    public MinecraftVersion(String id, VersionType type, String url, LocalDateTime time, LocalDateTime releaseTime) {
+    // UTC epoch seconds
+    private final long time;
+    private final long releaseTime;
+
+    private static final Bulkhead PISTON_META_BULKHEAD = Bulkhead.forSource("PistonMeta");
+    private static final PackStore PISTON_META_STORE = new PackStore("piston-meta", MinecraftVersion::pistonMetaDirectory,
+            Environment::getPistonMetaCacheBytes, 16L * 1024 * 1024);
+    private static final LongAdder PISTON_META_DISK_HITS = Switchboard.METRICS.counter("switchboard_piston_meta_requests_total",
+            "Piston meta lookups by where the package was read from.", "source", "disk");
+    private static final LongAdder PISTON_META_DOWNLOADS = Switchboard.METRICS.counter("switchboard_piston_meta_requests_total",
+            "Piston meta lookups by where the package was read from.", "source", "upstream");
+
+    public MinecraftVersion(String id, VersionType type, String url, long time, long releaseTime) {
         this.id = id;
         this.type = type;
         this.url = url;
         this.time = time;
         this.releaseTime = releaseTime;
+    }
 
-        this.pistonMetaPath = Environment.getCacheLocation().resolve("piston-meta").resolve(this.id + ".json");
+    public MinecraftVersion(String id, VersionType type, String url, LocalDateTime time, LocalDateTime releaseTime) {
+        this(id, type, url, ManifestTimestamps.toEpochSecond(time), ManifestTimestamps.toEpochSecond(releaseTime));
     }
 
     public MinecraftVersion getPreviousVersion() {
-        int index = MINECRAFT_VERSIONS.indexOf(this);
-        if (index == -1 || index == MINECRAFT_VERSIONS.size() - 1)
+        List<MinecraftVersion> versions = manifest.versions();
+        int index = versions.indexOf(this);
+        if (index == -1 || index == versions.size() - 1)
             return null;
 
-        return MINECRAFT_VERSIONS.get(index + 1);
+        return versions.get(index + 1);
     }
 
     public MinecraftVersion getNextVersion() {
-        int index = MINECRAFT_VERSIONS.indexOf(this);
+        List<MinecraftVersion> versions = manifest.versions();
+        int index = versions.indexOf(this);
         if (index <= 0)
             return null;
 
-        return MINECRAFT_VERSIONS.get(index - 1);
+        return versions.get(index - 1);
     }
 
     public static List<MinecraftVersion> getVersionsAfter(MinecraftVersion minecraftVersion) {
@@ -64,11 +85,12 @@ public final class MinecraftVersion implements Comparable<MinecraftVersion> {
     }
 
     public static List<MinecraftVersion> getVersionsAfter(MinecraftVersion minecraftVersion, boolean inclusive) {
-        int index = MINECRAFT_VERSIONS.indexOf(minecraftVersion);
-        if (index == -1 || index == MINECRAFT_VERSIONS.size() - 1)
+        List<MinecraftVersion> versions = manifest.versions();
+        int index = versions.indexOf(minecraftVersion);
+        if (index == -1 || index == versions.size() - 1)
             return List.of();
 
-        return List.copyOf(MINECRAFT_VERSIONS.subList(0, inclusive ? index + 1 : index));
+        return List.copyOf(versions.subList(0, inclusive ? index + 1 : index));
     }
 
     public static MinecraftVersion determineBestFit(List<MinecraftVersion> versions) {
@@ -79,90 +101,342 @@ public final class MinecraftVersion implements Comparable<MinecraftVersion> {
     }
 
     public static void requestMinecraftVersions() {
-        HttpRequest request;
+        HttpRequest request = Switchboard.HTTP_CLIENT.newRequest(Environment.getMojangMirrors().getFirst() + MINECRAFT_VERSIONS_PATH).build();
+        mojangMirrors().sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()).thenAcceptAsync(response -> {
+            // Parsed as the body arrives rather than buffered into a String first
+            try (InputStream body = response.body()) {
+                if (response.statusCode() != 200)
+                    throw new RuntimeException("Failed to request Minecraft versions: HTTP " + response.statusCode());
+
+                loadManifest(new InputStreamReader(body, StandardCharsets.UTF_8));
+            } catch (IOException exception) {
+                throw new UncheckedIOException("Failed to read Minecraft version manifest", exception);
+            }
+        });
+    }
+
+    /**
+     * Replaces the known versions with those in a Mojang version manifest, announcing any new ones.
+     */
+    public static void loadManifest(String json) {
         try {
-            request = HttpRequest.newBuilder().GET().uri(new URI(MINECRAFT_VERSIONS_URL)).build();
-        } catch (URISyntaxException exception) {
-            throw new RuntimeException("Failed to create HTTP request for Minecraft versions", exception);
+            loadManifest(new StringReader(json));
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Failed to parse Minecraft version manifest", exception);
         }
+    }
 
-        Switchboard.HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenAcceptAsync(response -> {
-            if (response.statusCode() != 200)
-                throw new RuntimeException("Failed to request Minecraft versions: HTTP " + response.statusCode());
-
-            String json = response.body();
-            if (json.isBlank())
-                throw new RuntimeException("Failed to request Minecraft versions: Empty JSON response");
-
-            JsonObject object = Switchboard.GSON.fromJson(json, JsonObject.class);
-
-            List<MinecraftVersion> versions = new ArrayList<>();
-            JsonArray versionsArray = object.getAsJsonArray("versions");
-            for (JsonElement jsonElement : versionsArray) {
-                JsonObject versionObject = jsonElement.getAsJsonObject();
-                if (!versionObject.has("id") || !versionObject.has("type") || !versionObject.has("url") || !versionObject.has("time") || !versionObject.has("releaseTime")) {
-                    Switchboard.LOGGER.warn("Skipping Minecraft version due to missing fields: " + versionObject);
-                    continue;
+    /**
+     * Streams a Mojang version manifest, replacing the known versions with its entries and announcing any new ones.
+     * Versions whose entry is unchanged since the last load are reused rather than re-created.
+     */
+    public static void loadManifest(Reader reader) throws IOException {
+        var parseEvent = new MetadataParseEvent();
+        parseEvent.begin();
+        var counting = new CountingReader(reader);
+        Manifest previous = manifest;
+
+        List<MinecraftVersion> versions = new ArrayList<>(previous.versions().size() + 16);
+        String latestStableId = null;
+        String latestSnapshotId = null;
+
+        var in = new JsonReader(counting);
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "latest" -> {
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "release" -> latestStableId = in.nextString();
+                            case "snapshot" -> latestSnapshotId = in.nextString();
+                            default -> in.skipValue();
+                        }
+                    }
+                    in.endObject();
                 }
-
-                String id = versionObject.get("id").getAsString();
-                var type = VersionType.fromString(versionObject.get("type").getAsString());
-                if (type.isEmpty()) {
-                    Switchboard.LOGGER.warn("Unknown Minecraft version type: " + versionObject.get("type").getAsString());
-                    continue;
+                case "versions" -> {
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        MinecraftVersion version = readManifestEntry(in, previous);
+                        if (version != null)
+                            versions.add(version);
+                    }
+                    in.endArray();
                 }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (versions.isEmpty())
+            throw new IOException("Minecraft version manifest lists no versions");
+
+        parseEvent.complete("Mojang manifest", counting.count(), versions.size());
+        boolean initial;
+        Optional<VersionRevisionLog.Change<MinecraftVersion>> change;
+        // Published under the log's own lock, so a delta read from the log is never ahead of the manifest
+        synchronized (REVISION_LOG) {
+            initial = REVISION_LOG.isEmpty();
+            change = REVISION_LOG.update(versions);
+            manifest = Manifest.of(versions, latestStableId, latestSnapshotId, REVISION_LOG.revision());
+        }
+        change.ifPresent(recorded -> {
+            if (!initial)
+                recorded.added().forEach(version -> Switchboard.EVENT_BUS.publish(EVENT_TOPIC, version));
+        });
+    }
 
-                String url = versionObject.get("url").getAsString();
-                String time = versionObject.get("time").getAsString().split("\\+")[0]; // Remove timezone (e.g. +00:00)
-                String releaseTime = versionObject.get("releaseTime").getAsString().split("\\+")[0]; // Remove timezone (e.g. +00:00)
-                versions.add(new MinecraftVersion(id, type.orElseThrow(), url, LocalDateTime.parse(time), LocalDateTime.parse(releaseTime)));
+    private static MinecraftVersion readManifestEntry(JsonReader in, Manifest previous) throws IOException {
+        String id = null;
+        String typeName = null;
+        String url = null;
+        String time = null;
+        String releaseTime = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> id = in.nextString();
+                case "type" -> typeName = in.nextString();
+                case "url" -> url = in.nextString();
+                case "time" -> time = in.nextString();
+                case "releaseTime" -> releaseTime = in.nextString();
+                default -> in.skipValue();
             }
+        }
+        in.endObject();
+
+        if (id == null || typeName == null || url == null || time == null || releaseTime == null) {
+            Switchboard.LOGGER.warn("Skipping Minecraft version due to missing fields: " + id);
+            return null;
+        }
 
-            MINECRAFT_VERSIONS.clear();
-            MINECRAFT_VERSIONS.addAll(versions);
+        var type = VersionType.fromString(typeName);
+        if (type.isEmpty()) {
+            Switchboard.LOGGER.warn("Unknown Minecraft version type: " + typeName);
+            return null;
+        }
 
-            JsonObject latestObject = object.getAsJsonObject("latest");
-            String latestStableId = latestObject.get("release").getAsString();
-            String latestSnapshotId = latestObject.get("snapshot").getAsString();
+        long timeEpochSecond = ManifestTimestamps.parseEpochSecond(time);
+        long releaseTimeEpochSecond = ManifestTimestamps.parseEpochSecond(releaseTime);
 
-            latestStable = MINECRAFT_VERSIONS.stream()
-                    .filter(version -> version.id.equals(latestStableId))
-                    .findFirst()
-                    .orElse(null);
+        MinecraftVersion existing = previous.byId().get(id);
+        if (existing != null && existing.type == type.get() && existing.url.equals(url)
+                && existing.time == timeEpochSecond && existing.releaseTime == releaseTimeEpochSecond)
+            return existing;
 
-            latestSnapshot = MINECRAFT_VERSIONS.stream()
-                    .filter(version -> version.id.equals(latestSnapshotId))
-                    .findFirst()
-                    .orElse(null);
-        });
+        return new MinecraftVersion(id, type.get(), url, timeEpochSecond, releaseTimeEpochSecond);
+    }
+
+    private static MirrorSet mojangMirrors() {
+        return MirrorSet.forUpstream("Mojang", Switchboard.HTTP_CLIENT, Environment.getMojangMirrors());
     }
 
     public CompletableFuture<VersionPackage> requestPistonMeta() {
-        if (Files.exists(this.pistonMetaPath))
-            return CompletableFuture.supplyAsync(() -> VersionPackage.fromFile(this.pistonMetaPath));
+        boolean stored;
+        try {
+            stored = PISTON_META_STORE.contains(this.id);
+        } catch (IOException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+
+        if (stored) {
+            PISTON_META_DISK_HITS.increment();
+            return CompletableFuture.supplyAsync(() -> loadPistonMeta(false));
+        }
+
+        PISTON_META_DOWNLOADS.increment();
 
         CompletableFuture<VersionPackage> future = new CompletableFuture<>();
-        future.completeAsync(() -> {
-            try {
-                FileUtils.writeUrlBody(this.url, this.pistonMetaPath);
-                return VersionPackage.fromFile(this.pistonMetaPath);
-            } catch (Exception exception) {
-                throw new RuntimeException("Failed to request Piston meta for Minecraft version " + this.id, exception);
-            }
-        });
+        future.completeAsync(() -> loadPistonMeta(true));
 
         return future;
     }
 
+    private VersionPackage loadPistonMeta(boolean download) {
+        var event = new PistonMetaLoadEvent();
+        event.begin();
+        String outcome = "failure";
+        try {
+            // Evicted or dropped for a bad checksum since the caller looked, so it is downloaded after all
+            VersionPackage versionPackage = download ? null : PISTON_META_STORE.read(this.id, stored -> {
+                event.bytes = stored.remaining();
+                return VersionPackage.fromBuffer(stored);
+            }).orElse(null);
+            if (versionPackage == null) {
+                download = true;
+                byte[] body = PISTON_META_BULKHEAD.call(this::downloadPistonMeta);
+                event.bytes = body.length;
+                versionPackage = VersionPackage.fromBuffer(ByteBuffer.wrap(body));
+            }
+
+            pistonMetaLoaded(this.id, versionPackage);
+            outcome = "success";
+            return versionPackage;
+        } catch (Exception exception) {
+            throw new RuntimeException("Failed to request Piston meta for Minecraft version " + this.id, exception);
+        } finally {
+            if (event.shouldCommit()) {
+                event.version = this.id;
+                event.source = download ? "upstream" : "disk";
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    private byte[] downloadPistonMeta() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = mojangMirrors().send(Switchboard.HTTP_CLIENT.newRequest(this.url).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200)
+            throw new IOException("HTTP " + response.statusCode() + " downloading " + this.url);
+
+        // Package URLs carry the package's SHA-1 (.../packages/<sha1>/<id>.json), so a damaged body never gets stored
+        byte[] body = response.body();
+        String expected = packageSha1(this.url);
+        if (expected != null) {
+            String actual = HexFormat.of().formatHex(sha1(body));
+            if (!actual.equalsIgnoreCase(expected))
+                throw new IOException("Piston meta from " + this.url + " does not match its SHA-1: got " + actual);
+        }
+
+        PISTON_META_STORE.put(this.id, body);
+        return body;
+    }
+
+    private static String packageSha1(String url) {
+        int start = url.indexOf("/packages/");
+        if (start < 0)
+            return null;
+
+        start += "/packages/".length();
+        int end = url.indexOf('/', start);
+        String sha1 = end < 0 ? null : url.substring(start, end);
+        return ArtifactStore.isSha1(sha1) ? sha1 : null;
+    }
+
+    private static byte[] sha1(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(bytes);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Loads every package already in the piston-meta store, skipping any that fail to parse, so the
+     * {@link PistonMetaIndex}, {@link ArtifactStore} and {@link AssetStore} know about them without waiting for a request.
+     * Packages cached as one JSON file each by earlier versions are moved into the store first.
+     *
+     * @return the number of packages loaded
+     */
+    public static int loadCachedPistonMeta() {
+        importLegacyPistonMeta();
+
+        int loaded = 0;
+        try {
+            for (String id : PISTON_META_STORE.keys()) {
+                try {
+                    Optional<VersionPackage> stored = PISTON_META_STORE.read(id, VersionPackage::fromBuffer);
+                    if (stored.isPresent()) {
+                        pistonMetaLoaded(id, stored.get());
+                        loaded++;
+                    }
+                } catch (RuntimeException exception) {
+                    Switchboard.LOGGER.warn("Skipping unreadable piston meta " + id + ": " + exception.getMessage());
+                }
+            }
+        } catch (IOException exception) {
+            Switchboard.LOGGER.error("Failed to open the piston meta store in " + PISTON_META_STORE.directory(), exception);
+        }
+
+        return loaded;
+    }
+
+    private static void importLegacyPistonMeta() {
+        Path directory = pistonMetaDirectory();
+        if (!Files.isDirectory(directory))
+            return;
+
+        List<Path> imported = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().endsWith(".json")).toList()) {
+                String fileName = file.getFileName().toString();
+                PISTON_META_STORE.put(fileName.substring(0, fileName.length() - ".json".length()), Files.readAllBytes(file));
+                imported.add(file);
+            }
+        } catch (IOException exception) {
+            Switchboard.LOGGER.error("Failed to import cached piston meta from " + directory, exception);
+        }
+
+        if (imported.isEmpty())
+            return;
+
+        // The files are the only copy until the store is on disk, so a crash before this must not have deleted any
+        try {
+            PISTON_META_STORE.flush();
+            for (Path file : imported) {
+                Files.delete(file);
+            }
+        } catch (IOException exception) {
+            Switchboard.LOGGER.error("Failed to remove imported piston meta from " + directory, exception);
+        }
+    }
+
+    private static void pistonMetaLoaded(String id, VersionPackage versionPackage) {
+        PistonMetaIndex.shared().add(id, versionPackage);
+
+        ArtifactStore artifacts = ArtifactStore.shared();
+        Downloads downloads = versionPackage.downloads();
+        if (downloads != null) {
+            for (Download download : new Download[]{downloads.client(), downloads.clientMappings(), downloads.server(), downloads.serverMappings()}) {
+                if (download != null)
+                    artifacts.register(download.sha1(), download.size(), download.url());
+            }
+        }
+
+        if (versionPackage.libraries() != null) {
+            for (Library library : versionPackage.libraries()) {
+                Download artifact = library.artifact();
+                if (artifact != null)
+                    artifacts.register(artifact.sha1(), artifact.size(), artifact.url());
+            }
+        }
+
+        AssetIndex assetIndex = versionPackage.assetIndex();
+        if (assetIndex != null) {
+            artifacts.register(assetIndex.sha1(), assetIndex.size(), assetIndex.url());
+            AssetStore.shared().registerIndex(assetIndex);
+        }
+
+        Logging logging = versionPackage.logging();
+        if (logging != null && logging.client() != null && logging.client().file() != null) {
+            Logging.Client.LoggingFile file = logging.client().file();
+            artifacts.register(file.sha1(), file.size(), file.url());
+        }
+    }
+
+    public static PackStore pistonMetaStore() {
+        return PISTON_META_STORE;
+    }
+
+    public static Path pistonMetaDirectory() {
+        return Environment.getCacheLocation().resolve("piston-meta");
+    }
+
     public static MinecraftVersion getLatestStableVersion() {
-        return latestStable;
+        return manifest.latestStable();
     }
 
     public static MinecraftVersion getLatestSnapshotVersion() {
-        return latestSnapshot;
+        return manifest.latestSnapshot();
     }
 
     public static Optional<MinecraftVersion> getLatestVersion() {
+        Manifest current = manifest;
+        MinecraftVersion latestStable = current.latestStable();
+        MinecraftVersion latestSnapshot = current.latestSnapshot();
         if (latestStable == null && latestSnapshot == null)
             return Optional.empty();
 
@@ -172,16 +446,17 @@ public final class MinecraftVersion implements Comparable<MinecraftVersion> {
         if (latestSnapshot == null)
             return Optional.of(latestStable);
 
-        return Optional.of(latestStable.releaseTime.isAfter(latestSnapshot.releaseTime) ? latestStable : latestSnapshot);
+        return Optional.of(latestStable.releaseTime > latestSnapshot.releaseTime ? latestStable : latestSnapshot);
     }
 
     public static Optional<MinecraftVersion> getLatestVersion(VersionType type) {
         return switch (type) {
-            case RELEASE -> Optional.ofNullable(latestStable);
-            case SNAPSHOT -> Optional.ofNullable(latestSnapshot);
+            case RELEASE -> Optional.ofNullable(manifest.latestStable());
+            case SNAPSHOT -> Optional.ofNullable(manifest.latestSnapshot());
             case OLD_BETA, OLD_ALPHA -> {
-                for (int i = MINECRAFT_VERSIONS.size() - 1; i >= 0; i--) {
-                    MinecraftVersion version = MINECRAFT_VERSIONS.get(i);
+                List<MinecraftVersion> versions = manifest.versions();
+                for (int i = versions.size() - 1; i >= 0; i--) {
+                    MinecraftVersion version = versions.get(i);
                     if (version.type == type)
                         yield Optional.of(version);
                 }
@@ -192,31 +467,31 @@ public final class MinecraftVersion implements Comparable<MinecraftVersion> {
     }
 
     public static Optional<MinecraftVersion> fromId(String id) {
-        return MINECRAFT_VERSIONS.stream()
-                .filter(version -> version.id.equals(id))
-                .findFirst();
+        return Optional.ofNullable(manifest.byId().get(id));
     }
 
     public static boolean isLatest(MinecraftVersion mcVersion) {
-        return mcVersion.equals(latestStable) || mcVersion.equals(latestSnapshot);
+        Manifest current = manifest;
+        return mcVersion.equals(current.latestStable()) || mcVersion.equals(current.latestSnapshot());
     }
 
     private static Optional<MinecraftVersion> findClosestRelease(MinecraftVersion minecraftVersion) {
         if (minecraftVersion.isRelease())
             return Optional.of(minecraftVersion);
 
-        int index = MINECRAFT_VERSIONS.indexOf(minecraftVersion);
+        List<MinecraftVersion> versions = manifest.versions();
+        int index = versions.indexOf(minecraftVersion);
         if (index == -1)
             return Optional.empty();
 
         for (int i = index - 1; i >= 0; i--) {
-            MinecraftVersion version = MINECRAFT_VERSIONS.get(i);
+            MinecraftVersion version = versions.get(i);
             if (version.isRelease())
                 return Optional.of(version);
         }
 
-        for (int i = index + 1; i < MINECRAFT_VERSIONS.size(); i++) {
-            MinecraftVersion version = MINECRAFT_VERSIONS.get(i);
+        for (int i = index + 1; i < versions.size(); i++) {
+            MinecraftVersion version = versions.get(i);
             if (version.isRelease())
                 return Optional.of(version);
         }
@@ -237,7 +512,26 @@ public final class MinecraftVersion implements Comparable<MinecraftVersion> {
     }
 
     public static List<MinecraftVersion> getVersions() {
-        return List.copyOf(MINECRAFT_VERSIONS);
+        return manifest.versions();
+    }
+
+    public static long getRevision() {
+        return REVISION_LOG.revision();
+    }
+
+    public static VersionSnapshot<MinecraftVersion> getVersionsWithRevision() {
+        Manifest current = manifest;
+        return new VersionSnapshot<>(current.revision(), current.versions());
+    }
+
+    public static VersionDelta<MinecraftVersion> getVersionsSince(long revision) {
+        VersionDelta<MinecraftVersion> delta = REVISION_LOG.since(revision);
+        if (!delta.resync())
+            return delta;
+
+        // The resync comes from one manifest, so its versions and revision always belong together
+        Manifest current = manifest;
+        return VersionDelta.resync(current.revision(), current.versions());
     }
 
     public boolean isRelease() {
@@ -266,13 +560,13 @@ public final class MinecraftVersion implements Comparable<MinecraftVersion> {
                 "id=" + id + ", " +
                 "type=" + type + ", " +
                 "url=" + url + ", " +
-                "time=" + time + ", " +
-                "releaseTime=" + releaseTime + ']';
+                "time=" + time() + ", " +
+                "releaseTime=" + releaseTime() + ']';
     }
 
     @Override
     public int compareTo(@NotNull MinecraftVersion other) {
-        return this.releaseTime.compareTo(other.releaseTime);
+        return Long.compare(this.releaseTime, other.releaseTime);
     }
 
     public String id() {
@@ -288,10 +582,18 @@ public final class MinecraftVersion implements Comparable<MinecraftVersion> {
     }
 
     public LocalDateTime time() {
-        return time;
+        return ManifestTimestamps.toLocalDateTime(time);
     }
 
     public LocalDateTime releaseTime() {
+        return ManifestTimestamps.toLocalDateTime(releaseTime);
+    }
+
+    public long timeEpochSecond() {
+        return time;
+    }
+
+    public long releaseTimeEpochSecond() {
         return releaseTime;
     }
 
@@ -303,8 +605,8 @@ public final class MinecraftVersion implements Comparable<MinecraftVersion> {
         return Objects.equals(this.id, that.id) &&
                 Objects.equals(this.type, that.type) &&
                 Objects.equals(this.url, that.url) &&
-                Objects.equals(this.time, that.time) &&
-                Objects.equals(this.releaseTime, that.releaseTime);
+                this.time == that.time &&
+                this.releaseTime == that.releaseTime;
     }
 
     @Override
@@ -312,6 +614,57 @@ public final class MinecraftVersion implements Comparable<MinecraftVersion> {
         return Objects.hash(id, type, url, time, releaseTime);
     }
 
+    /**
+     * One loaded manifest: the versions newest first, indexed by id, the latest release and snapshot, and the revision
+     * the versions were recorded under.
+     */
+    private record Manifest(List<MinecraftVersion> versions, Map<String, MinecraftVersion> byId,
+                            MinecraftVersion latestStable, MinecraftVersion latestSnapshot, long revision) {
+        private static final Manifest EMPTY = new Manifest(List.of(), Map.of(), null, null, 0);
+
+        private static Manifest of(List<MinecraftVersion> versions, String latestStableId, String latestSnapshotId,
+                                   long revision) {
+            Map<String, MinecraftVersion> byId = HashMap.newHashMap(versions.size());
+            for (MinecraftVersion version : versions) {
+                byId.putIfAbsent(version.id, version);
+            }
+
+            return new Manifest(List.copyOf(versions), Collections.unmodifiableMap(byId),
+                    latestStableId == null ? null : byId.get(latestStableId),
+                    latestSnapshotId == null ? null : byId.get(latestSnapshotId), revision);
+        }
+    }
+
+    private static final class CountingReader extends FilterReader {
+        private long count;
+
+        private CountingReader(Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1)
+                count++;
+
+            return read;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0)
+                count += read;
+
+            return read;
+        }
+
+        private long count() {
+            return count;
+        }
+    }
+
     public enum VersionType {
         RELEASE,
         SNAPSHOT,
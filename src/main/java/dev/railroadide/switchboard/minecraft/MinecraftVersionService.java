@@ -1,48 +1,62 @@
 package dev.railroadide.switchboard.minecraft;
 
-import java.net.http.HttpClient;
+import dev.railroadide.switchboard.Environment;
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.UpstreamHttpClient;
+import dev.railroadide.switchboard.jfr.CacheRefreshEvent;
+import dev.railroadide.switchboard.metrics.DefaultCollectors;
+import dev.railroadide.switchboard.metrics.ServerTiming;
+import dev.railroadide.switchboard.util.Bulkhead;
+
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 public abstract class MinecraftVersionService<T> {
-    protected static final Duration DEFAULT_HTTP_TIMEOUT = Duration.ofSeconds(20);
-
-    protected final HttpClient httpClient;
+    protected final String serviceName;
+    protected final UpstreamHttpClient httpClient;
     protected final Duration ttl;
-    protected final String userAgent;
+    protected final Bulkhead bulkhead;
+
+    private final LongAdder cacheHits;
+    private final LongAdder cacheMisses;
+    private final LongAdder cacheRefreshes;
+    private final LongAdder staleResponses;
 
     protected final Map<String, CacheEntry<List<T>>> cache = new ConcurrentHashMap<>();
+    protected final VersionRevisionLog<T> revisionLog = new VersionRevisionLog<>();
 
     public MinecraftVersionService(String serviceName) {
-        this(serviceName, Duration.ofHours(6), serviceName + " VersionService/1.0 (+https://railroadide.dev)", DEFAULT_HTTP_TIMEOUT);
+        this(serviceName, Environment.getVersionCacheTtl());
     }
 
     public MinecraftVersionService(String serviceName, Duration ttl) {
-        this(serviceName, ttl, serviceName + " VersionService/1.0 (+https://railroadide.dev)", DEFAULT_HTTP_TIMEOUT);
+        this(serviceName, ttl, Switchboard.HTTP_CLIENT);
     }
 
-    public MinecraftVersionService(String serviceName, Duration ttl, String userAgent, HttpClient httpClient) {
+    public MinecraftVersionService(String serviceName, Duration ttl, UpstreamHttpClient httpClient) {
+        this.serviceName = serviceName;
         this.ttl = Objects.requireNonNullElse(ttl, Duration.ofHours(6));
-        this.userAgent = Objects.requireNonNullElse(userAgent, serviceName + " VersionService/1.0");
-        this.httpClient = Objects.requireNonNullElse(httpClient, HttpClient.newBuilder()
-                .connectTimeout(DEFAULT_HTTP_TIMEOUT)
-                .build());
-    }
-
-    public MinecraftVersionService(String serviceName, Duration ttl, String userAgent, Duration httpTimeout) {
-        this.ttl = Objects.requireNonNullElse(ttl, Duration.ofHours(6));
-        this.userAgent = Objects.requireNonNullElse(userAgent, serviceName + " VersionService/1.0");
-
-        HttpClient.Builder builder = HttpClient.newBuilder();
-        if (httpTimeout != null)
-            builder.connectTimeout(httpTimeout);
-
-        this.httpClient = builder.build();
+        this.httpClient = Objects.requireNonNullElse(httpClient, Switchboard.HTTP_CLIENT);
+        this.bulkhead = Bulkhead.forSource(serviceName);
+
+        this.cacheHits = Switchboard.METRICS.counter(DefaultCollectors.CACHE_REQUESTS, DefaultCollectors.CACHE_REQUESTS_HELP,
+                "cache", serviceName, "result", "hit");
+        this.cacheMisses = Switchboard.METRICS.counter(DefaultCollectors.CACHE_REQUESTS, DefaultCollectors.CACHE_REQUESTS_HELP,
+                "cache", serviceName, "result", "miss");
+        this.cacheRefreshes = Switchboard.METRICS.counter(DefaultCollectors.CACHE_REFRESHES, DefaultCollectors.CACHE_REFRESHES_HELP,
+                "cache", serviceName);
+        this.staleResponses = Switchboard.METRICS.counter("switchboard_stale_responses_total",
+                "Version lists served past their TTL because refreshing them failed.", "service", serviceName);
     }
 
     public abstract Optional<T> latestFor(MinecraftVersion minecraftVersion);
@@ -57,6 +71,136 @@ public abstract class MinecraftVersionService<T> {
 
     public abstract List<T> listVersionsFor(MinecraftVersion minecraftVersion, boolean includePrereleases);
 
+    public long revision() {
+        return revisionLog.revision();
+    }
+
+    /**
+     * Returns {@link #listAllVersions()} with the revision it corresponds to. Loading the list can itself record a new
+     * revision, and so can a concurrent refresh, so the list is read again until the revision is the same before and
+     * after reading it.
+     */
+    public VersionSnapshot<T> listAllVersionsWithRevision() {
+        while (true) {
+            long revision = revisionLog.revision();
+            List<T> versions = listAllVersions();
+            if (revisionLog.revision() == revision)
+                return new VersionSnapshot<>(revision, versions);
+        }
+    }
+
+    /**
+     * Returns the versions added/removed since the given revision, limited to the versions {@link #listAllVersions()}
+     * would return. Falls back to a resync carrying the full list when the revision is no longer covered.
+     */
+    public VersionDelta<T> versionsSince(long revision) {
+        // Loads the list first, so the log below already covers a refresh the load itself triggered
+        VersionSnapshot<T> snapshot = listAllVersionsWithRevision();
+        VersionDelta<T> delta = revisionLog.since(revision);
+        if (!delta.resync())
+            return delta.filter(this::isListed);
+
+        return VersionDelta.resync(snapshot.revision(), snapshot.versions());
+    }
+
+    protected boolean isListed(T version) {
+        return true;
+    }
+
+    /**
+     * The topic this service publishes new versions under on {@link Switchboard#EVENT_BUS}.
+     */
+    public String eventTopic() {
+        return serviceName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Records a freshly fetched version list in the revision log and announces any newly added versions. The first
+     * list a service loads only seeds the log, since those versions are not new releases.
+     */
+    protected void recordVersions(List<T> versions) {
+        boolean initial = revisionLog.isEmpty();
+        revisionLog.update(versions).ifPresent(change -> {
+            if (!initial)
+                change.added().forEach(version -> Switchboard.EVENT_BUS.publish(eventTopic(), version));
+        });
+    }
+
+    /**
+     * Returns the cache entry for the key if it has not expired, counting the lookup as a cache hit or miss.
+     */
+    protected CacheEntry<List<T>> activeEntry(String key) {
+        long start = System.nanoTime();
+        CacheEntry<List<T>> entry = cache.get(key);
+        boolean active = entry != null && entry.isActive();
+        ServerTiming.record(ServerTiming.Phase.CACHE, start);
+        if (active) {
+            cacheHits.increment();
+            return entry;
+        }
+
+        cacheMisses.increment();
+        if (entry != null)
+            cacheRefreshes.increment();
+
+        return null;
+    }
+
+    /**
+     * Runs a fetch that reloads the cached {@code key} inside the service's bulkhead and records it as a
+     * {@link CacheRefreshEvent}.
+     */
+    protected <R> R refresh(String key, Supplier<R> fetch) {
+        try {
+            return refreshChecked(key, fetch::get);
+        } catch (RuntimeException exception) {
+            throw exception;
+        } catch (Exception exception) {
+            throw new IllegalStateException("Supplier threw a checked exception", exception);
+        }
+    }
+
+    /**
+     * Like {@link #refresh(String, Supplier)}, for fetches that throw checked exceptions.
+     */
+    protected <R> R refreshChecked(String key, Callable<R> fetch) throws Exception {
+        var event = new CacheRefreshEvent();
+        event.begin();
+        String outcome = "failure";
+        try {
+            R result = bulkhead.call(fetch);
+            outcome = "success";
+            if (result instanceof Collection<?> collection)
+                event.itemCount = collection.size();
+
+            return result;
+        } catch (Bulkhead.BulkheadFullException exception) {
+            outcome = "rejected";
+            throw exception;
+        } finally {
+            if (event.shouldCommit()) {
+                event.source = serviceName;
+                event.key = key;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Called when refreshing {@code key} failed. Serves the expired value still held for the key (e.g. while the
+     * upstream's circuit breaker is open) and only propagates the failure if nothing was ever loaded.
+     */
+    protected List<T> lastKnownGood(String key, RuntimeException failure) {
+        CacheEntry<List<T>> entry = cache.get(key);
+        if (entry == null)
+            throw failure;
+
+        staleResponses.increment();
+        Switchboard.LOGGER.warn("Serving last known {} versions for '{}': {}", serviceName, key, failure.getMessage());
+        return entry.value();
+    }
+
     public void clearCache() {
         cache.clear();
     }
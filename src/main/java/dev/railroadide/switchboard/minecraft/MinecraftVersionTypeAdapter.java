@@ -0,0 +1,60 @@
+package dev.railroadide.switchboard.minecraft;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Gson {@link TypeAdapter} for {@link MinecraftVersion}, writing its epoch-second timestamps in the
+ * {@code yyyy-MM-ddTHH:mm:ss} form clients have always received.
+ */
+public final class MinecraftVersionTypeAdapter extends TypeAdapter<MinecraftVersion> {
+    @Override
+    public void write(JsonWriter out, MinecraftVersion value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("id").value(value.id());
+        out.name("type").value(value.type() == null ? null : value.type().name());
+        out.name("url").value(value.url());
+        out.name("time").value(ManifestTimestamps.format(value.timeEpochSecond()));
+        out.name("releaseTime").value(ManifestTimestamps.format(value.releaseTimeEpochSecond()));
+        out.endObject();
+    }
+
+    @Override
+    public MinecraftVersion read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String id = null;
+        MinecraftVersion.VersionType type = null;
+        String url = null;
+        long time = 0;
+        long releaseTime = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> id = in.nextString();
+                case "type" -> type = MinecraftVersion.VersionType.valueOf(in.nextString().toUpperCase(Locale.ROOT));
+                case "url" -> url = in.nextString();
+                case "time" -> time = ManifestTimestamps.parseEpochSecond(in.nextString());
+                case "releaseTime" -> releaseTime = ManifestTimestamps.parseEpochSecond(in.nextString());
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new MinecraftVersion(id, type, url, time, releaseTime);
+    }
+}
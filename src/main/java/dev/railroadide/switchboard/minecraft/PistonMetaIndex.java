@@ -0,0 +1,259 @@
+package dev.railroadide.switchboard.minecraft;
+
+import dev.railroadide.switchboard.minecraft.pistonmeta.Downloads;
+import dev.railroadide.switchboard.minecraft.pistonmeta.Library;
+import dev.railroadide.switchboard.minecraft.pistonmeta.VersionPackage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A columnar index over every piston-meta package loaded so far, answering "which versions have X" questions across
+ * all versions without reading or parsing a single package.
+ * <p>
+ * Each indexed version is a row. Scalar fields are stored as primitive columns, with strings dictionary-encoded, and
+ * mapping availability and library coordinates as one bit set per value. Packages are added as they are loaded, and a
+ * version that is loaded again simply replaces its row.
+ */
+public final class PistonMetaIndex {
+    private static final PistonMetaIndex SHARED = new PistonMetaIndex();
+    private static final int NONE = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> rows = new HashMap<>();
+    private String[] ids = new String[64];
+    private long[] releaseTimes = new long[64];
+    private int[] javaVersions = new int[64];
+    private int[] complianceLevels = new int[64];
+    private int[] mainClasses = new int[64];
+    private int[] assets = new int[64];
+    private String[][] libraryKeys = new String[64][];
+    private final Dictionary mainClassDictionary = new Dictionary();
+    private final Dictionary assetsDictionary = new Dictionary();
+    private final BitSet clientMappings = new BitSet();
+    private final BitSet serverMappings = new BitSet();
+    private final Map<String, BitSet> libraries = new HashMap<>();
+
+    public static PistonMetaIndex shared() {
+        return SHARED;
+    }
+
+    public void add(String versionId, VersionPackage versionPackage) {
+        Objects.requireNonNull(versionId, "versionId");
+        Objects.requireNonNull(versionPackage, "versionPackage");
+
+        String[] keys = libraryKeys(versionPackage.libraries());
+        Downloads downloads = versionPackage.downloads();
+        lock.writeLock().lock();
+        try {
+            int row = rows.computeIfAbsent(versionId, _ -> rows.size());
+            ensureCapacity(row + 1);
+            if (libraryKeys[row] != null) {
+                for (String key : libraryKeys[row]) {
+                    libraries.get(key).clear(row);
+                }
+            }
+
+            ids[row] = versionId;
+            releaseTimes[row] = versionPackage.releaseTime() == null ? 0 :
+                    ManifestTimestamps.parseEpochSecond(versionPackage.releaseTime());
+            javaVersions[row] = versionPackage.javaVersion() == null ? NONE : versionPackage.javaVersion().majorVersion();
+            complianceLevels[row] = versionPackage.complianceLevel();
+            mainClasses[row] = mainClassDictionary.encode(versionPackage.mainClass());
+            assets[row] = assetsDictionary.encode(versionPackage.assetIndex() == null ?
+                    versionPackage.assets() :
+                    versionPackage.assetIndex().id());
+            clientMappings.set(row, downloads != null && downloads.clientMappings() != null);
+            serverMappings.set(row, downloads != null && downloads.serverMappings() != null);
+            libraryKeys[row] = keys;
+            for (String key : keys) {
+                libraries.computeIfAbsent(key, _ -> new BitSet()).set(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the ids of the indexed versions matching every filter in the query, newest first
+     */
+    public List<String> query(Query query) {
+        lock.readLock().lock();
+        try {
+            int rowCount = rows.size();
+            var matches = new BitSet(rowCount);
+            matches.set(0, rowCount);
+
+            if (query.clientMappings() != null)
+                filter(matches, clientMappings, query.clientMappings());
+            if (query.serverMappings() != null)
+                filter(matches, serverMappings, query.serverMappings());
+            for (String library : query.libraries()) {
+                BitSet withLibrary = libraries.get(library);
+                if (withLibrary == null)
+                    return List.of();
+
+                matches.and(withLibrary);
+            }
+
+            if (query.javaVersion() != null)
+                filter(matches, javaVersions, query.javaVersion());
+            if (query.complianceLevel() != null)
+                filter(matches, complianceLevels, query.complianceLevel());
+            if (query.mainClass() != null)
+                filter(matches, mainClasses, mainClassDictionary.code(query.mainClass()));
+            if (query.assets() != null)
+                filter(matches, assets, assetsDictionary.code(query.assets()));
+
+            Integer[] matched = new Integer[matches.cardinality()];
+            int count = 0;
+            for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+                matched[count++] = row;
+            }
+
+            Arrays.sort(matched, (a, b) -> Long.compare(releaseTimes[b], releaseTimes[a]));
+            List<String> result = new ArrayList<>(matched.length);
+            for (int row : matched) {
+                result.add(ids[row]);
+            }
+
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return how many indexed versions have each Java version, compliance level, main class and assets id
+     */
+    public Facets facets() {
+        lock.readLock().lock();
+        try {
+            int rowCount = rows.size();
+            Map<Integer, Integer> javaVersionCounts = new TreeMap<>();
+            Map<Integer, Integer> complianceLevelCounts = new TreeMap<>();
+            Map<String, Integer> mainClassCounts = new TreeMap<>();
+            Map<String, Integer> assetsCounts = new TreeMap<>();
+            for (int row = 0; row < rowCount; row++) {
+                if (javaVersions[row] != NONE)
+                    javaVersionCounts.merge(javaVersions[row], 1, Integer::sum);
+
+                complianceLevelCounts.merge(complianceLevels[row], 1, Integer::sum);
+                if (mainClasses[row] != NONE)
+                    mainClassCounts.merge(mainClassDictionary.value(mainClasses[row]), 1, Integer::sum);
+                if (assets[row] != NONE)
+                    assetsCounts.merge(assetsDictionary.value(assets[row]), 1, Integer::sum);
+            }
+
+            return new Facets(rowCount, javaVersionCounts, complianceLevelCounts, mainClassCounts, assetsCounts,
+                    clientMappings.cardinality(), serverMappings.cardinality());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void filter(BitSet matches, BitSet column, boolean value) {
+        if (value) {
+            matches.and(column);
+        } else {
+            matches.andNot(column);
+        }
+    }
+
+    private static void filter(BitSet matches, int[] column, int value) {
+        for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+            if (column[row] != value)
+                matches.clear(row);
+        }
+    }
+
+    // Every coordinate prefix from group:artifact up, so a library can be matched with or without version/classifier
+    private static String[] libraryKeys(List<Library> libraries) {
+        if (libraries == null)
+            return new String[0];
+
+        Set<String> keys = new LinkedHashSet<>();
+        for (Library library : libraries) {
+            String name = library.name();
+            if (name == null)
+                continue;
+
+            int separator = name.indexOf(':');
+            if (separator < 0) {
+                keys.add(name);
+                continue;
+            }
+
+            for (separator = name.indexOf(':', separator + 1); separator >= 0; separator = name.indexOf(':', separator + 1)) {
+                keys.add(name.substring(0, separator));
+            }
+            keys.add(name);
+        }
+
+        return keys.toArray(String[]::new);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length)
+            return;
+
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        releaseTimes = Arrays.copyOf(releaseTimes, newCapacity);
+        javaVersions = Arrays.copyOf(javaVersions, newCapacity);
+        complianceLevels = Arrays.copyOf(complianceLevels, newCapacity);
+        mainClasses = Arrays.copyOf(mainClasses, newCapacity);
+        assets = Arrays.copyOf(assets, newCapacity);
+        libraryKeys = Arrays.copyOf(libraryKeys, newCapacity);
+    }
+
+    /**
+     * Filters for {@link #query(Query)}; {@code null} fields (and an empty library list) match everything. Libraries
+     * are Maven coordinates, either {@code group:artifact} or a longer prefix of the library name.
+     */
+    public record Query(Integer javaVersion, String mainClass, String assets, Integer complianceLevel,
+                        List<String> libraries, Boolean clientMappings, Boolean serverMappings) {
+        public Query {
+            libraries = libraries == null ? List.of() : List.copyOf(libraries);
+        }
+    }
+
+    public record Facets(int indexed, Map<Integer, Integer> javaVersions, Map<Integer, Integer> complianceLevels,
+                         Map<String, Integer> mainClasses, Map<String, Integer> assets,
+                         int clientMappings, int serverMappings) {
+    }
+
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private int encode(String value) {
+            if (value == null)
+                return NONE;
+
+            return codes.computeIfAbsent(value, _ -> {
+                values.add(value);
+                return values.size() - 1;
+            });
+        }
+
+        // Unknown values get a code no row has, so filtering on them matches nothing
+        private int code(String value) {
+            return codes.getOrDefault(value, Integer.MIN_VALUE);
+        }
+
+        private String value(int code) {
+            return values.get(code);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package dev.railroadide.switchboard.minecraft;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Response body for {@code ?sinceRevision=N} requests. When {@code resync} is set, {@code added}/{@code removed} are
+ * absent and {@code versions} carries the full list instead.
+ */
+public record VersionDelta<T>(long revision, boolean resync, List<T> added, List<T> removed, List<T> versions) {
+    public VersionDelta<T> filter(Predicate<T> predicate) {
+        if (resync)
+            return this;
+
+        return new VersionDelta<>(revision, false,
+                added.stream().filter(predicate).toList(),
+                removed.stream().filter(predicate).toList(),
+                versions);
+    }
+
+    public static <T> VersionDelta<T> resync(long revision, List<T> versions) {
+        return new VersionDelta<>(revision, true, null, null, versions);
+    }
+}
@@ -0,0 +1,109 @@
+package dev.railroadide.switchboard.minecraft;
+
+import java.util.*;
+
+/**
+ * Tracks successive snapshots of a version list as a monotonically increasing revision with a bounded log of
+ * added/removed versions, so clients can ask for only what changed since the revision they last saw.
+ * <p>
+ * Revisions are seeded from the wall clock when the log is created, which keeps them increasing across restarts:
+ * a client holding a revision from a previous process is always older than the retained history and gets a resync.
+ */
+public class VersionRevisionLog<T> {
+    private static final int DEFAULT_MAX_CHANGES = 128;
+
+    private final int maxChanges;
+    private final Deque<Change<T>> changes = new ArrayDeque<>();
+    private List<T> snapshot = List.of();
+    private long revision;
+
+    public VersionRevisionLog() {
+        this(DEFAULT_MAX_CHANGES);
+    }
+
+    public VersionRevisionLog(int maxChanges) {
+        if (maxChanges <= 0)
+            throw new IllegalArgumentException("maxChanges must be positive.");
+
+        this.maxChanges = maxChanges;
+        this.revision = System.currentTimeMillis();
+    }
+
+    public synchronized long revision() {
+        return revision;
+    }
+
+    public synchronized boolean isEmpty() {
+        return snapshot.isEmpty();
+    }
+
+    /**
+     * Records a freshly fetched version list. A new revision is only created if the list actually changed.
+     *
+     * @return the change that was recorded, or empty if nothing changed
+     */
+    public synchronized Optional<Change<T>> update(List<T> versions) {
+        Objects.requireNonNull(versions, "versions");
+
+        Set<T> previous = new HashSet<>(snapshot);
+        Set<T> current = new LinkedHashSet<>(versions);
+
+        List<T> added = new ArrayList<>();
+        for (T version : current) {
+            if (!previous.contains(version))
+                added.add(version);
+        }
+
+        List<T> removed = new ArrayList<>();
+        for (T version : snapshot) {
+            if (!current.contains(version))
+                removed.add(version);
+        }
+
+        snapshot = List.copyOf(current);
+        if (added.isEmpty() && removed.isEmpty())
+            return Optional.empty();
+
+        var change = new Change<>(++revision, List.copyOf(added), List.copyOf(removed));
+        changes.addLast(change);
+        while (changes.size() > maxChanges) {
+            changes.removeFirst();
+        }
+
+        return Optional.of(change);
+    }
+
+    /**
+     * Computes the net changes since the given revision. If the revision is unknown (too old to be covered by the
+     * retained log, or from the future), the returned delta is marked as a resync and carries no changes.
+     */
+    public synchronized VersionDelta<T> since(long sinceRevision) {
+        if (sinceRevision == revision)
+            return new VersionDelta<>(revision, false, List.of(), List.of(), null);
+
+        if (sinceRevision > revision || changes.isEmpty() || sinceRevision < changes.getFirst().revision() - 1)
+            return new VersionDelta<>(revision, true, null, null, null);
+
+        Set<T> added = new LinkedHashSet<>();
+        Set<T> removed = new LinkedHashSet<>();
+        for (Change<T> change : changes) {
+            if (change.revision() <= sinceRevision)
+                continue;
+
+            for (T version : change.added()) {
+                if (!removed.remove(version))
+                    added.add(version);
+            }
+
+            for (T version : change.removed()) {
+                if (!added.remove(version))
+                    removed.add(version);
+            }
+        }
+
+        return new VersionDelta<>(revision, false, List.copyOf(added), List.copyOf(removed), null);
+    }
+
+    public record Change<T>(long revision, List<T> added, List<T> removed) {
+    }
+}
@@ -0,0 +1,10 @@
+package dev.railroadide.switchboard.minecraft;
+
+import java.util.List;
+
+/**
+ * A version list together with the revision it corresponds to, so a client that stores the revision and later asks
+ * for {@code ?sinceRevision=N} gets exactly the changes it has not seen.
+ */
+public record VersionSnapshot<T>(long revision, List<T> versions) {
+}
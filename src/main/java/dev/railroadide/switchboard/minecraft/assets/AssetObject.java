@@ -0,0 +1,4 @@
+package dev.railroadide.switchboard.minecraft.assets;
+
+public record AssetObject(String hash, long size) {
+}
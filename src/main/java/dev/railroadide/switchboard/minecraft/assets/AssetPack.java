@@ -0,0 +1,320 @@
+package dev.railroadide.switchboard.minecraft.assets;
+
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.ArtifactStore;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Stores asset objects appended to a handful of large pack files instead of one file per object, since a full set of
+ * assets is tens of thousands of mostly tiny files.
+ * <p>
+ * Each entry is the object's raw 20 byte SHA-1, its length as an 8 byte big-endian long, then its content. Entries
+ * describe themselves, so where each object lives is rebuilt on first use by walking the entry headers, and a write cut
+ * short by a crash just leaves an incomplete last entry that is dropped then. Entries are never rewritten, so pack
+ * channels are only read positionally and can be shared between any number of readers.
+ * <p>
+ * Every append is forced to disk before the object is served. Objects found by the scan are served as immutable, so
+ * each is checked against its SHA-1 the first time it is located, in case a crash left a header whose content never
+ * reached the disk; one that does not match is forgotten and fetched again. The packs stop growing at a configurable
+ * total size, after which {@link #append} fails with a {@link FullException}.
+ */
+public final class AssetPack {
+    static final long MAX_PACK_SIZE = 256L * 1024 * 1024;
+    private static final int HEADER_SIZE = 20 + Long.BYTES;
+    private static final int VERIFY_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] ZERO_HASH = new byte[20];
+
+    private final Supplier<Path> directory;
+    private final LongSupplier maxBytes;
+    private final Map<String, Location> locations = new ConcurrentHashMap<>();
+    // Objects found by scanning rather than appended by this process, until their content has been checked
+    private final Set<String> unverified = ConcurrentHashMap.newKeySet();
+    private final LongAdder corrupt = new LongAdder();
+    private volatile FileChannel[] packs;
+    private int nextPackNumber;
+    private boolean full;
+
+    /**
+     * @param maxBytes the cap on the total size of the pack files; read on every append
+     */
+    public AssetPack(Supplier<Path> directory, LongSupplier maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return where the object with the given SHA-1 is stored, or {@code null} if it is not (or no longer matches its
+     * hash)
+     */
+    public Location locate(String sha1) throws IOException {
+        ensureOpen();
+        Location location = locations.get(sha1);
+        if (location == null || !unverified.contains(sha1))
+            return location;
+
+        // Concurrent first reads may both verify, which is harmless
+        if (sha1.equals(sha1Of(location))) {
+            unverified.remove(sha1);
+            return location;
+        }
+
+        corrupt.increment();
+        Switchboard.LOGGER.warn("Stored asset object " + sha1 + " does not match its hash, fetching it again");
+        unverified.remove(sha1);
+        locations.remove(sha1, location);
+        return null;
+    }
+
+    /**
+     * @return the channel to read the located object from; must not be closed
+     */
+    public FileChannel channel(Location location) {
+        return packs[location.pack()];
+    }
+
+    /**
+     * Appends the file's content as the object with the given SHA-1, unless it is already stored, and forces it to
+     * disk. The caller is responsible for having verified that the content matches the hash.
+     *
+     * @throws FullException if the object would take the packs over their size cap
+     */
+    public synchronized Location append(String sha1, Path file) throws IOException {
+        ensureOpen();
+        Location existing = locations.get(sha1);
+        if (existing != null)
+            return existing;
+
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = source.size();
+            if (bytes() + HEADER_SIZE + length > maxBytes.getAsLong()) {
+                if (!full)
+                    Switchboard.LOGGER.warn("Asset packs in " + directory.get() + " are full, no longer storing new objects");
+
+                full = true;
+                throw new FullException(sha1);
+            }
+
+            int packIndex = writablePack(HEADER_SIZE + length);
+            FileChannel pack = packs[packIndex];
+            long start = pack.size();
+            long position = start;
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                        .put(HexFormat.of().parseHex(sha1))
+                        .putLong(length)
+                        .flip();
+                while (header.hasRemaining()) {
+                    position += pack.write(header, position);
+                }
+
+                long copied = 0;
+                while (copied < length) {
+                    long transferred = pack.transferFrom(source, position + copied, length - copied);
+                    if (transferred <= 0)
+                        throw new EOFException(file + " ended after " + copied + " of " + length + " bytes");
+
+                    copied += transferred;
+                }
+
+                pack.force(false);
+            } catch (IOException exception) {
+                // A partial entry followed by later ones could not be skipped when scanning, so take it back out
+                pack.truncate(start);
+                throw exception;
+            }
+
+            var location = new Location(packIndex, position, length);
+            locations.put(sha1, location);
+            return location;
+        }
+    }
+
+    public int objects() {
+        return locations.size();
+    }
+
+    /**
+     * @return how many stored objects were found not to match their hash
+     */
+    public long corrupt() {
+        return corrupt.sum();
+    }
+
+    public long maxBytes() {
+        return maxBytes.getAsLong();
+    }
+
+    /**
+     * @return the total size of the pack files, or {@code 0} if they have not been opened yet
+     */
+    public long bytes() throws IOException {
+        FileChannel[] packs = this.packs;
+        if (packs == null)
+            return 0;
+
+        long bytes = 0;
+        for (FileChannel pack : packs) {
+            bytes += pack.size();
+        }
+
+        return bytes;
+    }
+
+    public Path directory() {
+        return directory.get();
+    }
+
+    private int writablePack(long entrySize) throws IOException {
+        int last = packs.length - 1;
+        if (last >= 0 && (packs[last].size() == 0 || packs[last].size() + entrySize <= MAX_PACK_SIZE))
+            return last;
+
+        if (last >= 0)
+            packs[last].force(false);
+
+        Path file = directory.get().resolve(packName(nextPackNumber++));
+        FileChannel pack = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel[] grown = Arrays.copyOf(packs, packs.length + 1);
+        grown[grown.length - 1] = pack;
+        packs = grown;
+        return grown.length - 1;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (packs == null)
+            open();
+    }
+
+    private synchronized void open() throws IOException {
+        if (packs != null)
+            return;
+
+        Path root = directory.get();
+        Files.createDirectories(root);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(root)) {
+            files = listing.toList();
+        }
+
+        // Downloads staged next to the packs by a previous run that never got to append them
+        for (Path file : files) {
+            if (file.getFileName().toString().endsWith(".part"))
+                Files.deleteIfExists(file);
+        }
+
+        files = files.stream().filter(path -> packNumber(path) >= 0).sorted().toList();
+        List<FileChannel> opened = new ArrayList<>(files.size());
+        for (Path file : files) {
+            FileChannel pack = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            scan(pack, opened.size(), file);
+            opened.add(pack);
+            nextPackNumber = Math.max(nextPackNumber, packNumber(file) + 1);
+        }
+
+        packs = opened.toArray(FileChannel[]::new);
+        Switchboard.LOGGER.info("Opened " + packs.length + " asset packs with " + locations.size() + " objects");
+    }
+
+    private void scan(FileChannel pack, int packIndex, Path file) throws IOException {
+        long size = pack.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        byte[] hash = new byte[20];
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            while (header.hasRemaining()) {
+                if (pack.read(header, position + header.position()) < 0)
+                    throw new EOFException("Unexpected end of " + file);
+            }
+
+            header.flip().get(hash);
+            long length = header.getLong();
+            // Zeros are what a crash can leave in space the file system allocated but never got to write
+            if (length < 0 || position + HEADER_SIZE + length > size || Arrays.equals(hash, ZERO_HASH))
+                break;
+
+            String sha1 = HexFormat.of().formatHex(hash);
+            // An object is only appended again after its earlier copy failed verification, so the later copy wins
+            locations.put(sha1, new Location(packIndex, position + HEADER_SIZE, length));
+            unverified.add(sha1);
+
+            position += HEADER_SIZE + length;
+        }
+
+        if (position < size) {
+            Switchboard.LOGGER.warn("Dropping " + (size - position) + " bytes of incomplete entry at the end of " + file);
+            pack.truncate(position);
+        }
+    }
+
+    private String sha1Of(Location location) throws IOException {
+        MessageDigest digest = ArtifactStore.newSha1Digest();
+        FileChannel pack = channel(location);
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(VERIFY_BUFFER_SIZE, Math.max(1, location.size())));
+        long position = location.offset();
+        long end = location.offset() + location.size();
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            int read = pack.read(buffer, position);
+            if (read < 0)
+                return null;
+
+            digest.update(buffer.flip());
+            position += read;
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String packName(int number) {
+        return "pack-%05d.pack".formatted(number);
+    }
+
+    private static int packNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("pack-") || !name.endsWith(".pack"))
+            return -1;
+
+        try {
+            return Integer.parseInt(name, "pack-".length(), name.length() - ".pack".length(), 10);
+        } catch (NumberFormatException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param pack   index of the pack file among the open packs
+     * @param offset where the object's content starts in the pack
+     * @param size   the object's length in bytes
+     */
+    public record Location(int pack, long offset, long size) {
+    }
+
+    /**
+     * Thrown instead of appending an object that would take the packs over their size cap.
+     */
+    public static final class FullException extends IOException {
+        private FullException(String sha1) {
+            super("Asset packs are full, not storing " + sha1);
+        }
+    }
+}
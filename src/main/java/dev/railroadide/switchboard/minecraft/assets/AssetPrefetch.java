@@ -0,0 +1,74 @@
+package dev.railroadide.switchboard.minecraft.assets;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of downloading every object of one asset index into the {@link AssetStore}.
+ */
+public final class AssetPrefetch {
+    private final String index;
+    private final Instant startedAt = Instant.now();
+    private final LongAdder alreadyStored = new LongAdder();
+    private final LongAdder fetched = new LongAdder();
+    private final LongAdder fetchedBytes = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile State state = State.RUNNING;
+    private volatile int objects;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    AssetPrefetch(String index) {
+        this.index = index;
+    }
+
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(index, state, objects, alreadyStored.sum(), fetched.sum(), failed.sum(), fetchedBytes.sum(),
+                startedAt.toString(), finishedAt == null ? null : finishedAt.toString(), error);
+    }
+
+    void objects(int objects) {
+        this.objects = objects;
+    }
+
+    void alreadyStored() {
+        alreadyStored.increment();
+    }
+
+    void fetched(long bytes) {
+        fetched.increment();
+        fetchedBytes.add(bytes);
+    }
+
+    void failed() {
+        failed.increment();
+    }
+
+    void finish() {
+        finishedAt = Instant.now();
+        state = State.COMPLETED;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        state = State.FAILED;
+    }
+
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    /**
+     * @param objects    distinct objects in the index; 0 until the index has been read
+     * @param failed     objects that could not be fetched; a completed prefetch can still have some
+     * @param startedAt  an ISO-8601 instant, like {@code finishedAt}
+     */
+    public record Snapshot(String index, State state, int objects, long alreadyStored, long fetched, long failed,
+                           long fetchedBytes, String startedAt, String finishedAt, String error) {
+    }
+}
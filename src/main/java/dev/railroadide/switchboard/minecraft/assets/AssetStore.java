@@ -0,0 +1,358 @@
+package dev.railroadide.switchboard.minecraft.assets;
+
+import com.google.gson.stream.JsonReader;
+import dev.railroadide.switchboard.Environment;
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.ArtifactStore;
+import dev.railroadide.switchboard.http.UpstreamHttpClient;
+import dev.railroadide.switchboard.minecraft.pistonmeta.AssetIndex;
+import dev.railroadide.switchboard.util.Bulkhead;
+import dev.railroadide.switchboard.util.Cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Proxies Minecraft assets: asset indexes are kept in the {@link ArtifactStore} like any other piston-meta artifact,
+ * and asset objects in an {@link AssetPack}. Objects are keyed by their SHA-1 alone, so an object shared by many asset
+ * indexes (most of them are) is downloaded and stored once.
+ * <p>
+ * Only objects listed by a registered asset index are fetched: the upstream URL is derived from the hash and the
+ * content is verified against it, but a hash no index mentions is refused without asking upstream, and one upstream
+ * does not have is remembered for a while. Concurrent fetches of the same object share a single download.
+ */
+public final class AssetStore {
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    // Ahead of SHARED, whose constructor reads it
+    private static final Duration NOT_FOUND_TTL = Duration.ofMinutes(10);
+    private static final AssetStore SHARED = new AssetStore(Switchboard.HTTP_CLIENT, ArtifactStore.shared(),
+            new AssetPack(() -> Environment.getCacheLocation().resolve("assets"), Environment::getAssetCacheBytes));
+
+    private static final LongAdder HITS = Switchboard.METRICS.counter("switchboard_asset_object_requests_total",
+            "Asset object fetches by whether the object was already stored.", "result", "hit");
+    private static final LongAdder MISSES = Switchboard.METRICS.counter("switchboard_asset_object_requests_total",
+            "Asset object fetches by whether the object was already stored.", "result", "miss");
+    private static final LongAdder DOWNLOADED_BYTES = Switchboard.METRICS.counter("switchboard_asset_downloaded_bytes_total",
+            "Bytes of verified asset objects downloaded from upstream.");
+    private static final LongAdder VERIFICATION_FAILURES = Switchboard.METRICS.counter("switchboard_asset_verification_failures_total",
+            "Downloaded asset objects discarded because their SHA-1 or size did not match.");
+
+    private final UpstreamHttpClient httpClient;
+    private final ArtifactStore artifacts;
+    private final AssetPack pack;
+    private final Map<String, AssetIndex> indexes = new ConcurrentHashMap<>();
+    private final Map<String, List<AssetObject>> objectsByIndex = new ConcurrentHashMap<>();
+    private final Map<String, Long> knownSizes = new ConcurrentHashMap<>();
+    private final LongAdder references = new LongAdder();
+    private final Map<String, CompletableFuture<AssetPack.Location>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, AssetPrefetch> prefetches = new ConcurrentHashMap<>();
+    // Listed by an index but missing upstream, so a client retrying them does not reach upstream every time
+    private final Cache<String, Boolean> notFoundCache = Cache.<String, Boolean>builder("Assets:not-found")
+            .expireAfterWrite(NOT_FOUND_TTL)
+            .maximumSize(10_000)
+            .build();
+
+    public AssetStore(UpstreamHttpClient httpClient, ArtifactStore artifacts, AssetPack pack) {
+        this.httpClient = httpClient;
+        this.artifacts = artifacts;
+        this.pack = pack;
+    }
+
+    public static AssetStore shared() {
+        return SHARED;
+    }
+
+    /**
+     * Makes the asset index available by its id. The index itself must be registered with the {@link ArtifactStore}.
+     */
+    public void registerIndex(AssetIndex index) {
+        if (index != null && index.id() != null && ArtifactStore.isSha1(index.sha1()))
+            indexes.put(index.id(), index);
+    }
+
+    public Optional<AssetIndex> index(String id) {
+        return Optional.ofNullable(indexes.get(id));
+    }
+
+    public AssetPack pack() {
+        return pack;
+    }
+
+    /**
+     * @return the distinct objects listed by the asset index, fetching and reading the index first if needed
+     */
+    public List<AssetObject> objects(AssetIndex index) throws IOException {
+        List<AssetObject> objects = objectsByIndex.get(index.sha1());
+        if (objects != null)
+            return objects;
+
+        Path file;
+        try {
+            file = artifacts.fetch(index.sha1()).join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof IOException ioException)
+                throw ioException;
+
+            throw new IOException("Failed to fetch asset index " + index.id(), exception.getCause());
+        }
+
+        ParsedIndex parsed;
+        try (Reader reader = Files.newBufferedReader(file)) {
+            parsed = readIndex(reader);
+        }
+
+        List<AssetObject> existing = objectsByIndex.putIfAbsent(index.sha1(), parsed.objects());
+        if (existing != null)
+            return existing;
+
+        references.add(parsed.entries());
+        for (AssetObject object : parsed.objects()) {
+            knownSizes.putIfAbsent(object.hash(), object.size());
+        }
+
+        return parsed.objects();
+    }
+
+    /**
+     * @return where the stored object is, downloading and verifying it first if needed; fails with a
+     * {@link NoSuchElementException} if no registered asset index lists the hash or upstream has no object with it,
+     * and with an {@link AssetPack.FullException} if the pack has no room for it
+     */
+    public CompletableFuture<AssetPack.Location> fetch(String hash) {
+        if (!ArtifactStore.isSha1(hash))
+            return CompletableFuture.failedFuture(new NoSuchElementException("Not a SHA-1: " + hash));
+
+        try {
+            AssetPack.Location stored = pack.locate(hash);
+            if (stored != null) {
+                HITS.increment();
+                return CompletableFuture.completedFuture(stored);
+            }
+        } catch (IOException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+
+        if (notFoundCache.containsKey(hash))
+            return CompletableFuture.failedFuture(new NoSuchElementException("No asset object " + hash + " upstream"));
+
+        var download = new CompletableFuture<AssetPack.Location>();
+        CompletableFuture<AssetPack.Location> existing = inFlight.putIfAbsent(hash, download);
+        if (existing != null)
+            return existing;
+
+        MISSES.increment();
+        EXECUTOR.execute(() -> {
+            try {
+                download.complete(bulkhead().call(() -> download(hash)));
+            } catch (Throwable throwable) {
+                download.completeExceptionally(throwable);
+            } finally {
+                inFlight.remove(hash, download);
+            }
+        });
+
+        return download;
+    }
+
+    /**
+     * Starts downloading every object of the asset index that is not stored yet, with at most
+     * {@link Environment#getAssetPrefetchConcurrency()} downloads at once. If a prefetch of the index is already
+     * running, that one is returned instead.
+     */
+    public AssetPrefetch prefetch(AssetIndex index) {
+        var created = new AssetPrefetch(index.id());
+        AssetPrefetch prefetch = prefetches.compute(index.id(),
+                (_, running) -> running != null && running.isRunning() ? running : created);
+        if (prefetch == created)
+            EXECUTOR.execute(() -> runPrefetch(index, created));
+
+        return prefetch;
+    }
+
+    public Optional<AssetPrefetch> prefetchOf(String indexId) {
+        return Optional.ofNullable(prefetches.get(indexId));
+    }
+
+    public Stats stats() {
+        long bytes;
+        try {
+            bytes = pack.bytes();
+        } catch (IOException exception) {
+            bytes = 0;
+        }
+
+        return new Stats(objectsByIndex.size(), references.sum(), knownSizes.size(), pack.objects(), bytes);
+    }
+
+    private void runPrefetch(AssetIndex index, AssetPrefetch prefetch) {
+        try {
+            List<AssetObject> objects = objects(index);
+            prefetch.objects(objects.size());
+
+            var permits = new Semaphore(Environment.getAssetPrefetchConcurrency());
+            List<CompletableFuture<?>> downloads = new ArrayList<>();
+            for (AssetObject object : objects) {
+                if (pack.locate(object.hash()) != null) {
+                    prefetch.alreadyStored();
+                    continue;
+                }
+
+                permits.acquire();
+                downloads.add(fetch(object.hash()).whenComplete((_, throwable) -> {
+                    permits.release();
+                    if (throwable == null) {
+                        prefetch.fetched(object.size());
+                    } else {
+                        prefetch.failed();
+                        Switchboard.LOGGER.warn("Failed to prefetch asset object " + object.hash() + ": " + throwable.getMessage());
+                    }
+                }));
+            }
+
+            CompletableFuture.allOf(downloads.toArray(CompletableFuture[]::new)).exceptionally(_ -> null).join();
+            prefetch.finish();
+            Switchboard.LOGGER.info("Prefetched asset index " + index.id() + ": " + prefetch.snapshot());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            prefetch.fail("Interrupted");
+        } catch (Exception exception) {
+            Switchboard.LOGGER.error("Failed to prefetch asset index " + index.id(), exception);
+            prefetch.fail(exception.getMessage());
+        }
+    }
+
+    private AssetPack.Location download(String hash) throws IOException, InterruptedException {
+        if (!isListed(hash))
+            throw new NoSuchElementException("No registered asset index lists " + hash);
+
+        Path directory = pack.directory();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, hash, ".part");
+        try {
+            String url = Environment.getAssetObjectsUrl() + "/" + hash.substring(0, 2) + "/" + hash;
+            HttpResponse<InputStream> response = httpClient.send(httpClient.newRequest(url).build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+
+            String actual;
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 404) {
+                    notFoundCache.put(hash, true);
+                    throw new NoSuchElementException("No asset object " + hash + " upstream");
+                }
+                if (response.statusCode() != 200)
+                    throw new IOException("HTTP " + response.statusCode() + " downloading " + url);
+
+                actual = ArtifactStore.writeHashed(body, temp);
+            }
+
+            long size = Files.size(temp);
+            Long expectedSize = knownSizes.get(hash);
+            if (!actual.equals(hash) || (expectedSize != null && size != expectedSize)) {
+                VERIFICATION_FAILURES.increment();
+                throw new IOException("Asset object from " + url + " does not match its hash: got " + actual +
+                        " (" + size + " bytes)");
+            }
+
+            AssetPack.Location location = pack.append(hash, temp);
+            DOWNLOADED_BYTES.add(size);
+            return location;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Reads any registered index not read yet, so each index is read at most once however many unlisted hashes are asked for
+    private boolean isListed(String hash) {
+        if (knownSizes.containsKey(hash))
+            return true;
+
+        for (AssetIndex index : indexes.values()) {
+            if (objectsByIndex.containsKey(index.sha1()))
+                continue;
+
+            try {
+                objects(index);
+            } catch (IOException | RuntimeException exception) {
+                Switchboard.LOGGER.warn("Failed to read asset index " + index.id() + ": " + exception.getMessage());
+                continue;
+            }
+
+            if (knownSizes.containsKey(hash))
+                return true;
+        }
+
+        return false;
+    }
+
+    // Prefetches hold at most their concurrency in permits, so they never queue behind themselves
+    private static Bulkhead bulkhead() {
+        int maxConcurrent = Math.max(Bulkhead.DEFAULT_MAX_CONCURRENT, Environment.getAssetPrefetchConcurrency());
+        return Bulkhead.forSource("Assets", maxConcurrent, 256, Duration.ofSeconds(30));
+    }
+
+    // {"objects": {"<name>": {"hash": "...", "size": 123}, ...}, ...}; the same object may appear under several names
+    private static ParsedIndex readIndex(Reader reader) throws IOException {
+        Map<String, AssetObject> objects = new LinkedHashMap<>();
+        int entries = 0;
+        var in = new JsonReader(reader);
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!in.nextName().equals("objects")) {
+                in.skipValue();
+                continue;
+            }
+
+            in.beginObject();
+            while (in.hasNext()) {
+                in.nextName();
+                String hash = null;
+                long size = 0;
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "hash" -> hash = in.nextString().toLowerCase(Locale.ROOT);
+                        case "size" -> size = in.nextLong();
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+
+                if (ArtifactStore.isSha1(hash)) {
+                    entries++;
+                    objects.putIfAbsent(hash, new AssetObject(hash, size));
+                }
+            }
+            in.endObject();
+        }
+        in.endObject();
+
+        return new ParsedIndex(List.copyOf(objects.values()), entries);
+    }
+
+    private record ParsedIndex(List<AssetObject> objects, int entries) {
+    }
+
+    /**
+     * @param indexes    asset indexes read so far
+     * @param references object entries across those indexes
+     * @param unique     distinct objects across those indexes
+     * @param stored     objects in the pack
+     */
+    public record Stats(int indexes, long references, int unique, int stored, long storedBytes) {
+        /**
+         * @return the fraction of object references that point at an object already referenced elsewhere, and so
+         * cost nothing extra to store
+         */
+        public double dedupRatio() {
+            return references == 0 ? 0 : 1 - (double) unique / references;
+        }
+    }
+}
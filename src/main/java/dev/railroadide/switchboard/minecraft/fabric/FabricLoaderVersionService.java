@@ -3,13 +3,16 @@ package dev.railroadide.switchboard.minecraft.fabric;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import dev.railroadide.switchboard.Environment;
 import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.jfr.MetadataParseEvent;
 import dev.railroadide.switchboard.minecraft.MinecraftVersion;
 import dev.railroadide.switchboard.minecraft.MinecraftVersionService;
+import dev.railroadide.switchboard.util.Cache;
 
-import java.net.URI;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -18,10 +21,17 @@ import java.util.Optional;
 
 // TODO: Rewrite because we cant get minecraft version
 public class FabricLoaderVersionService extends MinecraftVersionService<FabricLoaderVersionService.FabricLoaderVersion> {
-    private static final String LOADER_VERSIONS_URL = "https://meta.fabricmc.net/v2/versions/loader/%s";
-    private static final String LOADER_VERSION_URL = "https://meta.fabricmc.net/v2/versions/loader/%s/%s";
-    private static final String ALL_LOADER_VERSIONS_URL = "https://meta.fabricmc.net/v2/versions/loader";
+    private static final String LOADER_VERSIONS_PATH = "/v2/versions/loader/%s";
+    private static final String LOADER_VERSION_PATH = "/v2/versions/loader/%s/%s";
+    private static final String ALL_LOADER_VERSIONS_PATH = "/v2/versions/loader";
 
+    private static final Duration NOT_FOUND_TTL = Duration.ofMinutes(5);
+
+    // Short-lived negative cache so repeated lookups of unknown versions don't hit meta.fabricmc.net every time
+    private final Cache<String, Boolean> notFoundCache = Cache.<String, Boolean>builder("FabricLoader:not-found")
+            .expireAfterWrite(NOT_FOUND_TTL)
+            .maximumSize(10_000)
+            .build();
     private FabricLoaderVersion latestCached;
 
     public FabricLoaderVersionService() {
@@ -107,45 +117,51 @@ public class FabricLoaderVersionService extends MinecraftVersionService<FabricLo
     }
 
     private List<FabricLoaderVersion> allVersions() {
-        CacheEntry<List<FabricLoaderVersion>> entry = cache.get("all");
-        if (entry != null && entry.isActive())
+        CacheEntry<List<FabricLoaderVersion>> entry = activeEntry("all");
+        if (entry != null)
             return entry.value();
 
         try {
-            List<FabricLoaderVersion> fresh = fetchAllVersions();
+            List<FabricLoaderVersion> fresh = refreshChecked("all", this::fetchAllVersions);
             cache.put("all", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
+            recordVersions(fresh);
             return fresh;
         } catch (Exception exception) {
             Switchboard.LOGGER.error("Failed to load Fabric loader versions", exception);
-            return entry != null ? entry.value() : List.of();
+            CacheEntry<List<FabricLoaderVersion>> stale = cache.get("all");
+            return stale != null ? stale.value() : List.of();
         }
     }
 
     private List<FabricLoaderVersion> versionsFor(MinecraftVersion minecraftVersion) {
         String cacheKey = cacheKeyFor(minecraftVersion);
-        CacheEntry<List<FabricLoaderVersion>> entry = cache.get(cacheKey);
-        if (entry != null && entry.isActive())
+        CacheEntry<List<FabricLoaderVersion>> entry = activeEntry(cacheKey);
+        if (entry != null)
             return entry.value();
 
         try {
-            List<FabricLoaderVersion> fresh = fetchVersionsFor(minecraftVersion);
+            List<FabricLoaderVersion> fresh = refreshChecked(cacheKey, () -> fetchVersionsFor(minecraftVersion));
             cache.put(cacheKey, new CacheEntry<>(fresh, Instant.now().plus(ttl)));
             return fresh;
         } catch (Exception exception) {
             Switchboard.LOGGER.error("Failed to load Fabric versions for Minecraft {}", minecraftVersion.id(), exception);
-            return entry != null ? entry.value() : List.of();
+            CacheEntry<List<FabricLoaderVersion>> stale = cache.get(cacheKey);
+            return stale != null ? stale.value() : List.of();
         }
     }
 
     private Optional<FabricLoaderVersion> fetchSingleVersion(MinecraftVersion minecraftVersion, String version) {
+        String notFoundKey = cacheKeyFor(minecraftVersion) + ":" + version;
+        if (notFoundCache.containsKey(notFoundKey))
+            return Optional.empty();
+
         try {
-            HttpRequest request = HttpRequest.newBuilder(URI.create(LOADER_VERSION_URL.formatted(minecraftVersion.id(), version)))
-                    .header("User-Agent", userAgent)
-                    .timeout(DEFAULT_HTTP_TIMEOUT)
-                    .GET()
-                    .build();
+            HttpRequest request = httpClient.newRequest(Environment.getFabricMetaUrl() + LOADER_VERSION_PATH.formatted(minecraftVersion.id(), version)).build();
+
+            HttpResponse<String> response = bulkhead.call(() -> httpClient.send(request, HttpResponse.BodyHandlers.ofString()));
+            if (response.statusCode() == 400 || response.statusCode() == 404)
+                notFoundCache.put(notFoundKey, true);
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
             if (response.statusCode() != 200)
                 return Optional.empty();
 
@@ -162,36 +178,29 @@ public class FabricLoaderVersionService extends MinecraftVersionService<FabricLo
     }
 
     private List<FabricLoaderVersion> fetchVersionsFor(MinecraftVersion minecraftVersion) throws Exception {
-        HttpRequest request = HttpRequest.newBuilder(URI.create(LOADER_VERSIONS_URL.formatted(minecraftVersion.id())))
-                .header("User-Agent", userAgent)
-                .timeout(DEFAULT_HTTP_TIMEOUT)
-                .GET()
-                .build();
+        HttpRequest request = httpClient.newRequest(Environment.getFabricMetaUrl() + LOADER_VERSIONS_PATH.formatted(minecraftVersion.id())).build();
 
         HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
         if (response.statusCode() != 200)
             throw new RuntimeException("Fabric loader versions HTTP " + response.statusCode());
 
-        JsonArray jsonVersions = Switchboard.GSON.fromJson(response.body(), JsonArray.class);
-        return parseArray(jsonVersions); // TODO: Represent the entire json structure properly
+        return parseArray(response.body()); // TODO: Represent the entire json structure properly
     }
 
     private List<FabricLoaderVersion> fetchAllVersions() throws Exception {
-        HttpRequest request = HttpRequest.newBuilder(URI.create(ALL_LOADER_VERSIONS_URL))
-                .header("User-Agent", userAgent)
-                .timeout(DEFAULT_HTTP_TIMEOUT)
-                .GET()
-                .build();
+        HttpRequest request = httpClient.newRequest(Environment.getFabricMetaUrl() + ALL_LOADER_VERSIONS_PATH).build();
 
         HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
         if (response.statusCode() != 200)
             throw new RuntimeException("Fabric loader versions HTTP " + response.statusCode());
 
-        JsonArray jsonVersions = Switchboard.GSON.fromJson(response.body(), JsonArray.class);
-        return parseArray(jsonVersions);
+        return parseArray(response.body());
     }
 
-    private List<FabricLoaderVersion> parseArray(JsonArray jsonArray) {
+    private List<FabricLoaderVersion> parseArray(String json) {
+        var parseEvent = new MetadataParseEvent();
+        parseEvent.begin();
+        JsonArray jsonArray = Switchboard.GSON.fromJson(json, JsonArray.class);
         if (jsonArray == null)
             return List.of();
 
@@ -212,6 +221,7 @@ public class FabricLoaderVersionService extends MinecraftVersionService<FabricLo
             versions.add(Switchboard.GSON.fromJson(obj, FabricLoaderVersion.class));
         }
 
+        parseEvent.complete(serviceName, json.length(), versions.size());
         return List.copyOf(versions);
     }
 
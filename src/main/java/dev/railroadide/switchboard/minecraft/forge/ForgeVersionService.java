@@ -1,16 +1,15 @@
 package dev.railroadide.switchboard.minecraft.forge;
 
+import dev.railroadide.switchboard.Environment;
+import dev.railroadide.switchboard.http.MirrorSet;
+import dev.railroadide.switchboard.http.UpstreamHttpClient;
+import dev.railroadide.switchboard.jfr.MetadataParseEvent;
+import dev.railroadide.switchboard.minecraft.MavenMetadata;
 import dev.railroadide.switchboard.minecraft.MinecraftVersion;
 import dev.railroadide.switchboard.minecraft.MinecraftVersionService;
 import dev.railroadide.switchboard.Switchboard;
 import lombok.Data;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
@@ -19,11 +18,14 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public class ForgeVersionService extends MinecraftVersionService<String> {
-    private static final String MAVEN_METADATA_URL =
-            "https://maven.minecraftforge.net/net/minecraftforge/forge/maven-metadata.xml";
-    private static final String PROMOTIONS_URL =
-            "https://files.minecraftforge.net/net/minecraftforge/forge/promotions_slim.json";
-    private CacheEntry<Promotions> promotionsCache = null;
+    private static final String MAVEN_METADATA_PATH = "/net/minecraftforge/forge/maven-metadata.xml";
+    private static final String PROMOTIONS_PATH = "/net/minecraftforge/forge/promotions_slim.json";
+    private final MirrorSet mirrors = MirrorSet.forUpstream("Forge", httpClient, Environment.getForgeMirrors());
+    private volatile CacheEntry<Promotions> promotionsCache = null;
+    // The last metadata parsed, whose markers are kept while its versions are the cached ones
+    private volatile MavenMetadata upstreamMetadata;
+    // Kept until the cached list is replaced, so the sorted list has a stable identity between refreshes
+    private volatile Sorted sorted;
 
     public ForgeVersionService() {
         super("Forge");
@@ -33,12 +35,8 @@ public class ForgeVersionService extends MinecraftVersionService<String> {
         super("Forge", ttl);
     }
 
-    public ForgeVersionService(Duration ttl, String userAgent, HttpClient httpClient) {
-        super("Forge", ttl, userAgent, httpClient);
-    }
-
-    public ForgeVersionService(Duration ttl, String userAgent, Duration httpTimeout) {
-        super("Forge", ttl, userAgent, httpTimeout);
+    public ForgeVersionService(Duration ttl, UpstreamHttpClient httpClient) {
+        super("Forge", ttl, httpClient);
     }
 
     public static int compareForgeVersions(String v1, String v2) {
@@ -157,10 +155,17 @@ public class ForgeVersionService extends MinecraftVersionService<String> {
 
     @Override
     public List<String> listAllVersions() {
-        return versions().stream()
-                .sorted(ForgeVersionService::compareForgeVersions)
-                .toList()
-                .reversed();
+        List<String> versions = versions();
+        Sorted current = sorted;
+        if (current == null || current.source() != versions) {
+            current = new Sorted(versions, versions.stream()
+                    .sorted(ForgeVersionService::compareForgeVersions)
+                    .toList()
+                    .reversed());
+            sorted = current;
+        }
+
+        return current.versions();
     }
 
     @Override
@@ -181,12 +186,23 @@ public class ForgeVersionService extends MinecraftVersionService<String> {
         return listVersionsFor(minecraftVersion);
     }
 
+    /**
+     * The Forge {@code maven-metadata.xml}, rebuilt from the versions currently held. Its {@code latest} and
+     * {@code release} markers are upstream's, which the file order of the versions does not always agree with.
+     */
+    public MavenMetadata mavenMetadata() {
+        List<String> versions = versions();
+        MavenMetadata upstream = upstreamMetadata;
+        return upstream != null && upstream.versions() == versions ? upstream : MavenMetadata.of(versions);
+    }
+
     @Override
     public void forceRefresh(boolean includePrereleases) {
         try {
-            List<String> fresh = fetchAllVersionsFromMaven();
+            List<String> fresh = refresh("all", this::fetchAllVersionsFromMaven);
             cache.put("all", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
-            Promotions promotions = fetchPromotions();
+            recordVersions(fresh);
+            Promotions promotions = refresh("promotions", this::fetchPromotions);
             promotionsCache = new CacheEntry<>(promotions, Instant.now().plus(ttl));
         } catch (Exception exception) {
             Switchboard.LOGGER.error("Failed to refresh Forge versions", exception);
@@ -194,56 +210,53 @@ public class ForgeVersionService extends MinecraftVersionService<String> {
     }
 
     private List<String> versions() {
-        CacheEntry<List<String>> entry = cache.get("all");
-        if (entry != null && entry.isActive())
+        CacheEntry<List<String>> entry = activeEntry("all");
+        if (entry != null)
             return entry.value();
 
-        List<String> fresh = fetchAllVersionsFromMaven();
-        cache.put("all", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
-        return fresh;
+        try {
+            List<String> fresh = refresh("all", this::fetchAllVersionsFromMaven);
+            cache.put("all", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
+            recordVersions(fresh);
+            return fresh;
+        } catch (RuntimeException exception) {
+            return lastKnownGood("all", exception);
+        }
     }
 
     private Promotions promotions() {
-        if (promotionsCache != null && promotionsCache.isActive())
-            return promotionsCache.value();
+        CacheEntry<Promotions> entry = promotionsCache;
+        if (entry != null && entry.isActive())
+            return entry.value();
 
-        Promotions promotions = fetchPromotions();
-        promotionsCache = new CacheEntry<>(promotions, Instant.now().plus(ttl));
-        return promotions;
+        try {
+            Promotions promotions = refresh("promotions", this::fetchPromotions);
+            promotionsCache = new CacheEntry<>(promotions, Instant.now().plus(ttl));
+            return promotions;
+        } catch (RuntimeException exception) {
+            if (entry == null)
+                throw exception;
+
+            Switchboard.LOGGER.warn("Serving last known Forge promotions: {}", exception.getMessage());
+            return entry.value();
+        }
     }
 
     private List<String> fetchAllVersionsFromMaven() {
         try {
-            HttpRequest request = HttpRequest.newBuilder(URI.create(MAVEN_METADATA_URL))
-                    .header("User-Agent", userAgent)
-                    .timeout(DEFAULT_HTTP_TIMEOUT)
-                    .GET()
-                    .build();
+            HttpRequest request = httpClient.newRequest(Environment.getForgeMirrors().getFirst() + MAVEN_METADATA_PATH).build();
 
-            HttpResponse<byte[]> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            HttpResponse<byte[]> response = this.mirrors.send(request, HttpResponse.BodyHandlers.ofByteArray());
             if (response.statusCode() != 200)
                 throw new RuntimeException("Maven metadata HTTP " + response.statusCode());
 
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(false);
-            dbf.setExpandEntityReferences(false);
-            dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-
+            var parseEvent = new MetadataParseEvent();
+            parseEvent.begin();
             byte[] xml = response.body();
-            Document doc = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
-            NodeList nodes = doc.getElementsByTagName("version");
-
-            List<String> out = new ArrayList<>(nodes.getLength());
-            for (int i = 0; i < nodes.getLength(); i++) {
-                String version = nodes.item(i).getTextContent();
-                if (version != null && !version.isBlank()) {
-                    out.add(version.trim());
-                }
-            }
-
-            return List.copyOf(out);
+            MavenMetadata metadata = MavenMetadata.parse(xml);
+            parseEvent.complete(serviceName, xml.length, metadata.versions().size());
+            upstreamMetadata = metadata;
+            return metadata.versions();
         } catch (Exception exception) {
             throw new RuntimeException("Failed to fetch/parse Forge Maven metadata", exception);
         }
@@ -251,18 +264,19 @@ public class ForgeVersionService extends MinecraftVersionService<String> {
 
     private Promotions fetchPromotions() {
         try {
-            HttpRequest request = HttpRequest.newBuilder(URI.create(PROMOTIONS_URL))
-                    .header("User-Agent", userAgent)
+            HttpRequest request = httpClient.newRequest(Environment.getForgeMirrors().getFirst() + PROMOTIONS_PATH)
                     .header("Accept", "application/json")
-                    .timeout(DEFAULT_HTTP_TIMEOUT)
-                    .GET()
                     .build();
 
-            HttpResponse<String> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = this.mirrors.send(request, HttpResponse.BodyHandlers.ofString());
             if (response.statusCode() != 200)
                 throw new RuntimeException("Promotions HTTP " + response.statusCode() + ": " + response.body());
 
-            return Switchboard.GSON.fromJson(response.body(), Promotions.class);
+            var parseEvent = new MetadataParseEvent();
+            parseEvent.begin();
+            Promotions promotions = Switchboard.GSON.fromJson(response.body(), Promotions.class);
+            parseEvent.complete("Forge promotions", response.body().length(), promotions == null || promotions.promos == null ? 0 : promotions.promos.size());
+            return promotions;
         } catch (Exception exception) {
             throw new RuntimeException("Failed to fetch/parse Forge promotions JSON", exception);
         }
@@ -273,4 +287,7 @@ public class ForgeVersionService extends MinecraftVersionService<String> {
         String homepage;
         Map<String, String> promos;
     }
+
+    private record Sorted(List<String> source, List<String> versions) {
+    }
 }
@@ -1,28 +1,23 @@
 package dev.railroadide.switchboard.minecraft.forge;
 
+import dev.railroadide.switchboard.Environment;
+import dev.railroadide.switchboard.http.UpstreamHttpClient;
+import dev.railroadide.switchboard.jfr.MetadataParseEvent;
+import dev.railroadide.switchboard.minecraft.MavenMetadata;
 import dev.railroadide.switchboard.minecraft.MinecraftVersion;
 import dev.railroadide.switchboard.minecraft.MinecraftVersionService;
 import dev.railroadide.switchboard.Switchboard;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
+
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
 public class NeoforgeVersionService extends MinecraftVersionService<String> {
-    private static final String MAVEN_METADATA_URL =
-            "https://maven.neoforged.net/net/neoforged/neoforge/maven-metadata.xml";
+    private static final String MAVEN_METADATA_PATH = "/net/neoforged/neoforge/maven-metadata.xml";
     private static String LATEST_VERSION;
     private static String LATEST_RELEASE_VERSION;
 
@@ -34,12 +29,8 @@ public class NeoforgeVersionService extends MinecraftVersionService<String> {
         super("Neoforge", ttl);
     }
 
-    public NeoforgeVersionService(Duration ttl, String userAgent, HttpClient httpClient) {
-        super("Neoforge", ttl, userAgent, httpClient);
-    }
-
-    public NeoforgeVersionService(Duration ttl, String userAgent, Duration httpTimeout) {
-        super("Neoforge", ttl, userAgent, httpTimeout);
+    public NeoforgeVersionService(Duration ttl, UpstreamHttpClient httpClient) {
+        super("Neoforge", ttl, httpClient);
     }
 
     public static boolean isPrerelease(String version) {
@@ -134,6 +125,11 @@ public class NeoforgeVersionService extends MinecraftVersionService<String> {
                 .reversed();
     }
 
+    @Override
+    protected boolean isListed(String version) {
+        return !isPrerelease(version);
+    }
+
     public String latestVersion() {
         if (LATEST_VERSION == null)
             versions();
@@ -148,13 +144,22 @@ public class NeoforgeVersionService extends MinecraftVersionService<String> {
         return LATEST_RELEASE_VERSION;
     }
 
+    /**
+     * The NeoForge {@code maven-metadata.xml}, rebuilt from the versions and markers currently held.
+     */
+    public MavenMetadata mavenMetadata() {
+        List<String> versions = versions();
+        return new MavenMetadata(versions, latestVersion(), latestReleaseVersion());
+    }
+
     @Override
     public void forceRefresh(boolean includePrereleases) {
         try {
-            Metadata metadata = fetchAllVersionsFromMaven();
+            Metadata metadata = refresh("all", this::fetchAllVersionsFromMaven);
 
             List<String> fresh = metadata.allVersions();
             cache.put("all", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
+            recordVersions(fresh);
 
             LATEST_VERSION = metadata.latestVersion();
             LATEST_RELEASE_VERSION = metadata.latestReleaseVersion();
@@ -164,14 +169,20 @@ public class NeoforgeVersionService extends MinecraftVersionService<String> {
     }
 
     private List<String> versions() {
-        CacheEntry<List<String>> entry = cache.get("all");
-        if (entry != null && entry.isActive())
+        CacheEntry<List<String>> entry = activeEntry("all");
+        if (entry != null)
             return entry.value();
 
-        Metadata metadata = fetchAllVersionsFromMaven();
+        Metadata metadata;
+        try {
+            metadata = refresh("all", this::fetchAllVersionsFromMaven);
+        } catch (RuntimeException exception) {
+            return lastKnownGood("all", exception);
+        }
 
         List<String> fresh = metadata.allVersions();
         cache.put("all", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
+        recordVersions(fresh);
 
         LATEST_VERSION = metadata.latestVersion();
         LATEST_RELEASE_VERSION = metadata.latestReleaseVersion();
@@ -181,42 +192,18 @@ public class NeoforgeVersionService extends MinecraftVersionService<String> {
 
     private Metadata fetchAllVersionsFromMaven() {
         try {
-            HttpRequest request = HttpRequest.newBuilder(URI.create(MAVEN_METADATA_URL))
-                    .header("User-Agent", userAgent)
-                    .timeout(DEFAULT_HTTP_TIMEOUT)
-                    .GET()
-                    .build();
+            HttpRequest request = httpClient.newRequest(Environment.getNeoforgedMavenUrl() + MAVEN_METADATA_PATH).build();
 
             HttpResponse<byte[]> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
             if (response.statusCode() != 200)
                 throw new RuntimeException("Maven metadata HTTP " + response.statusCode());
 
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(false);
-            dbf.setExpandEntityReferences(false);
-            dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-
+            var parseEvent = new MetadataParseEvent();
+            parseEvent.begin();
             byte[] xml = response.body();
-            Document doc = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
-            NodeList nodes = doc.getElementsByTagName("version");
-
-            List<String> out = new ArrayList<>(nodes.getLength());
-            for (int i = 0; i < nodes.getLength(); i++) {
-                String version = nodes.item(i).getTextContent();
-                if (version != null && !version.isBlank()) {
-                    out.add(version.trim());
-                }
-            }
-
-            Node latest = doc.getElementsByTagName("latest").item(0);
-            Node release = doc.getElementsByTagName("release").item(0);
-
-            String latestVersion = latest != null ? latest.getTextContent() : null;
-            String latestReleaseVersion = release != null ? release.getTextContent() : null;
-
-            return new Metadata(out, latestVersion, latestReleaseVersion);
+            MavenMetadata metadata = MavenMetadata.parse(xml);
+            parseEvent.complete(serviceName, xml.length, metadata.versions().size());
+            return new Metadata(metadata.versions(), metadata.latest(), metadata.release());
         } catch (Exception exception) {
             throw new RuntimeException("Failed to fetch/parse Neoforge Maven metadata", exception);
         }
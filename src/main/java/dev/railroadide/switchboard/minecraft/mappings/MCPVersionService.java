@@ -1,30 +1,31 @@
 package dev.railroadide.switchboard.minecraft.mappings;
 
+import dev.railroadide.switchboard.Environment;
+import dev.railroadide.switchboard.http.UpstreamHttpClient;
+import dev.railroadide.switchboard.jfr.MetadataParseEvent;
+import dev.railroadide.switchboard.minecraft.MavenMetadata;
 import dev.railroadide.switchboard.minecraft.MinecraftVersion;
 import dev.railroadide.switchboard.minecraft.MinecraftVersionService;
 import dev.railroadide.switchboard.Switchboard;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class MCPVersionService extends MinecraftVersionService<String> {
-    private static final String STABLE_METADATA_URL =
-            "https://maven.minecraftforge.net/de/oceanlabs/mcp/mcp_stable/maven-metadata.xml";
-    private static final String SNAPSHOT_METADATA_URL =
-            "https://maven.minecraftforge.net/de/oceanlabs/mcp/mcp_snapshot/maven-metadata.xml";
+    private static final String STABLE_METADATA_PATH = "/de/oceanlabs/mcp/mcp_stable/maven-metadata.xml";
+    private static final String SNAPSHOT_METADATA_PATH = "/de/oceanlabs/mcp/mcp_snapshot/maven-metadata.xml";
+
+    // The last metadata parsed per path, whose markers are kept while its versions are the cached ones
+    private final Map<String, MavenMetadata> upstreamMetadata = new ConcurrentHashMap<>();
 
     public MCPVersionService() {
         super("MCP");
@@ -34,12 +35,8 @@ public class MCPVersionService extends MinecraftVersionService<String> {
         super("MCP", ttl);
     }
 
-    public MCPVersionService(Duration ttl, String userAgent, HttpClient httpClient) {
-        super("MCP", ttl, userAgent, httpClient);
-    }
-
-    public MCPVersionService(Duration ttl, String userAgent, Duration httpTimeout) {
-        super("MCP", ttl, userAgent, httpTimeout);
+    public MCPVersionService(Duration ttl, UpstreamHttpClient httpClient) {
+        super("MCP", ttl, httpClient);
     }
 
     private static Optional<MinecraftVersion> toMinecraftVersion(String mcpVersion) {
@@ -121,15 +118,26 @@ public class MCPVersionService extends MinecraftVersionService<String> {
         return output;
     }
 
+    /**
+     * The {@code maven-metadata.xml} of {@code mcp_snapshot} or {@code mcp_stable}, rebuilt from the versions
+     * currently held. Its {@code latest}/{@code release} markers are upstream's, which the file order of the versions
+     * does not always agree with.
+     */
+    public MavenMetadata mavenMetadata(boolean snapshots) {
+        List<String> versions = snapshots ? versionsSnapshot() : versionsStable();
+        MavenMetadata upstream = upstreamMetadata.get(snapshots ? SNAPSHOT_METADATA_PATH : STABLE_METADATA_PATH);
+        return upstream != null && upstream.versions() == versions ? upstream : MavenMetadata.of(versions);
+    }
+
     @Override
     public void forceRefresh(boolean includePrereleases) {
         try {
-            cache.remove("mcp:stable");
-            cache.remove("mcp:snapshot");
-            Instant expiresAt = Instant.now().plus(ttl);
-            cache.put("mcp:stable", new CacheEntry<>(fetchAllVersionsFrom(STABLE_METADATA_URL), expiresAt));
+            List<String> stable = refresh("mcp:stable", () -> fetchAllVersionsFrom(STABLE_METADATA_PATH));
+            cache.put("mcp:stable", new CacheEntry<>(stable, Instant.now().plus(ttl)));
+            recordVersions(stable);
             if (includePrereleases) {
-                cache.put("mcp:snapshot", new CacheEntry<>(fetchAllVersionsFrom(SNAPSHOT_METADATA_URL), expiresAt));
+                List<String> snapshot = refresh("mcp:snapshot", () -> fetchAllVersionsFrom(SNAPSHOT_METADATA_PATH));
+                cache.put("mcp:snapshot", new CacheEntry<>(snapshot, Instant.now().plus(ttl)));
             }
         } catch (Exception exception) {
             Switchboard.LOGGER.error("Failed to refresh MCP versions", exception);
@@ -137,57 +145,51 @@ public class MCPVersionService extends MinecraftVersionService<String> {
     }
 
     private List<String> versionsStable() {
-        CacheEntry<List<String>> cacheEntry = cache.get("mcp:stable");
-        if (cacheEntry != null && cacheEntry.isActive())
+        CacheEntry<List<String>> cacheEntry = activeEntry("mcp:stable");
+        if (cacheEntry != null)
             return cacheEntry.value();
 
-        List<String> fresh = fetchAllVersionsFrom(STABLE_METADATA_URL);
-        cache.put("mcp:stable", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
-        return fresh;
+        try {
+            List<String> fresh = refresh("mcp:stable", () -> fetchAllVersionsFrom(STABLE_METADATA_PATH));
+            cache.put("mcp:stable", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
+            recordVersions(fresh);
+            return fresh;
+        } catch (RuntimeException exception) {
+            return lastKnownGood("mcp:stable", exception);
+        }
     }
 
     private List<String> versionsSnapshot() {
-        CacheEntry<List<String>> cacheEntry = cache.get("mcp:snapshot");
-        if (cacheEntry != null && cacheEntry.isActive())
+        CacheEntry<List<String>> cacheEntry = activeEntry("mcp:snapshot");
+        if (cacheEntry != null)
             return cacheEntry.value();
 
-        List<String> fresh = fetchAllVersionsFrom(SNAPSHOT_METADATA_URL);
-        cache.put("mcp:snapshot", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
-        return fresh;
+        try {
+            List<String> fresh = refresh("mcp:snapshot", () -> fetchAllVersionsFrom(SNAPSHOT_METADATA_PATH));
+            cache.put("mcp:snapshot", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
+            return fresh;
+        } catch (RuntimeException exception) {
+            return lastKnownGood("mcp:snapshot", exception);
+        }
     }
 
-    private List<String> fetchAllVersionsFrom(String metadataUrl) {
+    private List<String> fetchAllVersionsFrom(String metadataPath) {
+        // MCP is hosted on the Forge Maven
+        String metadataUrl = Environment.getForgeMirrors().getFirst() + metadataPath;
         try {
-            HttpRequest request = HttpRequest.newBuilder(URI.create(metadataUrl))
-                    .header("User-Agent", userAgent)
-                    .timeout(DEFAULT_HTTP_TIMEOUT)
-                    .GET()
-                    .build();
+            HttpRequest request = httpClient.newRequest(metadataUrl).build();
 
             HttpResponse<byte[]> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
             if (response.statusCode() != 200)
                 throw new RuntimeException("Maven metadata HTTP " + response.statusCode());
 
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(false);
-            dbf.setExpandEntityReferences(false);
-            dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-
+            var parseEvent = new MetadataParseEvent();
+            parseEvent.begin();
             byte[] xml = response.body();
-            Document doc = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
-            NodeList nodes = doc.getElementsByTagName("version");
-
-            List<String> versions = new ArrayList<>(nodes.getLength());
-            for (int i = 0; i < nodes.getLength(); i++) {
-                String val = nodes.item(i).getTextContent();
-                if (val != null && !val.isBlank()) {
-                    versions.add(val.trim());
-                }
-            }
-
-            return List.copyOf(versions); // ascending as given by Maven
+            MavenMetadata metadata = MavenMetadata.parse(xml);
+            parseEvent.complete(serviceName, xml.length, metadata.versions().size());
+            upstreamMetadata.put(metadataPath, metadata);
+            return metadata.versions(); // ascending as given by Maven
         } catch (Exception exception) {
             throw new RuntimeException("Failed to fetch/parse MCP Maven metadata (" + metadataUrl + ")", exception);
         }
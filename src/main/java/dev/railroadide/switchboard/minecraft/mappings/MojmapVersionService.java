@@ -1,12 +1,12 @@
 package dev.railroadide.switchboard.minecraft.mappings;
 
 import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.UpstreamHttpClient;
 import dev.railroadide.switchboard.minecraft.MinecraftVersion;
 import dev.railroadide.switchboard.minecraft.MinecraftVersionService;
 import dev.railroadide.switchboard.minecraft.pistonmeta.Downloads;
 import dev.railroadide.switchboard.minecraft.pistonmeta.VersionPackage;
 
-import java.net.http.HttpClient;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
@@ -22,12 +22,8 @@ public class MojmapVersionService extends MinecraftVersionService<String> {
         super("Mojmap", ttl);
     }
 
-    public MojmapVersionService(Duration ttl, String userAgent, HttpClient httpClient) {
-        super("Mojmap", ttl, userAgent, httpClient);
-    }
-
-    public MojmapVersionService(Duration ttl, String userAgent, Duration httpTimeout) {
-        super("Mojmap", ttl, userAgent, httpTimeout);
+    public MojmapVersionService(Duration ttl, UpstreamHttpClient httpClient) {
+        super("Mojmap", ttl, httpClient);
     }
 
     @Override
@@ -1,26 +1,26 @@
 package dev.railroadide.switchboard.minecraft.mappings;
 
+import dev.railroadide.switchboard.Environment;
 import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.UpstreamHttpClient;
+import dev.railroadide.switchboard.jfr.MetadataParseEvent;
+import dev.railroadide.switchboard.minecraft.MavenMetadata;
 import dev.railroadide.switchboard.minecraft.MinecraftVersion;
 import dev.railroadide.switchboard.minecraft.MinecraftVersionService;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
 public class YarnVersionService extends MinecraftVersionService<String> {
-    private static final String METADATA_URL = "https://maven.fabricmc.net/net/fabricmc/yarn/maven-metadata.xml";
+    private static final String METADATA_PATH = "/net/fabricmc/yarn/maven-metadata.xml";
+
+    // The last metadata parsed, whose markers are kept while its versions are the cached ones
+    private volatile MavenMetadata upstreamMetadata;
 
     public YarnVersionService() {
         super("Yarn");
@@ -30,12 +30,8 @@ public class YarnVersionService extends MinecraftVersionService<String> {
         super("Yarn", ttl);
     }
 
-    public YarnVersionService(Duration ttl, String userAgent, HttpClient httpClient) {
-        super("Yarn", ttl, userAgent, httpClient);
-    }
-
-    public YarnVersionService(Duration ttl, String userAgent, Duration httpTimeout) {
-        super("Yarn", ttl, userAgent, httpTimeout);
+    public YarnVersionService(Duration ttl, UpstreamHttpClient httpClient) {
+        super("Yarn", ttl, httpClient);
     }
 
     private static Optional<MinecraftVersion> toMinecraftVersion(String yarnVersion) {
@@ -83,56 +79,62 @@ public class YarnVersionService extends MinecraftVersionService<String> {
                 .reversed();
     }
 
+    @Override
+    protected boolean isListed(String version) {
+        return toMinecraftVersion(version).map(MinecraftVersion::isRelease).orElse(false);
+    }
+
+    /**
+     * The Yarn {@code maven-metadata.xml}, rebuilt from the versions currently held. Its {@code latest} and
+     * {@code release} markers are upstream's, which the file order of the versions does not always agree with.
+     */
+    public MavenMetadata mavenMetadata() {
+        List<String> versions = versions();
+        MavenMetadata upstream = upstreamMetadata;
+        return upstream != null && upstream.versions() == versions ? upstream : MavenMetadata.of(versions);
+    }
+
     @Override
     public void forceRefresh(boolean includePrereleases) {
         try {
-            List<String> fresh = fetchAllVersionsFromMaven();
+            List<String> fresh = refresh("all", this::fetchAllVersionsFromMaven);
             cache.put("all", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
+            recordVersions(fresh);
         } catch (Exception exception) {
             Switchboard.LOGGER.error("Failed to refresh Yarn versions", exception);
         }
     }
 
     private List<String> versions() {
-        CacheEntry<List<String>> entry = cache.get("all");
-        if (entry != null && entry.isActive())
+        CacheEntry<List<String>> entry = activeEntry("all");
+        if (entry != null)
             return entry.value();
 
-        List<String> fresh = fetchAllVersionsFromMaven();
-        cache.put("all", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
-        return fresh;
+        try {
+            List<String> fresh = refresh("all", this::fetchAllVersionsFromMaven);
+            cache.put("all", new CacheEntry<>(fresh, Instant.now().plus(ttl)));
+            recordVersions(fresh);
+            return fresh;
+        } catch (RuntimeException exception) {
+            return lastKnownGood("all", exception);
+        }
     }
 
     private List<String> fetchAllVersionsFromMaven() {
         try {
-            HttpRequest request = HttpRequest.newBuilder(URI.create(METADATA_URL))
-                    .header("User-Agent", userAgent)
-                    .timeout(DEFAULT_HTTP_TIMEOUT)
-                    .GET()
-                    .build();
+            HttpRequest request = httpClient.newRequest(Environment.getFabricMavenUrl() + METADATA_PATH).build();
 
             HttpResponse<byte[]> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
             if (response.statusCode() != 200)
                 throw new RuntimeException("Maven metadata HTTP " + response.statusCode());
 
+            var parseEvent = new MetadataParseEvent();
+            parseEvent.begin();
             byte[] xml = response.body();
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(false);
-            dbf.setExpandEntityReferences(false);
-            dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-
-            Document doc = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
-            NodeList nodes = doc.getElementsByTagName("version");
-
-            List<String> versions = new ArrayList<>(nodes.getLength());
-            for (int i = 0; i < nodes.getLength(); i++) {
-                String val = nodes.item(i).getTextContent();
-                if (val != null && !val.isBlank()) versions.add(val.trim());
-            }
-
-            return List.copyOf(versions);
+            MavenMetadata metadata = MavenMetadata.parse(xml);
+            parseEvent.complete(serviceName, xml.length, metadata.versions().size());
+            upstreamMetadata = metadata;
+            return metadata.versions();
         } catch (Exception exception) {
             throw new RuntimeException("Failed to fetch/parse Maven metadata", exception);
         }
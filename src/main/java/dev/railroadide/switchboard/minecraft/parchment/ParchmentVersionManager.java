@@ -2,6 +2,11 @@ package dev.railroadide.switchboard.minecraft.parchment;
 
 import dev.railroadide.switchboard.Environment;
 import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.UpstreamMode;
+import dev.railroadide.switchboard.jfr.MetadataParseEvent;
+import dev.railroadide.switchboard.jfr.UpstreamFetchEvent;
+import dev.railroadide.switchboard.minecraft.VersionRevisionLog;
+import dev.railroadide.switchboard.util.Bulkhead;
 import dev.railroadide.switchboard.util.Cache;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
@@ -18,9 +23,27 @@ import java.util.*;
 import java.util.stream.Stream;
 
 public class ParchmentVersionManager {
-    protected final Cache<String, List<ParchmentVersion>> cache = new Cache<>(Duration.ofHours(3));
+    public static final String EVENT_TOPIC = "parchment";
+    private static final String TAGS_FIXTURE_KEY = "/parchment/tags";
+    // Refreshed in the background by MappingsRouting, so the cache itself never triggers a second re-clone
+    public static final Duration REFRESH_INTERVAL = Duration.ofHours(1);
+    // A failed clone is remembered this long, so requests in the meantime do not each delete and re-clone the repository
+    private static final Duration CLONE_FAILURE_TTL = Duration.ofMinutes(5);
+
+    protected final Cache<String, List<ParchmentVersion>> cache = Cache.<String, List<ParchmentVersion>>builder("Parchment")
+            .expireAfterWrite(Duration.ofHours(3))
+            .maximumSize(1)
+            .build();
+    protected final VersionRevisionLog<ParchmentVersion> revisionLog = new VersionRevisionLog<>();
+    // A clone rewrites the shared clone directory, so only one may run at a time
+    private final Bulkhead bulkhead = Bulkhead.forSource("Parchment", 1, 8, Duration.ofMinutes(2));
+    // Kept until the cached list is replaced, so the grouped map has a stable identity between refreshes
+    private volatile Grouped grouped;
 
     private static List<ParchmentVersion> fetchAllVersions() {
+        if (Environment.getUpstreamMode() == UpstreamMode.REPLAY)
+            return replayTags();
+
         Path parchmentClonePath = Environment.getParchmentClonePath();
 
         RepositoryCache.clear();
@@ -36,34 +59,79 @@ public class ParchmentVersionManager {
             return Collections.emptyList();
         }
 
+        var cloneEvent = new UpstreamFetchEvent();
+        cloneEvent.begin();
+        boolean cloned = false;
         try (Git git = Git.cloneRepository()
-                .setURI("https://github.com/ParchmentMC/Parchment.git")
+                .setURI(Environment.getParchmentRepository())
                 .setDirectory(parchmentClonePath.toFile())
                 .setNoCheckout(true)
                 .call()) {
+            cloned = true;
+            cloneEvent.complete("Parchment", Environment.getParchmentRepository(), 0, "success");
 
-            List<ParchmentVersion> tags = new ArrayList<>();
-            for (Ref ref : git.tagList().call().stream().toList()) {
-                String parchmentName = ref.getName().replace("refs/tags/releases/", "");
-                String[] split = parchmentName.split("-");
-
-                if (split.length < 2) {
-                    Switchboard.LOGGER.warn("Skipping invalid Parchment tag: " + parchmentName);
-                    continue;
-                }
+            var parseEvent = new MetadataParseEvent();
+            parseEvent.begin();
+            List<String> refNames = git.tagList().call().stream().map(Ref::getName).toList();
+            List<ParchmentVersion> tags = parseTags(refNames);
+            parseEvent.complete("Parchment", 0, tags.size());
 
-                String minecraftVersion = split[0];
-                String versionPart = split[1];
-                tags.add(new ParchmentVersion(versionPart, minecraftVersion, true));
-            }
+            if (Environment.getUpstreamMode() == UpstreamMode.RECORD)
+                recordTags(refNames);
 
             return tags;
         } catch (GitAPIException exception) {
+            if (!cloned)
+                cloneEvent.complete("Parchment", Environment.getParchmentRepository(), 0, "error");
+
             Switchboard.LOGGER.error("Failed to clone Parchment repository", exception);
             return Collections.emptyList();
         }
     }
 
+    private static List<ParchmentVersion> parseTags(List<String> refNames) {
+        List<ParchmentVersion> tags = new ArrayList<>();
+        for (String refName : refNames) {
+            String parchmentName = refName.replace("refs/tags/releases/", "");
+            String[] split = parchmentName.split("-");
+
+            if (split.length < 2) {
+                Switchboard.LOGGER.warn("Skipping invalid Parchment tag: " + parchmentName);
+                continue;
+            }
+
+            String minecraftVersion = split[0];
+            String versionPart = split[1];
+            tags.add(new ParchmentVersion(versionPart, minecraftVersion, true));
+        }
+
+        return tags;
+    }
+
+    // Only the tag names are ever read from the clone, so they are all a recording needs to keep
+    private static void recordTags(List<String> refNames) {
+        try {
+            Switchboard.HTTP_CLIENT.fixtures().recordText(TAGS_FIXTURE_KEY, Environment.getParchmentRepository(), String.join("\n", refNames));
+        } catch (IOException exception) {
+            Switchboard.LOGGER.error("Failed to record Parchment tags", exception);
+        }
+    }
+
+    private static List<ParchmentVersion> replayTags() {
+        try {
+            Optional<String> refNames = Switchboard.HTTP_CLIENT.fixtures().readText(TAGS_FIXTURE_KEY);
+            if (refNames.isEmpty()) {
+                Switchboard.LOGGER.warn("No recorded Parchment tags");
+                return Collections.emptyList();
+            }
+
+            return parseTags(refNames.get().lines().filter(line -> !line.isBlank()).toList());
+        } catch (IOException exception) {
+            Switchboard.LOGGER.error("Failed to read recorded Parchment tags", exception);
+            return Collections.emptyList();
+        }
+    }
+
     private static boolean deleteDirectory(Path path) {
         if (Files.notExists(path)) return true;
         try (Stream<Path> walk = Files.walk(path)) {
@@ -89,8 +157,28 @@ public class ParchmentVersionManager {
         return System.getProperty("os.name").toLowerCase().contains("windows");
     }
 
+    private List<ParchmentVersion> loadAllVersions() {
+        List<ParchmentVersion> versions = bulkhead.execute(ParchmentVersionManager::fetchAllVersions);
+        // Clone failures are reported as an empty list, which must neither look like a removal nor replace a good value
+        if (versions.isEmpty()) {
+            if (!cache.containsKey("all"))
+                cache.put("all", List.of(), CLONE_FAILURE_TTL.toMillis());
+
+            return null;
+        }
+
+        boolean initial = revisionLog.isEmpty();
+        revisionLog.update(versions).ifPresent(change -> {
+            if (!initial)
+                change.added().forEach(version -> Switchboard.EVENT_BUS.publish(EVENT_TOPIC, version));
+        });
+
+        return versions;
+    }
+
     public List<ParchmentVersion> listAllVersions() {
-        return cache.get("all", ParchmentVersionManager::fetchAllVersions).stream().sorted().toList();
+        List<ParchmentVersion> versions = cache.get("all", this::loadAllVersions);
+        return versions == null ? List.of() : versions.stream().sorted().toList();
     }
 
     public List<ParchmentVersion> listVersionsFor(String minecraftVersion) {
@@ -106,13 +194,19 @@ public class ParchmentVersionManager {
     }
 
     public Map<String, List<ParchmentVersion>> getAllVersionsGroupedByMinecraftVersion() {
-        List<ParchmentVersion> allVersions = listAllVersions();
+        List<ParchmentVersion> source = cache.get("all", this::loadAllVersions);
+        Grouped current = this.grouped;
+        if (current != null && current.source() == source)
+            return current.versions();
+
         Map<String, List<ParchmentVersion>> grouped = new TreeMap<>();
-        for (ParchmentVersion version : allVersions) {
+        for (ParchmentVersion version : source == null ? List.<ParchmentVersion>of() : source.stream().sorted().toList()) {
             grouped.computeIfAbsent(version.minecraftVersion(), _ -> new ArrayList<>()).add(version);
         }
 
-        return grouped;
+        current = new Grouped(source, Collections.unmodifiableMap(grouped));
+        this.grouped = current;
+        return current.versions();
     }
 
     public Optional<ParchmentVersion> latestFor(String minecraftVersion) {
@@ -125,8 +219,21 @@ public class ParchmentVersionManager {
                 .orElse(null);
     }
 
+    /**
+     * Reloads the versions in place; unlike {@link #forceRefresh()}, the current versions keep being served while the
+     * repository is cloned, and are kept if the clone fails.
+     */
+    public void refresh() {
+        List<ParchmentVersion> versions = loadAllVersions();
+        if (versions != null)
+            cache.put("all", versions);
+    }
+
     public void forceRefresh() {
         cache.clear();
         listAllVersions();
     }
+
+    private record Grouped(List<ParchmentVersion> source, Map<String, List<ParchmentVersion>> versions) {
+    }
 }
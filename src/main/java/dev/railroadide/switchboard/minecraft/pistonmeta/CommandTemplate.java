@@ -0,0 +1,116 @@
+package dev.railroadide.switchboard.minecraft.pistonmeta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line tokens precompiled into literal and {@code ${placeholder}} segments, so rendering them for a set of
+ * launcher variables is a single pass with no scanning. Tokens without placeholders are emitted as-is, without
+ * copying.
+ */
+public final class CommandTemplate {
+    // Segments of token i are segments[tokenStarts[i]] up to segments[tokenStarts[i + 1]]
+    private final int[] tokenStarts;
+    private final String[] segments;
+    private final boolean[] placeholders;
+    private final String[] literalTokens;
+
+    private CommandTemplate(int[] tokenStarts, String[] segments, boolean[] placeholders, String[] literalTokens) {
+        this.tokenStarts = tokenStarts;
+        this.segments = segments;
+        this.placeholders = placeholders;
+        this.literalTokens = literalTokens;
+    }
+
+    public static CommandTemplate compile(List<String> tokens) {
+        var tokenStarts = new int[tokens.size() + 1];
+        var literalTokens = new String[tokens.size()];
+        List<String> segments = new ArrayList<>();
+        List<Boolean> placeholders = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            tokenStarts[i] = segments.size();
+            if (!addSegments(token, segments, placeholders))
+                literalTokens[i] = token;
+        }
+        tokenStarts[tokens.size()] = segments.size();
+
+        var placeholderArray = new boolean[placeholders.size()];
+        for (int i = 0; i < placeholderArray.length; i++) {
+            placeholderArray[i] = placeholders.get(i);
+        }
+
+        return new CommandTemplate(tokenStarts, segments.toArray(String[]::new), placeholderArray, literalTokens);
+    }
+
+    /**
+     * Appends the rendered tokens to {@code out}. Placeholders without a variable are left in place as
+     * {@code ${name}} and their names added to {@code unresolved}.
+     */
+    public void render(Map<String, String> variables, List<String> out, Collection<String> unresolved) {
+        StringBuilder builder = null;
+        for (int token = 0; token < literalTokens.length; token++) {
+            if (literalTokens[token] != null) {
+                out.add(literalTokens[token]);
+                continue;
+            }
+
+            if (builder == null) {
+                builder = new StringBuilder(64);
+            } else {
+                builder.setLength(0);
+            }
+
+            for (int segment = tokenStarts[token]; segment < tokenStarts[token + 1]; segment++) {
+                if (!placeholders[segment]) {
+                    builder.append(segments[segment]);
+                    continue;
+                }
+
+                String value = variables.get(segments[segment]);
+                if (value == null) {
+                    unresolved.add(segments[segment]);
+                    builder.append("${").append(segments[segment]).append('}');
+                } else {
+                    builder.append(value);
+                }
+            }
+
+            out.add(builder.toString());
+        }
+    }
+
+    /**
+     * @return whether the token contained any placeholder
+     */
+    private static boolean addSegments(String token, List<String> segments, List<Boolean> placeholders) {
+        boolean anyPlaceholder = false;
+        int literalStart = 0;
+        int open = token.indexOf("${");
+        while (open >= 0) {
+            int close = token.indexOf('}', open + 2);
+            if (close < 0)
+                break;
+
+            if (open > literalStart) {
+                segments.add(token.substring(literalStart, open));
+                placeholders.add(false);
+            }
+
+            segments.add(token.substring(open + 2, close));
+            placeholders.add(true);
+            anyPlaceholder = true;
+            literalStart = close + 1;
+            open = token.indexOf("${", literalStart);
+        }
+
+        if (literalStart < token.length()) {
+            segments.add(token.substring(literalStart));
+            placeholders.add(false);
+        }
+
+        return anyPlaceholder;
+    }
+}
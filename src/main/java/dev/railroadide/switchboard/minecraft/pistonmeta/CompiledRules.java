@@ -0,0 +1,126 @@
+package dev.railroadide.switchboard.minecraft.pistonmeta;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A library or argument rule list compiled for repeated evaluation: OS version patterns are compiled once and feature
+ * conditions flattened into arrays. Each pattern also remembers its result for the last OS version it saw, so checking
+ * profiles of one platform allocates nothing after the first check; only a different OS version runs the matcher.
+ * <p>
+ * Follows the launcher's semantics: with no rules the entry always applies; otherwise the last rule matching the
+ * profile decides, and the entry is excluded if none match.
+ */
+public final class CompiledRules {
+    public static final CompiledRules ALWAYS = new CompiledRules(new Clause[0]);
+
+    private final Clause[] clauses;
+
+    private CompiledRules(Clause[] clauses) {
+        this.clauses = clauses;
+    }
+
+    public static CompiledRules ofDownloadRules(List<Library.DownloadRule> rules) {
+        if (rules == null || rules.isEmpty())
+            return ALWAYS;
+
+        var clauses = new Clause[rules.size()];
+        for (int i = 0; i < clauses.length; i++) {
+            Library.DownloadRule rule = rules.get(i);
+            clauses[i] = new Clause(rule.action() != Library.DownloadRule.Action.DISALLOW,
+                    rule.os() == null ? null : rule.os().name(), null, null, new String[0], new boolean[0]);
+        }
+
+        return new CompiledRules(clauses);
+    }
+
+    public static CompiledRules ofArgumentRules(List<CLIArguments.Argument.Rule> rules) {
+        if (rules == null || rules.isEmpty())
+            return ALWAYS;
+
+        var clauses = new Clause[rules.size()];
+        for (int i = 0; i < clauses.length; i++) {
+            CLIArguments.Argument.Rule rule = rules.get(i);
+            Map<String, String> os = rule.os();
+            Map<String, Boolean> features = rule.features();
+            var featureNames = new String[features.size()];
+            var featureValues = new boolean[features.size()];
+            int feature = 0;
+            for (Map.Entry<String, Boolean> entry : features.entrySet()) {
+                featureNames[feature] = entry.getKey();
+                featureValues[feature++] = entry.getValue();
+            }
+
+            clauses[i] = new Clause(rule.action() != CLIArguments.Argument.Rule.Action.DISALLOW,
+                    os.get("name"), os.get("arch"), versionPattern(os.get("version")), featureNames, featureValues);
+        }
+
+        return new CompiledRules(clauses);
+    }
+
+    public boolean allows(LaunchProfile profile) {
+        if (clauses.length == 0)
+            return true;
+
+        for (int i = clauses.length - 1; i >= 0; i--) {
+            if (clauses[i].matches(profile))
+                return clauses[i].allow;
+        }
+
+        return false;
+    }
+
+    private static VersionPattern versionPattern(String version) {
+        if (version == null)
+            return null;
+
+        try {
+            return new VersionPattern(Pattern.compile(version));
+        } catch (PatternSyntaxException exception) {
+            return new VersionPattern(Pattern.compile(Pattern.quote(version)));
+        }
+    }
+
+    private record Clause(boolean allow, String osName, String osArch, VersionPattern osVersion, String[] featureNames,
+                          boolean[] featureValues) {
+        private boolean matches(LaunchProfile profile) {
+            if (osName != null && !osName.equals(profile.os()))
+                return false;
+            if (osArch != null && !osArch.equals(profile.arch()))
+                return false;
+            if (osVersion != null && (profile.osVersion() == null || !osVersion.matches(profile.osVersion())))
+                return false;
+
+            for (int i = 0; i < featureNames.length; i++) {
+                if (profile.features().contains(featureNames[i]) != featureValues[i])
+                    return false;
+            }
+
+            return true;
+        }
+    }
+
+    private static final class VersionPattern {
+        private final Pattern pattern;
+        private volatile Result last;
+
+        private VersionPattern(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        private boolean matches(String osVersion) {
+            Result result = last;
+            if (result != null && result.osVersion().equals(osVersion))
+                return result.matches();
+
+            boolean matches = pattern.matcher(osVersion).find();
+            last = new Result(osVersion, matches);
+            return matches;
+        }
+
+        private record Result(String osVersion, boolean matches) {
+        }
+    }
+}
@@ -2,13 +2,13 @@ package dev.railroadide.switchboard.minecraft.pistonmeta;
 
 import com.google.gson.JsonObject;
 import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.ArtifactStore;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletionException;
 
 public record Download(String sha1, long size, String url) {
     public static Download fromJson(JsonObject json) {
@@ -22,21 +22,31 @@ public record Download(String sha1, long size, String url) {
         return downloadToPath(path, fileName);
     }
 
+    /**
+     * Copies the artifact to the path. Downloads with a SHA-1 go through the {@link ArtifactStore}, so they are
+     * verified and only fetched from upstream once.
+     */
     public Path downloadToPath(Path path, String fileName) {
         Path resolved = path.toAbsolutePath().resolve(fileName);
         Switchboard.LOGGER.debug("Downloading " + this.url + " to " + resolved);
 
         try {
-            Files.createDirectories(resolved.getParent());
-            Files.deleteIfExists(resolved);
+            if (ArtifactStore.isSha1(this.sha1)) {
+                ArtifactStore store = ArtifactStore.shared();
+                store.register(this.sha1, this.size, this.url);
+                Path stored = store.fetch(this.sha1).join();
+                Files.createDirectories(resolved.getParent());
+                Files.copy(stored, resolved, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Switchboard.HTTP_CLIENT.download(this.url, resolved);
+            }
+        } catch (CompletionException exception) {
+            throw new RuntimeException("Failed to download " + this.url + "!", exception.getCause());
         } catch (IOException exception) {
-            throw new RuntimeException("Failed to create directories for " + resolved + "!", exception);
-        }
-
-        try (InputStream inputStream = new URI(this.url).toURL().openStream()) {
-            Files.write(resolved, inputStream.readAllBytes());
-        } catch (IOException | URISyntaxException exception) {
             throw new RuntimeException("Failed to download " + this.url + "!", exception);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while downloading " + this.url + "!", exception);
         }
 
         Switchboard.LOGGER.debug("Downloaded " + this.url + " to " + resolved + "!");
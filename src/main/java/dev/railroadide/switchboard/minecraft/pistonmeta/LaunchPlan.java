@@ -0,0 +1,145 @@
+package dev.railroadide.switchboard.minecraft.pistonmeta;
+
+import java.util.*;
+
+/**
+ * A version package's libraries and arguments with their rules compiled (see {@link CompiledRules}) and arguments
+ * compiled into {@link CommandTemplate}s, ready to be resolved or rendered for any number of {@link LaunchProfile}s.
+ */
+public final class LaunchPlan {
+    private final String version;
+    private final Download client;
+    private final String mainClass;
+    private final Library[] libraries;
+    private final CompiledRules[] libraryRules;
+    private final CLIArguments.Argument[] jvmArguments;
+    private final CompiledRules[] jvmRules;
+    private final CommandTemplate[] jvmTemplates;
+    private final CLIArguments.Argument[] gameArguments;
+    private final CompiledRules[] gameRules;
+    private final CommandTemplate[] gameTemplates;
+
+    private LaunchPlan(String version, VersionPackage versionPackage) {
+        this.version = version;
+        this.client = versionPackage.downloads() == null ? null : versionPackage.downloads().client();
+        this.mainClass = versionPackage.mainClass();
+
+        // Libraries and arguments share interned rule lists, so each distinct list only needs compiling once
+        Map<Object, CompiledRules> compiled = new IdentityHashMap<>();
+
+        List<Library> libraries = versionPackage.libraries() == null ? List.of() : versionPackage.libraries().stream()
+                .filter(library -> library.artifact() != null)
+                .toList();
+        this.libraries = libraries.toArray(Library[]::new);
+        this.libraryRules = new CompiledRules[this.libraries.length];
+        for (int i = 0; i < this.libraries.length; i++) {
+            List<Library.DownloadRule> rules = this.libraries[i].rules().orElse(null);
+            this.libraryRules[i] = rules == null ? CompiledRules.ALWAYS :
+                    compiled.computeIfAbsent(rules, _ -> CompiledRules.ofDownloadRules(rules));
+        }
+
+        Arguments arguments = versionPackage.arguments();
+        this.jvmArguments = arguments(arguments == null ? null : arguments.jvm());
+        this.jvmRules = compileArgumentRules(this.jvmArguments, compiled);
+        this.jvmTemplates = compileTemplates(this.jvmArguments);
+        this.gameArguments = arguments(arguments == null ? null : arguments.game());
+        this.gameRules = compileArgumentRules(this.gameArguments, compiled);
+        this.gameTemplates = compileTemplates(this.gameArguments);
+    }
+
+    public static LaunchPlan compile(String version, VersionPackage versionPackage) {
+        return new LaunchPlan(Objects.requireNonNull(version, "version"),
+                Objects.requireNonNull(versionPackage, "versionPackage"));
+    }
+
+    public ResolvedLaunch resolve(LaunchProfile profile) {
+        // Some packages list the same library more than once; the first allowed entry wins
+        Map<String, ResolvedLaunch.ClasspathEntry> classpath = new LinkedHashMap<>();
+        for (int i = 0; i < libraries.length; i++) {
+            if (!libraryRules[i].allows(profile))
+                continue;
+
+            Library library = libraries[i];
+            Download artifact = library.artifact();
+            classpath.putIfAbsent(library.name(), new ResolvedLaunch.ClasspathEntry(library.name(),
+                    mavenPath(library.name()), artifact.sha1(), artifact.size(), artifact.url()));
+        }
+
+        return new ResolvedLaunch(version, List.copyOf(classpath.values()), client, mainClass,
+                flatten(jvmArguments, jvmRules, profile), flatten(gameArguments, gameRules, profile));
+    }
+
+    /**
+     * Renders the full launch command (JVM arguments, main class, game arguments) for the profile, substituting the
+     * launcher variables, e.g. {@code auth_player_name} for {@code ${auth_player_name}}.
+     */
+    public RenderedCommand render(LaunchProfile profile, Map<String, String> variables) {
+        List<String> command = new ArrayList<>(jvmArguments.length * 2 + gameArguments.length * 2 + 1);
+        Set<String> unresolved = new TreeSet<>();
+        render(jvmTemplates, jvmRules, profile, variables, command, unresolved);
+        if (mainClass != null)
+            command.add(mainClass);
+        render(gameTemplates, gameRules, profile, variables, command, unresolved);
+
+        return new RenderedCommand(version, command, unresolved);
+    }
+
+    private static void render(CommandTemplate[] templates, CompiledRules[] rules, LaunchProfile profile,
+                               Map<String, String> variables, List<String> out, Set<String> unresolved) {
+        for (int i = 0; i < templates.length; i++) {
+            if (rules[i].allows(profile))
+                templates[i].render(variables, out, unresolved);
+        }
+    }
+
+    private static CommandTemplate[] compileTemplates(CLIArguments.Argument[] arguments) {
+        var templates = new CommandTemplate[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            templates[i] = CommandTemplate.compile(arguments[i].tokens());
+        }
+
+        return templates;
+    }
+
+    private static CLIArguments.Argument[] arguments(CLIArguments arguments) {
+        return arguments == null ? new CLIArguments.Argument[0] :
+                arguments.arguments().toArray(CLIArguments.Argument[]::new);
+    }
+
+    private static CompiledRules[] compileArgumentRules(CLIArguments.Argument[] arguments,
+                                                        Map<Object, CompiledRules> compiled) {
+        var rules = new CompiledRules[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            List<CLIArguments.Argument.Rule> argumentRules = arguments[i].rules();
+            rules[i] = argumentRules.isEmpty() ? CompiledRules.ALWAYS :
+                    compiled.computeIfAbsent(argumentRules, _ -> CompiledRules.ofArgumentRules(argumentRules));
+        }
+
+        return rules;
+    }
+
+    private static List<String> flatten(CLIArguments.Argument[] arguments, CompiledRules[] rules, LaunchProfile profile) {
+        List<String> tokens = new ArrayList<>(arguments.length * 2);
+        for (int i = 0; i < arguments.length; i++) {
+            if (rules[i].allows(profile))
+                tokens.addAll(arguments[i].tokens());
+        }
+
+        return List.copyOf(tokens);
+    }
+
+    /**
+     * @return the Maven repository path for {@code group:artifact:version[:classifier]}, or the name if it isn't one
+     */
+    static String mavenPath(String name) {
+        if (name == null)
+            return null;
+
+        String[] parts = name.split(":");
+        if (parts.length < 3)
+            return name;
+
+        String fileName = parts[1] + "-" + parts[2] + (parts.length > 3 ? "-" + parts[3] : "") + ".jar";
+        return parts[0].replace('.', '/') + "/" + parts[1] + "/" + parts[2] + "/" + fileName;
+    }
+}
@@ -0,0 +1,22 @@
+package dev.railroadide.switchboard.minecraft.pistonmeta;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The machine and launcher features that library and argument rules are evaluated against.
+ *
+ * @param os        launcher OS name: {@code windows}, {@code osx} or {@code linux}
+ * @param arch      JVM architecture, e.g. {@code x86}, {@code x86_64} or {@code arm64}; may be {@code null}
+ * @param osVersion OS version matched against rule version patterns; may be {@code null}
+ * @param features  enabled launcher features, e.g. {@code has_custom_resolution}; anything absent is disabled
+ */
+public record LaunchProfile(String os, String arch, String osVersion, Set<String> features) {
+    public LaunchProfile {
+        Objects.requireNonNull(os, "os");
+        os = os.toLowerCase(Locale.ROOT);
+        arch = arch == null ? null : arch.toLowerCase(Locale.ROOT);
+        features = features == null ? Set.of() : Set.copyOf(features);
+    }
+}
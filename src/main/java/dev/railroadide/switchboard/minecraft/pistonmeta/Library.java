@@ -24,30 +24,7 @@ public record Library(Download artifact, String name, Optional<List<DownloadRule
     }
 
     public static Library fromJson(JsonObject json) {
-        Download artifact;
-        if (json.has("downloads")) {
-            JsonObject downloadsJson = json.getAsJsonObject("downloads");
-            if (downloadsJson.has("artifact")) {
-                JsonObject artifactJson = downloadsJson.getAsJsonObject("artifact");
-                artifact = Download.fromJson(artifactJson);
-            } else {
-                artifact = null;
-            }
-        } else {
-            artifact = null;
-        }
-
-        String name = json.get("name").getAsString();
-
-        Optional<List<DownloadRule>> rules;
-        if (json.has("rules")) {
-            JsonArray rulesJson = json.getAsJsonArray("rules");
-            rules = Optional.of(DownloadRule.fromJsonArray(rulesJson));
-        } else {
-            rules = Optional.empty();
-        }
-
-        return new Library(artifact, name, rules);
+        return Switchboard.GSON.fromJson(json, Library.class);
     }
 
     public static void readLibraries(Map<String, Path> libraryJars, Path librariesJsonPath) throws IOException {
@@ -62,22 +39,7 @@ public record Library(Download artifact, String name, Optional<List<DownloadRule
 
     public record DownloadRule(Action action, OperatingSystem os) {
         public static DownloadRule fromJson(JsonObject json) {
-            Action action;
-            if (json.has("action")) {
-                action = Action.valueOf(json.get("action").getAsString().toUpperCase(Locale.ROOT));
-            } else {
-                action = null;
-            }
-
-            OperatingSystem os;
-            if (json.has("os")) {
-                JsonObject osJson = json.getAsJsonObject("os");
-                os = OperatingSystem.fromJson(osJson);
-            } else {
-                os = null;
-            }
-
-            return new DownloadRule(action, os);
+            return Switchboard.GSON.fromJson(json, DownloadRule.class);
         }
 
         public static List<DownloadRule> fromJsonArray(JsonArray array) {
@@ -5,22 +5,12 @@ import dev.railroadide.switchboard.Switchboard;
 
 public record Logging(Client client) {
     public static Logging fromJson(JsonObject json) {
-        JsonObject clientJson = json.getAsJsonObject("client");
-        Client client = Client.fromJson(clientJson);
-
-        return new Logging(client);
+        return Switchboard.GSON.fromJson(json, Logging.class);
     }
 
     public record Client(String argument, LoggingFile file, String type) {
         public static Client fromJson(JsonObject json) {
-            String argument = json.get("argument").getAsString();
-
-            JsonObject fileJson = json.getAsJsonObject("file");
-            LoggingFile file = LoggingFile.fromJson(fileJson);
-
-            String type = json.get("type").getAsString();
-
-            return new Client(argument, file, type);
+            return Switchboard.GSON.fromJson(json, Client.class);
         }
 
         public record LoggingFile(String id, String sha1, int size, String url) {
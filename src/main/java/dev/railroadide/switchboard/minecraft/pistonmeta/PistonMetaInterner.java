@@ -0,0 +1,124 @@
+package dev.railroadide.switchboard.minecraft.pistonmeta;
+
+import java.lang.ref.WeakReference;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Canonicalizes the parts of piston-meta packages that repeat across Minecraft versions (libraries, downloads, rules,
+ * arguments and the strings inside them), so every parsed {@link VersionPackage} shares one instance of each instead
+ * of holding its own copy.
+ * <p>
+ * Canonical instances are only weakly held: once no parsed package refers to one any more it is collected along with
+ * its table entry. Shared instances must therefore never be mutated.
+ */
+public final class PistonMetaInterner {
+    private static final PistonMetaInterner SHARED = new PistonMetaInterner();
+
+    private final Map<Kind, Table<Object>> tables = new EnumMap<>(Kind.class);
+
+    public PistonMetaInterner() {
+        for (Kind kind : Kind.values()) {
+            tables.put(kind, new Table<>());
+        }
+    }
+
+    /**
+     * The interner used when parsing through {@link PistonMetaTypeAdapterFactory}.
+     */
+    public static PistonMetaInterner shared() {
+        return SHARED;
+    }
+
+    public String string(String value) {
+        return intern(Kind.STRING, value);
+    }
+
+    public Download download(Download value) {
+        return intern(Kind.DOWNLOAD, value);
+    }
+
+    public Library library(Library value) {
+        return intern(Kind.LIBRARY, value);
+    }
+
+    public Library.DownloadRule downloadRule(Library.DownloadRule value) {
+        return intern(Kind.DOWNLOAD_RULE, value);
+    }
+
+    public List<Library.DownloadRule> downloadRules(List<Library.DownloadRule> value) {
+        return value == null ? null : intern(Kind.DOWNLOAD_RULES, List.copyOf(value));
+    }
+
+    public Library.DownloadRule.OperatingSystem operatingSystem(Library.DownloadRule.OperatingSystem value) {
+        return intern(Kind.OPERATING_SYSTEM, value);
+    }
+
+    public CLIArguments.Argument argument(CLIArguments.Argument value) {
+        return intern(Kind.ARGUMENT, value);
+    }
+
+    public CLIArguments.Argument.Rule argumentRule(CLIArguments.Argument.Rule value) {
+        return intern(Kind.ARGUMENT_RULE, value);
+    }
+
+    public Stats stats(Kind kind) {
+        return tables.get(kind).stats(kind);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T intern(Kind kind, T value) {
+        return value == null ? null : (T) tables.get(kind).intern(value);
+    }
+
+    public enum Kind {
+        STRING, DOWNLOAD, LIBRARY, DOWNLOAD_RULE, DOWNLOAD_RULES, OPERATING_SYSTEM, ARGUMENT, ARGUMENT_RULE;
+
+        public String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * @param lookups values passed through the interner
+     * @param hits    lookups answered with an existing canonical instance, whose copy could then be dropped
+     * @param size    canonical instances currently alive
+     */
+    public record Stats(Kind kind, long lookups, long hits, int size) {
+        public double dedupRatio() {
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    private static final class Table<T> {
+        // Keyed by the canonical instance itself; the value only refers back to it weakly so the key can be collected
+        private final WeakHashMap<T, WeakReference<T>> canonical = new WeakHashMap<>();
+        private final LongAdder lookups = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+
+        private synchronized T intern(T value) {
+            lookups.increment();
+            WeakReference<T> reference = canonical.get(value);
+            T existing = reference == null ? null : reference.get();
+            if (existing != null) {
+                hits.increment();
+                return existing;
+            }
+
+            canonical.put(value, new WeakReference<>(value));
+            return value;
+        }
+
+        private synchronized int size() {
+            return canonical.size();
+        }
+
+        private Stats stats(Kind kind) {
+            return new Stats(kind, lookups.sum(), hits.sum(), size());
+        }
+    }
+}
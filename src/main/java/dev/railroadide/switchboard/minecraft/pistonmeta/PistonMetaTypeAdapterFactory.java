@@ -0,0 +1,541 @@
+package dev.railroadide.switchboard.minecraft.pistonmeta;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Reads piston-meta version packages in a single pass over the {@link JsonReader}, without building an intermediate
+ * {@code JsonObject} tree or re-parsing subtrees reflectively. Unknown fields are skipped, and missing ones are left
+ * {@code null} (or zero) as Gson's reflective adapter would, so older and newer package layouts both parse.
+ * <p>
+ * Writing is delegated to the reflective adapter Gson would otherwise use, so responses are serialized unchanged.
+ * <p>
+ * Libraries, downloads, rules and arguments are passed through the {@link PistonMetaInterner#shared() shared interner}
+ * as they are read, so versions that list the same ones share a single instance.
+ */
+public final class PistonMetaTypeAdapterFactory implements TypeAdapterFactory {
+    private static final PistonMetaInterner INTERNER = PistonMetaInterner.shared();
+    private static final Map<Class<?>, ValueReader<?>> READERS = Map.ofEntries(
+            Map.entry(VersionPackage.class, PistonMetaTypeAdapterFactory::readVersionPackage),
+            Map.entry(Arguments.class, PistonMetaTypeAdapterFactory::readArguments),
+            Map.entry(CLIArguments.class, PistonMetaTypeAdapterFactory::readCliArguments),
+            Map.entry(AssetIndex.class, PistonMetaTypeAdapterFactory::readAssetIndex),
+            Map.entry(Downloads.class, PistonMetaTypeAdapterFactory::readDownloads),
+            Map.entry(Download.class, PistonMetaTypeAdapterFactory::readDownload),
+            Map.entry(JavaVersion.class, PistonMetaTypeAdapterFactory::readJavaVersion),
+            Map.entry(Library.class, PistonMetaTypeAdapterFactory::readLibrary),
+            Map.entry(Library.DownloadRule.class, PistonMetaTypeAdapterFactory::readDownloadRule),
+            Map.entry(Library.DownloadRule.OperatingSystem.class, PistonMetaTypeAdapterFactory::readOperatingSystem),
+            Map.entry(Logging.class, PistonMetaTypeAdapterFactory::readLogging),
+            Map.entry(Logging.Client.class, PistonMetaTypeAdapterFactory::readLoggingClient),
+            Map.entry(Logging.Client.LoggingFile.class, PistonMetaTypeAdapterFactory::readLoggingFile)
+    );
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+        ValueReader<T> reader = (ValueReader<T>) READERS.get(typeToken.getRawType());
+        if (reader == null)
+            return null;
+
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, typeToken);
+        return new TypeAdapter<>() {
+            @Override
+            public void write(JsonWriter out, T value) throws IOException {
+                delegate.write(out, value);
+            }
+
+            @Override
+            public T read(JsonReader in) throws IOException {
+                return nullable(in, reader);
+            }
+        };
+    }
+
+    private static VersionPackage readVersionPackage(JsonReader in) throws IOException {
+        Arguments arguments = null;
+        AssetIndex assetIndex = null;
+        String assets = null;
+        int complianceLevel = 0;
+        Downloads downloads = null;
+        String id = null;
+        JavaVersion javaVersion = null;
+        List<Library> libraries = null;
+        Logging logging = null;
+        String mainClass = null;
+        int minimumLauncherVersion = 0;
+        String releaseTime = null;
+        String time = null;
+        String type = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "arguments" -> arguments = nullable(in, PistonMetaTypeAdapterFactory::readArguments);
+                case "assetIndex" -> assetIndex = nullable(in, PistonMetaTypeAdapterFactory::readAssetIndex);
+                case "assets" -> assets = nextString(in);
+                case "complianceLevel" -> complianceLevel = nextInt(in);
+                case "downloads" -> downloads = nullable(in, PistonMetaTypeAdapterFactory::readDownloads);
+                case "id" -> id = nextString(in);
+                case "javaVersion" -> javaVersion = nullable(in, PistonMetaTypeAdapterFactory::readJavaVersion);
+                case "libraries" -> libraries = readList(in, PistonMetaTypeAdapterFactory::readLibrary);
+                case "logging" -> logging = nullable(in, PistonMetaTypeAdapterFactory::readLogging);
+                case "mainClass" -> mainClass = nextString(in);
+                case "minimumLauncherVersion" -> minimumLauncherVersion = nextInt(in);
+                case "releaseTime" -> releaseTime = nextString(in);
+                case "time" -> time = nextString(in);
+                case "type" -> type = nextString(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new VersionPackage(arguments, assetIndex, assets, complianceLevel, downloads, id, javaVersion,
+                libraries, logging, mainClass, minimumLauncherVersion, releaseTime, time, type);
+    }
+
+    private static Arguments readArguments(JsonReader in) throws IOException {
+        CLIArguments game = null;
+        CLIArguments jvm = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "game" -> game = nullable(in, PistonMetaTypeAdapterFactory::readCliArguments);
+                case "jvm" -> jvm = nullable(in, PistonMetaTypeAdapterFactory::readCliArguments);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Arguments(game, jvm);
+    }
+
+    /**
+     * Reads a launcher argument array: {@code "--key", "value"} and {@code "--key=value"} pairs (single dashes too),
+     * with rule-guarded objects whose value is a string or an array of strings in the same form.
+     */
+    private static CLIArguments readCliArguments(JsonReader in) throws IOException {
+        List<CLIArguments.Argument> arguments = new ArrayList<>();
+        List<String> run = new ArrayList<>();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            switch (in.peek()) {
+                case STRING -> run.add(in.nextString());
+                case BEGIN_OBJECT -> {
+                    // A flag directly before a rule object has no value to take
+                    addArguments(run, List.of(), true, arguments);
+                    run.clear();
+                    readRuledArguments(in, arguments);
+                }
+                case NUMBER, BOOLEAN -> throw new IllegalArgumentException("Argument must be a string! " + in.nextString());
+                default -> in.skipValue();
+            }
+        }
+        in.endArray();
+
+        addArguments(run, List.of(), false, arguments);
+        return new CLIArguments(arguments);
+    }
+
+    private static void readRuledArguments(JsonReader in, List<CLIArguments.Argument> arguments) throws IOException {
+        List<CLIArguments.Argument.Rule> rules = null;
+        List<String> values = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "rules" -> rules = readList(in, PistonMetaTypeAdapterFactory::readArgumentRule);
+                case "value" -> values = readArgumentValues(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (rules == null)
+            throw new IllegalArgumentException("Argument must have rules!");
+        if (values == null)
+            throw new IllegalArgumentException("Argument must have a value!");
+
+        addArguments(values, rules, false, arguments);
+    }
+
+    /**
+     * Pairs up a run of consecutive argument strings. A flag without an inline value takes the next string; at the end
+     * of the run it gets an empty value, unless {@code valueRequired} because something other than a string follows.
+     */
+    private static void addArguments(List<String> run, List<CLIArguments.Argument.Rule> rules, boolean valueRequired,
+                                     List<CLIArguments.Argument> arguments) {
+        for (int i = 0; i < run.size(); i++) {
+            String key = run.get(i);
+            boolean doubleDash = key.startsWith("--");
+            if (!doubleDash && !key.startsWith("-"))
+                throw new IllegalArgumentException("Argument must start with a '-' or '--'! " + key);
+
+            String prefix = doubleDash ? "--" : "-";
+            String name = key.substring(prefix.length());
+            if (name.contains("=")) {
+                String[] split = name.split("=");
+                if (doubleDash && split.length != 2)
+                    throw new IllegalArgumentException("Argument must have a key and value! " + name);
+
+                arguments.add(argument(split[0], split[1], rules, prefix, true));
+            } else if (i + 1 < run.size()) {
+                arguments.add(argument(name, run.get(++i), rules, prefix, false));
+            } else if (valueRequired) {
+                throw new IllegalArgumentException("Argument must have a value! " + name);
+            } else {
+                arguments.add(argument(name, "", rules, prefix, false));
+            }
+        }
+    }
+
+    private static CLIArguments.Argument argument(String name, String value, List<CLIArguments.Argument.Rule> rules,
+                                                  String prefix, boolean inline) {
+        return INTERNER.argument(new CLIArguments.Argument(INTERNER.string(name), INTERNER.string(value), rules,
+                prefix, inline));
+    }
+
+    private static List<String> readArgumentValues(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.STRING)
+            return List.of(in.nextString());
+
+        if (in.peek() != JsonToken.BEGIN_ARRAY)
+            throw new IllegalArgumentException("Argument value must be a string! " + in.peek());
+
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() != JsonToken.STRING)
+                throw new IllegalArgumentException("Argument value must be a string! " + in.peek());
+
+            values.add(in.nextString());
+        }
+        in.endArray();
+
+        return values;
+    }
+
+    private static CLIArguments.Argument.Rule readArgumentRule(JsonReader in) throws IOException {
+        CLIArguments.Argument.Rule.Action action = null;
+        Map<String, String> os = new HashMap<>();
+        Map<String, Boolean> features = new HashMap<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "action" -> {
+                    String actionString = in.nextString();
+                    try {
+                        action = CLIArguments.Argument.Rule.Action.valueOf(actionString.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException exception) {
+                        throw new IllegalArgumentException("Rule action must be 'allow' or 'disallow'! " + actionString);
+                    }
+                }
+                case "os" -> {
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        String key = in.nextName();
+                        if (in.peek() != JsonToken.STRING)
+                            throw new IllegalArgumentException("OS value must be a string! " + key);
+
+                        os.put(INTERNER.string(key), INTERNER.string(in.nextString()));
+                    }
+                    in.endObject();
+                }
+                case "features" -> {
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        String key = in.nextName();
+                        if (in.peek() != JsonToken.BOOLEAN)
+                            throw new IllegalArgumentException("Feature value must be a boolean! " + key);
+
+                        features.put(INTERNER.string(key), in.nextBoolean());
+                    }
+                    in.endObject();
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (action == null)
+            throw new IllegalArgumentException("Rule must have an action!");
+
+        return INTERNER.argumentRule(new CLIArguments.Argument.Rule(action, os, features));
+    }
+
+    private static AssetIndex readAssetIndex(JsonReader in) throws IOException {
+        String id = null;
+        String sha1 = null;
+        int size = 0;
+        int totalSize = 0;
+        String url = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> id = nextString(in);
+                case "sha1" -> sha1 = nextString(in);
+                case "size" -> size = nextInt(in);
+                case "totalSize" -> totalSize = nextInt(in);
+                case "url" -> url = nextString(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new AssetIndex(id, sha1, size, totalSize, url);
+    }
+
+    private static Downloads readDownloads(JsonReader in) throws IOException {
+        Download client = null;
+        Download clientMappings = null;
+        Download server = null;
+        Download serverMappings = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "client" -> client = nullable(in, PistonMetaTypeAdapterFactory::readDownload);
+                case "client_mappings" -> clientMappings = nullable(in, PistonMetaTypeAdapterFactory::readDownload);
+                case "server" -> server = nullable(in, PistonMetaTypeAdapterFactory::readDownload);
+                case "server_mappings" -> serverMappings = nullable(in, PistonMetaTypeAdapterFactory::readDownload);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Downloads(client, clientMappings, server, serverMappings);
+    }
+
+    private static Download readDownload(JsonReader in) throws IOException {
+        String sha1 = null;
+        long size = 0;
+        String url = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "sha1" -> sha1 = nextString(in);
+                case "size" -> size = nextLong(in);
+                case "url" -> url = nextString(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return INTERNER.download(new Download(sha1, size, url));
+    }
+
+    private static JavaVersion readJavaVersion(JsonReader in) throws IOException {
+        String component = null;
+        int majorVersion = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "component" -> component = nextString(in);
+                case "majorVersion" -> majorVersion = nextInt(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new JavaVersion(component, majorVersion);
+    }
+
+    private static Library readLibrary(JsonReader in) throws IOException {
+        Download artifact = null;
+        String name = null;
+        List<Library.DownloadRule> rules = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "downloads" -> {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        continue;
+                    }
+
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if (in.nextName().equals("artifact")) {
+                            artifact = nullable(in, PistonMetaTypeAdapterFactory::readDownload);
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                }
+                case "name" -> name = nextString(in);
+                case "rules" -> rules = readList(in, PistonMetaTypeAdapterFactory::readDownloadRule);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return INTERNER.library(new Library(artifact, INTERNER.string(name), Optional.ofNullable(INTERNER.downloadRules(rules))));
+    }
+
+    private static Library.DownloadRule readDownloadRule(JsonReader in) throws IOException {
+        Library.DownloadRule.Action action = null;
+        Library.DownloadRule.OperatingSystem os = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "action" -> action = Library.DownloadRule.Action.valueOf(in.nextString().toUpperCase(Locale.ROOT));
+                case "os" -> os = nullable(in, PistonMetaTypeAdapterFactory::readOperatingSystem);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return INTERNER.downloadRule(new Library.DownloadRule(action, os));
+    }
+
+    private static Library.DownloadRule.OperatingSystem readOperatingSystem(JsonReader in) throws IOException {
+        String name = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("name")) {
+                name = nextString(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return INTERNER.operatingSystem(new Library.DownloadRule.OperatingSystem(INTERNER.string(name)));
+    }
+
+    private static Logging readLogging(JsonReader in) throws IOException {
+        Logging.Client client = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("client")) {
+                client = nullable(in, PistonMetaTypeAdapterFactory::readLoggingClient);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Logging(client);
+    }
+
+    private static Logging.Client readLoggingClient(JsonReader in) throws IOException {
+        String argument = null;
+        Logging.Client.LoggingFile file = null;
+        String type = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "argument" -> argument = nextString(in);
+                case "file" -> file = nullable(in, PistonMetaTypeAdapterFactory::readLoggingFile);
+                case "type" -> type = nextString(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Logging.Client(argument, file, type);
+    }
+
+    private static Logging.Client.LoggingFile readLoggingFile(JsonReader in) throws IOException {
+        String id = null;
+        String sha1 = null;
+        int size = 0;
+        String url = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> id = nextString(in);
+                case "sha1" -> sha1 = nextString(in);
+                case "size" -> size = nextInt(in);
+                case "url" -> url = nextString(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Logging.Client.LoggingFile(id, sha1, size, url);
+    }
+
+    private static <T> T nullable(JsonReader in, ValueReader<T> reader) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        return reader.read(in);
+    }
+
+    // Non-objects in a list are skipped, matching the tree-based parsers this replaced
+    private static <T> List<T> readList(JsonReader in, ValueReader<T> reader) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        List<T> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.BEGIN_OBJECT) {
+                values.add(reader.read(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endArray();
+
+        return values;
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        return in.nextString();
+    }
+
+    private static int nextInt(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+
+        return in.nextInt();
+    }
+
+    private static long nextLong(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+
+        return in.nextLong();
+    }
+
+    @FunctionalInterface
+    private interface ValueReader<T> {
+        T read(JsonReader in) throws IOException;
+    }
+}
@@ -0,0 +1,11 @@
+package dev.railroadide.switchboard.minecraft.pistonmeta;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @param command    JVM arguments, the main class and game arguments, with variables substituted
+ * @param unresolved placeholders no variable was supplied for, which are left in the command as {@code ${name}}
+ */
+public record RenderedCommand(String version, List<String> command, Set<String> unresolved) {
+}
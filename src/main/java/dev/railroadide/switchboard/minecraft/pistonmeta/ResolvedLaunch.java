@@ -0,0 +1,20 @@
+package dev.railroadide.switchboard.minecraft.pistonmeta;
+
+import java.util.List;
+
+/**
+ * A version's launch inputs with every rule already applied for one {@link LaunchProfile}.
+ *
+ * @param classpath the library artifacts to download and put on the classpath, in package order
+ * @param client    the client jar, which goes on the classpath after the libraries
+ * @param jvm       JVM arguments, still containing launcher placeholders such as {@code ${classpath}}
+ * @param game      game arguments, still containing launcher placeholders such as {@code ${auth_player_name}}
+ */
+public record ResolvedLaunch(String version, List<ClasspathEntry> classpath, Download client, String mainClass,
+                             List<String> jvm, List<String> game) {
+    /**
+     * @param path the artifact's location within a Maven-layout libraries directory
+     */
+    public record ClasspathEntry(String name, String path, String sha1, long size, String url) {
+    }
+}
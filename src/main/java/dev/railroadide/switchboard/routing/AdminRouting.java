@@ -0,0 +1,154 @@
+package dev.railroadide.switchboard.routing;
+
+import dev.railroadide.switchboard.Environment;
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.CircuitBreaker;
+import dev.railroadide.switchboard.http.MirrorSet;
+import dev.railroadide.switchboard.jfr.FlightRecordings;
+import dev.railroadide.switchboard.metrics.RequestProfiler;
+import dev.railroadide.switchboard.util.Bulkhead;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+public class AdminRouting {
+    public static void addRoutes(Javalin server) {
+        // Admin routes expose upstream state, request paths and recordings that cost disk and CPU, so they are
+        // restricted to local callers or the token
+        server.before("/admin/*", AdminRouting::requireAdminAccess);
+
+        server.get("/admin/upstreams", ctx -> ctx.json(Switchboard.GSON.toJsonTree(
+                Switchboard.HTTP_CLIENT.circuitBreakers().stream()
+                        .map(CircuitBreaker::snapshot)
+                        .sorted(Comparator.comparing(CircuitBreaker.Snapshot::name))
+                        .toList())));
+        Switchboard.LOGGER.info("Registered endpoint: /admin/upstreams");
+
+        server.get("/admin/bulkheads", ctx -> ctx.json(Switchboard.GSON.toJsonTree(
+                Bulkhead.all().stream()
+                        .map(Bulkhead::snapshot)
+                        .sorted(Comparator.comparing(Bulkhead.Snapshot::name))
+                        .toList())));
+        Switchboard.LOGGER.info("Registered endpoint: /admin/bulkheads");
+
+        server.get("/admin/mirrors", ctx -> ctx.json(Switchboard.GSON.toJsonTree(
+                MirrorSet.all().stream()
+                        .map(MirrorSet::snapshot)
+                        .sorted(Comparator.comparing(MirrorSet.Snapshot::name))
+                        .toList())));
+        Switchboard.LOGGER.info("Registered endpoint: /admin/mirrors");
+
+        server.get("/admin/requests/routes", ctx -> ctx.json(Switchboard.GSON.toJsonTree(Map.of(
+                "allocationTracking", MetricsRouting.PROFILER.isAllocationTrackingAvailable(),
+                "routes", MetricsRouting.PROFILER.routes().stream()
+                        .map(RequestProfiler.RouteStats::snapshot)
+                        .sorted(Comparator.comparingLong(RequestProfiler.RouteStats.Snapshot::allocatedBytes).reversed())
+                        .toList()))));
+        Switchboard.LOGGER.info("Registered endpoint: /admin/requests/routes");
+
+        server.get("/admin/requests/samples", ctx -> {
+            String sort = ctx.queryParamAsClass("sort", String.class)
+                    .check(value -> value.equals("recent") || value.equals("duration") || value.equals("allocated"),
+                            "sort must be 'recent', 'duration' or 'allocated'")
+                    .getOrDefault("recent");
+
+            List<RequestProfiler.Sample> samples = MetricsRouting.PROFILER.samples();
+            if (!sort.equals("recent")) {
+                samples = samples.stream()
+                        .sorted(sort.equals("duration")
+                                ? Comparator.comparingLong(RequestProfiler.Sample::durationMillis).reversed()
+                                : Comparator.comparingLong(RequestProfiler.Sample::allocatedBytes).reversed())
+                        .toList();
+            }
+
+            ctx.json(Switchboard.GSON.toJsonTree(samples));
+        });
+        Switchboard.LOGGER.info("Registered endpoint: /admin/requests/samples");
+
+        server.get("/admin/jfr", ctx -> FlightRecordings.status().ifPresentOrElse(
+                status -> ctx.json(Switchboard.GSON.toJsonTree(status)),
+                () -> ctx.status(404).json(Map.of("error", "No recording is running"))
+        ));
+        Switchboard.LOGGER.info("Registered endpoint: /admin/jfr");
+
+        server.post("/admin/jfr/start", ctx -> {
+            String settings = ctx.queryParamAsClass("settings", String.class)
+                    .check(value -> value.equals("default") || value.equals("profile"), "settings must be 'default' or 'profile'")
+                    .getOrDefault("default");
+            long maxAgeMinutes = ctx.queryParamAsClass("maxAgeMinutes", Long.class)
+                    .check(value -> value > 0 && value <= FlightRecordings.MAX_DURATION.toMinutes(),
+                            "maxAgeMinutes must be between 1 and " + FlightRecordings.MAX_DURATION.toMinutes())
+                    .getOrDefault(30L);
+
+            try {
+                ctx.json(Switchboard.GSON.toJsonTree(FlightRecordings.start(settings, Duration.ofMinutes(maxAgeMinutes))));
+            } catch (IllegalStateException exception) {
+                ctx.status(409).json(Map.of("error", exception.getMessage()));
+            }
+        });
+        Switchboard.LOGGER.info("Registered endpoint: /admin/jfr/start");
+
+        server.post("/admin/jfr/stop", ctx -> {
+            try {
+                sendRecording(ctx, FlightRecordings.stop());
+            } catch (IllegalStateException exception) {
+                ctx.status(409).json(Map.of("error", exception.getMessage()));
+            }
+        });
+        Switchboard.LOGGER.info("Registered endpoint: /admin/jfr/stop");
+
+        server.get("/admin/jfr/dump", ctx -> {
+            try {
+                sendRecording(ctx, FlightRecordings.dump());
+            } catch (IllegalStateException exception) {
+                ctx.status(409).json(Map.of("error", exception.getMessage()));
+            }
+        });
+        Switchboard.LOGGER.info("Registered endpoint: /admin/jfr/dump");
+    }
+
+    private static void requireAdminAccess(Context ctx) {
+        String token = Environment.getAdminToken();
+        String authorization = ctx.header("Authorization");
+        if (token != null && authorization != null && MessageDigest.isEqual(
+                authorization.getBytes(StandardCharsets.UTF_8), ("Bearer " + token).getBytes(StandardCharsets.UTF_8)))
+            return;
+
+        if (token == null && isLoopback(ctx.req().getRemoteAddr()))
+            return;
+
+        ctx.skipRemainingHandlers();
+        if (token == null) {
+            ctx.status(403).json(Map.of("error", "Admin endpoints are only available from localhost unless -admintoken is set"));
+        } else {
+            ctx.status(401).header("WWW-Authenticate", "Bearer").json(Map.of("error", "A valid admin token is required"));
+        }
+    }
+
+    private static boolean isLoopback(String address) {
+        try {
+            // The remote address is always an IP literal, so this never does a DNS lookup
+            return InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException exception) {
+            return false;
+        }
+    }
+
+    private static void sendRecording(Context ctx, Path path) throws IOException {
+        ctx.contentType("application/octet-stream")
+                .header("Content-Disposition", "attachment; filename=\"" + path.getFileName() + "\"")
+                .result(Files.newInputStream(path, StandardOpenOption.DELETE_ON_CLOSE));
+    }
+}
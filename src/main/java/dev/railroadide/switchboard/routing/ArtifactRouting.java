@@ -0,0 +1,185 @@
+package dev.railroadide.switchboard.routing;
+
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.ArtifactStore;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionException;
+
+public class ArtifactRouting {
+    // Content-addressed, so a stored artifact can be cached forever
+    static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    public static void addRoutes(Javalin server) {
+        server.get("/artifacts/{sha1}", ctx -> serveArtifact(ctx, true));
+        server.head("/artifacts/{sha1}", ctx -> serveArtifact(ctx, false));
+        Switchboard.LOGGER.info("Registered endpoint: /artifacts/{sha1}");
+    }
+
+    private static void serveArtifact(Context ctx, boolean withBody) {
+        String sha1 = ctx.pathParam("sha1").toLowerCase(Locale.ROOT);
+        if (!ArtifactStore.isSha1(sha1)) {
+            ctx.status(400).json(Map.of("error", "Not a SHA-1: " + sha1));
+            return;
+        }
+
+        serveStored(ctx, sha1, "application/octet-stream", IMMUTABLE, withBody);
+    }
+
+    /**
+     * Serves an artifact from the {@link ArtifactStore}, fetching it first if it is registered but not stored yet.
+     */
+    static void serveStored(Context ctx, String sha1, String contentType, String cacheControl, boolean withBody) {
+        ArtifactStore store = ArtifactStore.shared();
+        Path stored = store.path(sha1);
+        if (Files.isRegularFile(stored)) {
+            serveFile(ctx, stored, sha1, contentType, cacheControl, withBody);
+            return;
+        }
+
+        if (store.source(sha1).isEmpty()) {
+            ctx.status(404).json(Map.of("error", "Not Found"));
+            return;
+        }
+
+        ctx.future(() -> store.fetch(sha1).handle((path, throwable) -> {
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof NoSuchElementException) {
+                ctx.status(404).json(Map.of("error", "Not Found"));
+            } else if (cause != null) {
+                Switchboard.LOGGER.error("Failed to fetch artifact " + sha1, cause);
+                ctx.status(502).json(Map.of("error", "Failed to fetch artifact from upstream"));
+            } else {
+                serveFile(ctx, path, sha1, contentType, cacheControl, withBody);
+            }
+
+            return null;
+        }));
+    }
+
+    static void serveFile(Context ctx, Path file, String etagValue, String contentType, String cacheControl, boolean withBody) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            serveRegion(ctx, channel, 0, channel.size(), etagValue, contentType, cacheControl, withBody);
+        } catch (IOException exception) {
+            Switchboard.LOGGER.warn("Failed to open " + file + ": " + exception.getMessage());
+            ctx.status(500).json(Map.of("error", "Failed to read artifact"));
+        }
+    }
+
+    /**
+     * Serves {@code size} bytes of the channel starting at {@code offset} as an immutable resource, with a strong ETag
+     * and single-range {@code Range} support. The body is copied with {@link FileChannel#transferTo}, so it is never
+     * read into the heap. The channel is only read positionally and may be shared between requests.
+     *
+     * @return the number of body bytes sent
+     */
+    static long serveRegion(Context ctx, FileChannel channel, long offset, long size, String etagValue,
+                            String contentType, String cacheControl, boolean withBody) {
+        String etag = '"' + etagValue + '"';
+        ctx.header("ETag", etag);
+        ctx.header("Accept-Ranges", "bytes");
+        ctx.header("Cache-Control", cacheControl);
+        ctx.contentType(contentType);
+
+        String ifNoneMatch = ctx.header("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.contains(etag))) {
+            ctx.status(304);
+            return 0;
+        }
+
+        long start = 0;
+        long length = size;
+        String range = ctx.header("Range");
+        String ifRange = ctx.header("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            ByteRange byteRange = ByteRange.parse(range, size);
+            if (byteRange == ByteRange.UNSATISFIABLE) {
+                ctx.status(416).header("Content-Range", "bytes */" + size);
+                ctx.res().setContentLengthLong(0);
+                return 0;
+            }
+
+            if (byteRange != null) {
+                start = byteRange.start();
+                length = byteRange.end() - byteRange.start() + 1;
+                ctx.status(206).header("Content-Range", "bytes " + start + "-" + byteRange.end() + "/" + size);
+            }
+        }
+
+        ctx.res().setContentLengthLong(length);
+        if (!withBody)
+            return 0;
+
+        long position = offset + start;
+        long remaining = length;
+        MetricsRouting.sendServerTiming(ctx);
+        try {
+            WritableByteChannel out = Channels.newChannel(ctx.res().getOutputStream());
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, out);
+                if (transferred <= 0) // The content is immutable, so this only happens if it was removed underneath us
+                    throw new IOException("Unexpected end of content at byte " + position);
+
+                position += transferred;
+                remaining -= transferred;
+            }
+        } catch (IOException exception) {
+            // Once the body has started the status can no longer change, so the client just sees a short response
+            Switchboard.LOGGER.warn("Failed to serve " + ctx.path() + ": " + exception.getMessage());
+            if (!ctx.res().isCommitted())
+                ctx.status(500).json(Map.of("error", "Failed to read artifact"));
+        }
+
+        return length - remaining;
+    }
+
+    /**
+     * An inclusive byte range. Only a single range is honoured; multiple ranges or a malformed header get the whole
+     * file, as RFC 9110 allows.
+     */
+    private record ByteRange(long start, long end) {
+        private static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+        private static ByteRange parse(String header, long size) {
+            if (!header.startsWith("bytes=") || header.indexOf(',') >= 0)
+                return null;
+
+            String spec = header.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0)
+                return null;
+
+            try {
+                if (dash == 0) {
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0 || size == 0)
+                        return UNSATISFIABLE;
+
+                    return new ByteRange(Math.max(0, size - suffix), size - 1);
+                }
+
+                long start = Long.parseLong(spec.substring(0, dash));
+                long end = dash == spec.length() - 1 ? size - 1 : Long.parseLong(spec.substring(dash + 1));
+                if (start >= size)
+                    return UNSATISFIABLE;
+                if (end < start)
+                    return null;
+
+                return new ByteRange(start, Math.min(end, size - 1));
+            } catch (NumberFormatException exception) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package dev.railroadide.switchboard.routing;
+
+import dev.railroadide.switchboard.Environment;
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.ArtifactStore;
+import dev.railroadide.switchboard.minecraft.assets.AssetPack;
+import dev.railroadide.switchboard.minecraft.assets.AssetPrefetch;
+import dev.railroadide.switchboard.minecraft.assets.AssetStore;
+import dev.railroadide.switchboard.minecraft.pistonmeta.AssetIndex;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves asset indexes and objects in the same layout as Mojang ({@code indexes/<id>.json} and
+ * {@code objects/<xx>/<hash>}), so launchers and build tools only need a different base URL.
+ */
+public class AssetRouting {
+    // An index id can be republished with new content, so it is revalidated against its ETag rather than kept forever
+    private static final String INDEX_CACHE_CONTROL = "public, max-age=3600";
+
+    private static final LongAdder SERVED_FROM_CACHE = Switchboard.METRICS.counter("switchboard_asset_served_bytes_total",
+            "Asset object bytes served, by whether the object was already stored.", "source", "cache");
+    private static final LongAdder SERVED_FROM_UPSTREAM = Switchboard.METRICS.counter("switchboard_asset_served_bytes_total",
+            "Asset object bytes served, by whether the object was already stored.", "source", "upstream");
+
+    public static void addRoutes(Javalin server) {
+        server.get("/assets/indexes/{id}", ctx -> serveIndex(ctx, true));
+        server.head("/assets/indexes/{id}", ctx -> serveIndex(ctx, false));
+        Switchboard.LOGGER.info("Registered endpoint: /assets/indexes/{id}");
+
+        server.post("/assets/indexes/{id}/prefetch", ctx -> {
+            AssetIndex index = getIndex(ctx);
+            if (index == null)
+                return;
+
+            ctx.status(202).json(AssetStore.shared().prefetch(index).snapshot());
+        });
+        server.get("/assets/indexes/{id}/prefetch", ctx -> {
+            String id = indexId(ctx);
+            AssetStore.shared().prefetchOf(id).map(AssetPrefetch::snapshot).ifPresentOrElse(ctx::json,
+                    () -> ctx.status(404).json(Map.of("error", "No prefetch of asset index " + id)));
+        });
+        Switchboard.LOGGER.info("Registered endpoint: /assets/indexes/{id}/prefetch");
+
+        server.get("/assets/objects/{prefix}/{hash}", ctx -> serveObject(ctx, true));
+        server.head("/assets/objects/{prefix}/{hash}", ctx -> serveObject(ctx, false));
+        Switchboard.LOGGER.info("Registered endpoint: /assets/objects/{prefix}/{hash}");
+    }
+
+    private static void serveIndex(Context ctx, boolean withBody) {
+        AssetIndex index = getIndex(ctx);
+        if (index != null)
+            ArtifactRouting.serveStored(ctx, index.sha1().toLowerCase(Locale.ROOT), "application/json", INDEX_CACHE_CONTROL, withBody);
+    }
+
+    private static void serveObject(Context ctx, boolean withBody) throws IOException {
+        String hash = ctx.pathParam("hash").toLowerCase(Locale.ROOT);
+        if (!ArtifactStore.isSha1(hash) || !hash.substring(0, 2).equals(ctx.pathParam("prefix").toLowerCase(Locale.ROOT))) {
+            ctx.status(400).json(Map.of("error", "Expected /assets/objects/<first two hash characters>/<SHA-1>"));
+            return;
+        }
+
+        AssetStore store = AssetStore.shared();
+        AssetPack.Location stored = store.pack().locate(hash);
+        if (stored != null) {
+            SERVED_FROM_CACHE.add(serveObject(ctx, store.pack(), stored, hash, withBody));
+            return;
+        }
+
+        ctx.future(() -> store.fetch(hash).handle((location, throwable) -> {
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof NoSuchElementException) {
+                ctx.status(404).json(Map.of("error", "Not Found"));
+            } else if (cause instanceof AssetPack.FullException) {
+                // Out of disk budget, so let the client fetch it from Mojang rather than fail
+                ctx.redirect(Environment.getAssetObjectsUrl() + "/" + hash.substring(0, 2) + "/" + hash, HttpStatus.FOUND);
+            } else if (cause != null) {
+                Switchboard.LOGGER.error("Failed to fetch asset object " + hash, cause);
+                ctx.status(502).json(Map.of("error", "Failed to fetch asset object from upstream"));
+            } else {
+                SERVED_FROM_UPSTREAM.add(serveObject(ctx, store.pack(), location, hash, withBody));
+            }
+
+            return null;
+        }));
+    }
+
+    private static long serveObject(Context ctx, AssetPack pack, AssetPack.Location location, String hash, boolean withBody) {
+        return ArtifactRouting.serveRegion(ctx, pack.channel(location), location.offset(), location.size(), hash,
+                "application/octet-stream", ArtifactRouting.IMMUTABLE, withBody);
+    }
+
+    private static AssetIndex getIndex(Context ctx) {
+        String id = indexId(ctx);
+        AssetIndex index = AssetStore.shared().index(id).orElse(null);
+        if (index == null)
+            ctx.status(404).json(Map.of("error", "Unknown asset index " + id + "; load a version that uses it first"));
+
+        return index;
+    }
+
+    // Launchers store indexes as <id>.json, so accept the file name as well as the bare id
+    private static String indexId(Context ctx) {
+        String id = ctx.pathParam("id");
+        return id.endsWith(".json") ? id.substring(0, id.length() - ".json".length()) : id;
+    }
+}
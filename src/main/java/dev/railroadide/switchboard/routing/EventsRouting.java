@@ -0,0 +1,100 @@
+package dev.railroadide.switchboard.routing;
+
+import com.google.gson.JsonObject;
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.events.VersionEvent;
+import dev.railroadide.switchboard.events.VersionEventBus;
+import io.javalin.Javalin;
+import io.javalin.http.sse.SseClient;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class EventsRouting {
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
+    public static void addRoutes(Javalin server) {
+        // Javalin runs each connection on its async executor, where it holds a thread blocked on its subscription queue:
+        // a virtual thread by default, but a platform thread from an unbounded pool with -virtualthreads false
+        server.sse("/events", client -> {
+            VersionEventBus eventBus = Switchboard.EVENT_BUS;
+            Set<String> topics = getTopics(client.ctx().queryParam("topics"));
+            String lastEventIdHeader = client.ctx().header("Last-Event-ID");
+
+            try (VersionEventBus.Subscription subscription = eventBus.subscribe(topics)) {
+                long lastSentId = Long.MIN_VALUE;
+                if (lastEventIdHeader != null && !lastEventIdHeader.isBlank()) {
+                    Optional<List<VersionEvent>> replay = replaySince(eventBus, lastEventIdHeader.trim(), topics);
+                    if (replay.isEmpty()) {
+                        sendResync(client, eventBus.lastEventId());
+                    } else {
+                        for (VersionEvent event : replay.get()) {
+                            sendEvent(client, event);
+                            lastSentId = event.id();
+                        }
+                    }
+                }
+
+                while (!client.terminated()) {
+                    if (subscription.isOverflowed()) {
+                        // Let the client reconnect with its Last-Event-ID rather than silently dropping events
+                        client.close();
+                        break;
+                    }
+
+                    VersionEvent event = subscription.poll(HEARTBEAT_INTERVAL);
+                    if (event == null) {
+                        client.sendComment("heartbeat");
+                        continue;
+                    }
+
+                    // Events published while the replay was being sent are already in the queue as well
+                    if (event.id() <= lastSentId)
+                        continue;
+
+                    sendEvent(client, event);
+                    lastSentId = event.id();
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Switchboard.LOGGER.info("Registered endpoint: /events");
+    }
+
+    private static Set<String> getTopics(String topicsParam) {
+        if (topicsParam == null || topicsParam.isBlank())
+            return Set.of();
+
+        return Arrays.stream(topicsParam.split(","))
+                .map(String::trim)
+                .filter(topic -> !topic.isEmpty())
+                .map(topic -> topic.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static Optional<List<VersionEvent>> replaySince(VersionEventBus eventBus, String lastEventId, Set<String> topics) {
+        try {
+            return eventBus.replaySince(Long.parseLong(lastEventId), topics);
+        } catch (NumberFormatException ignored) {
+            return Optional.empty();
+        }
+    }
+
+    private static void sendEvent(SseClient client, VersionEvent event) {
+        var data = new JsonObject();
+        data.addProperty("topic", event.topic());
+        data.add("version", event.version());
+        data.addProperty("timestamp", event.timestamp());
+
+        // SSE data must stay on a single line, so use the compact form rather than the pretty-printing GSON instance
+        client.sendEvent(event.topic(), data.toString(), String.valueOf(event.id()));
+    }
+
+    private static void sendResync(SseClient client, long lastEventId) {
+        var data = new JsonObject();
+        data.addProperty("lastEventId", lastEventId);
+        client.sendEvent("resync", data.toString(), String.valueOf(lastEventId));
+    }
+}
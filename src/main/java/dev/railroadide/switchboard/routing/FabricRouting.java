@@ -1,6 +1,7 @@
 package dev.railroadide.switchboard.routing;
 
 import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.minecraft.MavenProxy;
 import dev.railroadide.switchboard.minecraft.MinecraftVersion;
 import dev.railroadide.switchboard.minecraft.fabric.FabricApiVersionService;
 import dev.railroadide.switchboard.minecraft.fabric.FabricLoaderVersionService;
@@ -12,6 +13,10 @@ public class FabricRouting {
     public static void addRoutes(Javalin server) {
         var fabricApiVersionService = new FabricApiVersionService();
         var fabricLoaderVersionService = new FabricLoaderVersionService();
+        Router.refreshPeriodically("Fabric API", Router.versionRefreshInterval(), () -> fabricApiVersionService.forceRefresh(true));
+        Router.refreshPeriodically("Fabric loader", Router.versionRefreshInterval(), () -> fabricLoaderVersionService.forceRefresh(true));
+        MavenProxy.shared().registerMetadata("fabric", "net/fabricmc/fabric-api/fabric-api", fabricApiVersionService::mavenMetadata);
+
 
         server.get("/fabric/api/versions",
                 ctx -> ctx.json(Switchboard.GSON.toJsonTree(fabricApiVersionService.listAllVersions())));
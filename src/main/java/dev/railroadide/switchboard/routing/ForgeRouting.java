@@ -1,7 +1,9 @@
 package dev.railroadide.switchboard.routing;
 
 import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.minecraft.MavenProxy;
 import dev.railroadide.switchboard.minecraft.MinecraftVersion;
+import dev.railroadide.switchboard.minecraft.VersionSnapshot;
 import dev.railroadide.switchboard.minecraft.forge.ForgeVersionService;
 import io.javalin.Javalin;
 
@@ -10,8 +12,21 @@ import java.util.Map;
 public class ForgeRouting {
     public static void addRoutes(Javalin server) {
         var forgeVersionService = new ForgeVersionService();
-        server.get("/forge/versions",
-                ctx -> ctx.json(Switchboard.GSON.toJsonTree(forgeVersionService.listAllVersions())));
+        var allVersions = new RenderedJson();
+        Router.refreshPeriodically("Forge", Router.versionRefreshInterval(), () -> forgeVersionService.forceRefresh(true));
+        MavenProxy.shared().registerMetadata("forge", "net/minecraftforge/forge", forgeVersionService::mavenMetadata);
+
+        server.get("/forge/versions", ctx -> {
+            if (ctx.queryParam("sinceRevision") != null) {
+                long sinceRevision = ctx.queryParamAsClass("sinceRevision", Long.class).get();
+                ctx.json(Switchboard.GSON.toJsonTree(forgeVersionService.versionsSince(sinceRevision)));
+                return;
+            }
+
+            VersionSnapshot<String> snapshot = forgeVersionService.listAllVersionsWithRevision();
+            ctx.header(Router.REVISION_HEADER, String.valueOf(snapshot.revision()));
+            allVersions.serve(ctx, snapshot.versions(), () -> Switchboard.GSON.toJsonTree(snapshot.versions()));
+        });
         Switchboard.LOGGER.info("Registered endpoint: /forge/versions");
 
         server.get("/forge/versions/{minecraftVersion}", ctx -> {
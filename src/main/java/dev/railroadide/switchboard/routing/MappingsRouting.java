@@ -1,6 +1,7 @@
 package dev.railroadide.switchboard.routing;
 
 import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.minecraft.MavenProxy;
 import dev.railroadide.switchboard.minecraft.MinecraftVersion;
 import dev.railroadide.switchboard.minecraft.mappings.MCPVersionService;
 import dev.railroadide.switchboard.minecraft.mappings.MojmapVersionService;
@@ -14,9 +15,17 @@ import java.util.Map;
 public class MappingsRouting {
     public static void addRoutes(Javalin server) {
         var parchmentVersionManager = new ParchmentVersionManager();
+        var groupedParchment = new RenderedJson();
         var mcpVersionService = new MCPVersionService();
         var mojmapVersionService = new MojmapVersionService();
         var yarnVersionService = new YarnVersionService();
+        Router.refreshPeriodically("MCP", Router.versionRefreshInterval(), () -> mcpVersionService.forceRefresh(false));
+        Router.refreshPeriodically("Yarn", Router.versionRefreshInterval(), () -> yarnVersionService.forceRefresh(true));
+        // A refresh re-clones the Parchment repository, so this is its only refresh; the cache just expires
+        Router.refreshPeriodically("Parchment", ParchmentVersionManager.REFRESH_INTERVAL, parchmentVersionManager::refresh);
+        MavenProxy.shared().registerMetadata("forge", "de/oceanlabs/mcp/mcp_stable", () -> mcpVersionService.mavenMetadata(false));
+        MavenProxy.shared().registerMetadata("forge", "de/oceanlabs/mcp/mcp_snapshot", () -> mcpVersionService.mavenMetadata(true));
+        MavenProxy.shared().registerMetadata("fabric", "net/fabricmc/yarn", yarnVersionService::mavenMetadata);
 
         server.get("/parchment/versions",
                 ctx -> ctx.json(Switchboard.GSON.toJsonTree(parchmentVersionManager.listAllVersions())));
@@ -48,8 +57,10 @@ public class MappingsRouting {
         });
         Switchboard.LOGGER.info("Registered endpoint: /parchment/latest");
 
-        server.get("/parchment/grouped",
-                ctx -> ctx.json(parchmentVersionManager.getAllVersionsGroupedByMinecraftVersion()));
+        server.get("/parchment/grouped", ctx -> {
+            Map<String, ?> grouped = parchmentVersionManager.getAllVersionsGroupedByMinecraftVersion();
+            groupedParchment.serve(ctx, grouped, () -> grouped);
+        });
         Switchboard.LOGGER.info("Registered endpoint: /parchment/grouped");
 
         server.get("/mcp/versions",
@@ -118,8 +129,17 @@ public class MappingsRouting {
                 ));
         Switchboard.LOGGER.info("Registered endpoint: /mojmap/latest");
 
-        server.get("/yarn/versions",
-                ctx -> ctx.json(Switchboard.GSON.toJsonTree(yarnVersionService.listAllVersions())));
+        server.get("/yarn/versions", ctx -> {
+            if (ctx.queryParam("sinceRevision") != null) {
+                long sinceRevision = ctx.queryParamAsClass("sinceRevision", Long.class).get();
+                ctx.json(Switchboard.GSON.toJsonTree(yarnVersionService.versionsSince(sinceRevision)));
+                return;
+            }
+
+            var snapshot = yarnVersionService.listAllVersionsWithRevision();
+            ctx.header(Router.REVISION_HEADER, String.valueOf(snapshot.revision()));
+            ctx.json(Switchboard.GSON.toJsonTree(snapshot.versions()));
+        });
         Switchboard.LOGGER.info("Registered endpoint: /yarn/versions");
 
         server.get("/yarn/versions/{minecraftVersion}", ctx -> {
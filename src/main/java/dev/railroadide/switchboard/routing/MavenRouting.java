@@ -0,0 +1,140 @@
+package dev.railroadide.switchboard.routing;
+
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.http.UpstreamSaturatedException;
+import dev.railroadide.switchboard.minecraft.MavenProxy;
+import dev.railroadide.switchboard.util.Bulkhead;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Exposes the {@link MavenProxy} as Maven repositories under {@code /maven/{repo}/}, so builds can resolve Forge,
+ * NeoForge and Fabric artifacts through Switchboard.
+ */
+public class MavenRouting {
+    public static void addRoutes(Javalin server) {
+        server.get("/maven/{repo}/<path>", ctx -> serve(ctx, true));
+        server.head("/maven/{repo}/<path>", ctx -> serve(ctx, false));
+        Switchboard.LOGGER.info("Registered endpoint: /maven/{repo}/<path>");
+    }
+
+    private static void serve(Context ctx, boolean withBody) {
+        MavenProxy proxy = MavenProxy.shared();
+        MavenProxy.Repository repository = proxy.repository(ctx.pathParam("repo")).orElse(null);
+        if (repository == null) {
+            ctx.status(404).json(Map.of("error", "Unknown Maven repository " + ctx.pathParam("repo")));
+            return;
+        }
+
+        String path = ctx.pathParam("path");
+        if (!MavenProxy.isValidPath(path)) {
+            ctx.status(400).json(Map.of("error", "Invalid path"));
+            return;
+        }
+
+        Optional<byte[]> metadata;
+        try {
+            metadata = proxy.metadata(repository, path);
+        } catch (RuntimeException exception) {
+            Switchboard.LOGGER.warn("Failed to build " + path + " for " + repository.name() + ": " + exception.getMessage());
+            ctx.status(502).json(Map.of("error", "Failed to load Maven metadata"));
+            return;
+        }
+
+        if (metadata.isPresent()) {
+            count(repository, "metadata");
+            ctx.header("Cache-Control", "no-cache").contentType(contentType(path)).result(metadata.get());
+            return;
+        }
+
+        Path cached = proxy.path(repository, path);
+        if (Files.isRegularFile(cached)) {
+            count(repository, "hit");
+            serveCached(ctx, proxy, cached, path, withBody);
+            return;
+        }
+
+        if (!MavenProxy.isCacheable(path)) {
+            count(repository, "passthrough");
+            passThrough(ctx, proxy, repository, path);
+            return;
+        }
+
+        ctx.future(() -> proxy.fetch(repository, path).handle((file, throwable) -> {
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof NoSuchElementException) {
+                ctx.status(404).json(Map.of("error", "Not Found"));
+            } else if (cause instanceof Bulkhead.BulkheadFullException || cause instanceof UpstreamSaturatedException) {
+                ctx.status(503).header("Retry-After", "5").json(Map.of("error", "Upstream is busy, try again later."));
+            } else if (cause != null) {
+                Switchboard.LOGGER.error("Failed to fetch " + path + " from " + repository.name(), cause);
+                ctx.status(502).json(Map.of("error", "Failed to fetch artifact from upstream"));
+            } else if (file.isPresent()) {
+                count(repository, "miss");
+                serveCached(ctx, proxy, file.get(), path, withBody);
+            } else {
+                count(repository, "passthrough");
+                passThrough(ctx, proxy, repository, path);
+            }
+
+            return null;
+        }));
+    }
+
+    private static void serveCached(Context ctx, MavenProxy proxy, Path file, String path, boolean withBody) {
+        String sha1;
+        try {
+            sha1 = proxy.sha1Of(file);
+        } catch (IOException exception) {
+            Switchboard.LOGGER.warn("Failed to read checksum of " + file + ": " + exception.getMessage());
+            ctx.status(500).json(Map.of("error", "Failed to read artifact"));
+            return;
+        }
+
+        ArtifactRouting.serveFile(ctx, file, sha1, contentType(path), ArtifactRouting.IMMUTABLE, withBody);
+    }
+
+    // Content that may change or cannot be verified is relayed as-is, status included, without touching the cache
+    private static void passThrough(Context ctx, MavenProxy proxy, MavenProxy.Repository repository, String path) {
+        try {
+            HttpResponse<InputStream> response = proxy.stream(repository, path);
+            ctx.status(response.statusCode());
+            ctx.contentType(response.headers().firstValue("Content-Type").orElse(contentType(path)));
+            response.headers().firstValueAsLong("Content-Length").ifPresent(length -> ctx.res().setContentLengthLong(length));
+            ctx.result(response.body());
+        } catch (IOException exception) {
+            Switchboard.LOGGER.warn("Failed to relay " + path + " from " + repository.name() + ": " + exception.getMessage());
+            ctx.status(502).json(Map.of("error", "Failed to fetch from upstream"));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            ctx.status(503).json(Map.of("error", "Interrupted"));
+        }
+    }
+
+    private static void count(MavenProxy.Repository repository, String result) {
+        Switchboard.METRICS.counter("switchboard_maven_requests_total", "Maven proxy requests by how they were answered.",
+                "repository", repository.name(), "result", result).increment();
+    }
+
+    private static String contentType(String path) {
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        int dot = fileName.lastIndexOf('.');
+        return switch (dot < 0 ? "" : fileName.substring(dot + 1)) {
+            case "pom", "xml" -> "application/xml";
+            case "jar" -> "application/java-archive";
+            case "json", "module" -> "application/json";
+            case "sha1", "md5", "sha256", "sha512", "asc" -> "text/plain";
+            default -> "application/octet-stream";
+        };
+    }
+}
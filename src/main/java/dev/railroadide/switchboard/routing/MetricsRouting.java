@@ -0,0 +1,90 @@
+package dev.railroadide.switchboard.routing;
+
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.metrics.DefaultCollectors;
+import dev.railroadide.switchboard.metrics.MetricsWriter;
+import dev.railroadide.switchboard.metrics.RequestProfiler;
+import dev.railroadide.switchboard.metrics.ServerTiming;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MetricsRouting {
+    private static final String START_ATTRIBUTE = "switchboard.requestStart";
+    private static final String TIMING_ATTRIBUTE = "switchboard.serverTiming";
+    private static final String PROBE_ATTRIBUTE = "switchboard.profilerProbe";
+    static final RequestProfiler PROFILER = new RequestProfiler();
+    private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+
+    public static void addRoutes(Javalin server) {
+        server.before(ctx -> {
+            ctx.attribute(START_ATTRIBUTE, System.nanoTime());
+            ctx.attribute(TIMING_ATTRIBUTE, ServerTiming.begin());
+            ctx.attribute(PROBE_ATTRIBUTE, PROFILER.begin());
+            IN_FLIGHT.incrementAndGet();
+        });
+        server.after(ctx -> {
+            Long start = ctx.attribute(START_ATTRIBUTE);
+            if (start == null)
+                return;
+
+            // Read from the context rather than the thread, since async handlers finish on another thread
+            ServerTiming timing = ctx.attribute(TIMING_ATTRIBUTE);
+            ServerTiming.end();
+            // Handlers that wrote the body themselves have already sent it through sendServerTiming
+            if (timing != null && !ctx.res().isCommitted())
+                ctx.header(ServerTiming.HEADER, timing.header());
+
+            IN_FLIGHT.decrementAndGet();
+            // Label by route template rather than the raw path so path parameters do not explode the series count
+            String route = routeOf(ctx);
+            String method = ctx.method().name();
+            Switchboard.METRICS.counter("switchboard_http_requests_total", "HTTP requests by route and status.",
+                    "method", method, "route", route, "status", Integer.toString(ctx.statusCode())).increment();
+            Switchboard.METRICS.histogram("switchboard_http_request_duration_seconds", "HTTP request latency by route.",
+                    "method", method, "route", route).record(System.nanoTime() - start);
+
+            RequestProfiler.Probe probe = ctx.attribute(PROBE_ATTRIBUTE);
+            if (probe != null)
+                PROFILER.end(probe, method, route, ctx.path(), ctx.pathParamMap(), ctx.queryString(), ctx.statusCode());
+        });
+
+        Switchboard.METRICS.addCollector(writer -> writer.gauge("switchboard_http_requests_in_flight",
+                "HTTP requests currently being handled.", IN_FLIGHT.get()));
+        Switchboard.METRICS.addCollector(writer -> PROFILER.routes().forEach(stats -> {
+            writer.counter("switchboard_http_request_allocated_bytes_total",
+                    "Heap bytes allocated by the handling thread, by route.", stats.allocatedBytes(),
+                    "method", stats.method(), "route", stats.route());
+            writer.counter("switchboard_http_request_cpu_seconds_total",
+                    "CPU time of the handling thread, by route.", stats.cpuTime().toNanos() / 1e9,
+                    "method", stats.method(), "route", stats.route());
+        }));
+        DefaultCollectors.register(Switchboard.METRICS);
+
+        server.get("/metrics", ctx -> ctx.contentType(MetricsWriter.CONTENT_TYPE).result(Switchboard.METRICS.scrape()));
+        Switchboard.LOGGER.info("Registered endpoint: /metrics");
+    }
+
+    /**
+     * Sets the {@code Server-Timing} header from the timing so far. Handlers that write to the response stream
+     * themselves call this first, since the body commits the headers before the after-handler could add it.
+     * <p>
+     * {@code /events} never carries the header: Javalin commits an SSE response before its handler runs, and the
+     * stream has no end to time.
+     */
+    static void sendServerTiming(Context ctx) {
+        ServerTiming timing = ctx.attribute(TIMING_ATTRIBUTE);
+        if (timing != null)
+            ctx.header(ServerTiming.HEADER, timing.header());
+    }
+
+    private static String routeOf(Context ctx) {
+        try {
+            String path = ctx.endpointHandlerPath();
+            return path == null || path.isBlank() ? "unmatched" : path;
+        } catch (IllegalStateException exception) {
+            return "unmatched";
+        }
+    }
+}
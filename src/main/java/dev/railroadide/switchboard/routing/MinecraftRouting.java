@@ -1,17 +1,41 @@
 package dev.railroadide.switchboard.routing;
 
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.minecraft.LaunchResolver;
 import dev.railroadide.switchboard.minecraft.MinecraftVersion;
+import dev.railroadide.switchboard.minecraft.PistonMetaIndex;
+import dev.railroadide.switchboard.minecraft.VersionSnapshot;
+import dev.railroadide.switchboard.minecraft.pistonmeta.LaunchProfile;
+import dev.railroadide.switchboard.minecraft.pistonmeta.VersionPackage;
 import io.javalin.Javalin;
+import io.javalin.http.Context;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class MinecraftRouting {
+    // Whole packages are requested mostly for the newest versions, so only that many are kept rendered
+    private static final int RENDERED_PACKAGES = 64;
+
     public static void addRoutes(Javalin server) {
-        server.get("/minecraft/versions", ctx ->
-                ctx.json(Switchboard.GSON.toJsonTree(MinecraftVersion.getVersions())));
+        var allVersions = new RenderedJson();
+        server.get("/minecraft/versions", ctx -> {
+            if (ctx.queryParam("sinceRevision") != null) {
+                long sinceRevision = ctx.queryParamAsClass("sinceRevision", Long.class).get();
+                ctx.json(Switchboard.GSON.toJsonTree(MinecraftVersion.getVersionsSince(sinceRevision)));
+                return;
+            }
+
+            VersionSnapshot<MinecraftVersion> snapshot = MinecraftVersion.getVersionsWithRevision();
+            ctx.header(Router.REVISION_HEADER, String.valueOf(snapshot.revision()));
+            allVersions.serve(ctx, snapshot.versions(), () -> Switchboard.GSON.toJsonTree(snapshot.versions()));
+        });
         Switchboard.LOGGER.info("Registered endpoint: /minecraft/versions");
 
         server.get("/minecraft/versions/{id}", ctx -> {
@@ -51,6 +75,7 @@ public class MinecraftRouting {
         });
         Switchboard.LOGGER.info("Registered endpoint: /minecraft/latest/{versionType}");
 
+        var renderedPackages = new RenderedJsonCache<String>(RENDERED_PACKAGES);
         server.get("/minecraft/piston-meta/{id}", ctx -> {
             String id = ctx.pathParam("id");
 
@@ -60,25 +85,145 @@ public class MinecraftRouting {
                 return;
             }
 
-            String requestBody = ctx.body();
-            ctx.future(() -> minecraftVersionOpt.get().requestPistonMeta().thenAccept(versionPackage -> {
-                // e.g. arguments.game,assets,mainClass,downloads.client.url = ["arguments.game", "assets", "mainClass", "downloads.client.url"]
-                List<String> fields = getFieldsFromBody(requestBody);
-                JsonObject versionPackageJson = Switchboard.GSON.toJsonTree(versionPackage).getAsJsonObject();
-                if (fields.isEmpty() || fields.contains("*")) {
-                    ctx.json(versionPackageJson);
-                } else {
-                    var filtered = new JsonObject();
-                    filtered = filterJsonObject(versionPackageJson, fields);
-
-                    ctx.json(filtered);
+            // e.g. arguments.game,assets,mainClass,downloads.client.url = ["arguments.game", "assets", "mainClass", "downloads.client.url"]
+            List<String> fields = getFieldsFromBody(ctx.body());
+            MinecraftVersion version = minecraftVersionOpt.get();
+            RenderedJson rendered = renderedPackages.get(id);
+            ctx.future(() -> CompletableFuture.runAsync(() -> {
+                try {
+                    servePistonMeta(ctx, rendered, version, () -> version.requestPistonMeta().join(), fields);
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
                 }
             }));
         });
         Switchboard.LOGGER.info("Registered endpoint: /minecraft/piston-meta/{id}");
+
+        // e.g. ?os=linux&arch=x86_64&feature=has_custom_resolution
+        server.get("/minecraft/piston-meta/{id}/classpath", ctx -> {
+            Optional<MinecraftVersion> minecraftVersionOpt = MinecraftVersion.fromId(ctx.pathParam("id"));
+            if (minecraftVersionOpt.isEmpty()) {
+                ctx.status(404).json(Map.of("error", "Not Found"));
+                return;
+            }
+
+            LaunchProfile profile = getLaunchProfile(ctx);
+            if (profile == null) {
+                ctx.status(400).json(Map.of("error", "Missing required query parameter 'os'."));
+                return;
+            }
+
+            ctx.future(() -> LaunchResolver.resolve(minecraftVersionOpt.get(), profile).thenAccept(resolved -> {
+                var response = new JsonObject();
+                response.addProperty("version", resolved.version());
+                response.add("classpath", Switchboard.GSON.toJsonTree(resolved.classpath()));
+                response.add("client", Switchboard.GSON.toJsonTree(resolved.client()));
+                ctx.json(response);
+            }));
+        });
+        Switchboard.LOGGER.info("Registered endpoint: /minecraft/piston-meta/{id}/classpath");
+
+        server.get("/minecraft/piston-meta/{id}/arguments", ctx -> {
+            Optional<MinecraftVersion> minecraftVersionOpt = MinecraftVersion.fromId(ctx.pathParam("id"));
+            if (minecraftVersionOpt.isEmpty()) {
+                ctx.status(404).json(Map.of("error", "Not Found"));
+                return;
+            }
+
+            LaunchProfile profile = getLaunchProfile(ctx);
+            if (profile == null) {
+                ctx.status(400).json(Map.of("error", "Missing required query parameter 'os'."));
+                return;
+            }
+
+            ctx.future(() -> LaunchResolver.resolve(minecraftVersionOpt.get(), profile).thenAccept(resolved -> {
+                var response = new JsonObject();
+                response.addProperty("version", resolved.version());
+                response.addProperty("mainClass", resolved.mainClass());
+                response.add("jvm", Switchboard.GSON.toJsonTree(resolved.jvm()));
+                response.add("game", Switchboard.GSON.toJsonTree(resolved.game()));
+                ctx.json(response);
+            }));
+        });
+        Switchboard.LOGGER.info("Registered endpoint: /minecraft/piston-meta/{id}/arguments");
+
+        // e.g. {"os": "linux", "arch": "x86_64", "features": [], "variables": {"auth_player_name": "Steve", ...}}
+        server.post("/minecraft/piston-meta/{id}/command", ctx -> {
+            Optional<MinecraftVersion> minecraftVersionOpt = MinecraftVersion.fromId(ctx.pathParam("id"));
+            if (minecraftVersionOpt.isEmpty()) {
+                ctx.status(404).json(Map.of("error", "Not Found"));
+                return;
+            }
+
+            CommandRequest request;
+            try {
+                request = Switchboard.GSON.fromJson(ctx.body(), CommandRequest.class);
+            } catch (JsonParseException exception) {
+                ctx.status(400).json(Map.of("error", "Invalid request body: " + exception.getMessage()));
+                return;
+            }
+
+            if (request == null || request.os() == null || request.os().isBlank()) {
+                ctx.status(400).json(Map.of("error", "Missing required field 'os'."));
+                return;
+            }
+
+            var profile = new LaunchProfile(request.os(), request.arch(), request.osVersion(), request.features());
+            Map<String, String> variables = request.variables() == null ? Map.of() : request.variables();
+            ctx.future(() -> LaunchResolver.render(minecraftVersionOpt.get(), profile, variables)
+                    .thenAccept(command -> ctx.json(Switchboard.GSON.toJsonTree(command))));
+        });
+        Switchboard.LOGGER.info("Registered endpoint: /minecraft/piston-meta/{id}/command");
+
+        // e.g. ?javaVersion=21&library=org.lwjgl:lwjgl&clientMappings=true, answered from packages loaded so far
+        server.get("/minecraft/piston-meta-index", ctx -> {
+            var query = new PistonMetaIndex.Query(
+                    ctx.queryParamAsClass("javaVersion", Integer.class).allowNullable().get(),
+                    ctx.queryParam("mainClass"),
+                    ctx.queryParam("assets"),
+                    ctx.queryParamAsClass("complianceLevel", Integer.class).allowNullable().get(),
+                    ctx.queryParams("library"),
+                    ctx.queryParamAsClass("clientMappings", Boolean.class).allowNullable().get(),
+                    ctx.queryParamAsClass("serverMappings", Boolean.class).allowNullable().get());
+
+            PistonMetaIndex index = PistonMetaIndex.shared();
+            ctx.json(Map.of(
+                    "versions", index.query(query),
+                    "indexed", index.size(),
+                    "known", MinecraftVersion.getVersions().size()));
+        });
+        Switchboard.LOGGER.info("Registered endpoint: /minecraft/piston-meta-index");
+
+        server.get("/minecraft/piston-meta-index/facets", ctx ->
+                ctx.json(Switchboard.GSON.toJsonTree(PistonMetaIndex.shared().facets())));
+        Switchboard.LOGGER.info("Registered endpoint: /minecraft/piston-meta-index/facets");
+    }
+
+    /**
+     * Responds with the package as JSON, filtered to the given fields. Whole packages are rendered once per source and
+     * kept; both are rendered from the same model, so a field looks the same with or without a filter.
+     */
+    static void servePistonMeta(Context ctx, RenderedJson rendered, Object source, Supplier<VersionPackage> versionPackage,
+                                List<String> fields) throws IOException {
+        if (fields.isEmpty() || fields.contains("*")) {
+            rendered.serve(ctx, source, () -> Switchboard.GSON.toJsonTree(versionPackage.get()));
+            return;
+        }
+
+        JsonObject versionPackageJson = Switchboard.GSON.toJsonTree(versionPackage.get()).getAsJsonObject();
+        ctx.json(filterJsonObject(versionPackageJson, fields));
     }
 
-    private static List<String> getFieldsFromBody(String body) {
+    static LaunchProfile getLaunchProfile(Context ctx) {
+        String os = ctx.queryParam("os");
+        if (os == null || os.isBlank())
+            return null;
+
+        return new LaunchProfile(os, ctx.queryParam("arch"), ctx.queryParam("osVersion"),
+                new HashSet<>(ctx.queryParams("feature")));
+    }
+
+    static List<String> getFieldsFromBody(String body) {
         if (body == null || body.isBlank())
             return Collections.emptyList();
 
@@ -93,7 +238,7 @@ public class MinecraftRouting {
                 .toList();
     }
 
-    private static JsonObject filterJsonObject(JsonObject original, List<String> fields) {
+    static JsonObject filterJsonObject(JsonObject original, List<String> fields) {
         var filtered = new JsonObject();
         for (String field : fields) {
             String[] path = field.split("\\.");
@@ -126,4 +271,8 @@ public class MinecraftRouting {
 
         return filtered;
     }
+
+    record CommandRequest(String os, String arch, String osVersion, Set<String> features,
+                          Map<String, String> variables) {
+    }
 }
@@ -1,6 +1,7 @@
 package dev.railroadide.switchboard.routing;
 
 import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.minecraft.MavenProxy;
 import dev.railroadide.switchboard.minecraft.MinecraftVersion;
 import dev.railroadide.switchboard.minecraft.forge.NeoforgeVersionService;
 import io.javalin.Javalin;
@@ -10,9 +11,21 @@ import java.util.Map;
 public class NeoforgeRouting {
     public static void addRoutes(Javalin server) {
         var neoforgeVersionService = new NeoforgeVersionService();
+        Router.refreshPeriodically("NeoForge", Router.versionRefreshInterval(), () -> neoforgeVersionService.forceRefresh(true));
+        MavenProxy.shared().registerMetadata("neoforged", "net/neoforged/neoforge", neoforgeVersionService::mavenMetadata);
 
-        server.get("/neoforge/versions",
-                ctx -> ctx.json(Switchboard.GSON.toJsonTree(neoforgeVersionService.listAllVersions())));
+
+        server.get("/neoforge/versions", ctx -> {
+            if (ctx.queryParam("sinceRevision") != null) {
+                long sinceRevision = ctx.queryParamAsClass("sinceRevision", Long.class).get();
+                ctx.json(Switchboard.GSON.toJsonTree(neoforgeVersionService.versionsSince(sinceRevision)));
+                return;
+            }
+
+            var snapshot = neoforgeVersionService.listAllVersionsWithRevision();
+            ctx.header(Router.REVISION_HEADER, String.valueOf(snapshot.revision()));
+            ctx.json(Switchboard.GSON.toJsonTree(snapshot.versions()));
+        });
         Switchboard.LOGGER.info("Registered endpoint: /neoforge/versions");
 
         server.get("/neoforge/versions/{minecraftVersion}", ctx -> {
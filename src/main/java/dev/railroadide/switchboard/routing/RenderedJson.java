@@ -0,0 +1,101 @@
+package dev.railroadide.switchboard.routing;
+
+import dev.railroadide.switchboard.util.PayloadStore;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A JSON response body rendered once per version of its source and kept off-heap in the {@link PayloadStore}, for
+ * large lists that are requested far more often than they change.
+ * <p>
+ * The source is compared by identity, so it must be an object that is replaced, not mutated, when the data changes.
+ * Once {@link #release() released}, the body is rendered per response instead of kept.
+ */
+final class RenderedJson {
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Rendered rendered;
+    private boolean released;
+
+    /**
+     * Responds with {@code model} as JSON, rendering it only if the current body was rendered from another source.
+     */
+    void serve(Context ctx, Object source, Supplier<?> model) throws IOException {
+        while (true) {
+            Rendered current = current(ctx, source, model);
+            PayloadStore.Payload payload = current.payload();
+            if (payload == null) {
+                ctx.contentType(ContentType.APPLICATION_JSON).result(current.heap());
+                return;
+            }
+
+            // Replaced and released between reading it and getting here, so look again
+            if (!payload.retain())
+                continue;
+
+            try {
+                ctx.contentType(ContentType.APPLICATION_JSON);
+                MetricsRouting.sendServerTiming(ctx);
+                payload.writeTo(ctx.outputStream());
+            } finally {
+                payload.release();
+            }
+
+            return;
+        }
+    }
+
+    private Rendered current(Context ctx, Object source, Supplier<?> model) {
+        Rendered current = rendered;
+        if (current != null && current.source() == source)
+            return current;
+
+        lock.lock();
+        try {
+            current = rendered;
+            if (current != null && current.source() == source)
+                return current;
+
+            Object value = model.get();
+            byte[] body = ctx.jsonMapper().toJsonString(value, value.getClass()).getBytes(StandardCharsets.UTF_8);
+            // Nothing would release a body stored now, so it stays on the heap for this response only
+            if (released)
+                return new Rendered(source, null, body);
+
+            PayloadStore.Payload payload = PayloadStore.shared().store(body);
+            var fresh = new Rendered(source, payload, payload == null ? body : null);
+            rendered = fresh;
+            // Responses still writing the old body hold their own reference, so it is only freed once they finish
+            if (current != null && current.payload() != null)
+                current.payload().release();
+
+            return fresh;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the stored body. Responses still writing it hold their own reference, so it stays valid until they finish.
+     */
+    void release() {
+        lock.lock();
+        try {
+            released = true;
+            Rendered current = rendered;
+            rendered = null;
+            if (current != null && current.payload() != null)
+                current.payload().release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Exactly one of payload and heap is set, heap only when the payload store was full
+    private record Rendered(Object source, PayloadStore.Payload payload, byte[] heap) {
+    }
+}
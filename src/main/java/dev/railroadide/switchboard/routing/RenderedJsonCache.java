@@ -0,0 +1,37 @@
+package dev.railroadide.switchboard.routing;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link RenderedJson} per key, for responses with many variants of which only some are requested often. The least
+ * recently used ones beyond the maximum are released, so their bodies do not hold on to off-heap memory.
+ */
+final class RenderedJsonCache<K> {
+    private final int maximumSize;
+    // Access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<K, RenderedJson> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    RenderedJsonCache(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    RenderedJson get(K key) {
+        RenderedJson rendered;
+        RenderedJson evicted = null;
+        synchronized (entries) {
+            rendered = entries.computeIfAbsent(key, _ -> new RenderedJson());
+            if (entries.size() > maximumSize) {
+                Iterator<Map.Entry<K, RenderedJson>> eldest = entries.entrySet().iterator();
+                evicted = eldest.next().getValue();
+                eldest.remove();
+            }
+        }
+
+        if (evicted != null)
+            evicted.release();
+
+        return rendered;
+    }
+}
@@ -1,12 +1,24 @@
 package dev.railroadide.switchboard.routing;
 
+import dev.railroadide.switchboard.Environment;
 import dev.railroadide.switchboard.Switchboard;
 import dev.railroadide.switchboard.minecraft.MinecraftVersion;
+import dev.railroadide.switchboard.util.Bulkhead;
 import io.javalin.Javalin;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Router {
+    public static final String REVISION_HEADER = "X-Switchboard-Revision";
+    private static final Duration MAX_VERSION_REFRESH_INTERVAL = Duration.ofMinutes(10);
+    private static final ScheduledExecutorService REFRESH_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("version-refresh").factory());
+
     private final Javalin server;
 
     public Router(Javalin server) {
@@ -15,14 +27,66 @@ public class Router {
 
     public void initialize() {
         MinecraftVersion.requestMinecraftVersions();
+        Thread.ofVirtual().name("piston-meta-index").start(() -> {
+            int loaded = MinecraftVersion.loadCachedPistonMeta();
+            Switchboard.LOGGER.info("Indexed " + loaded + " cached piston meta packages");
+        });
+
+        // Keep the manifest fresh so new Minecraft releases are announced on /events without a restart
+        refreshPeriodically("Minecraft", versionRefreshInterval(), MinecraftVersion::requestMinecraftVersions);
 
+        MetricsRouting.addRoutes(server);
         MappingsRouting.addRoutes(server);
         FabricRouting.addRoutes(server);
         ForgeRouting.addRoutes(server);
         NeoforgeRouting.addRoutes(server);
         MinecraftRouting.addRoutes(server);
+        EventsRouting.addRoutes(server);
+        AdminRouting.addRoutes(server);
+        ArtifactRouting.addRoutes(server);
+        AssetRouting.addRoutes(server);
+        MavenRouting.addRoutes(server);
+
+        // A full bulkhead means the upstream is already saturated; tell clients to back off instead of a bare 500
+        server.exception(Bulkhead.BulkheadFullException.class, (exception, ctx) -> {
+            Switchboard.LOGGER.warn(exception.getMessage());
+            ctx.status(503).header("Retry-After", "5").json(Map.of("error", "Upstream is busy, try again later."));
+        });
 
         server.get("/", ctx -> ctx.json(Map.of("message", "Switchboard is running.")));
         Switchboard.LOGGER.info("Registered endpoint: /");
     }
+
+    /**
+     * How often version lists are refreshed in the background: the version cache TTL, but at least every 10 minutes.
+     */
+    static Duration versionRefreshInterval() {
+        Duration ttl = Environment.getVersionCacheTtl();
+        return ttl.compareTo(MAX_VERSION_REFRESH_INTERVAL) < 0 ? ttl : MAX_VERSION_REFRESH_INTERVAL;
+    }
+
+    /**
+     * Runs the refresh every interval, so a service that only refreshes when a request finds its cache expired still
+     * notices (and announces on {@code /events}) new versions while nobody is asking for them. Each refresh runs on its
+     * own virtual thread so a slow upstream cannot hold up the others, and is skipped while the previous one is still
+     * running.
+     */
+    static void refreshPeriodically(String name, Duration interval, Runnable refresh) {
+        var running = new AtomicBoolean();
+        REFRESH_SCHEDULER.scheduleAtFixedRate(() -> {
+            if (!running.compareAndSet(false, true))
+                return;
+
+            Thread.ofVirtual().name("refresh-" + name).start(() -> {
+                try {
+                    refresh.run();
+                } catch (RuntimeException exception) {
+                    // An exception escaping the scheduled task would cancel every later run
+                    Switchboard.LOGGER.error("Failed to refresh " + name + " versions", exception);
+                } finally {
+                    running.set(false);
+                }
+            });
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
 }
@@ -0,0 +1,146 @@
+package dev.railroadide.switchboard.util;
+
+import dev.railroadide.switchboard.metrics.Histogram;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many fetches against a single upstream source may run and wait at once, so a stalled upstream can only
+ * tie up its own permits and queue slots rather than every request thread on the node.
+ * <p>
+ * Bulkheads are registered per source name (see {@link #forSource(String)}) so they can be listed for monitoring.
+ */
+public class Bulkhead {
+    public static final int DEFAULT_MAX_CONCURRENT = 4;
+    public static final int DEFAULT_MAX_QUEUED = 32;
+    public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(10);
+
+    private static final Map<String, Bulkhead> BULKHEADS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Duration maxWait;
+
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final Histogram queueWait = new Histogram();
+
+    public Bulkhead(String name, int maxConcurrent, int maxQueued, Duration maxWait) {
+        if (maxConcurrent <= 0)
+            throw new IllegalArgumentException("maxConcurrent must be positive.");
+        if (maxQueued < 0)
+            throw new IllegalArgumentException("maxQueued cannot be negative.");
+
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    public static Bulkhead forSource(String name) {
+        return forSource(name, DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_QUEUED, DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * Returns the bulkhead registered for the source, creating it with the given limits if it does not exist yet.
+     */
+    public static Bulkhead forSource(String name, int maxConcurrent, int maxQueued, Duration maxWait) {
+        return BULKHEADS.computeIfAbsent(name, _ -> new Bulkhead(name, maxConcurrent, maxQueued, maxWait));
+    }
+
+    public static Collection<Bulkhead> all() {
+        return List.copyOf(BULKHEADS.values());
+    }
+
+    /**
+     * Runs the fetch once a permit is free.
+     *
+     * @throws BulkheadFullException if the wait queue is full or no permit became free within the maximum wait
+     */
+    public <R> R execute(Supplier<R> fetch) {
+        try {
+            return call(fetch::get);
+        } catch (RuntimeException exception) {
+            throw exception;
+        } catch (Exception exception) {
+            throw new IllegalStateException("Supplier threw a checked exception", exception);
+        }
+    }
+
+    public void run(Runnable fetch) {
+        execute(() -> {
+            fetch.run();
+            return null;
+        });
+    }
+
+    /**
+     * Like {@link #execute(Supplier)}, for fetches that throw checked exceptions.
+     */
+    public <R> R call(Callable<R> fetch) throws Exception {
+        long waitStart = System.nanoTime();
+        if (!permits.tryAcquire()) {
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                rejected.increment();
+                throw new BulkheadFullException(name, "queue is full");
+            }
+
+            try {
+                if (!permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                    rejected.increment();
+                    throw new BulkheadFullException(name, "timed out after " + maxWait.toMillis() + "ms");
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new BulkheadFullException(name, "interrupted while waiting");
+            } finally {
+                queued.decrementAndGet();
+            }
+        }
+
+        queueWait.record(System.nanoTime() - waitStart);
+        try {
+            return fetch.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Histogram queueWait() {
+        return queueWait;
+    }
+
+    public Snapshot snapshot() {
+        Histogram.Snapshot wait = queueWait.snapshot();
+        return new Snapshot(name, maxConcurrent, maxQueued, maxConcurrent - permits.availablePermits(), queued.get(),
+                rejected.sum(), wait.count(), wait.quantileNanos(0.5) / 1_000_000, wait.quantileNanos(0.99) / 1_000_000);
+    }
+
+    public record Snapshot(String name, int maxConcurrent, int maxQueued, int active, int queued, long rejected,
+                           long acquired, long queueWaitP50Millis, long queueWaitP99Millis) {
+    }
+
+    public static class BulkheadFullException extends RuntimeException {
+        public BulkheadFullException(String name, String reason) {
+            super("Bulkhead for " + name + " rejected the request: " + reason);
+        }
+    }
+}
@@ -1,21 +1,104 @@
 package dev.railroadide.switchboard.util;
 
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.jfr.CacheRefreshEvent;
+import dev.railroadide.switchboard.metrics.ServerTiming;
+
 import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
+/**
+ * A concurrent cache with per-entry expiry, an optional size or weight bound, background sweeping of expired entries,
+ * single-flight loading and refresh-after-write.
+ * <p>
+ * Bounded caches evict with a simplified W-TinyLFU policy: new entries land in a small LRU admission window, and an
+ * entry leaving the window only displaces the eldest entry of the main region if the {@link FrequencySketch} says it
+ * has been requested more often. One-off lookups therefore cannot flush out hot entries.
+ */
 public class Cache<K, V> {
+    public static final String ANONYMOUS = "anonymous";
     private final static Duration DEFAULT_TTL = Duration.ofHours(1);
+    private static final Duration SWEEP_INTERVAL = Duration.ofMinutes(1);
+    private static final long UNBOUNDED = Long.MAX_VALUE;
+
+    // Caches are tracked weakly so short-lived caches can still be garbage collected
+    private static final Set<Cache<?, ?>> CACHES = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    static {
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("cache-sweeper").factory());
+        sweeper.scheduleAtFixedRate(() -> all().forEach(cache -> {
+            // An exception escaping the task would cancel every later sweep
+            try {
+                cache.cleanUp();
+            } catch (RuntimeException exception) {
+                Switchboard.LOGGER.error("Failed to sweep cache " + cache.name, exception);
+            }
+        }), SWEEP_INTERVAL.toMillis(), SWEEP_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
 
-    private final Map<K, CacheEntry<V>> cache = new ConcurrentHashMap<>();
-    private Duration ttl = DEFAULT_TTL;
+    private final String name;
+    private final Map<K, Node<K, V>> cache = new ConcurrentHashMap<>();
+    private final Map<K, Load<V>> loading = new ConcurrentHashMap<>();
+    private final long maximumWeight;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long refreshAfterWriteNanos;
+    private volatile Duration ttl = DEFAULT_TTL;
+
+    // Eviction policy state, only used by bounded caches and guarded by policyLock
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final LinkedHashMap<K, Node<K, V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<K, V>> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final long windowMaximum;
+    private final FrequencySketch sketch;
+    private long windowWeight;
+    private long mainWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
 
     public Cache() {
+        this(ANONYMOUS, DEFAULT_TTL, UNBOUNDED, (_, _) -> 1, null);
     }
 
     public Cache(Duration ttl) {
+        this(ANONYMOUS, ttl, UNBOUNDED, (_, _) -> 1, null);
+    }
+
+    private Cache(String name, Duration ttl, long maximumWeight, Weigher<? super K, ? super V> weigher, Duration refreshAfterWrite) {
         setTtl(ttl);
+        this.name = name;
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.refreshAfterWriteNanos = refreshAfterWrite == null ? 0 : refreshAfterWrite.toNanos();
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.sketch = isBounded() ? new FrequencySketch(maximumWeight) : null;
+        CACHES.add(this);
+    }
+
+    public static <K, V> Builder<K, V> builder(String name) {
+        return new Builder<>(name);
+    }
+
+    public static Collection<Cache<?, ?>> all() {
+        synchronized (CACHES) {
+            return List.copyOf(CACHES);
+        }
+    }
+
+    public String getName() {
+        return name;
     }
 
     public Duration getTtl() {
@@ -30,8 +113,16 @@ public class Cache<K, V> {
     }
 
     public void put(K key, V value, long ttlMillis) {
-        long expiresAt = System.currentTimeMillis() + ttlMillis;
-        cache.put(key, new CacheEntry<>(value, expiresAt));
+        int weight = weigher.weigh(key, value);
+        if (weight < 0)
+            throw new IllegalArgumentException("Weight cannot be negative: " + weight);
+
+        long now = System.nanoTime();
+        cache.put(key, new Node<>(key, value, weight, now, now + TimeUnit.MILLISECONDS.toNanos(ttlMillis)));
+        if (isBounded()) {
+            sketch.increment(key);
+            syncPolicy(key);
+        }
     }
 
     public void put(K key, V value) {
@@ -39,38 +130,385 @@ public class Cache<K, V> {
     }
 
     public V get(K key) {
-        CacheEntry<V> entry = cache.get(key);
-        if (entry != null && entry.isActive())
-            return entry.value();
+        long now = System.nanoTime();
+        Node<K, V> node = getActive(key, now);
+        ServerTiming.record(ServerTiming.Phase.CACHE, now);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return node.value;
+    }
+
+    /**
+     * Returns the cached value, loading it with the fetcher on a miss. Concurrent misses for the same key share a single
+     * load. If refresh-after-write is enabled and the entry is older than the refresh interval, the current value is
+     * returned while it is reloaded in the background. {@code null} values are returned but not cached.
+     * <p>
+     * The fetcher may read other keys of this cache, but must not need the key it is loading: that fails with an
+     * {@link IllegalStateException} rather than waiting on itself. Fetchers on different threads that need each
+     * other's keys still deadlock, so loads of one cache should not depend on each other in a cycle.
+     */
+    public V get(K key, Supplier<V> valueFetcher) {
+        long now = System.nanoTime();
+        Node<K, V> node = getActive(key, now);
+        ServerTiming.record(ServerTiming.Phase.CACHE, now);
+        if (node != null) {
+            hits.increment();
+            if (refreshAfterWriteNanos > 0 && now - node.writtenAt >= refreshAfterWriteNanos)
+                refresh(key, valueFetcher);
+
+            return node.value;
+        }
 
-        cache.remove(key);
-        return null;
+        misses.increment();
+        return load(key, valueFetcher);
+    }
+
+    public void remove(K key) {
+        if (cache.remove(key) != null && isBounded())
+            syncPolicy(key);
     }
 
     public void clear() {
         cache.clear();
+        if (!isBounded())
+            return;
+
+        policyLock.lock();
+        try {
+            window.clear();
+            main.clear();
+            windowWeight = 0;
+            mainWeight = 0;
+        } finally {
+            policyLock.unlock();
+        }
     }
 
     public boolean containsKey(K key) {
-        CacheEntry<V> entry = cache.get(key);
-        return entry != null && entry.isActive();
+        Node<K, V> node = cache.get(key);
+        return node != null && !node.isExpired(System.nanoTime());
     }
 
-    public V get(K key, Supplier<V> valueFetcher) {
-        V value = get(key);
-        if (value != null)
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Removes every expired entry. Runs periodically in the background, so calling it is only needed for tests.
+     */
+    public void cleanUp() {
+        long now = System.nanoTime();
+        for (Node<K, V> node : cache.values()) {
+            if (node.isExpired(now))
+                expire(node);
+        }
+    }
+
+    public Stats stats() {
+        long weight;
+        if (isBounded()) {
+            policyLock.lock();
+            try {
+                weight = windowWeight + mainWeight;
+            } finally {
+                policyLock.unlock();
+            }
+        } else {
+            weight = cache.size();
+        }
+
+        return new Stats(name, hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(),
+                totalLoadTimeNanos.sum(), refreshes.sum(), evictions.sum(), expirations.sum(), cache.size(), weight);
+    }
+
+    private Node<K, V> getActive(K key, long now) {
+        Node<K, V> node = cache.get(key);
+        if (node == null)
+            return null;
+
+        if (node.isExpired(now)) {
+            expire(node);
+            return null;
+        }
+
+        if (isBounded())
+            recordAccess(node);
+
+        return node;
+    }
+
+    private V load(K key, Supplier<V> valueFetcher) {
+        var future = new Load<V>();
+        future.loader = Thread.currentThread();
+        Load<V> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            if (inFlight.loader == Thread.currentThread())
+                throw new IllegalStateException("Recursive load of " + key + " in cache " + name);
+
+            return join(inFlight);
+        }
+
+        try {
+            // Another loader may have finished between our miss and claiming the load
+            Node<K, V> node = cache.get(key);
+            if (node != null && !node.isExpired(System.nanoTime())) {
+                future.complete(node.value);
+                return node.value;
+            }
+
+            V value = fetch(key, valueFetcher);
+            future.complete(value);
             return value;
+        } catch (Throwable throwable) {
+            future.completeExceptionally(throwable);
+            throw throwable;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
 
-        value = valueFetcher.get();
-        if (value != null)
-            put(key, value);
+    private void refresh(K key, Supplier<V> valueFetcher) {
+        var future = new Load<V>();
+        if (loading.putIfAbsent(key, future) != null)
+            return;
 
-        return value;
+        refreshes.increment();
+        REFRESH_EXECUTOR.execute(() -> {
+            future.loader = Thread.currentThread();
+            try {
+                future.complete(fetch(key, valueFetcher));
+            } catch (Throwable throwable) {
+                Switchboard.LOGGER.warn("Failed to refresh {} in cache {}, keeping the current value", key, name, throwable);
+                future.completeExceptionally(throwable);
+            } finally {
+                loading.remove(key, future);
+            }
+        });
     }
 
-    public record CacheEntry<T>(T value, long expiresAt) {
-        public boolean isActive() {
-            return System.currentTimeMillis() < expiresAt;
+    private V fetch(K key, Supplier<V> valueFetcher) {
+        var event = new CacheRefreshEvent();
+        event.begin();
+        String outcome = "failure";
+        long start = System.nanoTime();
+        try {
+            V value = valueFetcher.get();
+            loadSuccesses.increment();
+            outcome = "success";
+            if (value instanceof Collection<?> collection)
+                event.itemCount = collection.size();
+            if (value != null)
+                put(key, value);
+
+            return value;
+        } catch (RuntimeException | Error exception) {
+            loadFailures.increment();
+            if (exception instanceof Bulkhead.BulkheadFullException)
+                outcome = "rejected";
+
+            throw exception;
+        } finally {
+            totalLoadTimeNanos.add(System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.source = name;
+                event.key = String.valueOf(key);
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause)
+                throw cause;
+            if (exception.getCause() instanceof Error cause)
+                throw cause;
+
+            throw exception;
+        }
+    }
+
+    private void expire(Node<K, V> node) {
+        if (cache.remove(node.key, node)) {
+            expirations.increment();
+            if (isBounded())
+                syncPolicy(node.key);
+        }
+    }
+
+    private boolean isBounded() {
+        return maximumWeight != UNBOUNDED;
+    }
+
+    private void recordAccess(Node<K, V> node) {
+        sketch.increment(node.key);
+        // Reordering is best effort: under contention the access only counts towards the frequency sketch
+        if (policyLock.tryLock()) {
+            try {
+                if (window.get(node.key) == null)
+                    main.get(node.key);
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Makes the policy's view of the key match the map: drops whatever node the policy held for it and, if the key is
+     * still present, re-adds the current node to the admission window.
+     */
+    private void syncPolicy(K key) {
+        policyLock.lock();
+        try {
+            Node<K, V> previous = window.remove(key);
+            if (previous != null) {
+                windowWeight -= previous.weight;
+            } else if ((previous = main.remove(key)) != null) {
+                mainWeight -= previous.weight;
+            }
+
+            Node<K, V> current = cache.get(key);
+            if (current != null) {
+                window.put(key, current);
+                windowWeight += current.weight;
+            }
+
+            evictIfNeeded();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void evictIfNeeded() {
+        while (!window.isEmpty() && (windowWeight > windowMaximum || windowWeight + mainWeight > maximumWeight)) {
+            Node<K, V> candidate = window.pollFirstEntry().getValue();
+            windowWeight -= candidate.weight;
+            admit(candidate);
+        }
+
+        while (!main.isEmpty() && windowWeight + mainWeight > maximumWeight) {
+            Node<K, V> victim = main.pollFirstEntry().getValue();
+            mainWeight -= victim.weight;
+            evict(victim);
+        }
+    }
+
+    /**
+     * Moves an entry leaving the admission window into the main region, evicting the main region's eldest entries
+     * while the candidate is requested more often than they are.
+     */
+    private void admit(Node<K, V> candidate) {
+        if (windowWeight + candidate.weight > maximumWeight) {
+            evict(candidate);
+            return;
+        }
+
+        while (!main.isEmpty() && windowWeight + mainWeight + candidate.weight > maximumWeight) {
+            Node<K, V> victim = main.firstEntry().getValue();
+            if (sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                evict(candidate);
+                return;
+            }
+
+            main.pollFirstEntry();
+            mainWeight -= victim.weight;
+            evict(victim);
+        }
+
+        main.put(candidate.key, candidate);
+        mainWeight += candidate.weight;
+    }
+
+    private void evict(Node<K, V> node) {
+        if (cache.remove(node.key, node))
+            evictions.increment();
+    }
+
+    /**
+     * An in-flight load, remembering the thread running the fetcher so that the fetcher asking for the same key can be
+     * told apart from a concurrent miss.
+     */
+    private static final class Load<V> extends CompletableFuture<V> {
+        private volatile Thread loader;
+    }
+
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+        int weigh(K key, V value);
+    }
+
+    /**
+     * @param totalLoadTimeNanos time spent in loads and refreshes, successful or not
+     * @param weight             the total weight of all entries, or the entry count for unbounded caches
+     */
+    public record Stats(String name, long hits, long misses, long loadSuccesses, long loadFailures,
+                        long totalLoadTimeNanos, long refreshes, long evictions, long expirations, long size,
+                        long weight) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 1.0 : (double) hits / requests;
+        }
+    }
+
+    private record Node<K, V>(K key, V value, int weight, long writtenAt, long expiresAt) {
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    public static class Builder<K, V> {
+        private final String name;
+        private Duration ttl = DEFAULT_TTL;
+        private long maximumWeight = UNBOUNDED;
+        private Weigher<? super K, ? super V> weigher = (_, _) -> 1;
+        private Duration refreshAfterWrite;
+
+        private Builder(String name) {
+            this.name = Objects.requireNonNull(name, "name");
+        }
+
+        public Builder<K, V> expireAfterWrite(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        /**
+         * Bounds the cache to the given number of entries.
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+            return maximumWeight(maximumSize, (_, _) -> 1);
+        }
+
+        /**
+         * Bounds the cache to the given total weight, as computed by the weigher when an entry is written.
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+            if (maximumWeight <= 0)
+                throw new IllegalArgumentException("maximumWeight must be positive.");
+
+            this.maximumWeight = maximumWeight;
+            this.weigher = Objects.requireNonNull(weigher, "weigher");
+            return this;
+        }
+
+        /**
+         * Entries older than this are still served, but the next {@link Cache#get(Object, Supplier)} reloads them in
+         * the background.
+         */
+        public Builder<K, V> refreshAfterWrite(Duration refreshAfterWrite) {
+            this.refreshAfterWrite = refreshAfterWrite;
+            return this;
+        }
+
+        public Cache<K, V> build() {
+            return new Cache<>(name, ttl, maximumWeight, weigher, refreshAfterWrite);
         }
     }
 }
@@ -0,0 +1,96 @@
+package dev.railroadide.switchboard.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A count-min sketch estimating how often each key has been requested recently, used by {@link Cache} to decide which
+ * entries are worth keeping. Counters saturate at 15 and are all halved once enough increments have been seen, so old
+ * popularity fades out.
+ * <p>
+ * Counters are four bits packed sixteen to a long, so the sketch holds sixteen counters per expected entry; with fewer,
+ * the ten-per-entry increments between halvings collide often enough that one-off keys look as popular as hot ones.
+ * <p>
+ * Increments are lock-free; the occasional halving is approximate under concurrent increments, which only skews the
+ * estimates slightly.
+ */
+final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int MAX_TABLE_LENGTH = 1 << 20;
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private final AtomicLongArray table;
+    private final int counterMask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    FrequencySketch(long expectedEntries) {
+        int size = Math.clamp(expectedEntries, 16, MAX_TABLE_LENGTH);
+        int length = Integer.highestOneBit(size - 1) << 1;
+        this.table = new AtomicLongArray(length);
+        this.counterMask = length * 16 - 1;
+        this.sampleSize = 10 * size;
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            int counter = indexOf(hash, row);
+            frequency = Math.min(frequency, (int) (table.get(counter >>> 4) >>> shiftOf(counter)) & MAX_COUNT);
+        }
+
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        for (int row = 0; row < DEPTH; row++) {
+            int counter = indexOf(hash, row);
+            int slot = counter >>> 4;
+            int shift = shiftOf(counter);
+            long packed;
+            do {
+                packed = table.get(slot);
+                if (((packed >>> shift) & MAX_COUNT) == MAX_COUNT)
+                    break;
+            } while (!table.compareAndSet(slot, packed, packed + (1L << shift)));
+        }
+
+        if (additions.incrementAndGet() >= sampleSize)
+            reset();
+    }
+
+    private synchronized void reset() {
+        if (additions.get() < sampleSize)
+            return;
+
+        for (int i = 0; i < table.length(); i++) {
+            // Shifting the whole long moves each counter's low bit into its neighbour's high bit, so mask those off
+            table.set(i, (table.get(i) >>> 1) & 0x7777777777777777L);
+        }
+
+        additions.set(sampleSize / 2);
+    }
+
+    /**
+     * @return the index of the key's counter for the given row among all counters of the table
+     */
+    private int indexOf(int hash, int row) {
+        long mixed = (hash + SEEDS[row]) * SEEDS[row];
+        mixed += mixed >>> 32;
+        return (int) mixed & counterMask;
+    }
+
+    private static int shiftOf(int counter) {
+        return (counter & 15) << 2;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
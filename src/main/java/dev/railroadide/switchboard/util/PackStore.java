@@ -0,0 +1,704 @@
+package dev.railroadide.switchboard.util;
+
+import dev.railroadide.switchboard.Switchboard;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * A persistent, size-bounded store of immutable values by string key, appended to a few segment files instead of one
+ * file per entry.
+ * <p>
+ * Each entry is a header (key length, value length and a CRC32C over key and value) followed by the UTF-8 key and the
+ * value. Once a segment reaches its target size it is sealed: a footer listing its entries is appended, the segment is
+ * forced to disk and memory-mapped read-only, so reading a sealed entry is a checksum over a slice of the mapping.
+ * Values are only lent to a {@link ValueReader} for the duration of a read, and each read holds a reference to its
+ * segment, so a segment that is dropped is unmapped as soon as its last read finishes rather than whenever the garbage
+ * collector gets to it. Opening the store only reads those footers, plus a scan of the one segment still being written,
+ * whose torn tail (if any) is cut off.
+ * <p>
+ * Once the live entries exceed the byte budget the least recently used ones are evicted. Evicted and replaced entries
+ * stay in their segment until a background compaction rewrites a mostly dead segment with only its live entries. The
+ * copy is written and forced to disk without holding the store's lock, then renamed over the old segment while the
+ * index is switched to it, so a crash at any point leaves either the old segment or the complete new one. The new
+ * segment keeps the old one's id, and so its place in the order segments are read on open: a value written while the
+ * copy was being made still wins over its copy. Evictions are not written down, so an entry evicted from a segment
+ * that was never compacted can come back after a restart; the budget is applied again on open, dropping the oldest
+ * entries first.
+ */
+public final class PackStore {
+    private static final int ENTRY_HEADER = Short.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int FOOTER_ENTRY = Short.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int TRAILER = Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int MAGIC = 0x53425043;
+    private static final String COMPACTING_SUFFIX = ".compacting";
+    private static final int CRC_CHUNK = 16 * 1024;
+    // Sealed segments with less than this fraction of their entry bytes still live are compacted
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().daemon().name("pack-store-compactor").factory());
+
+    private final String name;
+    private final Supplier<Path> directory;
+    private final LongSupplier maxBytes;
+    private final long segmentSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Location> index = new LinkedHashMap<>(64, 0.75f, true);
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private long liveBytes;
+    private boolean compactionScheduled;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder checksumFailures = new LongAdder();
+
+    /**
+     * @param directory   where the segments live; resolved when the store is first used
+     * @param maxBytes    the budget for live entries, header and key included; read on every write
+     * @param segmentSize the size at which a segment is sealed and a new one started
+     */
+    public PackStore(String name, Supplier<Path> directory, LongSupplier maxBytes, long segmentSize) {
+        this.name = name;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentSize = segmentSize;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Path directory() {
+        return directory.get();
+    }
+
+    /**
+     * Hands the value to the reader as a read-only buffer, which is only valid until the reader returns.
+     *
+     * @return what the reader returned, or empty if there is no value or it no longer matches its checksum
+     */
+    public <R> Optional<R> read(String key, ValueReader<R> reader) throws IOException {
+        Location location;
+        ByteBuffer entry;
+        boolean mapped;
+        lock.lock();
+        try {
+            ensureOpen();
+            location = index.get(key);
+            if (location == null) {
+                misses.increment();
+                return Optional.empty();
+            }
+
+            // The active segment is still being appended to, so it is read through its channel rather than mapped
+            Segment segment = location.segment();
+            mapped = segment.mapped != null;
+            if (mapped) {
+                segment.references.incrementAndGet();
+                entry = segment.slice(location);
+            } else {
+                entry = readFully(segment.channel, location.keyOffset(), location.keyLength() + location.valueLength());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            if (crc(entry.duplicate()) != location.crc()) {
+                checksumFailures.increment();
+                Switchboard.LOGGER.warn("Dropping entry " + key + " of " + name + " that no longer matches its checksum");
+                lock.lock();
+                try {
+                    if (index.remove(key, location))
+                        release(location);
+                } finally {
+                    lock.unlock();
+                }
+
+                misses.increment();
+                return Optional.empty();
+            }
+
+            hits.increment();
+            return Optional.of(reader.read(entry.slice(location.keyLength(), location.valueLength()).asReadOnlyBuffer()));
+        } finally {
+            if (mapped)
+                location.segment().release();
+        }
+    }
+
+    public boolean contains(String key) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            return index.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the stored keys, least recently used first
+     */
+    public List<String> keys() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            return List.copyOf(index.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores the value under the key, replacing any previous value, then evicts least recently used entries until the
+     * store is back under its budget. The new entry itself is never evicted, even if it alone exceeds the budget.
+     */
+    public void put(String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Key is longer than " + Short.MAX_VALUE + " bytes");
+
+        var checksum = new CRC32C();
+        checksum.update(keyBytes);
+        checksum.update(value);
+        int crc = (int) checksum.getValue();
+
+        lock.lock();
+        try {
+            ensureOpen();
+            Location location = append(keyBytes, value, crc);
+            track(key, location);
+            evictOverBudget(key);
+            scheduleCompactionIfNeeded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces everything written so far to disk, for callers that are about to delete the only other copy.
+     */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            active.channel.force(true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            long segmentBytes = 0;
+            for (Segment segment : segments.values()) {
+                segmentBytes += segment.size;
+            }
+
+            return new Stats(name, index.size(), liveBytes, segmentBytes, maxBytes.getAsLong(), segments.size(),
+                    hits.sum(), misses.sum(), evictions.sum(), compactions.sum(), checksumFailures.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Location append(byte[] key, byte[] value, int crc) throws IOException {
+        long entrySize = (long) ENTRY_HEADER + key.length + value.length;
+        if (active.size > 0 && active.size + entrySize > segmentSize) {
+            seal(active);
+            active = createSegment(segments.isEmpty() ? 0 : segments.lastKey() + 1);
+        }
+
+        long start = active.size;
+        try {
+            return write(active, key, ByteBuffer.wrap(value), crc);
+        } catch (IOException exception) {
+            // Anything after a partial entry would be lost to the next scan, so take it back out
+            active.channel.truncate(start);
+            throw exception;
+        }
+    }
+
+    // Writes an entry at the end of a segment that is still open for writing
+    private static Location write(Segment segment, byte[] key, ByteBuffer value, int crc) throws IOException {
+        var location = new Location(segment, segment.size, key.length, value.remaining(), crc);
+        ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER)
+                .putShort((short) key.length)
+                .putInt(value.remaining())
+                .putInt(crc)
+                .flip();
+        long position = writeFully(segment.channel, header, location.offset());
+        position = writeFully(segment.channel, ByteBuffer.wrap(key), position);
+        writeFully(segment.channel, value, position);
+
+        segment.size += location.size();
+        segment.written.add(new Written(key, location));
+        return location;
+    }
+
+    private void track(String key, Location location) {
+        Location previous = index.put(key, location);
+        liveBytes += location.size();
+        location.segment().liveBytes += location.size();
+        if (previous != null)
+            release(previous);
+    }
+
+    private void release(Location location) {
+        liveBytes -= location.size();
+        location.segment().liveBytes -= location.size();
+    }
+
+    private void evictOverBudget(String keep) {
+        long budget = maxBytes.getAsLong();
+        Iterator<Map.Entry<String, Location>> iterator = index.entrySet().iterator();
+        while (liveBytes > budget && iterator.hasNext()) {
+            Map.Entry<String, Location> entry = iterator.next();
+            if (entry.getKey().equals(keep))
+                continue;
+
+            iterator.remove();
+            release(entry.getValue());
+            evictions.increment();
+        }
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        if (compactionScheduled)
+            return;
+
+        for (Segment segment : segments.values()) {
+            if (needsCompaction(segment)) {
+                compactionScheduled = true;
+                COMPACTOR.execute(this::compact);
+                return;
+            }
+        }
+    }
+
+    private boolean needsCompaction(Segment segment) {
+        return segment != active && segment.liveBytes < segment.size * COMPACTION_THRESHOLD;
+    }
+
+    private void compact() {
+        List<Segment> candidates;
+        lock.lock();
+        try {
+            compactionScheduled = false;
+            candidates = segments.values().stream().filter(this::needsCompaction).toList();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Segment segment : candidates) {
+            try {
+                compact(segment);
+            } catch (IOException | RuntimeException exception) {
+                Switchboard.LOGGER.error("Failed to compact segment " + segment.id + " of " + name, exception);
+            }
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        Map<Location, String> live = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            if (segments.get(segment.id) != segment)
+                return;
+
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                if (entry.getValue().segment() == segment)
+                    live.put(entry.getValue(), entry.getKey());
+            }
+
+            if (live.isEmpty()) {
+                segments.remove(segment.id);
+                Files.deleteIfExists(segment.path);
+                segment.release();
+                compactions.increment();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Only compaction removes sealed segments, and it runs on one thread, so the old mapping stays valid meanwhile
+        Path temp = segment.path.resolveSibling(segment.path.getFileName() + COMPACTING_SUFFIX);
+        var replacement = new Segment(segment.id, segment.path);
+        Map<Location, Location> moved = new HashMap<>();
+        try {
+            replacement.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replacement.written = new ArrayList<>();
+            for (Location location : live.keySet()) {
+                ByteBuffer entry = segment.slice(location);
+                if (crc(entry.duplicate()) != location.crc()) {
+                    checksumFailures.increment();
+                    Switchboard.LOGGER.warn("Dropping entry " + live.get(location) + " of " + name + " that no longer matches its checksum");
+                    continue;
+                }
+
+                byte[] key = new byte[location.keyLength()];
+                entry.get(key);
+                moved.put(location, write(replacement, key, entry, location.crc()));
+            }
+
+            seal(replacement);
+        } catch (IOException | RuntimeException exception) {
+            discard(replacement, temp);
+            throw exception;
+        }
+
+        lock.lock();
+        try {
+            if (segments.get(segment.id) != segment) {
+                discard(replacement, temp);
+                return;
+            }
+
+            try {
+                Files.move(temp, segment.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException exception) {
+                discard(replacement, temp);
+                throw exception;
+            }
+
+            segments.put(segment.id, replacement);
+            // Entries replaced or evicted during the copy no longer point at the old segment and keep their new place;
+            // setValue moves the rest without touching their place in the access order
+            Iterator<Map.Entry<String, Location>> iterator = index.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Location> entry = iterator.next();
+                if (entry.getValue().segment() != segment)
+                    continue;
+
+                Location copy = moved.get(entry.getValue());
+                if (copy == null) {
+                    iterator.remove();
+                    release(entry.getValue());
+                    continue;
+                }
+
+                segment.liveBytes -= copy.size();
+                replacement.liveBytes += copy.size();
+                entry.setValue(copy);
+            }
+
+            // Reads still running on the old segment keep its mapping until they finish
+            segment.release();
+            compactions.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void discard(Segment segment, Path file) throws IOException {
+        if (segment.channel != null)
+            segment.channel.close();
+
+        segment.release();
+        Files.deleteIfExists(file);
+    }
+
+    private void seal(Segment segment) throws IOException {
+        ByteBuffer footer = ByteBuffer.allocate(segment.written.stream().mapToInt(written -> FOOTER_ENTRY + written.key().length).sum() + TRAILER);
+        for (Written written : segment.written) {
+            footer.putShort((short) written.key().length)
+                    .put(written.key())
+                    .putLong(written.location().offset())
+                    .putInt(written.location().valueLength())
+                    .putInt(written.location().crc());
+        }
+        footer.putLong(segment.size).putInt(segment.written.size()).putInt(MAGIC).flip();
+
+        writeFully(segment.channel, footer, segment.size);
+        segment.channel.force(true);
+        segment.map(segment.channel);
+        segment.channel.close();
+        segment.channel = null;
+        segment.written = null;
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Path path = directory.get().resolve(segmentName(id));
+        var segment = new Segment(id, path);
+        segment.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment.written = new ArrayList<>();
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (active != null)
+            return;
+
+        long start = System.nanoTime();
+        Path root = directory.get();
+        Files.createDirectories(root);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(root)) {
+            files = listing.toList();
+        }
+
+        // A compaction cut short leaves its copy behind, while the segment it was copying is still in place
+        for (Path file : files) {
+            if (file.getFileName().toString().endsWith(COMPACTING_SUFFIX))
+                Files.deleteIfExists(file);
+        }
+
+        files = files.stream()
+                .filter(path -> segmentId(path) >= 0)
+                .sorted(Comparator.comparingInt(PackStore::segmentId))
+                .toList();
+
+        for (Path file : files) {
+            var segment = new Segment(segmentId(file), file);
+            segments.put(segment.id, segment);
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            List<Written> entries = readFooter(segment, channel);
+            if (entries != null) {
+                segment.map(channel);
+                channel.close();
+            } else {
+                segment.channel = channel;
+                entries = scan(segment);
+                segment.written = new ArrayList<>(entries);
+            }
+
+            for (Written entry : entries) {
+                track(new String(entry.key(), StandardCharsets.UTF_8), entry.location());
+            }
+        }
+
+        // Only the newest segment keeps being appended to; one left unsealed by an earlier crash is sealed now
+        for (Segment segment : segments.values()) {
+            if (segment.channel != null && segment != segments.lastEntry().getValue())
+                seal(segment);
+        }
+
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        active = last != null && last.channel != null ? last : createSegment(last == null ? 0 : last.id + 1);
+        evictOverBudget(null);
+        scheduleCompactionIfNeeded();
+        Switchboard.LOGGER.info("Opened " + name + " with " + index.size() + " entries in " + segments.size() +
+                " segments in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    // The footer stores everything the index needs, so opening a sealed segment never touches its entries
+    private static List<Written> readFooter(Segment segment, FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < TRAILER)
+            return null;
+
+        ByteBuffer trailer = readFully(channel, size - TRAILER, TRAILER);
+        long footerOffset = trailer.getLong();
+        int count = trailer.getInt();
+        long footerSize = size - TRAILER - footerOffset;
+        // Anything that does not fit the footer it describes is treated as no footer, so the segment is scanned instead
+        if (trailer.getInt() != MAGIC || footerOffset < 0 || footerSize < 0 || footerSize > Integer.MAX_VALUE ||
+                count < 0 || count > footerSize / FOOTER_ENTRY)
+            return null;
+
+        ByteBuffer footer = readFully(channel, footerOffset, (int) footerSize);
+        List<Written> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (footer.remaining() < FOOTER_ENTRY)
+                return null;
+
+            int keyLength = footer.getShort();
+            if (keyLength <= 0 || footer.remaining() < FOOTER_ENTRY - Short.BYTES + keyLength)
+                return null;
+
+            byte[] key = new byte[keyLength];
+            footer.get(key);
+            var location = new Location(segment, footer.getLong(), keyLength, footer.getInt(), footer.getInt());
+            if (location.offset() < 0 || location.valueLength() < 0 || location.offset() + location.size() > footerOffset)
+                return null;
+
+            entries.add(new Written(key, location));
+        }
+
+        if (footer.hasRemaining())
+            return null;
+
+        segment.size = footerOffset;
+        return entries;
+    }
+
+    private List<Written> scan(Segment segment) throws IOException {
+        FileChannel channel = segment.channel;
+        long size = channel.size();
+        long position = 0;
+        List<Written> entries = new ArrayList<>();
+        while (position + ENTRY_HEADER <= size) {
+            ByteBuffer header = readFully(channel, position, ENTRY_HEADER);
+            int keyLength = header.getShort();
+            int valueLength = header.getInt();
+            int crc = header.getInt();
+            if (keyLength < 0 || valueLength < 0 || position + ENTRY_HEADER + keyLength + valueLength > size)
+                break;
+
+            var location = new Location(segment, position, keyLength, valueLength, crc);
+            ByteBuffer entry = readFully(channel, location.keyOffset(), keyLength + valueLength);
+            // Zeros from space allocated but never written would pass every other check
+            if (crc(entry.duplicate()) != crc || keyLength == 0)
+                break;
+
+            byte[] key = new byte[keyLength];
+            entry.get(key);
+            entries.add(new Written(key, location));
+            position += location.size();
+        }
+
+        if (position < size) {
+            Switchboard.LOGGER.warn("Dropping " + (size - position) + " bytes of incomplete entries at the end of " + segment.path);
+            channel.truncate(position);
+        }
+
+        segment.size = position;
+        return entries;
+    }
+
+    private static int crc(ByteBuffer buffer) {
+        var checksum = new CRC32C();
+        if (!buffer.isDirect()) {
+            checksum.update(buffer);
+            return (int) checksum.getValue();
+        }
+
+        // CRC32C refuses buffers over a shared arena's memory, so mapped entries go through a small heap chunk
+        byte[] chunk = new byte[Math.min(CRC_CHUNK, buffer.remaining())];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            checksum.update(chunk, 0, length);
+        }
+
+        return (int) checksum.getValue();
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Unexpected end of segment at " + (position + buffer.position()));
+        }
+
+        return buffer.flip();
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+
+        return position;
+    }
+
+    private static String segmentName(int id) {
+        return "segment-%06d.pack".formatted(id);
+    }
+
+    private static int segmentId(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("segment-") || !name.endsWith(".pack"))
+            return -1;
+
+        try {
+            return Integer.parseInt(name, "segment-".length(), name.length() - ".pack".length(), 10);
+        } catch (NumberFormatException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param entries      live entries
+     * @param liveBytes    bytes taken by the live entries, headers and keys included
+     * @param segmentBytes bytes of entries in the segments, live or not
+     */
+    public record Stats(String name, int entries, long liveBytes, long segmentBytes, long maxBytes, int segments,
+                        long hits, long misses, long evictions, long compactions, long checksumFailures) {
+    }
+
+    /**
+     * Reads a value lent by {@link #read(String, ValueReader)}. The buffer must not be used once this returns.
+     */
+    @FunctionalInterface
+    public interface ValueReader<R> {
+        R read(ByteBuffer value) throws IOException;
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        // Open while the segment is written to; replaced by the mapping once it is sealed
+        private FileChannel channel;
+        private Arena arena;
+        private MemorySegment mapped;
+        // One held by the store while the segment is in use, plus one per read of the mapping in progress
+        private final AtomicInteger references = new AtomicInteger(1);
+        private List<Written> written;
+        private long size;
+        private long liveBytes;
+
+        private Segment(int id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+
+        private void map(FileChannel channel) throws IOException {
+            arena = Arena.ofShared();
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+        }
+
+        private ByteBuffer slice(Location location) {
+            return mapped.asSlice(location.keyOffset(), location.keyLength() + location.valueLength()).asByteBuffer();
+        }
+
+        // Unmaps the segment with the last reference, so its pages go now and a deleted file's space is freed
+        private void release() {
+            if (references.decrementAndGet() == 0 && arena != null)
+                arena.close();
+        }
+    }
+
+    private record Location(Segment segment, long offset, int keyLength, int valueLength, int crc) {
+        private long keyOffset() {
+            return offset + ENTRY_HEADER;
+        }
+
+        private long size() {
+            return (long) ENTRY_HEADER + keyLength + valueLength;
+        }
+    }
+
+    private record Written(byte[] key, Location location) {
+    }
+}
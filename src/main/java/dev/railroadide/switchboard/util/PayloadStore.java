@@ -0,0 +1,210 @@
+package dev.railroadide.switchboard.util;
+
+import dev.railroadide.switchboard.Environment;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps immutable payloads, such as pre-rendered response bodies, in native memory so that large, long-lived byte
+ * arrays do not sit in the old generation.
+ * <p>
+ * Payloads are bump-allocated from slabs, each backed by its own shared {@link Arena}, and are reference counted: the
+ * owner of a payload holds one reference and every reader takes another while it reads, so a payload replaced while a
+ * response is still being written stays valid until that response is done. A slab is freed as a whole once it has
+ * been filled and every payload in it released. Storing a payload that would take the store over its cap fails, and
+ * the caller keeps it on the heap instead.
+ */
+public final class PayloadStore {
+    private static final long SLAB_SIZE = 1024 * 1024;
+    private static final int WRITE_CHUNK = 16 * 1024;
+    private static final PayloadStore SHARED = new PayloadStore(Environment::getOffHeapPayloadBytes, SLAB_SIZE);
+
+    private final LongSupplier maxBytes;
+    private final long slabSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private Slab current;
+    private long reservedBytes;
+    private long liveBytes;
+    private int slabs;
+    private int payloads;
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param maxBytes the cap on native memory reserved for slabs; read on every allocation of a new slab
+     * @param slabSize the size of a slab; payloads larger than this get a slab of their own
+     */
+    public PayloadStore(LongSupplier maxBytes, long slabSize) {
+        this.maxBytes = maxBytes;
+        this.slabSize = slabSize;
+    }
+
+    public static PayloadStore shared() {
+        return SHARED;
+    }
+
+    /**
+     * Copies the bytes into native memory.
+     *
+     * @return the payload, holding one reference for the caller, or {@code null} if it would not fit under the cap
+     */
+    public Payload store(byte[] bytes) {
+        lock.lock();
+        try {
+            Slab slab = current;
+            if (slab == null || slab.used + bytes.length > slab.memory.byteSize()) {
+                long size = Math.max(slabSize, bytes.length);
+                if (reservedBytes + size > maxBytes.getAsLong()) {
+                    rejections.increment();
+                    return null;
+                }
+
+                slab = new Slab(size);
+                reservedBytes += size;
+                slabs++;
+                // An oversized payload gets a slab to itself, leaving the current slab to keep filling up
+                if (bytes.length <= slabSize) {
+                    if (current != null)
+                        retire(current);
+
+                    current = slab;
+                }
+            }
+
+            MemorySegment memory = slab.memory.asSlice(slab.used, bytes.length);
+            memory.copyFrom(MemorySegment.ofArray(bytes));
+            slab.used += bytes.length;
+            slab.payloads++;
+            liveBytes += bytes.length;
+            payloads++;
+            if (slab != current)
+                retire(slab);
+
+            return new Payload(this, slab, memory);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(reservedBytes, liveBytes, maxBytes.getAsLong(), slabs, payloads, rejections.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void freed(Payload payload) {
+        lock.lock();
+        try {
+            Slab slab = payload.slab;
+            liveBytes -= payload.size();
+            payloads--;
+            slab.payloads--;
+            if (slab.retired && slab.payloads == 0)
+                free(slab);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void retire(Slab slab) {
+        slab.retired = true;
+        if (slab.payloads == 0)
+            free(slab);
+    }
+
+    private void free(Slab slab) {
+        slab.arena.close();
+        reservedBytes -= slab.memory.byteSize();
+        slabs--;
+    }
+
+    /**
+     * @param reservedBytes native memory reserved by the open slabs
+     * @param liveBytes     bytes of payloads that are still referenced
+     */
+    public record Stats(long reservedBytes, long liveBytes, long maxBytes, int slabs, int payloads, long rejections) {
+    }
+
+    /**
+     * A payload in native memory. Its memory may only be read while holding a reference: the one returned by
+     * {@link PayloadStore#store(byte[])}, or one taken with {@link #retain()}.
+     */
+    public static final class Payload {
+        private final PayloadStore store;
+        private final Slab slab;
+        private final MemorySegment memory;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Payload(PayloadStore store, Slab slab, MemorySegment memory) {
+            this.store = store;
+            this.slab = slab;
+            this.memory = memory;
+        }
+
+        public long size() {
+            return memory.byteSize();
+        }
+
+        /**
+         * Takes another reference, unless every reference has already been released and the payload may be gone.
+         *
+         * @return whether a reference was taken
+         */
+        public boolean retain() {
+            int current;
+            do {
+                current = references.get();
+                if (current == 0)
+                    return false;
+            } while (!references.compareAndSet(current, current + 1));
+
+            return true;
+        }
+
+        public void release() {
+            int remaining = references.decrementAndGet();
+            if (remaining == 0) {
+                store.freed(this);
+            } else if (remaining < 0) {
+                throw new IllegalStateException("Payload released more often than it was retained");
+            }
+        }
+
+        /**
+         * Writes the payload to the stream in small chunks, so it is never copied onto the heap as a whole. The caller
+         * must hold a reference.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            byte[] chunk = new byte[(int) Math.min(WRITE_CHUNK, size())];
+            for (long offset = 0; offset < size(); offset += chunk.length) {
+                int length = (int) Math.min(chunk.length, size() - offset);
+                MemorySegment.copy(memory, ValueLayout.JAVA_BYTE, offset, chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+        }
+    }
+
+    private static final class Slab {
+        private final Arena arena = Arena.ofShared();
+        private final MemorySegment memory;
+        private long used;
+        private int payloads;
+        // Set once nothing more will be allocated from the slab, after which it is freed with its last payload
+        private boolean retired;
+
+        private Slab(long size) {
+            this.memory = arena.allocate(size, Long.BYTES);
+        }
+    }
+}
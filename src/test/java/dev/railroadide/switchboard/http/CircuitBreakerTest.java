@@ -0,0 +1,98 @@
+package dev.railroadide.switchboard.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+    @Test
+    void opensAfterConsecutiveFailures() {
+        var breaker = new CircuitBreaker("test", 3, Duration.ofMinutes(1));
+        for (int i = 0; i < 2; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.snapshot().rejected());
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        var breaker = new CircuitBreaker("test", 2, Duration.ofMinutes(1));
+        breaker.tryAcquire();
+        breaker.onFailure();
+        breaker.tryAcquire();
+        breaker.onSuccess();
+        breaker.tryAcquire();
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(1, breaker.snapshot().consecutiveFailures());
+    }
+
+    @Test
+    void halfOpenLetsOneTrialThrough() {
+        var breaker = new CircuitBreaker("test", 1, Duration.ZERO);
+        breaker.tryAcquire();
+        breaker.onFailure();
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void failedTrialReopens() {
+        var breaker = new CircuitBreaker("test", 1, Duration.ofMillis(50));
+        breaker.tryAcquire();
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+
+        sleep(Duration.ofMillis(60));
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(2, breaker.snapshot().transitions().get(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    void cancelledTrialFreesTheSlotWithoutAnOutcome() {
+        var breaker = new CircuitBreaker("test", 1, Duration.ZERO);
+        breaker.tryAcquire();
+        breaker.onFailure();
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onCancelled();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void rejectsNonPositiveThreshold() {
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker("test", 0, Duration.ZERO));
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            fail(exception);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package dev.railroadide.switchboard.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MirrorSetTest {
+    private static final String PRIMARY = "https://primary.example";
+    private static final String SECONDARY = "https://secondary.example";
+
+    @Test
+    void failsOverOnServerError() throws Exception {
+        var upstream = new StubUpstream().respond(PRIMARY, 503, Duration.ZERO).respond(SECONDARY, 200, Duration.ZERO);
+        var mirrors = new MirrorSet("test", upstream, List.of(PRIMARY, SECONDARY));
+
+        HttpResponse<InputStream> response = mirrors.send(request(PRIMARY + "/v1/manifest.json"), HttpResponse.BodyHandlers.ofInputStream());
+
+        assertEquals(200, response.statusCode());
+        assertEquals(URI.create(SECONDARY + "/v1/manifest.json"), response.request().uri());
+        assertEquals(List.of(PRIMARY + "/v1/manifest.json", SECONDARY + "/v1/manifest.json"), List.copyOf(upstream.requested));
+        assertEquals(1, mirrors.snapshot().failovers());
+        assertEquals(List.of(PRIMARY), upstream.closedBodies());
+    }
+
+    @Test
+    void prefersTheMirrorThatAnsweredLast() throws Exception {
+        var upstream = new StubUpstream().respond(PRIMARY, 503, Duration.ZERO).respond(SECONDARY, 200, Duration.ZERO);
+        var mirrors = new MirrorSet("test", upstream, List.of(PRIMARY, SECONDARY));
+        mirrors.send(request(PRIMARY + "/a"), HttpResponse.BodyHandlers.ofInputStream());
+        upstream.requested.clear();
+
+        mirrors.send(request(PRIMARY + "/b"), HttpResponse.BodyHandlers.ofInputStream());
+
+        assertEquals(List.of(SECONDARY + "/b"), List.copyOf(upstream.requested));
+    }
+
+    @Test
+    void hedgesToTheNextMirrorWhenTheFirstIsSlow() throws Exception {
+        var upstream = new StubUpstream().respond(PRIMARY, 200, Duration.ofSeconds(30)).respond(SECONDARY, 200, Duration.ZERO);
+        var mirrors = new MirrorSet("test", upstream, List.of(PRIMARY, SECONDARY));
+
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response = mirrors.send(request(PRIMARY + "/slow"), HttpResponse.BodyHandlers.ofInputStream());
+
+        assertEquals(URI.create(SECONDARY + "/slow"), response.request().uri());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(10)) < 0);
+        MirrorSet.Snapshot snapshot = mirrors.snapshot();
+        assertEquals(1, snapshot.hedged());
+        assertEquals(1, snapshot.hedgeWins());
+        assertEquals(0, snapshot.failovers());
+    }
+
+    @Test
+    void returnsTheLastRejectedResponseWhenEveryMirrorFails() throws Exception {
+        var upstream = new StubUpstream().respond(PRIMARY, 404, Duration.ZERO).respond(SECONDARY, 404, Duration.ZERO);
+        var mirrors = new MirrorSet("test", upstream, List.of(PRIMARY, SECONDARY));
+
+        HttpResponse<InputStream> response = mirrors.send(request(PRIMARY + "/missing"), HttpResponse.BodyHandlers.ofInputStream());
+
+        assertEquals(404, response.statusCode());
+        assertEquals(URI.create(SECONDARY + "/missing"), response.request().uri());
+        // Only the response handed back stays open
+        assertEquals(List.of(PRIMARY), upstream.closedBodies());
+    }
+
+    @Test
+    void throwsTheLastErrorWhenEveryMirrorThrows() {
+        var upstream = new StubUpstream().fail(PRIMARY).fail(SECONDARY);
+        var mirrors = new MirrorSet("test", upstream, List.of(PRIMARY, SECONDARY));
+
+        IOException exception = assertThrows(IOException.class,
+                () -> mirrors.send(request(PRIMARY + "/down"), HttpResponse.BodyHandlers.ofInputStream()));
+        assertEquals(SECONDARY + "/down unreachable", exception.getMessage());
+    }
+
+    @Test
+    void sendsOtherUrlsUnchanged() throws Exception {
+        var upstream = new StubUpstream().respond("https://elsewhere.example", 200, Duration.ZERO);
+        var mirrors = new MirrorSet("test", upstream, List.of(PRIMARY, SECONDARY));
+
+        mirrors.send(request("https://elsewhere.example/file"), HttpResponse.BodyHandlers.ofInputStream());
+
+        assertEquals(List.of("https://elsewhere.example/file"), List.copyOf(upstream.requested));
+        assertEquals(0, mirrors.snapshot().failovers());
+    }
+
+    @Test
+    void rejectsAnEmptyMirrorList() {
+        assertThrows(IllegalArgumentException.class, () -> new MirrorSet("test", new StubUpstream(), List.of()));
+    }
+
+    private static HttpRequest request(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    /**
+     * Answers each base URL with a fixed status after a fixed delay, recording which bodies were closed.
+     */
+    private static final class StubUpstream extends UpstreamHttpClient {
+        private final Map<String, Answer> answers = new ConcurrentHashMap<>();
+        private final Queue<String> requested = new ConcurrentLinkedQueue<>();
+        private final Queue<String> closed = new ConcurrentLinkedQueue<>();
+
+        StubUpstream respond(String baseUrl, int status, Duration delay) {
+            answers.put(baseUrl, new Answer(status, delay));
+            return this;
+        }
+
+        StubUpstream fail(String baseUrl) {
+            answers.put(baseUrl, new Answer(-1, Duration.ZERO));
+            return this;
+        }
+
+        List<String> closedBodies() {
+            return List.copyOf(closed);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+            String url = request.uri().toString();
+            requested.add(url);
+            String baseUrl = request.uri().getScheme() + "://" + request.uri().getHost();
+            Answer answer = answers.get(baseUrl);
+            Thread.sleep(answer.delay());
+            if (answer.status() < 0)
+                throw new IOException(url + " unreachable");
+
+            InputStream body = new ByteArrayInputStream(new byte[0]) {
+                @Override
+                public void close() {
+                    closed.add(baseUrl);
+                }
+            };
+            return (HttpResponse<T>) new ReplayedResponse<>(request, answer.status(), ReplayedResponse.headers("application/json"), body);
+        }
+    }
+
+    private record Answer(int status, Duration delay) {
+    }
+}
@@ -0,0 +1,106 @@
+package dev.railroadide.switchboard.http;
+
+import com.sun.net.httpserver.HttpServer;
+import dev.railroadide.switchboard.Environment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamHttpClientTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer server;
+    private CountDownLatch arrived;
+
+    @BeforeEach
+    void start() throws Exception {
+        arrived = new CountDownLatch(Environment.getUpstreamMaxInFlightPerHost());
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/slow", exchange -> {
+            arrived.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void interruptedPermitWaitHandsBackTheHalfOpenTrial() throws Exception {
+        var client = new UpstreamHttpClient(HttpClient.newHttpClient(), Duration.ZERO);
+        String url = "http://localhost:" + server.getAddress().getPort() + "/slow";
+
+        // Take every permit for the host while its breaker is still closed
+        List<Thread> holders = new ArrayList<>();
+        for (int i = 0; i < Environment.getUpstreamMaxInFlightPerHost(); i++) {
+            holders.add(Thread.ofVirtual().start(() -> send(client, url)));
+        }
+        assertTrue(arrived.await(10, TimeUnit.SECONDS));
+
+        CircuitBreaker breaker = client.circuitBreakerFor("localhost");
+        for (int i = 0; i < CircuitBreaker.DEFAULT_FAILURE_THRESHOLD; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        // The next request becomes the half-open trial and queues for a permit
+        var failure = new AtomicReference<Throwable>();
+        Thread waiter = Thread.ofPlatform().start(() -> {
+            try {
+                client.send(client.newRequest(url).build(), HttpResponse.BodyHandlers.discarding());
+            } catch (Throwable throwable) {
+                failure.set(throwable);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (waiter.getState() != Thread.State.TIMED_WAITING || breaker.state() != CircuitBreaker.State.HALF_OPEN) {
+            assertTrue(System.nanoTime() < deadline, "the trial never queued for a permit");
+            Thread.onSpinWait();
+        }
+
+        waiter.interrupt();
+        waiter.join(10_000);
+
+        assertInstanceOf(InterruptedException.class, failure.get());
+        assertTrue(breaker.tryAcquire(), "the interrupted trial was never handed back");
+        breaker.onCancelled();
+
+        release.countDown();
+        for (Thread holder : holders) {
+            holder.join(10_000);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    private static void send(UpstreamHttpClient client, String url) {
+        try {
+            client.send(client.newRequest(url).build(), HttpResponse.BodyHandlers.discarding());
+        } catch (Exception exception) {
+            fail(exception);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package dev.railroadide.switchboard.minecraft;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MavenMetadataTest {
+    @Test
+    void roundTripsThroughXml() throws Exception {
+        var metadata = new MavenMetadata(List.of("1.0", "1.1", "2.0-SNAPSHOT"), "2.0-SNAPSHOT", "1.1");
+
+        assertEquals(metadata, MavenMetadata.parse(metadata.toXml("net.example", "example")));
+    }
+
+    @Test
+    void keepsUpstreamMarkersThatDifferFromTheDerivedOnes() throws Exception {
+        // Upstream can point release at a version other than the newest, e.g. while a release is being staged
+        var metadata = new MavenMetadata(List.of("1.0", "1.1", "1.2"), "1.1", "1.1");
+
+        MavenMetadata parsed = MavenMetadata.parse(metadata.toXml("net.example", "example"));
+
+        assertEquals("1.1", parsed.latest());
+        assertEquals("1.1", parsed.release());
+    }
+
+    @Test
+    void escapesMarkup() throws Exception {
+        var metadata = MavenMetadata.of(List.of("1.0<&>beta"));
+
+        byte[] xml = metadata.toXml("net.example", "a&b");
+
+        assertTrue(new String(xml, StandardCharsets.UTF_8).contains("<artifactId>a&amp;b</artifactId>"));
+        assertEquals(metadata, MavenMetadata.parse(xml));
+    }
+
+    @Test
+    void derivesMarkersFromTheVersionList() {
+        MavenMetadata metadata = MavenMetadata.of(List.of("1.0", "1.1", "1.2-SNAPSHOT"));
+
+        assertEquals("1.2-SNAPSHOT", metadata.latest());
+        assertEquals("1.1", metadata.release());
+        assertEquals(new MavenMetadata(List.of(), null, null), MavenMetadata.of(List.of()));
+        assertNull(MavenMetadata.of(List.of("1.0-SNAPSHOT")).release());
+    }
+
+    @Test
+    void omitsMissingMarkers() throws Exception {
+        var metadata = new MavenMetadata(List.of("1.0"), null, null);
+
+        byte[] xml = metadata.toXml("net.example", "example");
+
+        assertFalse(new String(xml, StandardCharsets.UTF_8).contains("<latest>"));
+        assertEquals(metadata, MavenMetadata.parse(xml));
+    }
+
+    @Test
+    void parsesUpstreamFormatting() throws Exception {
+        byte[] xml = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <metadata>
+                  <groupId>net.fabricmc</groupId>
+                  <artifactId>yarn</artifactId>
+                  <versioning>
+                    <latest>1.21+build.2</latest>
+                    <release>1.21+build.2</release>
+                    <versions>
+                      <version>
+                        1.21+build.1
+                      </version>
+                      <version>1.21+build.2</version>
+                      <version> </version>
+                    </versions>
+                    <lastUpdated>20240613000000</lastUpdated>
+                  </versioning>
+                </metadata>
+                """.getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(new MavenMetadata(List.of("1.21+build.1", "1.21+build.2"), "1.21+build.2", "1.21+build.2"),
+                MavenMetadata.parse(xml));
+    }
+
+    @Test
+    void rejectsDoctypes() {
+        byte[] xml = """
+                <?xml version="1.0"?>
+                <!DOCTYPE metadata [<!ENTITY secret SYSTEM "file:///etc/passwd">]>
+                <metadata><versioning><versions><version>&secret;</version></versions></versioning></metadata>
+                """.getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(SAXException.class, () -> MavenMetadata.parse(xml));
+    }
+}
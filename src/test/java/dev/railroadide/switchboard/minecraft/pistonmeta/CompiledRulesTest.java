@@ -0,0 +1,91 @@
+package dev.railroadide.switchboard.minecraft.pistonmeta;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledRulesTest {
+    private static final LaunchProfile LINUX = new LaunchProfile("linux", "x86_64", "6.8.0", Set.of());
+    private static final LaunchProfile OSX = new LaunchProfile("osx", "arm64", "14.5", Set.of());
+
+    @Test
+    void noRulesAlwaysApply() {
+        assertSame(CompiledRules.ALWAYS, CompiledRules.ofDownloadRules(null));
+        assertSame(CompiledRules.ALWAYS, CompiledRules.ofArgumentRules(List.of()));
+        assertTrue(CompiledRules.ALWAYS.allows(LINUX));
+    }
+
+    @Test
+    void lastMatchingRuleDecides() {
+        CompiledRules rules = CompiledRules.ofDownloadRules(List.of(
+                downloadRule(Library.DownloadRule.Action.ALLOW, null),
+                downloadRule(Library.DownloadRule.Action.DISALLOW, "osx")));
+
+        assertTrue(rules.allows(LINUX));
+        assertFalse(rules.allows(OSX));
+    }
+
+    @Test
+    void noMatchingRuleExcludes() {
+        CompiledRules rules = CompiledRules.ofDownloadRules(List.of(downloadRule(Library.DownloadRule.Action.ALLOW, "windows")));
+
+        assertFalse(rules.allows(LINUX));
+        assertTrue(rules.allows(new LaunchProfile("Windows", null, null, Set.of())));
+    }
+
+    @Test
+    void featuresMustHaveTheirRequiredValue() {
+        CompiledRules enabled = CompiledRules.ofArgumentRules(List.of(argumentRule(Map.of(), Map.of("has_custom_resolution", true))));
+        CompiledRules disabled = CompiledRules.ofArgumentRules(List.of(argumentRule(Map.of(), Map.of("is_demo_user", false))));
+        var customResolution = new LaunchProfile("linux", null, null, Set.of("has_custom_resolution"));
+
+        assertTrue(enabled.allows(customResolution));
+        assertFalse(enabled.allows(LINUX));
+        assertTrue(disabled.allows(LINUX));
+        assertFalse(disabled.allows(new LaunchProfile("linux", null, null, Set.of("is_demo_user"))));
+    }
+
+    @Test
+    void archMustMatch() {
+        CompiledRules rules = CompiledRules.ofArgumentRules(List.of(argumentRule(Map.of("arch", "x86"), Map.of())));
+
+        assertTrue(rules.allows(new LaunchProfile("windows", "X86", null, Set.of())));
+        assertFalse(rules.allows(LINUX));
+        assertFalse(rules.allows(new LaunchProfile("windows", null, null, Set.of())));
+    }
+
+    @Test
+    void versionPatternIsReevaluatedForEachOsVersion() {
+        CompiledRules rules = CompiledRules.ofArgumentRules(List.of(argumentRule(Map.of("name", "windows", "version", "^10\\."), Map.of())));
+        var windows10 = new LaunchProfile("windows", null, "10.0", Set.of());
+        var windows7 = new LaunchProfile("windows", null, "6.1", Set.of());
+
+        // Alternating versions must not be answered from the previous version's remembered result
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rules.allows(windows10));
+            assertFalse(rules.allows(windows7));
+        }
+
+        assertFalse(rules.allows(new LaunchProfile("windows", null, null, Set.of())));
+    }
+
+    @Test
+    void invalidVersionPatternMatchesLiterally() {
+        CompiledRules rules = CompiledRules.ofArgumentRules(List.of(argumentRule(Map.of("version", "10.0 ("), Map.of())));
+
+        assertTrue(rules.allows(new LaunchProfile("windows", null, "10.0 (build 19045)", Set.of())));
+        assertFalse(rules.allows(new LaunchProfile("windows", null, "10.0", Set.of())));
+    }
+
+    private static Library.DownloadRule downloadRule(Library.DownloadRule.Action action, String os) {
+        return new Library.DownloadRule(action, os == null ? null : new Library.DownloadRule.OperatingSystem(os));
+    }
+
+    private static CLIArguments.Argument.Rule argumentRule(Map<String, String> os, Map<String, Boolean> features) {
+        return new CLIArguments.Argument.Rule(CLIArguments.Argument.Rule.Action.ALLOW, os, features);
+    }
+}
@@ -0,0 +1,118 @@
+package dev.railroadide.switchboard.routing;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.railroadide.switchboard.Switchboard;
+import dev.railroadide.switchboard.minecraft.pistonmeta.VersionPackage;
+import io.javalin.Javalin;
+import io.javalin.json.JavalinGson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinecraftRoutingTest {
+    private static final VersionPackage PACKAGE = VersionPackage.fromJsonString("""
+            {
+              "id": "1.21",
+              "mainClass": "net.minecraft.client.main.Main",
+              "arguments": {
+                "game": [
+                  "--username",
+                  "${auth_player_name}",
+                  {"rules": [{"action": "allow", "features": {"is_demo_user": true}}], "value": "--demo"}
+                ],
+                "jvm": [
+                  {"rules": [{"action": "allow", "os": {"name": "osx"}}], "value": ["-XstartOnFirstThread"]},
+                  "-cp",
+                  "${classpath}"
+                ]
+              },
+              "libraries": [
+                {
+                  "name": "org.lwjgl:lwjgl:3.3.3",
+                  "downloads": {
+                    "artifact": {
+                      "path": "org/lwjgl/lwjgl/3.3.3/lwjgl-3.3.3.jar",
+                      "sha1": "29589b5f87ed335a6c7e7ee6a5775f81f97ecb84",
+                      "size": 785029,
+                      "url": "https://libraries.minecraft.net/org/lwjgl/lwjgl/3.3.3/lwjgl-3.3.3.jar"
+                    }
+                  },
+                  "rules": [{"action": "allow", "os": {"name": "linux"}}]
+                }
+              ]
+            }
+            """);
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Javalin server;
+
+    @BeforeEach
+    void start() {
+        var rendered = new RenderedJsonCache<String>(1);
+        server = Javalin.create(config -> config.jsonMapper(new JavalinGson(Switchboard.GSON, true)))
+                .get("/piston-meta/{id}", ctx -> MinecraftRouting.servePistonMeta(ctx, rendered.get(ctx.pathParam("id")),
+                        PACKAGE, () -> PACKAGE, MinecraftRouting.getFieldsFromBody(ctx.body())))
+                .start(0);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+        client.close();
+    }
+
+    @Test
+    void filteredAndWholePackagesAgreeOnAField() throws Exception {
+        JsonObject whole = get("/piston-meta/1.21", "");
+        JsonObject filtered = get("/piston-meta/1.21", "fields arguments.game,libraries\n");
+
+        assertEquals(whole.getAsJsonObject("arguments").get("game"), filtered.getAsJsonObject("arguments").get("game"));
+        assertEquals(whole.get("libraries"), filtered.get("libraries"));
+        assertEquals("net.minecraft.client.main.Main", whole.get("mainClass").getAsString());
+        assertFalse(filtered.has("mainClass"));
+    }
+
+    @Test
+    void wholePackageIsTheSameRenderedOrNot() throws Exception {
+        // The first response renders the package, the second is served from the kept rendering
+        JsonObject first = get("/piston-meta/1.21", "");
+        JsonObject second = get("/piston-meta/1.21", "fields *\n");
+
+        assertEquals(Switchboard.GSON.toJsonTree(PACKAGE), first);
+        assertEquals(first, second);
+    }
+
+    @Test
+    void releasedRenderingStillServes() throws Exception {
+        JsonObject before = get("/piston-meta/1.21", "");
+        // Only one rendering is kept, so this releases the one for 1.21
+        get("/piston-meta/other", "");
+
+        assertEquals(before, get("/piston-meta/1.21", ""));
+    }
+
+    @Test
+    void parsesFieldLists() {
+        assertEquals(List.of("arguments.game", "assets", "mainClass"),
+                MinecraftRouting.getFieldsFromBody("fields arguments.game, assets\nfields mainClass,assets\nother"));
+        assertEquals(List.of(), MinecraftRouting.getFieldsFromBody(null));
+    }
+
+    private JsonObject get(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + path))
+                .method("GET", HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+        return JsonParser.parseString(response.body()).getAsJsonObject();
+    }
+}
@@ -0,0 +1,177 @@
+package dev.railroadide.switchboard.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheTest {
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        Cache<String, String> cache = Cache.<String, String>builder("test").build();
+        var loads = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> first = executor.submit(() -> cache.get("key", () -> {
+                loads.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "value";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> second = executor.submit(() -> cache.get("key", () -> {
+                loads.incrementAndGet();
+                return "other";
+            }));
+
+            release.countDown();
+            assertEquals("value", first.get(5, TimeUnit.SECONDS));
+            assertEquals("value", second.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().loadSuccesses());
+    }
+
+    @Test
+    void recursiveLoadOfTheSameKeyFails() {
+        Cache<String, String> cache = Cache.<String, String>builder("test").build();
+
+        assertThrows(IllegalStateException.class, () -> cache.get("key", () -> cache.get("key", () -> "inner")));
+        assertFalse(cache.containsKey("key"));
+        assertEquals(1, cache.stats().loadFailures());
+    }
+
+    @Test
+    void loadMayReadOtherKeys() {
+        Cache<String, String> cache = Cache.<String, String>builder("test").build();
+
+        assertEquals("outer+inner", cache.get("outer", () -> "outer+" + cache.get("inner", () -> "inner")));
+        assertEquals("inner", cache.get("inner"));
+    }
+
+    @Test
+    void nullValuesAreNotCached() {
+        Cache<String, String> cache = Cache.<String, String>builder("test").build();
+
+        assertNull(cache.get("key", () -> null));
+        assertFalse(cache.containsKey("key"));
+        assertEquals("value", cache.get("key", () -> "value"));
+    }
+
+    @Test
+    void failedLoadIsRethrownAndNotCached() {
+        Cache<String, String> cache = Cache.<String, String>builder("test").build();
+
+        assertThrows(UnsupportedOperationException.class, () -> cache.get("key", () -> {
+            throw new UnsupportedOperationException();
+        }));
+        assertEquals("value", cache.get("key", () -> "value"));
+        assertEquals(1, cache.stats().loadFailures());
+    }
+
+    @Test
+    void entriesExpireAfterTheirTtl() {
+        Cache<String, String> cache = Cache.<String, String>builder("test").expireAfterWrite(Duration.ofHours(1)).build();
+        cache.put("expired", "value", 0);
+        cache.put("live", "value");
+
+        assertFalse(cache.containsKey("expired"));
+        assertNull(cache.get("expired"));
+        cache.cleanUp();
+
+        assertEquals(1, cache.size());
+        assertEquals("value", cache.get("live"));
+        assertEquals(1, cache.stats().expirations());
+    }
+
+    @Test
+    void maximumSizeBoundsTheEntries() {
+        Cache<Integer, Integer> cache = Cache.<Integer, Integer>builder("test").maximumSize(100).build();
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(i, i);
+        }
+
+        assertTrue(cache.size() <= 100, "size " + cache.size());
+        assertEquals(cache.size(), cache.stats().weight());
+        assertEquals(1_000 - cache.size(), cache.stats().evictions());
+    }
+
+    @Test
+    void frequentlyReadEntriesSurviveAScan() {
+        Cache<Integer, Integer> cache = Cache.<Integer, Integer>builder("test").maximumSize(100).build();
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, i);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals(i, cache.get(i));
+            }
+        }
+
+        for (int i = 1_000; i < 2_000; i++) {
+            cache.put(i, i);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(cache.containsKey(i), "hot key " + i + " was evicted");
+        }
+    }
+
+    @Test
+    void maximumWeightUsesTheWeigher() {
+        Cache<String, String> cache = Cache.<String, String>builder("test")
+                .maximumWeight(10, (_, value) -> value.length())
+                .build();
+        cache.put("a", "12345");
+        cache.put("b", "12345");
+        cache.put("c", "12345");
+
+        assertTrue(cache.stats().weight() <= 10, "weight " + cache.stats().weight());
+        assertThrows(IllegalArgumentException.class, () -> Cache.<String, String>builder("test")
+                .maximumWeight(10, (_, _) -> -1)
+                .build()
+                .put("negative", "value"));
+    }
+
+    @Test
+    void refreshReturnsTheCurrentValueWhileReloading() throws Exception {
+        Cache<String, Integer> cache = Cache.<String, Integer>builder("test").refreshAfterWrite(Duration.ofNanos(1)).build();
+        var loads = new AtomicInteger();
+        var refreshed = new CountDownLatch(1);
+
+        assertEquals(1, cache.get("key", loads::incrementAndGet));
+        assertEquals(1, cache.get("key", () -> {
+            int value = loads.incrementAndGet();
+            refreshed.countDown();
+            return value;
+        }));
+
+        assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.get("key") != 2 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+
+        assertEquals(2, cache.get("key"));
+        assertEquals(1, cache.stats().refreshes());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            fail(exception);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package dev.railroadide.switchboard.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackStoreTest {
+    // Each entry is a 10 byte header, a 2 byte key and a 20 byte value, so a segment seals after three entries
+    private static final int ENTRY_SIZE = 32;
+    private static final long SEGMENT_SIZE = 3 * ENTRY_SIZE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackWhatWasPut() throws IOException {
+        PackStore store = open(Long.MAX_VALUE);
+        store.put("k0", value("first"));
+        store.put("k1", value("second"));
+        store.put("k0", value("replaced"));
+
+        assertArrayEquals(value("replaced"), read(store, "k0"));
+        assertArrayEquals(value("second"), read(store, "k1"));
+        assertTrue(store.read("missing", _ -> fail("read a missing key")).isEmpty());
+        assertEquals(2, store.stats().entries());
+        assertEquals(2 * ENTRY_SIZE, store.stats().liveBytes());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedOverBudget() throws IOException {
+        PackStore store = open(3 * ENTRY_SIZE);
+        store.put("k0", value("0"));
+        store.put("k1", value("1"));
+        store.put("k2", value("2"));
+        read(store, "k0");
+        store.put("k3", value("3"));
+
+        assertEquals(List.of("k2", "k0", "k3"), store.keys());
+        assertEquals(1, store.stats().evictions());
+    }
+
+    @Test
+    void reopensSealedAndActiveSegments() throws IOException {
+        PackStore store = open(Long.MAX_VALUE);
+        for (int i = 0; i < 8; i++) {
+            store.put("k" + i, value(Integer.toString(i)));
+        }
+        store.put("k1", value("replaced"));
+        store.flush();
+
+        PackStore reopened = open(Long.MAX_VALUE);
+
+        assertEquals(8, reopened.keys().size());
+        assertEquals(3, reopened.stats().segments());
+        assertArrayEquals(value("replaced"), read(reopened, "k1"));
+        for (int i = 2; i < 8; i++) {
+            assertArrayEquals(value(Integer.toString(i)), read(reopened, "k" + i));
+        }
+    }
+
+    @Test
+    void appliesTheBudgetAgainOnOpen() throws IOException {
+        PackStore store = open(Long.MAX_VALUE);
+        for (int i = 0; i < 6; i++) {
+            store.put("k" + i, value(Integer.toString(i)));
+        }
+        store.flush();
+
+        PackStore reopened = open(2 * ENTRY_SIZE);
+
+        assertEquals(List.of("k4", "k5"), reopened.keys());
+    }
+
+    @Test
+    void cutsOffATornTail() throws IOException {
+        PackStore store = open(Long.MAX_VALUE);
+        store.put("k0", value("0"));
+        store.put("k1", value("1"));
+        store.flush();
+        Path active = directory.resolve("segment-000000.pack");
+        try (FileChannel channel = FileChannel.open(active, StandardOpenOption.APPEND)) {
+            // The header of an entry whose key and value never made it to disk
+            channel.write(ByteBuffer.allocate(10).putShort((short) 2).putInt(20).putInt(0x12345678).flip());
+        }
+
+        PackStore reopened = open(Long.MAX_VALUE);
+
+        assertEquals(List.of("k0", "k1"), reopened.keys());
+        assertEquals(2 * ENTRY_SIZE, Files.size(active));
+        reopened.put("k2", value("2"));
+        assertArrayEquals(value("2"), read(open(Long.MAX_VALUE), "k2"));
+    }
+
+    @Test
+    void dropsAnEntryThatNoLongerMatchesItsChecksum() throws IOException {
+        PackStore store = open(Long.MAX_VALUE);
+        for (int i = 0; i < 4; i++) {
+            store.put("k" + i, value(Integer.toString(i)));
+        }
+        store.flush();
+        // Flip the first value byte of k0, in the sealed first segment
+        try (FileChannel channel = FileChannel.open(directory.resolve("segment-000000.pack"), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, 12);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (buffer.get(0) ^ 0xff)}), 12);
+        }
+
+        PackStore reopened = open(Long.MAX_VALUE);
+
+        assertTrue(reopened.read("k0", _ -> fail("read a corrupt value")).isEmpty());
+        assertFalse(reopened.contains("k0"));
+        assertEquals(1, reopened.stats().checksumFailures());
+        assertArrayEquals(value("1"), read(reopened, "k1"));
+    }
+
+    @Test
+    void scansASegmentWhoseFooterCountIsCorrupt() throws IOException {
+        Path first = sealedFirstSegment();
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The entry count sits between the footer offset and the magic number at the very end
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, Integer.MAX_VALUE), channel.size() - 8);
+        }
+
+        assertReopensWithEveryEntry();
+    }
+
+    @Test
+    void scansASegmentWhoseFooterPointsPastItsEntries() throws IOException {
+        Path first = sealedFirstSegment();
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The offset of k0, after its 2 byte key length and 2 byte key at the start of the footer
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, 1_000_000), SEGMENT_SIZE + 4);
+        }
+
+        assertReopensWithEveryEntry();
+    }
+
+    @Test
+    void compactsAMostlyDeadSegment() throws Exception {
+        PackStore store = open(Long.MAX_VALUE);
+        for (int i = 0; i < 4; i++) {
+            store.put("k" + i, value(Integer.toString(i)));
+        }
+        Path first = directory.resolve("segment-000000.pack");
+        long sealedSize = Files.size(first);
+
+        store.put("k0", value("replaced 0"));
+        store.put("k1", value("replaced 1"));
+        await(() -> store.stats().compactions() == 1);
+
+        assertTrue(Files.size(first) < sealedSize);
+        assertArrayEquals(value("2"), read(store, "k2"));
+        assertArrayEquals(value("replaced 0"), read(store, "k0"));
+        assertEquals(4 * ENTRY_SIZE, store.stats().liveBytes());
+
+        store.flush();
+        PackStore reopened = open(Long.MAX_VALUE);
+        assertArrayEquals(value("replaced 0"), read(reopened, "k0"));
+        assertArrayEquals(value("replaced 1"), read(reopened, "k1"));
+        assertArrayEquals(value("2"), read(reopened, "k2"));
+        assertArrayEquals(value("3"), read(reopened, "k3"));
+    }
+
+    @Test
+    void deletesASegmentWithNothingLive() throws Exception {
+        PackStore store = open(Long.MAX_VALUE);
+        for (int i = 0; i < 4; i++) {
+            store.put("k" + i, value(Integer.toString(i)));
+        }
+        for (int i = 0; i < 3; i++) {
+            store.put("k" + i, value("replaced " + i));
+        }
+
+        await(() -> !Files.exists(directory.resolve("segment-000000.pack")));
+        assertArrayEquals(value("replaced 0"), read(store, "k0"));
+        assertEquals(4, store.stats().entries());
+    }
+
+    @Test
+    void readKeepsItsValueAcrossACompaction() throws Exception {
+        PackStore store = open(Long.MAX_VALUE);
+        for (int i = 0; i < 4; i++) {
+            store.put("k" + i, value(Integer.toString(i)));
+        }
+
+        byte[] seen = store.read("k2", buffer -> {
+            // Compact the segment being read, which must not unmap it until this read returns
+            store.put("k0", value("replaced 0"));
+            store.put("k1", value("replaced 1"));
+            await(() -> store.stats().compactions() == 1);
+
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }).orElseThrow();
+
+        assertArrayEquals(value("2"), seen);
+        assertArrayEquals(value("2"), read(store, "k2"));
+    }
+
+    @Test
+    void removesLeftoverCompactionCopies() throws IOException {
+        Path leftover = directory.resolve("segment-000000.pack.compacting");
+        Files.write(leftover, new byte[100]);
+
+        PackStore store = open(Long.MAX_VALUE);
+        store.put("k0", value("0"));
+
+        assertFalse(Files.exists(leftover));
+        assertArrayEquals(value("0"), read(store, "k0"));
+    }
+
+    private Path sealedFirstSegment() throws IOException {
+        PackStore store = open(Long.MAX_VALUE);
+        for (int i = 0; i < 4; i++) {
+            store.put("k" + i, value(Integer.toString(i)));
+        }
+        store.flush();
+        return directory.resolve("segment-000000.pack");
+    }
+
+    private void assertReopensWithEveryEntry() throws IOException {
+        PackStore reopened = open(Long.MAX_VALUE);
+
+        assertEquals(List.of("k0", "k1", "k2", "k3"), reopened.keys());
+        for (int i = 0; i < 4; i++) {
+            assertArrayEquals(value(Integer.toString(i)), read(reopened, "k" + i));
+        }
+        // The scanned segment was sealed again with a footer that opens cleanly
+        assertArrayEquals(value("0"), read(open(Long.MAX_VALUE), "k0"));
+    }
+
+    private PackStore open(long maxBytes) {
+        return new PackStore("test", () -> directory, () -> maxBytes, SEGMENT_SIZE);
+    }
+
+    private static byte[] value(String text) {
+        return "%-20s".formatted(text).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] read(PackStore store, String key) throws IOException {
+        return store.read(key, buffer -> {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }).orElse(null);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline)
+                fail("Timed out waiting for the compactor");
+
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package dev.railroadide.switchboard.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadStoreTest {
+    @Test
+    void writesBackWhatWasStored() throws IOException {
+        var store = new PayloadStore(() -> Long.MAX_VALUE, 1024 * 1024);
+        var bytes = new byte[40_000];
+        new Random(42).nextBytes(bytes);
+
+        PayloadStore.Payload payload = store.store(bytes);
+        var out = new ByteArrayOutputStream();
+        payload.writeTo(out);
+
+        assertArrayEquals(bytes, out.toByteArray());
+        assertEquals(bytes.length, payload.size());
+        assertEquals(bytes.length, store.stats().liveBytes());
+        assertEquals(1, store.stats().payloads());
+    }
+
+    @Test
+    void referencesKeepThePayloadUntilTheLastRelease() {
+        var store = new PayloadStore(() -> Long.MAX_VALUE, 100);
+        PayloadStore.Payload payload = store.store(new byte[10]);
+
+        assertTrue(payload.retain());
+        payload.release();
+        assertEquals(1, store.stats().payloads());
+
+        payload.release();
+        assertEquals(0, store.stats().payloads());
+        assertEquals(0, store.stats().liveBytes());
+        assertFalse(payload.retain());
+    }
+
+    @Test
+    void releasingTooOftenFails() {
+        var store = new PayloadStore(() -> Long.MAX_VALUE, 100);
+        PayloadStore.Payload payload = store.store(new byte[10]);
+        payload.release();
+
+        assertThrows(IllegalStateException.class, payload::release);
+    }
+
+    @Test
+    void freesAFilledSlabWithItsLastPayload() {
+        var store = new PayloadStore(() -> Long.MAX_VALUE, 100);
+        PayloadStore.Payload first = store.store(new byte[60]);
+        PayloadStore.Payload second = store.store(new byte[60]);
+
+        assertEquals(2, store.stats().slabs());
+        assertEquals(200, store.stats().reservedBytes());
+
+        first.release();
+        assertEquals(1, store.stats().slabs());
+        assertEquals(100, store.stats().reservedBytes());
+
+        // The slab still being filled is kept even once empty
+        second.release();
+        assertEquals(1, store.stats().slabs());
+        assertNotNull(store.store(new byte[30]));
+        assertEquals(1, store.stats().slabs());
+    }
+
+    @Test
+    void oversizedPayloadsGetASlabOfTheirOwn() {
+        var store = new PayloadStore(() -> Long.MAX_VALUE, 100);
+        store.store(new byte[10]);
+        PayloadStore.Payload large = store.store(new byte[500]);
+
+        assertEquals(600, store.stats().reservedBytes());
+        large.release();
+        assertEquals(100, store.stats().reservedBytes());
+
+        // The small payloads keep filling the slab they started in
+        store.store(new byte[10]);
+        assertEquals(1, store.stats().slabs());
+    }
+
+    @Test
+    void rejectsPayloadsOverTheCap() {
+        var store = new PayloadStore(() -> 200, 100);
+        PayloadStore.Payload first = store.store(new byte[60]);
+        store.store(new byte[60]);
+
+        assertNull(store.store(new byte[60]));
+        assertEquals(1, store.stats().rejections());
+
+        first.release();
+        assertNotNull(store.store(new byte[60]));
+    }
+
+    @Test
+    void storesEmptyPayloads() throws IOException {
+        var store = new PayloadStore(() -> Long.MAX_VALUE, 100);
+        PayloadStore.Payload payload = store.store(new byte[0]);
+        var out = new ByteArrayOutputStream();
+        payload.writeTo(out);
+
+        assertEquals(0, out.size());
+        payload.release();
+        assertEquals(0, store.stats().payloads());
+    }
+}